@@ -1,8 +1,10 @@
 package it.unibo.acme.fleet.battery.bootstrap;
 
 import it.unibo.acme.fleet.battery.resource.BatteryCommandResource;
+import it.unibo.acme.fleet.battery.resource.DemandSubscriptionResource;
 import it.unibo.acme.fleet.battery.resource.TelemetrySubscriptionResource;
 import it.unibo.acme.fleet.battery.resource.SnapshotEmitter;
+import it.unibo.acme.fleet.battery.resource.SnapshotDumpResource;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Initialized;
 import jakarta.enterprise.event.Observes;
@@ -18,6 +20,8 @@ public class BatteryBootstrap {
     @Inject Instance<BatteryCommandResource> commands;
     @Inject Instance<TelemetrySubscriptionResource> telemetry;
     @Inject Instance<SnapshotEmitter> emitter;
+    @Inject Instance<DemandSubscriptionResource> demand;
+    @Inject Instance<SnapshotDumpResource> dumps;
 
     void onStart(@Observes @Initialized(ApplicationScoped.class) Object init) {
         
@@ -26,6 +30,8 @@ public class BatteryBootstrap {
         commands.get().toString();
         telemetry.get().toString();
         emitter.get().toString();
+        demand.get().toString();
+        dumps.get().toString();
 
         LOG.info("BatteryBootstrap completed: NATS resources initialized.");
     }
@@ -0,0 +1,70 @@
+package it.unibo.acme.fleet.battery.capability;
+
+/**
+ * Decides how long a vehicle may go without a battery snapshot.
+ *
+ * The fixed policy always answers {@code minIntervalMs} (the historical behaviour).
+ * The adaptive one stretches the interval up to {@code heartbeatMs} when nothing is
+ * going on, and falls back to {@code minIntervalMs} when:
+ * - the battery is close to (or below) the low threshold
+ * - somebody is actively watching the vehicle (demand signal from the gateway)
+ *
+ * In between, the interval follows the discharge rate: we aim for one snapshot
+ * every {@code publishDeltaPct} of expected change.
+ *
+ * Changes of at least {@code publishDeltaPct} are still published immediately
+ * by {@link BatteryCapability}; this only governs the "nothing changed" heartbeat.
+ */
+public final class AdaptiveSnapshotPolicy {
+
+    public static final String FIXED = "fixed";
+    public static final String ADAPTIVE = "adaptive";
+
+    private final boolean adaptive;
+    private final long minIntervalMs;
+    private final long heartbeatMs;
+    private final int publishDeltaPct;
+    private final int lowThresholdPct;
+    private final int nearLowMarginPct;
+
+    public AdaptiveSnapshotPolicy(String mode,
+                                  long minIntervalMs,
+                                  long heartbeatMs,
+                                  int publishDeltaPct,
+                                  int lowThresholdPct,
+                                  int nearLowMarginPct) {
+        this.adaptive = ADAPTIVE.equalsIgnoreCase(mode);
+        this.minIntervalMs = Math.max(1, minIntervalMs);
+        this.heartbeatMs = Math.max(this.minIntervalMs, heartbeatMs);
+        this.publishDeltaPct = Math.max(1, publishDeltaPct);
+        this.lowThresholdPct = lowThresholdPct;
+        this.nearLowMarginPct = Math.max(0, nearLowMarginPct);
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public long heartbeatMs() {
+        return adaptive ? heartbeatMs : minIntervalMs;
+    }
+
+    /**
+     * @param batteryPct           last known battery level
+     * @param dischargePctPerMin   estimated discharge rate (>= 0), 0 if unknown/parked
+     * @param demanded             true if a consumer asked for fresh data recently
+     */
+    public long intervalMs(int batteryPct, double dischargePctPerMin, boolean demanded) {
+        if (!adaptive || demanded || batteryPct <= lowThresholdPct + nearLowMarginPct) {
+            return minIntervalMs;
+        }
+        if (dischargePctPerMin <= 0) {
+            return heartbeatMs;
+        }
+        double ms = publishDeltaPct / dischargePctPerMin * 60_000.0;
+        if (ms <= minIntervalMs) {
+            return minIntervalMs;
+        }
+        return ms >= heartbeatMs ? heartbeatMs : (long) ms;
+    }
+}
@@ -1,7 +1,10 @@
 package it.unibo.acme.fleet.battery.capability;
 
+import it.unibo.acme.fleet.battery.model.BatchCommand;
 import it.unibo.acme.fleet.battery.model.BatterySnapshot;
-import it.unibo.acme.fleet.battery.model.TelemetryMessage;
+import it.unibo.acme.fleet.battery.model.CommandResponse;
+import it.unibo.acme.fleet.wire.ReorderWindow;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
@@ -20,6 +23,13 @@ public class BatteryCapability {
     private int publishDeltaPct;
     private int lowThresholdPct;
     private boolean publishStopped;
+    private AdaptiveSnapshotPolicy policy;
+    private int estimatorWindow;
+    private long estimatorSampleSpacingMs;
+    private int historyRecentSamples;
+    private int historyCoarseSamples;
+    private long historyBucketMs;
+    private int reorderWindow;
 
     public BatteryCapability() {
         // CDI proxy
@@ -30,16 +40,33 @@ public class BatteryCapability {
             @ConfigProperty(name = "battery.snapshot.intervalMs", defaultValue = "1000") long snapshotIntervalMs,
             @ConfigProperty(name = "battery.snapshot.publishDeltaPct", defaultValue = "1") int publishDeltaPct,
             @ConfigProperty(name = "battery.low.thresholdPct", defaultValue = "15") int lowThresholdPct,
-            @ConfigProperty(name = "battery.snapshot.publishStopped", defaultValue = "true") boolean publishStopped
+            @ConfigProperty(name = "battery.snapshot.publishStopped", defaultValue = "true") boolean publishStopped,
+            @ConfigProperty(name = "battery.snapshot.policy", defaultValue = "fixed") String policyMode,
+            @ConfigProperty(name = "battery.snapshot.heartbeatMs", defaultValue = "30000") long heartbeatMs,
+            @ConfigProperty(name = "battery.snapshot.nearLowMarginPct", defaultValue = "5") int nearLowMarginPct,
+            @ConfigProperty(name = "battery.estimator.window", defaultValue = "16") int estimatorWindow,
+            @ConfigProperty(name = "battery.estimator.sampleSpacingMs", defaultValue = "60000") long estimatorSampleSpacingMs,
+            @ConfigProperty(name = "battery.history.recentSamples", defaultValue = "300") int historyRecentSamples,
+            @ConfigProperty(name = "battery.history.coarseSamples", defaultValue = "720") int historyCoarseSamples,
+            @ConfigProperty(name = "battery.history.bucketMs", defaultValue = "60000") long historyBucketMs,
+            @ConfigProperty(name = "battery.ingest.reorderWindow", defaultValue = "0") int reorderWindow
     ) {
         this.snapshotIntervalMs = snapshotIntervalMs;
         this.publishDeltaPct = Math.max(0, publishDeltaPct);
         this.lowThresholdPct = lowThresholdPct;
         this.publishStopped = publishStopped;
+        this.policy = new AdaptiveSnapshotPolicy(policyMode, snapshotIntervalMs, heartbeatMs,
+                this.publishDeltaPct, lowThresholdPct, nearLowMarginPct);
+        this.estimatorWindow = estimatorWindow;
+        this.estimatorSampleSpacingMs = estimatorSampleSpacingMs;
+        this.historyRecentSamples = historyRecentSamples;
+        this.historyCoarseSamples = historyCoarseSamples;
+        this.historyBucketMs = historyBucketMs;
+        this.reorderWindow = reorderWindow;
     }
 
     public void start(String vehicleId, long ts) {
-        VehicleBatteryState st = stateByVehicle.computeIfAbsent(vehicleId, v -> new VehicleBatteryState());
+        VehicleBatteryState st = stateByVehicle.computeIfAbsent(vehicleId, v -> newState());
         synchronized (st) {
             st.active = true;
             st.startedAt = ts > 0 ? ts : System.currentTimeMillis();
@@ -47,11 +74,13 @@ public class BatteryCapability {
             st.lastPublishedTs = 0;
             st.lastPublishedPct = null;
             st.changedSinceLastPublish = true; // force first publish (if pct already known)
+            st.estimator.reset();
+            st.lastPctChangeTs = 0;
         }
     }
 
     public void stop(String vehicleId, long ts) {
-        VehicleBatteryState st = stateByVehicle.computeIfAbsent(vehicleId, v -> new VehicleBatteryState());
+        VehicleBatteryState st = stateByVehicle.computeIfAbsent(vehicleId, v -> newState());
         synchronized (st) {
             st.active = false;
             st.pendingFinalPublish = publishStopped;
@@ -62,34 +91,170 @@ public class BatteryCapability {
         }
     }
 
+    /** Applies a batch of start/stop commands in order, one result per command. */
+    public List<CommandResponse> applyCommands(List<BatchCommand> commands) {
+        List<CommandResponse> out = new ArrayList<>(commands.size());
+        for (BatchCommand cmd : commands) {
+            if (cmd == null || cmd.vehicleId == null) {
+                out.add(CommandResponse.error(null, "vehicleId mancante"));
+            } else if (BatchCommand.START.equals(cmd.op)) {
+                start(cmd.vehicleId, cmd.ts);
+                out.add(CommandResponse.ok(cmd.vehicleId, "battery monitoring started"));
+            } else if (BatchCommand.STOP.equals(cmd.op)) {
+                stop(cmd.vehicleId, cmd.ts);
+                out.add(CommandResponse.ok(cmd.vehicleId, "battery monitoring stopped"));
+            } else {
+                out.add(CommandResponse.error(cmd.vehicleId, "op non gestita: " + cmd.op));
+            }
+        }
+        return out;
+    }
+
     public void onTelemetry(TelemetryMessage telemetry) {
         if (telemetry == null || telemetry.vehicleId == null) {
             return;
         }
-        VehicleBatteryState st = stateByVehicle.computeIfAbsent(telemetry.vehicleId, v -> new VehicleBatteryState());
+        VehicleBatteryState st = stateByVehicle.computeIfAbsent(telemetry.vehicleId, v -> newState());
         synchronized (st) {
-            if (!st.active) {
-                // business rule: ignore telemetry when rental not active
+            long ts = telemetry.ts > 0 ? telemetry.ts : System.currentTimeMillis();
+            int pct = telemetry.batteryPct != null ? telemetry.batteryPct : -1;
+            if (st.reorder == null) {
+                applyReading(st, pct, ts);
                 return;
             }
+            // stale messages are dropped, early ones wait for the gap to fill (or to be given up on)
+            if (st.reorder.offer(telemetry.seq, ts, pct, 0)) {
+                while (st.reorder.poll()) {
+                    applyReading(st, (int) st.reorder.a(), st.reorder.ts());
+                }
+            }
+        }
+    }
 
-            long ts = telemetry.ts > 0 ? telemetry.ts : System.currentTimeMillis();
-            if (telemetry.batteryPct != null) {
-                st.batteryPct = telemetry.batteryPct;
-                st.lowBattery = telemetry.batteryPct < lowThresholdPct;
-                st.lastUpdateTs = ts;
-                st.changedSinceLastPublish = true;
-            } else {
-                // telemetry without battery does not update state
-                st.lastUpdateTs = Math.max(st.lastUpdateTs, ts);
+    /** @param pct battery level, or -1 if the message carried none */
+    private void applyReading(VehicleBatteryState st, int pct, long ts) {
+        if (!st.active) {
+            // business rule: ignore telemetry when rental not active
+            return;
+        }
+        if (pct >= 0) {
+            updateEstimator(st, pct, ts);
+            recordHistory(st, pct, ts);
+            st.batteryPct = pct;
+            st.lowBattery = pct < lowThresholdPct;
+            st.lastUpdateTs = ts;
+            st.changedSinceLastPublish = true;
+        } else {
+            // telemetry without battery does not update state
+            st.lastUpdateTs = Math.max(st.lastUpdateTs, ts);
+        }
+    }
+
+    /**
+     * Applies a decoded batch frame (telemetry.batch.&lt;shard&gt;) in one pass,
+     * on the same dispatcher thread that received it.
+     */
+    public void onTelemetryBatch(List<TelemetryMessage> batch) {
+        if (batch == null) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            onTelemetry(batch.get(i));
+        }
+    }
+
+    /**
+     * Demand signal: a consumer is watching this vehicle until {@code untilTs},
+     * so the adaptive policy keeps it at the minimum publish interval.
+     * Unknown vehicles are ignored: demand never creates state (the gateway repeats
+     * the signal while the vehicle is watched, so one that shows up later still gets it).
+     */
+    public void onDemand(String vehicleId, long untilTs) {
+        VehicleBatteryState st = vehicleId != null ? stateByVehicle.get(vehicleId) : null;
+        if (st == null) {
+            return;
+        }
+        synchronized (st) {
+            st.demandUntilTs = Math.max(st.demandUntilTs, untilTs);
+        }
+    }
+
+    /**
+     * Battery readings in [from, to], oldest first; null if the vehicle has no history.
+     */
+    public BatteryHistory.Slice history(String vehicleId, long from, long to) {
+        VehicleBatteryState st = vehicleId != null ? stateByVehicle.get(vehicleId) : null;
+        if (st == null) {
+            return null;
+        }
+        synchronized (st) {
+            return st.history != null ? st.history.slice(from, to) : null;
+        }
+    }
+
+    /**
+     * Current snapshot of every known vehicle (active or not), for consumers rebuilding
+     * their state. Unlike {@link #collectSnapshotsToPublish} it doesn't touch the publish
+     * bookkeeping.
+     */
+    public List<BatterySnapshot> dumpSnapshots(long nowTs) {
+        List<BatterySnapshot> out = new ArrayList<>(stateByVehicle.size());
+        for (var entry : stateByVehicle.entrySet()) {
+            VehicleBatteryState st = entry.getValue();
+            synchronized (st) {
+                out.add(snapshotOf(entry.getKey(), st, nowTs));
             }
         }
+        return out;
+    }
+
+    /** Current snapshot of one vehicle, empty if the vehicle is unknown. */
+    public List<BatterySnapshot> dumpSnapshot(String vehicleId, long nowTs) {
+        VehicleBatteryState st = stateByVehicle.get(vehicleId);
+        if (st == null) {
+            return List.of();
+        }
+        synchronized (st) {
+            return List.of(snapshotOf(vehicleId, st, nowTs));
+        }
+    }
+
+    // caller holds the state monitor
+    private BatterySnapshot snapshotOf(String vehicleId, VehicleBatteryState st, long nowTs) {
+        BatterySnapshot snap = new BatterySnapshot();
+        snap.vehicleId = vehicleId;
+        snap.ts = nowTs;
+        snap.active = st.active;
+        snap.batteryPct = st.batteryPct;
+        snap.lowBattery = st.lowBattery;
+        double rate = dischargePctPerMin(st, nowTs);
+        if (st.estimator.size() >= 2) {
+            snap.dischargePctPerMin = rate;
+            snap.estimatedMinutesToEmpty = rate > 0 && st.batteryPct != null
+                    ? st.batteryPct / rate
+                    : null;
+        }
+        snap.startedAt = st.startedAt;
+        snap.lastUpdateTs = st.lastUpdateTs;
+        snap.stale = st.lastUpdateTs > 0 && (nowTs - st.lastUpdateTs) > (3L * snapshotIntervalMs);
+        return snap;
     }
 
     public List<BatterySnapshot> collectSnapshotsToPublish(long nowTs) {
+        return collectSnapshotsToPublish(nowTs, 0, 1);
+    }
+
+    /**
+     * Same as {@link #collectSnapshotsToPublish(long)}, restricted to the vehicles of one
+     * slice ({@link #sliceOf}) so a tick can be spread over several smaller bursts.
+     */
+    public List<BatterySnapshot> collectSnapshotsToPublish(long nowTs, int slice, int slices) {
         List<BatterySnapshot> out = new ArrayList<>();
         for (var entry : stateByVehicle.entrySet()) {
             String vehicleId = entry.getKey();
+            if (slices > 1 && sliceOf(vehicleId, slices) != slice) {
+                continue;
+            }
             VehicleBatteryState st = entry.getValue();
             BatterySnapshot snap;
 
@@ -98,7 +263,7 @@ public class BatteryCapability {
 
                 if (st.active) {
                     if (st.batteryPct != null) {
-                        if (st.lastPublishedTs == 0 || nowTs - st.lastPublishedTs >= snapshotIntervalMs) {
+                        if (st.lastPublishedTs == 0 || nowTs - st.lastPublishedTs >= publishIntervalMs(st, nowTs)) {
                             shouldPublish = true;
                         } else if (st.changedSinceLastPublish && st.lastPublishedPct != null) {
                             int delta = Math.abs(st.batteryPct - st.lastPublishedPct);
@@ -118,15 +283,7 @@ public class BatteryCapability {
                     continue;
                 }
 
-                snap = new BatterySnapshot();
-                snap.vehicleId = vehicleId;
-                snap.ts = nowTs;
-                snap.active = st.active;
-                snap.batteryPct = st.batteryPct;
-                snap.lowBattery = st.lowBattery;
-                snap.startedAt = st.startedAt;
-                snap.lastUpdateTs = st.lastUpdateTs;
-                snap.stale = st.lastUpdateTs > 0 && (nowTs - st.lastUpdateTs) > (3L * snapshotIntervalMs);
+                snap = snapshotOf(vehicleId, st, nowTs);
 
                 st.lastPublishedTs = nowTs;
                 st.lastPublishedPct = st.batteryPct;
@@ -139,6 +296,61 @@ public class BatteryCapability {
         return out;
     }
 
+    /** Stable slice of a vehicle, 0 &lt;= slice &lt; slices (at most 65536). */
+    public static int sliceOf(String vehicleId, int slices) {
+        return ((vehicleId.hashCode() * 0x9E3779B9) >>> 16) % slices;
+    }
+
+    private long publishIntervalMs(VehicleBatteryState st, long nowTs) {
+        if (!policy.isAdaptive()) {
+            return snapshotIntervalMs;
+        }
+        return policy.intervalMs(st.batteryPct, dischargePctPerMin(st, nowTs), st.demandUntilTs > nowTs);
+    }
+
+    /**
+     * Discharge rate (>= 0) from the regression, bounded by "at most 1% since the
+     * last observed change" so that a vehicle that just parked drops to ~0 quickly
+     * instead of waiting for flat samples to fill the window.
+     */
+    private static double dischargePctPerMin(VehicleBatteryState st, long nowTs) {
+        double rate = Math.max(0, -st.estimator.slopePctPerMin());
+        if (st.lastPctChangeTs > 0 && nowTs > st.lastPctChangeTs) {
+            rate = Math.min(rate, 60_000.0 / (nowTs - st.lastPctChangeTs));
+        }
+        return rate;
+    }
+
+    /**
+     * Hot path: O(1), no allocation. Samples are taken on every pct change and,
+     * while the level is flat, at most once per sampleSpacingMs, so the window
+     * covers minutes of history rather than the last few 1s readings.
+     */
+    private void updateEstimator(VehicleBatteryState st, int newPct, long ts) {
+        boolean changed = st.batteryPct == null || st.batteryPct != newPct;
+        if (changed) {
+            st.lastPctChangeTs = ts;
+        }
+        if (changed || ts - st.estimator.lastTs() >= estimatorSampleSpacingMs) {
+            st.estimator.add(ts, newPct);
+        }
+    }
+
+    private void recordHistory(VehicleBatteryState st, int pct, long ts) {
+        if (historyRecentSamples <= 0) {
+            return;
+        }
+        if (st.history == null) {
+            // allocated once, on the first reading of an active rental
+            st.history = new BatteryHistory(historyRecentSamples, historyCoarseSamples, historyBucketMs);
+        }
+        st.history.add(ts, pct);
+    }
+
+    private VehicleBatteryState newState() {
+        return new VehicleBatteryState(estimatorWindow, reorderWindow);
+    }
+
     private static final class VehicleBatteryState {
         boolean active;
         long startedAt;
@@ -152,5 +364,19 @@ public class BatteryCapability {
         boolean changedSinceLastPublish;
 
         boolean pendingFinalPublish;
+
+        // adaptive policy / forecasting inputs
+        final DischargeEstimator estimator;
+        long lastPctChangeTs;
+        long demandUntilTs;
+
+        BatteryHistory history; // lazily allocated, fixed size
+
+        final ReorderWindow reorder; // null when battery.ingest.reorderWindow=0
+
+        VehicleBatteryState(int estimatorWindow, int reorderWindow) {
+            this.estimator = new DischargeEstimator(estimatorWindow);
+            this.reorder = reorderWindow > 0 ? new ReorderWindow(reorderWindow) : null;
+        }
     }
 }
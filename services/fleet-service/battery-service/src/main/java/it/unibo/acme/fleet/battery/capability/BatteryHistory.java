@@ -0,0 +1,124 @@
+package it.unibo.acme.fleet.battery.capability;
+
+/**
+ * Bounded per-vehicle battery history, two tiers of primitive ring buffers:
+ * - recent: every reading, at full resolution
+ * - coarse: readings evicted from "recent", downsampled to one per bucket (last value wins)
+ *
+ * Memory is fixed at construction: (recentCapacity + coarseCapacity) * (8 + 1) bytes.
+ * {@link #add(long, int)} is O(1) and allocation-free.
+ *
+ * Not thread-safe: callers already hold the per-vehicle state monitor.
+ */
+public final class BatteryHistory {
+
+    private final long[] recentTs;
+    private final byte[] recentPct;
+    private int recentHead;
+    private int recentSize;
+
+    private final long[] coarseTs;
+    private final byte[] coarsePct;
+    private int coarseHead;
+    private int coarseSize;
+
+    private final long bucketMs;
+
+    /** Result of a range query, copied out of the rings so it can be streamed without locks. */
+    public static final class Slice {
+        public final long[] ts;
+        public final int[] pct;
+        public final int count;
+
+        Slice(long[] ts, int[] pct, int count) {
+            this.ts = ts;
+            this.pct = pct;
+            this.count = count;
+        }
+    }
+
+    public BatteryHistory(int recentCapacity, int coarseCapacity, long bucketMs) {
+        this.recentTs = new long[Math.max(1, recentCapacity)];
+        this.recentPct = new byte[recentTs.length];
+        this.coarseTs = new long[Math.max(1, coarseCapacity)];
+        this.coarsePct = new byte[coarseTs.length];
+        this.bucketMs = Math.max(1, bucketMs);
+    }
+
+    public int size() {
+        return recentSize + coarseSize;
+    }
+
+    public int capacity() {
+        return recentTs.length + coarseTs.length;
+    }
+
+    public void add(long ts, int pct) {
+        int cap = recentTs.length;
+        if (recentSize == cap) {
+            // oldest recent sample is about to be overwritten: fold it into the coarse tier
+            demote(recentTs[recentHead], recentPct[recentHead]);
+        } else {
+            recentSize++;
+        }
+        recentTs[recentHead] = ts;
+        recentPct[recentHead] = (byte) pct;
+        recentHead = (recentHead + 1) % cap;
+    }
+
+    /**
+     * Copies samples with from &lt;= ts &lt;= to, oldest first, into the given arrays
+     * (which must hold at least {@link #size()} entries). Returns the count.
+     */
+    public int copyRange(long from, long to, long[] outTs, int[] outPct) {
+        int n = 0;
+        int cap = coarseTs.length;
+        int start = (coarseHead - coarseSize + cap) % cap;
+        for (int i = 0; i < coarseSize; i++) {
+            int idx = (start + i) % cap;
+            long ts = coarseTs[idx];
+            if (ts >= from && ts <= to) {
+                outTs[n] = ts;
+                outPct[n] = coarsePct[idx];
+                n++;
+            }
+        }
+        cap = recentTs.length;
+        start = (recentHead - recentSize + cap) % cap;
+        for (int i = 0; i < recentSize; i++) {
+            int idx = (start + i) % cap;
+            long ts = recentTs[idx];
+            if (ts >= from && ts <= to) {
+                outTs[n] = ts;
+                outPct[n] = recentPct[idx];
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public Slice slice(long from, long to) {
+        long[] outTs = new long[size()];
+        int[] outPct = new int[outTs.length];
+        int n = copyRange(from, to, outTs, outPct);
+        return new Slice(outTs, outPct, n);
+    }
+
+    private void demote(long ts, byte pct) {
+        int cap = coarseTs.length;
+        if (coarseSize > 0) {
+            int last = (coarseHead - 1 + cap) % cap;
+            if (coarseTs[last] / bucketMs == ts / bucketMs) {
+                coarseTs[last] = ts;
+                coarsePct[last] = pct;
+                return;
+            }
+        }
+        if (coarseSize < cap) {
+            coarseSize++;
+        }
+        coarseTs[coarseHead] = ts;
+        coarsePct[coarseHead] = pct;
+        coarseHead = (coarseHead + 1) % cap;
+    }
+}
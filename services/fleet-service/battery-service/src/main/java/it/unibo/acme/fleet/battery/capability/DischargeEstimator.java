@@ -0,0 +1,110 @@
+package it.unibo.acme.fleet.battery.capability;
+
+/**
+ * Per-vehicle online linear regression of batteryPct over time.
+ *
+ * Keeps the last {@code capacity} (ts, pct) samples in primitive ring buffers
+ * together with the running sums needed by least squares, so that
+ * {@link #add(long, double)} and {@link #slopePctPerMin()} are O(1) and allocation-free.
+ *
+ * To avoid drift from repeated add/subtract on the sums, they are recomputed from
+ * the ring every time it wraps (O(capacity) once per capacity inserts = O(1) amortized),
+ * rebasing the time origin at the same moment so x values stay small.
+ *
+ * Not thread-safe: callers already hold the per-vehicle state monitor.
+ */
+final class DischargeEstimator {
+
+    private final long[] ts;
+    private final double[] pct;
+    private final int capacity;
+
+    private int head;   // next slot to write
+    private int size;
+
+    private long originTs;
+    private double sumX, sumY, sumXX, sumXY;
+
+    DischargeEstimator(int capacity) {
+        this.capacity = Math.max(2, capacity);
+        this.ts = new long[this.capacity];
+        this.pct = new double[this.capacity];
+    }
+
+    void reset() {
+        head = 0;
+        size = 0;
+        originTs = 0;
+        sumX = sumY = sumXX = sumXY = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long lastTs() {
+        return size == 0 ? 0 : ts[(head - 1 + capacity) % capacity];
+    }
+
+    void add(long sampleTs, double samplePct) {
+        if (size == 0) {
+            originTs = sampleTs;
+        }
+        if (size == capacity) {
+            double oldX = x(ts[head]);
+            double oldY = pct[head];
+            sumX -= oldX;
+            sumY -= oldY;
+            sumXX -= oldX * oldX;
+            sumXY -= oldX * oldY;
+        } else {
+            size++;
+        }
+
+        ts[head] = sampleTs;
+        pct[head] = samplePct;
+        double x = x(sampleTs);
+        sumX += x;
+        sumY += samplePct;
+        sumXX += x * x;
+        sumXY += x * samplePct;
+
+        head++;
+        if (head == capacity) {
+            head = 0;
+            recompute();
+        }
+    }
+
+    /**
+     * Least-squares slope in pct/minute (negative while discharging),
+     * or 0 if there isn't enough spread in the samples yet.
+     */
+    double slopePctPerMin() {
+        if (size < 2) {
+            return 0;
+        }
+        double denom = size * sumXX - sumX * sumX;
+        if (denom <= 1e-9) {
+            return 0;
+        }
+        return (size * sumXY - sumX * sumY) / denom;
+    }
+
+    private double x(long sampleTs) {
+        return (sampleTs - originTs) / 60_000.0;
+    }
+
+    private void recompute() {
+        // oldest sample becomes the new origin
+        originTs = ts[head];
+        sumX = sumY = sumXX = sumXY = 0;
+        for (int i = 0; i < size; i++) {
+            double x = x(ts[i]);
+            sumX += x;
+            sumY += pct[i];
+            sumXX += x * x;
+            sumXY += x * pct[i];
+        }
+    }
+}
@@ -1,44 +1,54 @@
 package it.unibo.acme.fleet.battery.config;
 
 import io.nats.client.Connection;
-import io.nats.client.Nats;
+import it.unibo.acme.fleet.nats.NatsConnectionPool;
+import it.unibo.acme.fleet.nats.NatsMetrics;
+import it.unibo.acme.fleet.nats.NatsSettings;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.TimeoutException;
 
+/**
+ * Produces the NATS connections of the service (see fleet-nats: options, pool, metrics).
+ * Subscribers and request-reply use the primary {@link Connection}; the snapshot bursts
+ * go through the {@link NatsConnectionPool}.
+ */
 @ApplicationScoped
 public class NatsConnectionProvider {
 
-    private volatile Connection connection;
+    private volatile NatsConnectionPool pool;
+
+    @Produces
+    @Singleton
+    public NatsSettings settings(Config config) {
+        return NatsSettings.fromConfig(config, "battery-service");
+    }
+
+    @Produces
+    @Singleton
+    public NatsConnectionPool pool(NatsSettings settings, MetricRegistry metrics)
+            throws IOException, InterruptedException {
+        this.pool = NatsConnectionPool.open(settings);
+        NatsMetrics.register(metrics, pool);
+        return this.pool;
+    }
 
     @Produces
     @ApplicationScoped
-    public Connection connection(@ConfigProperty(name = "nats.url") String natsUrl) throws IOException, InterruptedException {
-        this.connection = Nats.connect(natsUrl);
-        return this.connection;
+    public Connection connection(NatsConnectionPool pool) {
+        return pool.primary();
     }
 
     @PreDestroy
     public void close() {
-        Connection c = this.connection;
-        if (c != null) {
-            try {
-                c.flush(Duration.ofSeconds(2));
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-            } catch (TimeoutException ignored) {
-                // ignore
-            }
-            try {
-                c.close();
-            } catch (Exception ignored) {
-                // ignore
-            }
+        NatsConnectionPool p = this.pool;
+        if (p != null) {
+            p.close();
         }
     }
 }
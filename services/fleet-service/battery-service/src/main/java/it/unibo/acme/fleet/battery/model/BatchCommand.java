@@ -0,0 +1,16 @@
+package it.unibo.acme.fleet.battery.model;
+
+/**
+ * One entry of a {@link CommandBatch}: a start or stop command for one vehicle.
+ */
+public class BatchCommand {
+    public static final String START = "START";
+    public static final String STOP = "STOP";
+
+    public String op;       // START | STOP
+    public String vehicleId;
+    public long ts;
+    public String stationId;
+
+    public BatchCommand() {}
+}
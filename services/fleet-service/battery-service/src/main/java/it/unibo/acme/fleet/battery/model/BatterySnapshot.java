@@ -9,6 +9,9 @@ public class BatterySnapshot {
     public Integer batteryPct;   // nullable if never received
     public boolean lowBattery;
 
+    public Double dischargePctPerMin;       // null until enough samples
+    public Double estimatedMinutesToEmpty;  // null if not discharging
+
     public long startedAt;
     public long lastUpdateTs;
     public boolean stale;
@@ -0,0 +1,12 @@
+package it.unibo.acme.fleet.battery.model;
+
+/**
+ * Fire-and-forget hint from the gateway: somebody is watching this vehicle.
+ */
+public class DemandSignal {
+    public String vehicleId;
+    public long ts;
+    public long ttlMs;
+
+    public DemandSignal() {}
+}
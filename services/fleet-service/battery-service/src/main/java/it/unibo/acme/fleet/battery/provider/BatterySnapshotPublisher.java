@@ -1,37 +1,147 @@
 package it.unibo.acme.fleet.battery.provider;
 
-import io.nats.client.Connection;
+import io.nats.client.impl.Headers;
 import it.unibo.acme.fleet.battery.model.BatterySnapshot;
+import it.unibo.acme.fleet.battery.util.SnapshotJsonWriter;
+import it.unibo.acme.fleet.nats.NatsConnectionPool;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.json.bind.Jsonb;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Publishes the snapshots of a whole emitter tick in one burst.
+ *
+ * Payloads are serialized by a {@link SnapshotJsonWriter} whose buffer is reused across
+ * ticks, and the NATS output buffer is flushed once at the end of the burst instead of
+ * leaving it to the connection's writer thread. With {@code nats.pool.size > 1} the
+ * messages of a vehicle always go through the same pooled connection (order kept), and
+ * the connections write the burst to the broker in parallel.
+ *
+ * Modes:
+ * - single: one message per vehicle on {@code <subjectPrefix>.<vehicleId>} (default)
+ * - batch: JSON arrays of up to {@code maxFrameBytes} on {@code <subjectPrefix>.batch},
+ *   flagged with {@link #CONTENT_TYPE_BATCH}; consumers subscribed to
+ *   {@code <subjectPrefix>.>} receive both forms
+ */
 @ApplicationScoped
 public class BatterySnapshotPublisher {
 
-    private final Connection nats;
-    private final Jsonb jsonb;
+    private static final Logger LOG = Logger.getLogger(BatterySnapshotPublisher.class.getName());
+
+    public static final String MODE_SINGLE = "single";
+    public static final String MODE_BATCH = "batch";
+
+    public static final String CONTENT_TYPE_HEADER = "Content-Type";
+    public static final String CONTENT_TYPE_BATCH = "application/vnd.acme.snapshot-batch+json";
+    public static final String DUMP_COMPLETE_HEADER = "Dump-Complete";
+
+    private final NatsConnectionPool nats;
     private final String subjectPrefix;
+    private final String batchSubject;
+    private final boolean batch;
+    private final int maxFrameBytes;
+
+    private final SnapshotJsonWriter writer;
 
     @Inject
-    public BatterySnapshotPublisher(Connection nats,
-                                   Jsonb jsonb,
-                                   @ConfigProperty(name = "battery.snapshot.subjectPrefix", defaultValue = "event.battery.snapshot")
-                                   String subjectPrefix) {
+    public BatterySnapshotPublisher(NatsConnectionPool nats,
+                                    @ConfigProperty(name = "battery.snapshot.subjectPrefix", defaultValue = "event.battery.snapshot")
+                                    String subjectPrefix,
+                                    @ConfigProperty(name = "battery.snapshot.publishMode", defaultValue = MODE_SINGLE)
+                                    String publishMode,
+                                    @ConfigProperty(name = "battery.snapshot.maxFrameBytes", defaultValue = "65536")
+                                    int maxFrameBytes) {
         this.nats = nats;
-        this.jsonb = jsonb;
         this.subjectPrefix = subjectPrefix;
+        this.batchSubject = subjectPrefix + "." + MODE_BATCH;
+        this.batch = MODE_BATCH.equalsIgnoreCase(publishMode);
+        this.maxFrameBytes = Math.max(1024, maxFrameBytes);
+        this.writer = new SnapshotJsonWriter(batch ? this.maxFrameBytes : 512);
     }
 
-    public void publish(BatterySnapshot snapshot) {
-        if (snapshot == null || snapshot.vehicleId == null) {
+    public synchronized void publishAll(List<BatterySnapshot> snapshots) {
+        if (snapshots == null || snapshots.isEmpty()) {
             return;
         }
-        String subject = subjectPrefix + "." + snapshot.vehicleId;
-        byte[] payload = jsonb.toJson(snapshot).getBytes(StandardCharsets.UTF_8);
-        nats.publish(subject, payload);
+        if (batch) {
+            publishFrames(batchSubject, snapshots);
+        } else {
+            for (BatterySnapshot s : snapshots) {
+                if (s == null || s.vehicleId == null) {
+                    continue;
+                }
+                writer.reset();
+                writer.write(s);
+                nats.forKey(s.vehicleId).publish(subjectPrefix + "." + s.vehicleId, writer.toByteArray());
+            }
+        }
+        try {
+            nats.flushBuffers();
+        } catch (IOException e) {
+            // the connection writer will send what is buffered once it reconnects
+            LOG.log(Level.FINE, "Snapshot flush failed", e);
+        }
+    }
+
+    /**
+     * Sends the full state to a consumer that asked for it (see SnapshotDumpResource):
+     * batch frames on {@code replyTo}, then an empty message carrying
+     * {@link #DUMP_COMPLETE_HEADER} with the number of snapshots sent.
+     */
+    public synchronized void publishDump(String replyTo, List<BatterySnapshot> snapshots) {
+        int count = publishFrames(replyTo, snapshots);
+        Headers headers = new Headers();
+        headers.put(DUMP_COMPLETE_HEADER, String.valueOf(count));
+        nats.forKey(replyTo).publish(replyTo, headers, new byte[0]);
+        try {
+            nats.flushBuffers();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Snapshot dump flush failed", e);
+        }
+    }
+
+    private int publishFrames(String subject, List<BatterySnapshot> snapshots) {
+        int total = 0;
+        writer.reset();
+        writer.beginArray();
+        int count = 0;
+        for (BatterySnapshot s : snapshots) {
+            if (s == null || s.vehicleId == null) {
+                continue;
+            }
+            int mark = writer.size();
+            if (count > 0) {
+                writer.comma();
+            }
+            writer.write(s);
+            count++;
+            total++;
+            if (writer.size() + 1 > maxFrameBytes && count > 1) {
+                // frame full: send it without this snapshot, which opens the next one
+                writer.truncate(mark);
+                writer.endArray();
+                publishFrame(subject);
+                writer.reset();
+                writer.beginArray();
+                writer.write(s);
+                count = 1;
+            }
+        }
+        if (count > 0) {
+            writer.endArray();
+            publishFrame(subject);
+        }
+        return total;
+    }
+
+    private void publishFrame(String subject) {
+        Headers headers = new Headers();
+        headers.put(CONTENT_TYPE_HEADER, CONTENT_TYPE_BATCH);
+        nats.forKey(subject).publish(subject, headers, writer.toByteArray());
     }
 }
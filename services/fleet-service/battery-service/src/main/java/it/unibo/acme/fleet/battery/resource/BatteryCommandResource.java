@@ -3,6 +3,8 @@ package it.unibo.acme.fleet.battery.resource;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import it.unibo.acme.fleet.battery.capability.BatteryCapability;
+import it.unibo.acme.fleet.battery.model.CommandBatch;
+import it.unibo.acme.fleet.battery.model.CommandBatchResponse;
 import it.unibo.acme.fleet.battery.model.CommandResponse;
 import it.unibo.acme.fleet.battery.model.StartBatteryCommand;
 import it.unibo.acme.fleet.battery.model.StopBatteryCommand;
@@ -13,6 +15,7 @@ import jakarta.json.bind.Jsonb;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,18 +29,21 @@ public class BatteryCommandResource {
     private final BatteryCapability capability;
     private final String startSubject;
     private final String stopSubject;
+    private final String batchSubject;
 
     @Inject
     public BatteryCommandResource(Connection nats,
                                  Jsonb jsonb,
                                  BatteryCapability capability,
                                  @ConfigProperty(name = "battery.cmd.start.subject", defaultValue = "cmd.battery.start") String startSubject,
-                                 @ConfigProperty(name = "battery.cmd.stop.subject", defaultValue = "cmd.battery.stop") String stopSubject) {
+                                 @ConfigProperty(name = "battery.cmd.stop.subject", defaultValue = "cmd.battery.stop") String stopSubject,
+                                 @ConfigProperty(name = "battery.cmd.batch.subject", defaultValue = "cmd.battery.batch") String batchSubject) {
         this.nats = nats;
         this.jsonb = jsonb;
         this.capability = capability;
         this.startSubject = startSubject;
         this.stopSubject = stopSubject;
+        this.batchSubject = batchSubject;
     }
 
     @PostConstruct
@@ -47,7 +53,7 @@ public class BatteryCommandResource {
                 String subject = msg.getSubject();
                 String json = new String(msg.getData(), StandardCharsets.UTF_8);
 
-                CommandResponse response;
+                Object response;
                 if (startSubject.equals(subject)) {
                     StartBatteryCommand cmd = jsonb.fromJson(json, StartBatteryCommand.class);
                     if (cmd == null || cmd.vehicleId == null) {
@@ -64,6 +70,14 @@ public class BatteryCommandResource {
                         capability.stop(cmd.vehicleId, cmd.ts);
                         response = CommandResponse.ok(cmd.vehicleId, "battery monitoring stopped");
                     }
+                } else if (batchSubject.equals(subject)) {
+                    // Batch from the gateway: one reply with a result per command
+                    CommandBatch batch = jsonb.fromJson(json, CommandBatch.class);
+                    CommandBatchResponse batchResponse = new CommandBatchResponse();
+                    batchResponse.results = batch != null && batch.commands != null
+                            ? capability.applyCommands(batch.commands)
+                            : List.of();
+                    response = batchResponse;
                 } else {
                     response = CommandResponse.error(null, "subject non gestito: " + subject);
                 }
@@ -88,7 +102,8 @@ public class BatteryCommandResource {
 
         dispatcher.subscribe(startSubject);
         dispatcher.subscribe(stopSubject);
+        dispatcher.subscribe(batchSubject);
 
-        LOG.info(() -> "Subscribed to command subjects: " + startSubject + " , " + stopSubject);
+        LOG.info(() -> "Subscribed to command subjects: " + startSubject + " , " + stopSubject + " , " + batchSubject);
     }
 }
@@ -0,0 +1,67 @@
+package it.unibo.acme.fleet.battery.resource;
+
+import it.unibo.acme.fleet.battery.capability.BatteryCapability;
+import it.unibo.acme.fleet.battery.capability.BatteryHistory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * REST read-only access to the per-vehicle battery history kept by the capability.
+ *
+ * The slice is copied under the vehicle lock, then written straight to the response
+ * (no JSON-B object tree): [{"ts":...,"pct":...}, ...], oldest first.
+ */
+@Path("/battery")
+@ApplicationScoped
+public class BatteryHistoryResource {
+
+    private final BatteryCapability capability;
+
+    @Inject
+    public BatteryHistoryResource(BatteryCapability capability) {
+        this.capability = capability;
+    }
+
+    @GET
+    @Path("/vehicles/{vehicleId}/history")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response history(@PathParam("vehicleId") String vehicleId,
+                            @QueryParam("from") @DefaultValue("0") long from,
+                            @QueryParam("to") @DefaultValue("9223372036854775807") long to) {
+        BatteryHistory.Slice slice = capability.history(vehicleId, from, to);
+        if (slice == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        StreamingOutput body = out -> {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            w.write('[');
+            for (int i = 0; i < slice.count; i++) {
+                if (i > 0) {
+                    w.write(',');
+                }
+                w.write("{\"ts\":");
+                w.write(Long.toString(slice.ts[i]));
+                w.write(",\"pct\":");
+                w.write(Integer.toString(slice.pct[i]));
+                w.write('}');
+            }
+            w.write(']');
+            w.flush();
+        };
+        return Response.ok(body, MediaType.APPLICATION_JSON).build();
+    }
+}
@@ -0,0 +1,59 @@
+package it.unibo.acme.fleet.battery.resource;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import it.unibo.acme.fleet.battery.capability.BatteryCapability;
+import it.unibo.acme.fleet.battery.model.DemandSignal;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listens to demand signals (pub/sub, no reply) used by the adaptive snapshot policy.
+ */
+@ApplicationScoped
+public class DemandSubscriptionResource {
+
+    private static final Logger LOG = Logger.getLogger(DemandSubscriptionResource.class.getName());
+
+    private final Connection nats;
+    private final Jsonb jsonb;
+    private final BatteryCapability capability;
+    private final String demandSubject;
+
+    @Inject
+    public DemandSubscriptionResource(Connection nats,
+                                      Jsonb jsonb,
+                                      BatteryCapability capability,
+                                      @ConfigProperty(name = "battery.demand.subject", defaultValue = "event.fleet.demand")
+                                      String demandSubject) {
+        this.nats = nats;
+        this.jsonb = jsonb;
+        this.capability = capability;
+        this.demandSubject = demandSubject;
+    }
+
+    @PostConstruct
+    public void start() {
+        Dispatcher dispatcher = nats.createDispatcher(msg -> {
+            try {
+                String json = new String(msg.getData(), StandardCharsets.UTF_8);
+                DemandSignal signal = jsonb.fromJson(json, DemandSignal.class);
+                if (signal != null && signal.vehicleId != null) {
+                    long from = signal.ts > 0 ? signal.ts : System.currentTimeMillis();
+                    capability.onDemand(signal.vehicleId, from + Math.max(0, signal.ttlMs));
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Demand signal parse/handle failed on subject " + msg.getSubject(), e);
+            }
+        });
+        dispatcher.subscribe(demandSubject);
+        LOG.info(() -> "Subscribed to demand subject: " + demandSubject);
+    }
+}
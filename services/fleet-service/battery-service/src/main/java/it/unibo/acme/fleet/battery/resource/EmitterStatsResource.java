@@ -0,0 +1,30 @@
+package it.unibo.acme.fleet.battery.resource;
+
+import it.unibo.acme.fleet.battery.model.EmitterStats;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * REST read-only snapshot emitter instrumentation (tick duration, overruns, snapshots per tick).
+ */
+@Path("/battery/emitter")
+@ApplicationScoped
+public class EmitterStatsResource {
+
+    private final SnapshotEmitter emitter;
+
+    @Inject
+    public EmitterStatsResource(SnapshotEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public EmitterStats stats() {
+        return emitter.stats();
+    }
+}
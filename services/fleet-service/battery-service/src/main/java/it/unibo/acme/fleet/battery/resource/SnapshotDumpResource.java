@@ -0,0 +1,86 @@
+package it.unibo.acme.fleet.battery.resource;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import it.unibo.acme.fleet.battery.capability.BatteryCapability;
+import it.unibo.acme.fleet.battery.model.BatterySnapshot;
+import it.unibo.acme.fleet.battery.provider.BatterySnapshotPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Answers full-state requests on {@code battery.dump.subject}: a consumer that just
+ * (re)started sends an empty request and receives the current snapshot of every vehicle,
+ * streamed to its reply inbox in batch frames (see {@link BatterySnapshotPublisher#publishDump}).
+ * Used by the gateway to warm its cache, including vehicles that stopped long ago and
+ * will never publish again.
+ *
+ * A non-empty request body is a vehicleId: only that vehicle is dumped (the gateway
+ * in interest mode refreshes a vehicle it starts watching).
+ */
+@ApplicationScoped
+public class SnapshotDumpResource {
+
+    private static final Logger LOG = Logger.getLogger(SnapshotDumpResource.class.getName());
+
+    private final Connection nats;
+    private final BatteryCapability capability;
+    private final BatterySnapshotPublisher publisher;
+    private final String dumpSubject;
+
+    private Dispatcher dispatcher;
+
+    @Inject
+    public SnapshotDumpResource(Connection nats,
+                                BatteryCapability capability,
+                                BatterySnapshotPublisher publisher,
+                                @ConfigProperty(name = "battery.dump.subject", defaultValue = "cmd.battery.dump") String dumpSubject) {
+        this.nats = nats;
+        this.capability = capability;
+        this.publisher = publisher;
+        this.dumpSubject = dumpSubject;
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher = nats.createDispatcher(msg -> {
+            if (msg.getReplyTo() == null || msg.getReplyTo().isBlank()) {
+                return;
+            }
+            try {
+                long t0 = System.nanoTime();
+                long now = System.currentTimeMillis();
+                String vehicleId = msg.getData() != null && msg.getData().length > 0
+                        ? new String(msg.getData(), StandardCharsets.UTF_8).trim()
+                        : null;
+                List<BatterySnapshot> snapshots = vehicleId != null
+                        ? capability.dumpSnapshot(vehicleId, now)
+                        : capability.dumpSnapshots(now);
+                publisher.publishDump(msg.getReplyTo(), snapshots);
+                if (vehicleId == null) {
+                    LOG.info(() -> "Snapshot dump sent: " + snapshots.size() + " vehicles in "
+                            + (System.nanoTime() - t0) / 1_000_000 + " ms");
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Snapshot dump failed", e);
+            }
+        });
+        dispatcher.subscribe(dumpSubject);
+        LOG.info(() -> "Subscribed to dump requests: " + dumpSubject);
+    }
+
+    @PreDestroy
+    public void stop() {
+        try {
+            if (dispatcher != null) dispatcher.unsubscribe(dumpSubject);
+        } catch (Exception ignored) {}
+    }
+}
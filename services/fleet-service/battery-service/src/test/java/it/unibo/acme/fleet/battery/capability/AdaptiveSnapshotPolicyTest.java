@@ -0,0 +1,85 @@
+package it.unibo.acme.fleet.battery.capability;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AdaptiveSnapshotPolicy – heartbeat interval from battery level, discharge rate and demand")
+class AdaptiveSnapshotPolicyTest {
+
+    private static final long MIN_MS = 1000;
+    private static final long HEARTBEAT_MS = 30_000;
+    private static final int LOW = 15;
+    private static final int MARGIN = 5;
+
+    private static AdaptiveSnapshotPolicy policy(String mode, int publishDeltaPct) {
+        return new AdaptiveSnapshotPolicy(mode, MIN_MS, HEARTBEAT_MS, publishDeltaPct, LOW, MARGIN);
+    }
+
+    @Test
+    void fixed_mode_always_answers_the_minimum_interval() {
+        AdaptiveSnapshotPolicy p = policy(AdaptiveSnapshotPolicy.FIXED, 1);
+        assertFalse(p.isAdaptive());
+        assertEquals(MIN_MS, p.heartbeatMs());
+        assertEquals(MIN_MS, p.intervalMs(90, 0, false));
+        assertEquals(MIN_MS, p.intervalMs(90, 0.1, false));
+        assertEquals(MIN_MS, policy("unknown", 1).intervalMs(90, 0, false));
+    }
+
+    @Test
+    void near_or_below_the_low_threshold_uses_the_minimum_interval() {
+        AdaptiveSnapshotPolicy p = policy("ADAPTIVE", 1);
+        assertTrue(p.isAdaptive());
+        assertEquals(MIN_MS, p.intervalMs(LOW + MARGIN, 0, false), "at threshold + margin");
+        assertEquals(MIN_MS, p.intervalMs(LOW, 0, false));
+        assertEquals(MIN_MS, p.intervalMs(0, 0, false));
+        assertEquals(HEARTBEAT_MS, p.intervalMs(LOW + MARGIN + 1, 0, false), "just above the band");
+    }
+
+    @Test
+    void demand_overrides_everything_else() {
+        AdaptiveSnapshotPolicy p = policy(AdaptiveSnapshotPolicy.ADAPTIVE, 1);
+        assertEquals(MIN_MS, p.intervalMs(90, 0, true));
+        assertEquals(MIN_MS, p.intervalMs(90, 0.1, true));
+    }
+
+    @Test
+    void parked_or_charging_vehicles_get_the_heartbeat() {
+        AdaptiveSnapshotPolicy p = policy(AdaptiveSnapshotPolicy.ADAPTIVE, 1);
+        assertEquals(HEARTBEAT_MS, p.heartbeatMs());
+        assertEquals(HEARTBEAT_MS, p.intervalMs(90, 0, false));
+        assertEquals(HEARTBEAT_MS, p.intervalMs(90, -2, false));
+    }
+
+    @Test
+    void interval_follows_the_time_to_lose_publish_delta_pct() {
+        AdaptiveSnapshotPolicy p = policy(AdaptiveSnapshotPolicy.ADAPTIVE, 1);
+        assertEquals(15_000, p.intervalMs(90, 4, false)); // 1% at 4%/min
+        assertEquals(20_000, p.intervalMs(90, 3, false));
+        assertEquals(MIN_MS, p.intervalMs(90, 60, false), "exactly one delta per minimum interval");
+        assertEquals(MIN_MS, p.intervalMs(90, 120, false), "never below the minimum");
+
+        // a larger delta stretches the interval proportionally
+        assertEquals(30_000, policy(AdaptiveSnapshotPolicy.ADAPTIVE, 2).intervalMs(90, 4, false));
+    }
+
+    @Test
+    void slow_discharge_is_capped_at_the_heartbeat() {
+        AdaptiveSnapshotPolicy p = policy(AdaptiveSnapshotPolicy.ADAPTIVE, 1);
+        assertEquals(HEARTBEAT_MS, p.intervalMs(90, 2, false), "exactly at the cap");
+        assertEquals(HEARTBEAT_MS, p.intervalMs(90, 0.016 * 60, false));
+        assertEquals(HEARTBEAT_MS, p.intervalMs(90, 1e-9, false));
+    }
+
+    @Test
+    void constructor_clamps_inconsistent_settings() {
+        AdaptiveSnapshotPolicy p = new AdaptiveSnapshotPolicy(AdaptiveSnapshotPolicy.ADAPTIVE, 0, -1, 0, LOW, -3);
+        assertEquals(1, p.heartbeatMs(), "heartbeat never below the minimum interval");
+        assertEquals(1, p.intervalMs(90, 0, false));
+        // margin clamped to 0: only the threshold itself counts as low
+        AdaptiveSnapshotPolicy noMargin = new AdaptiveSnapshotPolicy(AdaptiveSnapshotPolicy.ADAPTIVE, MIN_MS, HEARTBEAT_MS, 1, LOW, -3);
+        assertEquals(MIN_MS, noMargin.intervalMs(LOW, 0, false));
+        assertEquals(HEARTBEAT_MS, noMargin.intervalMs(LOW + 1, 0, false));
+    }
+}
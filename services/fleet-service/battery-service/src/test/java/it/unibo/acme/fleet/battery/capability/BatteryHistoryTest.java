@@ -0,0 +1,77 @@
+package it.unibo.acme.fleet.battery.capability;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BatteryHistory – recent and coarse rings")
+class BatteryHistoryTest {
+
+    private static final long T0 = 1_760_000_040_000L; // bucket-aligned for 60 s buckets
+    private static final long SEC = 1_000;
+
+    private static long[] ts(BatteryHistory.Slice s) {
+        return Arrays.copyOf(s.ts, s.count);
+    }
+
+    private static int[] pct(BatteryHistory.Slice s) {
+        return Arrays.copyOf(s.pct, s.count);
+    }
+
+    @Test
+    void below_recent_capacity_every_reading_is_kept_oldest_first() {
+        BatteryHistory h = new BatteryHistory(5, 10, 60 * SEC);
+        for (int i = 0; i < 4; i++) {
+            h.add(T0 + i * SEC, 90 - i);
+        }
+        BatteryHistory.Slice all = h.slice(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertArrayEquals(new long[] {T0, T0 + SEC, T0 + 2 * SEC, T0 + 3 * SEC}, ts(all));
+        assertArrayEquals(new int[] {90, 89, 88, 87}, pct(all));
+        assertEquals(4, h.size());
+        assertEquals(15, h.capacity());
+    }
+
+    @Test
+    void evicted_readings_are_demoted_one_per_bucket_last_value_wins() {
+        BatteryHistory h = new BatteryHistory(3, 10, 60 * SEC);
+        // 0..50 s are all in the first bucket, 60..80 s stay in the recent tier
+        for (int i = 0; i <= 8; i++) {
+            h.add(T0 + i * 10 * SEC, 100 - i);
+        }
+        BatteryHistory.Slice all = h.slice(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertArrayEquals(new long[] {T0 + 50 * SEC, T0 + 60 * SEC, T0 + 70 * SEC, T0 + 80 * SEC}, ts(all));
+        assertArrayEquals(new int[] {95, 94, 93, 92}, pct(all));
+        assertEquals(4, h.size());
+    }
+
+    @Test
+    void slice_is_ordered_across_both_tiers_and_bounds_are_inclusive() {
+        BatteryHistory h = new BatteryHistory(2, 10, 10 * SEC);
+        for (int i = 0; i < 6; i++) {
+            h.add(T0 + i * 10 * SEC, 60 - i); // one reading per bucket: nothing merged
+        }
+        // coarse: 0, 10, 20, 30 s; recent: 40, 50 s
+        BatteryHistory.Slice mid = h.slice(T0 + 20 * SEC, T0 + 40 * SEC);
+        assertArrayEquals(new long[] {T0 + 20 * SEC, T0 + 30 * SEC, T0 + 40 * SEC}, ts(mid));
+        assertArrayEquals(new int[] {58, 57, 56}, pct(mid));
+
+        assertEquals(0, h.slice(T0 + 51 * SEC, T0 + 99 * SEC).count);
+        assertEquals(6, h.slice(T0, T0 + 50 * SEC).count);
+    }
+
+    @Test
+    void full_coarse_ring_drops_its_oldest_bucket() {
+        BatteryHistory h = new BatteryHistory(1, 3, 10 * SEC);
+        for (int i = 0; i < 10; i++) {
+            h.add(T0 + i * 10 * SEC, 100 - i);
+        }
+        // 9 demoted readings, coarse keeps the last 3, recent the newest one
+        BatteryHistory.Slice all = h.slice(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertArrayEquals(new long[] {T0 + 60 * SEC, T0 + 70 * SEC, T0 + 80 * SEC, T0 + 90 * SEC}, ts(all));
+        assertArrayEquals(new int[] {94, 93, 92, 91}, pct(all));
+        assertEquals(h.capacity(), h.size());
+    }
+}
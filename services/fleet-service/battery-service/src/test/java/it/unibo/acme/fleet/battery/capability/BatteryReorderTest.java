@@ -0,0 +1,78 @@
+package it.unibo.acme.fleet.battery.capability;
+
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BatteryCapability – battery readings applied in seq order")
+class BatteryReorderTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+
+    private static BatteryCapability battery(int reorderWindow) {
+        BatteryCapability b = new BatteryCapability(1000, 1, 15, true, "fixed", 30_000, 5,
+                16, 60_000, 300, 720, 60_000, reorderWindow);
+        b.start("V001", T0 - 1);
+        return b;
+    }
+
+    private static TelemetryMessage reading(long seq, int pct) {
+        TelemetryMessage m = new TelemetryMessage();
+        m.vehicleId = "V001";
+        m.seq = seq;
+        m.ts = T0 + seq * 1000;
+        m.batteryPct = pct;
+        return m;
+    }
+
+    private static int[] history(BatteryCapability b) {
+        BatteryHistory.Slice s = b.history("V001", Long.MIN_VALUE, Long.MAX_VALUE);
+        return Arrays.copyOf(s.pct, s.count);
+    }
+
+    private static int pct(BatteryCapability b) {
+        return b.dumpSnapshot("V001", T0 + 60_000).get(0).batteryPct;
+    }
+
+    @Test
+    void late_reading_waits_for_the_gap_and_never_moves_the_level_back() {
+        BatteryCapability b = battery(4);
+        b.onTelemetry(reading(1, 90));
+        b.onTelemetry(reading(3, 88));
+        assertEquals(90, pct(b)); // seq 3 parked until seq 2 arrives
+        b.onTelemetry(reading(2, 89));
+        assertEquals(88, pct(b));
+        assertArrayEquals(new int[] {90, 89, 88}, history(b));
+
+        b.onTelemetry(reading(2, 95)); // duplicate: dropped
+        assertEquals(88, pct(b));
+        assertArrayEquals(new int[] {90, 89, 88}, history(b));
+    }
+
+    @Test
+    void lost_reading_is_given_up_after_the_window() {
+        BatteryCapability b = battery(3);
+        b.onTelemetry(reading(1, 90));
+        // seq 2 never arrives
+        b.onTelemetry(reading(3, 88));
+        b.onTelemetry(reading(4, 87));
+        assertEquals(90, pct(b));
+        b.onTelemetry(reading(5, 86)); // 3 ahead of the gap: released
+        assertEquals(86, pct(b));
+        assertArrayEquals(new int[] {90, 88, 87, 86}, history(b));
+    }
+
+    @Test
+    void window_off_applies_readings_in_arrival_order() {
+        BatteryCapability b = battery(0);
+        b.onTelemetry(reading(1, 90));
+        b.onTelemetry(reading(3, 88));
+        b.onTelemetry(reading(2, 89));
+        assertEquals(89, pct(b));
+        assertArrayEquals(new int[] {90, 88, 89}, history(b));
+    }
+}
@@ -0,0 +1,143 @@
+package it.unibo.acme.fleet.battery.capability;
+
+import it.unibo.acme.fleet.battery.model.BatterySnapshot;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DischargeEstimator – online regression of battery level over time")
+class DischargeEstimatorTest {
+
+    private static final long T0 = 1_760_000_000_000L; // realistic epoch millis: large x before rebasing
+    private static final long MIN = 60_000;
+
+    @Test
+    void slope_is_in_pct_per_minute_and_negative_while_discharging() {
+        DischargeEstimator est = new DischargeEstimator(16);
+        for (int i = 0; i <= 10; i++) {
+            est.add(T0 + i * MIN, 100 - 0.5 * i);
+        }
+        assertEquals(-0.5, est.slopePctPerMin(), 1e-9);
+
+        DischargeEstimator charging = new DischargeEstimator(16);
+        for (int i = 0; i <= 10; i++) {
+            charging.add(T0 + i * 30_000, 20 + i); // +1 pct every 30 s
+        }
+        assertEquals(2.0, charging.slopePctPerMin(), 1e-9);
+    }
+
+    @Test
+    void no_slope_without_two_samples_spread_in_time() {
+        DischargeEstimator est = new DischargeEstimator(8);
+        assertEquals(0, est.slopePctPerMin());
+        est.add(T0, 80);
+        assertEquals(0, est.slopePctPerMin());
+        est.add(T0, 79); // same instant: no spread
+        assertEquals(0, est.slopePctPerMin());
+        assertEquals(2, est.size());
+        assertEquals(T0, est.lastTs());
+    }
+
+    @Test
+    void window_keeps_only_the_last_capacity_samples_across_wraps() {
+        DischargeEstimator est = new DischargeEstimator(4);
+        // six samples at -1 pct/min, then five at -2 pct/min
+        double pct = 100;
+        for (int i = 0; i < 6; i++) {
+            est.add(T0 + i * MIN, pct);
+            pct -= 1;
+        }
+        for (int i = 6; i < 11; i++) {
+            pct -= 2;
+            est.add(T0 + i * MIN, pct);
+        }
+        // 11 adds with capacity 4: wrapped twice, window = last 4 samples (all -2/min)
+        assertEquals(4, est.size());
+        assertEquals(-2.0, est.slopePctPerMin(), 1e-9);
+        assertEquals(T0 + 10 * MIN, est.lastTs());
+
+        // one more add, between wraps: window mixes old sums minus the evicted sample
+        est.add(T0 + 11 * MIN, pct - 2);
+        assertEquals(-2.0, est.slopePctPerMin(), 1e-9);
+    }
+
+    @Test
+    void rebasing_the_origin_keeps_the_sums_exact_over_long_runs() {
+        DischargeEstimator est = new DischargeEstimator(16);
+        // a week of 1-minute samples, slope -0.01 pct/min plus a periodic wobble
+        for (int i = 0; i < 7 * 24 * 60; i++) {
+            est.add(T0 + i * MIN, 100 - 0.01 * i + ((i % 2 == 0) ? 0.25 : -0.25));
+        }
+        // exact least squares over the last 16 samples of the sequence above
+        double expected = referenceSlope(7 * 24 * 60 - 16, 16);
+        assertEquals(expected, est.slopePctPerMin(), 1e-9);
+    }
+
+    @Test
+    void reset_forgets_every_sample() {
+        DischargeEstimator est = new DischargeEstimator(4);
+        est.add(T0, 90);
+        est.add(T0 + MIN, 80);
+        est.reset();
+        assertEquals(0, est.size());
+        assertEquals(0, est.lastTs());
+        est.add(T0 + 2 * MIN, 50);
+        est.add(T0 + 3 * MIN, 49);
+        assertEquals(-1.0, est.slopePctPerMin(), 1e-9);
+    }
+
+    @Test
+    void reported_rate_is_capped_at_one_pct_since_the_last_change() {
+        BatteryCapability battery = new BatteryCapability(1000, 1, 15, true, "fixed", 30_000, 5,
+                16, MIN, 300, 720, MIN, 0);
+        battery.start("V001", T0);
+        for (int i = 0; i <= 10; i++) {
+            battery.onTelemetry(reading("V001", T0 + i * MIN, 100 - i));
+        }
+
+        BatterySnapshot now = battery.dumpSnapshot("V001", T0 + 10 * MIN).get(0);
+        assertEquals(1.0, now.dischargePctPerMin, 1e-9);
+        assertEquals(90.0, now.estimatedMinutesToEmpty, 1e-9);
+
+        // parked: no change for 10 minutes -> at most 1 pct / 10 min, whatever the regression says
+        BatterySnapshot parked = battery.dumpSnapshot("V001", T0 + 20 * MIN).get(0);
+        assertEquals(0.1, parked.dischargePctPerMin, 1e-9);
+        assertEquals(900.0, parked.estimatedMinutesToEmpty, 1e-6);
+    }
+
+    @Test
+    void charging_reports_zero_rate_and_no_time_to_empty() {
+        BatteryCapability battery = new BatteryCapability(1000, 1, 15, true, "fixed", 30_000, 5,
+                16, MIN, 300, 720, MIN, 0);
+        battery.start("V001", T0);
+        for (int i = 0; i <= 5; i++) {
+            battery.onTelemetry(reading("V001", T0 + i * MIN, 40 + i));
+        }
+        BatterySnapshot snap = battery.dumpSnapshot("V001", T0 + 5 * MIN).get(0);
+        assertEquals(0.0, snap.dischargePctPerMin);
+        assertNull(snap.estimatedMinutesToEmpty);
+    }
+
+    private static TelemetryMessage reading(String vehicleId, long ts, int pct) {
+        TelemetryMessage m = new TelemetryMessage();
+        m.vehicleId = vehicleId;
+        m.ts = ts;
+        m.batteryPct = pct;
+        return m;
+    }
+
+    private static double referenceSlope(int first, int n) {
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (int i = first; i < first + n; i++) {
+            double x = i - first; // minutes
+            double y = 100 - 0.01 * i + ((i % 2 == 0) ? 0.25 : -0.25);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        return (n * sxy - sx * sy) / (n * sxx - sx * sx);
+    }
+}
@@ -0,0 +1,92 @@
+package it.unibo.acme.fleet.battery.util;
+
+import it.unibo.acme.fleet.battery.model.BatterySnapshot;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The gateway's passthrough mode splices these bytes into its responses unchanged,
+ * so they must be exactly what JSON-B would have produced.
+ */
+@DisplayName("SnapshotJsonWriter – same bytes as JSON-B for battery snapshots")
+class SnapshotJsonWriterTest {
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    @AfterAll
+    static void close() throws Exception {
+        JSONB.close();
+    }
+
+    @Test
+    void full_snapshot_matches_jsonb() {
+        assertSameAsJsonb(snapshot("V001"));
+    }
+
+    @Test
+    void null_battery_and_forecast_are_omitted_like_jsonb() {
+        BatterySnapshot s = snapshot("V002");
+        s.batteryPct = null;
+        s.dischargePctPerMin = null;
+        s.estimatedMinutesToEmpty = null;
+        assertSameAsJsonb(s);
+        assertFalse(text(s).contains("batteryPct"));
+
+        s.vehicleId = null;
+        assertSameAsJsonb(s);
+    }
+
+    @Test
+    void numbers_match_jsonb() {
+        BatterySnapshot s = snapshot("V003");
+        for (double v : new double[] {0.0, -0.0, 2.0, -1.5, 0.1, 1.0 / 3, 1e-5, 123456789.125, 1e15, 1e20, -2.5e-8}) {
+            s.dischargePctPerMin = v;
+            s.estimatedMinutesToEmpty = -v;
+            assertSameAsJsonb(s);
+        }
+        s.batteryPct = 0;
+        s.ts = -1;
+        s.startedAt = Long.MIN_VALUE;
+        s.lastUpdateTs = Long.MAX_VALUE;
+        assertSameAsJsonb(s);
+    }
+
+    @Test
+    void escaped_vehicle_ids_match_jsonb() {
+        for (String id : new String[] {"a\"b", "back\\slash", "città", "tab\there", "new\nline", "\r\b\f", "\u0001\u001f", "emoji 🚗", "sl/ash"}) {
+            assertSameAsJsonb(snapshot(id));
+        }
+    }
+
+    private static void assertSameAsJsonb(BatterySnapshot s) {
+        assertEquals(JSONB.toJson(s), text(s));
+    }
+
+    private static String text(BatterySnapshot s) {
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.write(s);
+        return new String(w.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static BatterySnapshot snapshot(String id) {
+        BatterySnapshot s = new BatterySnapshot();
+        s.vehicleId = id;
+        s.ts = 1735689602000L;
+        s.active = true;
+        s.batteryPct = 87;
+        s.lowBattery = false;
+        s.dischargePctPerMin = -0.25;
+        s.estimatedMinutesToEmpty = 348.0;
+        s.startedAt = 1735689600000L;
+        s.lastUpdateTs = 1735689601000L;
+        s.stale = false;
+        return s;
+    }
+}
@@ -1,5 +1,6 @@
 package it.unibo.acme.fleet.gateway.bootstrap;
 
+import it.unibo.acme.fleet.gateway.subscriber.CacheWarmupResource;
 import it.unibo.acme.fleet.gateway.subscriber.SnapshotSubscriptionResource;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Initialized;
@@ -14,7 +15,7 @@ import java.util.logging.Logger;
  * CDI is allowed to be lazy: if nobody injects SnapshotSubscriptionResource,
  * it might never be created -> no NATS subscriptions -> empty cache.
  *
- * This observer runs at container startup and touches the bean once.
+ * This observer runs at container startup and touches the beans once.
  */
 @ApplicationScoped
 public class GatewayBootstrap {
@@ -24,9 +25,13 @@ public class GatewayBootstrap {
     @Inject
     jakarta.inject.Provider<SnapshotSubscriptionResource> subscriber;
 
+    @Inject
+    jakarta.inject.Provider<CacheWarmupResource> warmup;
+
     void onStart(@Observes @Initialized(ApplicationScoped.class) Object init) {
         LOG.info("Forcing initialization of NATS snapshot subscriber...");
         subscriber.get().toString(); // triggers @PostConstruct => subscribe NATS
+        warmup.get().toString();     // after the live subscriptions: asks the services for a full dump
         LOG.info("GatewayBootstrap completed.");
     }
 }
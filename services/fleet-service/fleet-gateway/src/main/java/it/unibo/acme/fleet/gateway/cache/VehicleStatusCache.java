@@ -1,13 +1,19 @@
 package it.unibo.acme.fleet.gateway.cache;
 
 import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
+import it.unibo.acme.fleet.gateway.model.RawSnapshot;
 import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
 import it.unibo.acme.fleet.gateway.model.VehicleStatus;
 
-import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
 /**
  * In-memory cache updated by NATS snapshot subscriptions.
@@ -15,54 +21,401 @@ import java.util.concurrent.ConcurrentHashMap;
  * The Gateway answers REST GETs straight from this cache.
  * It's intentionally "dumb": no persistence, no DB, no magic.
  *
+ * One merged {@link VehicleStatus} per vehicle, rebuilt on every snapshot (write path)
+ * so that reads are a single map lookup returning the stored instance, no allocation.
+ * Entries are never modified once published: an update replaces them atomically
+ * with {@code compute}, so a reader never sees tracking and battery halves of different
+ * updates half-applied. Callers must treat returned statuses as read-only.
+ *
+ * A snapshot older than the cached one (by ts) is ignored: the warm-up dump may race with
+ * live snapshots of the same vehicle.
+ *
+ * In passthrough mode the snapshots arrive as {@link RawSnapshot}: same rules, the
+ * status carries the raw halves instead of the decoded ones.
+ *
+ * Staleness is also decided here, on the gateway clock: an active half (tracking or battery)
+ * not refreshed for {@code staleAfterMs} makes the status stale at read time, even if the
+ * producer stamped it fresh (a producer that died never says so). Inactive halves are
+ * exempt: a parked vehicle legitimately stops publishing. {@link #sweep} also stores the
+ * flag (so streams can be told) and evicts entries not updated for {@code evictAfterMs};
+ * it visits vehicles in deadline order from a heap, not by scanning the whole map.
+ *
+ * In interest mode the vehicles nobody watches are not received at all:
+ * {@link #markUnwatchedExcept} keeps their entry stale until it is refreshed.
+ *
  * (When you'll containerize, each gateway instance will have its own cache,
  * so you'd typically run 1 replica or add a shared store. For your project it's fine.)
  */
 public class VehicleStatusCache {
 
-    private final ConcurrentHashMap<String, TrackingSnapshot> tracking = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, BatterySnapshot> battery = new ConcurrentHashMap<>();
+    private static final VehicleStatus NONE = new VehicleStatus();
+
+    private final ConcurrentHashMap<String, VehicleStatus> statuses = new ConcurrentHashMap<>();
+
+    private final long staleAfterMs;
+    private final long evictAfterMs;
+    private final LongSupplier clock;
+    private final BiConsumer<VehicleStatus, VehicleStatus> onChange;
+
+    /** Vehicles seen for the first time since the last sweep. */
+    private final ConcurrentLinkedQueue<String> added = new ConcurrentLinkedQueue<>();
+    /** Next check of every cached vehicle, earliest first. Owned by {@link #sweep}. */
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>();
+
+    /** No read-time staleness, no eviction. */
+    public VehicleStatusCache() {
+        this(0, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * @param staleAfterMs an active half older than this is stale (0 = trust the producers)
+     * @param evictAfterMs vehicles not updated for this long are dropped by the sweep (0 = never)
+     */
+    public VehicleStatusCache(long staleAfterMs, long evictAfterMs, LongSupplier clock) {
+        this(staleAfterMs, evictAfterMs, clock, (prev, next) -> {});
+    }
+
+    /**
+     * @param onChange told of every stored change as (previous, new) status, null for
+     *                 "absent"; called under the entry's lock, so per vehicle the calls are
+     *                 ordered and never overlap. Must be quick and must not touch the cache.
+     */
+    public VehicleStatusCache(long staleAfterMs, long evictAfterMs, LongSupplier clock,
+                              BiConsumer<VehicleStatus, VehicleStatus> onChange) {
+        this.staleAfterMs = Math.max(0, staleAfterMs);
+        this.evictAfterMs = Math.max(0, evictAfterMs);
+        this.clock = clock;
+        this.onChange = onChange;
+    }
+
+    /** @return the new status of the vehicle, or null if the snapshot was ignored */
+    public VehicleStatus upsertTracking(TrackingSnapshot s) {
+        if (s == null || s.vehicleId == null) {
+            return null;
+        }
+        VehicleStatus[] updated = new VehicleStatus[1];
+        statuses.compute(s.vehicleId, (id, prev) -> {
+            VehicleStatus p = seen(id, prev);
+            return trackingTs(p) > s.ts
+                    ? prev
+                    : changed(prev, updated[0] = merge(id, s, null, clock.getAsLong(), p.battery, p.batteryRaw, p.batteryReceivedAt, p.unwatchedAt));
+        });
+        return updated[0];
+    }
 
-    public void upsertTracking(TrackingSnapshot s) {
-        if (s != null && s.vehicleId != null) {
-            tracking.put(s.vehicleId, s);
+    /** @return the new status of the vehicle, or null if the snapshot was ignored */
+    public VehicleStatus upsertTracking(RawSnapshot s) {
+        if (s == null || s.vehicleId == null) {
+            return null;
         }
+        VehicleStatus[] updated = new VehicleStatus[1];
+        statuses.compute(s.vehicleId, (id, prev) -> {
+            VehicleStatus p = seen(id, prev);
+            return trackingTs(p) > s.ts
+                    ? prev
+                    : changed(prev, updated[0] = merge(id, null, s, clock.getAsLong(), p.battery, p.batteryRaw, p.batteryReceivedAt, p.unwatchedAt));
+        });
+        return updated[0];
     }
 
-    public void upsertBattery(BatterySnapshot s) {
-        if (s != null && s.vehicleId != null) {
-            battery.put(s.vehicleId, s);
+    /** @return the new status of the vehicle, or null if the snapshot was ignored */
+    public VehicleStatus upsertBattery(BatterySnapshot s) {
+        if (s == null || s.vehicleId == null) {
+            return null;
         }
+        VehicleStatus[] updated = new VehicleStatus[1];
+        statuses.compute(s.vehicleId, (id, prev) -> {
+            VehicleStatus p = seen(id, prev);
+            return batteryTs(p) > s.ts
+                    ? prev
+                    : changed(prev, updated[0] = merge(id, p.tracking, p.trackingRaw, p.trackingReceivedAt, s, null, clock.getAsLong(), p.unwatchedAt));
+        });
+        return updated[0];
+    }
+
+    /** @return the new status of the vehicle, or null if the snapshot was ignored */
+    public VehicleStatus upsertBattery(RawSnapshot s) {
+        if (s == null || s.vehicleId == null) {
+            return null;
+        }
+        VehicleStatus[] updated = new VehicleStatus[1];
+        statuses.compute(s.vehicleId, (id, prev) -> {
+            VehicleStatus p = seen(id, prev);
+            return batteryTs(p) > s.ts
+                    ? prev
+                    : changed(prev, updated[0] = merge(id, p.tracking, p.trackingRaw, p.trackingReceivedAt, null, s, clock.getAsLong(), p.unwatchedAt));
+        });
+        return updated[0];
+    }
+
+    /** Cached statuses of the given vehicles (unknown ones are skipped). */
+    public List<VehicleStatus> getAll(Collection<String> vehicleIds) {
+        long now = clock.getAsLong();
+        List<VehicleStatus> out = new ArrayList<>(vehicleIds.size());
+        for (String id : vehicleIds) {
+            VehicleStatus vs = statuses.get(id);
+            if (vs != null) {
+                out.add(checked(vs, now));
+            }
+        }
+        return out;
     }
 
     public VehicleStatus get(String vehicleId) {
+        VehicleStatus vs = statuses.get(vehicleId);
+        // unknown vehicle: nothing cached, answer with an empty (stale) status
+        return vs != null
+                ? checked(vs, clock.getAsLong())
+                : merge(vehicleId, null, null, 0, null, null, 0, 0);
+    }
+
+    public List<VehicleStatus> listAll() {
+        long now = clock.getAsLong();
+        List<VehicleStatus> out = new ArrayList<>(statuses.size());
+        for (VehicleStatus vs : statuses.values()) {
+            out.add(checked(vs, now));
+        }
+        return out;
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    /**
+     * Interest mode: the gateway doesn't receive the snapshots of the vehicles outside
+     * {@code watched}, so their entries can only get older. Each of them is stale from now
+     * on, until both halves have been received again (a vehicle watched again is refreshed
+     * from the services' dump). Vehicles already marked are skipped; O(n) map scan.
+     *
+     * @return the statuses that just became stale
+     */
+    public List<VehicleStatus> markUnwatchedExcept(Set<String> watched) {
+        long now = clock.getAsLong();
+        List<VehicleStatus> marked = new ArrayList<>();
+        for (VehicleStatus vs : statuses.values()) {
+            if (vs.unwatchedAt > 0 || watched.contains(vs.vehicleId)) {
+                continue;
+            }
+            VehicleStatus next = copyStale(vs);
+            next.unwatchedAt = now;
+            if (replace(vs.vehicleId, vs, next)) {
+                marked.add(next);
+            }
+        }
+        return marked;
+    }
+
+    /** Vehicles currently stale, as a read would report them. O(n): meant for gauges. */
+    public int staleCount() {
+        long now = clock.getAsLong();
+        int n = 0;
+        for (VehicleStatus vs : statuses.values()) {
+            if (vs.stale || overdue(vs, now)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Stores the stale flag of the vehicles that went silent and evicts the expired ones.
+     * Only the vehicles whose deadline passed are looked at. Call it from a single thread.
+     *
+     * @return the statuses that just became stale (to notify streaming clients)
+     */
+    public synchronized List<VehicleStatus> sweep() {
+        if (staleAfterMs == 0 && evictAfterMs == 0) {
+            return List.of();
+        }
+        long now = clock.getAsLong();
+        for (String id; (id = added.poll()) != null; ) {
+            deadlines.add(new Deadline(now, id));
+        }
+
+        List<VehicleStatus> marked = new ArrayList<>();
+        while (!deadlines.isEmpty() && deadlines.peek().at <= now) {
+            Deadline d = deadlines.poll();
+            VehicleStatus vs = statuses.get(d.vehicleId);
+            if (vs == null) {
+                // evicted: seen() queues it again if it comes back
+                continue;
+            }
+
+            long evictAt = evictAfterMs > 0 ? lastReceivedAt(vs) + evictAfterMs : Long.MAX_VALUE;
+            if (evictAt <= now) {
+                if (replace(d.vehicleId, vs, null)) {
+                    continue;
+                }
+                // updated meanwhile: check again on the next sweep
+                deadlines.add(new Deadline(now + 1, d.vehicleId));
+                continue;
+            }
+
+            long staleAt = staleAt(vs);
+            if (staleAt <= now && !vs.stale) {
+                VehicleStatus stale = copyStale(vs);
+                if (replace(d.vehicleId, vs, stale)) {
+                    marked.add(stale);
+                }
+            }
+            // next time a half can go stale: the ones still fresh, or (refreshed later) after recheck
+            long recheck = now + Math.max(1, staleAfterMs > 0 ? staleAfterMs : evictAfterMs);
+            long next = Math.min(evictAt, Math.min(recheck, nextStaleAt(vs, now)));
+            deadlines.add(new Deadline(next, d.vehicleId));
+        }
+        return marked;
+    }
+
+    // ---- helpers ----
+
+    private VehicleStatus changed(VehicleStatus prev, VehicleStatus next) {
+        onChange.accept(prev, next);
+        return next;
+    }
+
+    /** Replaces (or removes, with null) the entry if it is still {@code expected}. */
+    private boolean replace(String vehicleId, VehicleStatus expected, VehicleStatus next) {
+        boolean[] done = new boolean[1];
+        statuses.computeIfPresent(vehicleId, (id, cur) -> {
+            if (cur != expected) {
+                return cur;
+            }
+            done[0] = true;
+            return changed(cur, next);
+        });
+        return done[0];
+    }
+
+    private VehicleStatus seen(String vehicleId, VehicleStatus prev) {
+        if (prev == null) {
+            if (staleAfterMs > 0 || evictAfterMs > 0) {
+                added.offer(vehicleId);
+            }
+            return NONE;
+        }
+        return prev;
+    }
+
+    private VehicleStatus checked(VehicleStatus vs, long now) {
+        return !vs.stale && overdue(vs, now) ? copyStale(vs) : vs;
+    }
+
+    private boolean overdue(VehicleStatus vs, long now) {
+        return staleAfterMs > 0 && staleAt(vs) <= now;
+    }
+
+    /** When the first active half goes stale (MAX_VALUE if none is active). */
+    private long staleAt(VehicleStatus vs) {
+        if (staleAfterMs == 0) {
+            return Long.MAX_VALUE;
+        }
+        long at = Long.MAX_VALUE;
+        if (trackingActive(vs)) {
+            at = vs.trackingReceivedAt + staleAfterMs;
+        }
+        if (batteryActive(vs)) {
+            at = Math.min(at, vs.batteryReceivedAt + staleAfterMs);
+        }
+        return at;
+    }
+
+    /** Earliest future instant at which an active half goes stale (MAX_VALUE if none). */
+    private long nextStaleAt(VehicleStatus vs, long now) {
+        if (staleAfterMs == 0) {
+            return Long.MAX_VALUE;
+        }
+        long at = Long.MAX_VALUE;
+        long t = vs.trackingReceivedAt + staleAfterMs;
+        if (trackingActive(vs) && t > now) {
+            at = t;
+        }
+        long b = vs.batteryReceivedAt + staleAfterMs;
+        if (batteryActive(vs) && b > now) {
+            at = Math.min(at, b);
+        }
+        return at;
+    }
+
+    private static long lastReceivedAt(VehicleStatus vs) {
+        return Math.max(vs.trackingReceivedAt, vs.batteryReceivedAt);
+    }
+
+    private static boolean trackingActive(VehicleStatus vs) {
+        return vs.tracking != null ? vs.tracking.active : vs.trackingRaw != null && vs.trackingRaw.active;
+    }
+
+    private static boolean batteryActive(VehicleStatus vs) {
+        return vs.battery != null ? vs.battery.active : vs.batteryRaw != null && vs.batteryRaw.active;
+    }
+
+    private static long trackingTs(VehicleStatus vs) {
+        return vs.tracking != null ? vs.tracking.ts
+                : vs.trackingRaw != null ? vs.trackingRaw.ts
+                : Long.MIN_VALUE;
+    }
+
+    private static long batteryTs(VehicleStatus vs) {
+        return vs.battery != null ? vs.battery.ts
+                : vs.batteryRaw != null ? vs.batteryRaw.ts
+                : Long.MIN_VALUE;
+    }
+
+    private static VehicleStatus copyStale(VehicleStatus vs) {
+        VehicleStatus out = new VehicleStatus();
+        out.vehicleId = vs.vehicleId;
+        out.ts = vs.ts;
+        out.tracking = vs.tracking;
+        out.battery = vs.battery;
+        out.trackingRaw = vs.trackingRaw;
+        out.batteryRaw = vs.batteryRaw;
+        out.trackingReceivedAt = vs.trackingReceivedAt;
+        out.batteryReceivedAt = vs.batteryReceivedAt;
+        out.unwatchedAt = vs.unwatchedAt;
+        out.active = vs.active;
+        out.stale = true;
+        return out;
+    }
+
+    // each half is either decoded or raw (one mode per gateway), never both
+    private VehicleStatus merge(String vehicleId,
+                                TrackingSnapshot tracking, RawSnapshot trackingRaw, long trackingReceivedAt,
+                                BatterySnapshot battery, RawSnapshot batteryRaw, long batteryReceivedAt,
+                                long unwatchedAt) {
         VehicleStatus vs = new VehicleStatus();
         vs.vehicleId = vehicleId;
-        vs.ts = Instant.now().toEpochMilli();
-        vs.tracking = tracking.get(vehicleId);
-        vs.battery = battery.get(vehicleId);
+        vs.ts = clock.getAsLong();
+        vs.tracking = tracking;
+        vs.trackingRaw = trackingRaw;
+        vs.trackingReceivedAt = trackingReceivedAt;
+        vs.battery = battery;
+        vs.batteryRaw = batteryRaw;
+        vs.batteryReceivedAt = batteryReceivedAt;
 
-        boolean trackingActive = vs.tracking != null && vs.tracking.active;
-        boolean batteryActive = vs.battery != null && vs.battery.active;
-        vs.active = trackingActive || batteryActive;
+        vs.active = trackingActive(vs) || batteryActive(vs);
+        // both halves received again since the subscription was dropped: current again
+        vs.unwatchedAt = trackingReceivedAt > unwatchedAt && batteryReceivedAt > unwatchedAt ? 0 : unwatchedAt;
 
-        boolean trackingStale = vs.tracking == null || vs.tracking.stale;
-        boolean batteryStale = vs.battery == null || vs.battery.stale;
-        vs.stale = trackingStale || batteryStale;
+        boolean trackingStale = tracking != null ? tracking.stale : trackingRaw == null || trackingRaw.stale;
+        boolean batteryStale = battery != null ? battery.stale : batteryRaw == null || batteryRaw.stale;
+        // a silent half stays stale when the other one is refreshed
+        vs.stale = trackingStale || batteryStale || vs.unwatchedAt > 0 || overdue(vs, vs.ts);
 
         return vs;
     }
 
-    public List<VehicleStatus> listAll() {
-        // Union of keys so we don't lose vehicles that only have one snapshot type.
-        var keys = new java.util.HashSet<String>();
-        keys.addAll(tracking.keySet());
-        keys.addAll(battery.keySet());
+    private static final class Deadline implements Comparable<Deadline> {
+        final long at;
+        final String vehicleId;
 
-        List<VehicleStatus> out = new ArrayList<>();
-        for (String k : keys) {
-            out.add(get(k));
+        Deadline(long at, String vehicleId) {
+            this.at = at;
+            this.vehicleId = vehicleId;
+        }
+
+        @Override
+        public int compareTo(Deadline o) {
+            return Long.compare(at, o.at);
         }
-        return out;
     }
 }
@@ -3,19 +3,34 @@ package it.unibo.acme.fleet.gateway.capability;
 import it.unibo.acme.fleet.gateway.cache.VehicleStatusCache;
 import it.unibo.acme.fleet.gateway.model.*;
 import it.unibo.acme.fleet.gateway.provider.NatsCommandProvider;
+import it.unibo.acme.fleet.gateway.stats.FleetAggregates;
+import it.unibo.acme.fleet.gateway.stream.StatusStreamHub;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import java.time.Instant;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 /**
  * Business logic of the Fleet Gateway.
  *
  * Responsibilities:
  * - orchestrate START/STOP by talking to internal services (provider)
- * - keep/update the aggregated cache (called by NATS subscriber)
- * - serve data to REST resources
+ * - keep/update the aggregated cache (called by NATS subscriber), and sweep it for
+ *   vehicles whose producers went silent
+ * - serve data to REST resources, and push cache updates to streaming clients
  *
  * It does NOT:
  * - deal with NATS protocol details (provider does that)
@@ -24,28 +39,116 @@ import java.util.List;
 @ApplicationScoped
 public class FleetGatewayCapability {
 
-    private final VehicleStatusCache cache = new VehicleStatusCache();
+    private static final Logger LOG = Logger.getLogger(FleetGatewayCapability.class.getName());
+
+    /** Interest key passed to the interest listener by list queries. */
+    public static final String ALL_VEHICLES = ">";
+
+    private final VehicleStatusCache cache;
+    private final FleetAggregates stats;
+    private final long cacheSweepMs;
+    private ScheduledExecutorService cacheSweeper;
+
+    private volatile Consumer<String> interestListener = id -> {};
 
     private final NatsCommandProvider commands;
+    private final StatusStreamHub streams;
 
     @Inject
-    public FleetGatewayCapability(NatsCommandProvider commands) {
+    public FleetGatewayCapability(NatsCommandProvider commands,
+                                  @ConfigProperty(name = "gateway.stream.maxClients", defaultValue = "10000") int streamMaxClients,
+                                  @ConfigProperty(name = "gateway.stream.maxPending", defaultValue = "1024") int streamMaxPending,
+                                  @ConfigProperty(name = "gateway.cache.staleAfterMs", defaultValue = "60000") long staleAfterMs,
+                                  @ConfigProperty(name = "gateway.cache.evictAfterMs", defaultValue = "0") long evictAfterMs,
+                                  @ConfigProperty(name = "gateway.stats.zone", defaultValue = "UTC") String statsZone,
+                                  MetricRegistry metrics) {
         this.commands = commands;
+        this.streams = new StatusStreamHub(streamMaxClients, streamMaxPending);
+        this.stats = new FleetAggregates(ZoneId.of(statsZone), System::currentTimeMillis);
+        this.cache = new VehicleStatusCache(staleAfterMs, evictAfterMs, System::currentTimeMillis, stats::onChange);
+        long period = staleAfterMs > 0 ? staleAfterMs / 4 : evictAfterMs / 4;
+        this.cacheSweepMs = period > 0 ? Math.max(250, period) : 0;
+
+        metrics.gauge("gateway.cache.size", cache, VehicleStatusCache::size);
+        metrics.gauge("gateway.cache.stale", cache, VehicleStatusCache::staleCount);
+    }
+
+    @PostConstruct
+    void start() {
+        if (cacheSweepMs == 0) {
+            return;
+        }
+        cacheSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gateway-cache-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        cacheSweeper.scheduleWithFixedDelay(this::sweepCache, cacheSweepMs, cacheSweepMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (cacheSweeper != null) {
+            cacheSweeper.shutdownNow();
+        }
+        streams.shutdown();
+    }
+
+    /** Vehicles whose producer went silent become stale for streaming clients too. */
+    private void sweepCache() {
+        try {
+            for (VehicleStatus vs : cache.sweep()) {
+                streams.publish(vs);
+            }
+        } catch (Exception e) {
+            LOG.warning("Cache sweep failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Receives the vehicleId of every status query, or {@link #ALL_VEHICLES} for list
+     * queries (set by the snapshot subscriber in interest mode). Called on request threads.
+     */
+    public void setInterestListener(Consumer<String> listener) {
+        this.interestListener = listener != null ? listener : id -> {};
     }
 
     // ---- cache update entrypoints (called by SnapshotSubscriptionResource) ----
 
+    /**
+     * Interest mode: only the {@code watched} vehicles are received, the cached status
+     * of every other one is stale until it is refreshed. Called by the interest sweeper.
+     */
+    public void markUnwatchedExcept(Set<String> watched) {
+        for (VehicleStatus vs : cache.markUnwatchedExcept(watched)) {
+            streams.publish(vs);
+        }
+    }
+
     public void onTrackingSnapshot(TrackingSnapshot s) {
-        cache.upsertTracking(s);
+        streams.publish(cache.upsertTracking(s));
     }
 
     public void onBatterySnapshot(BatterySnapshot s) {
-        cache.upsertBattery(s);
+        streams.publish(cache.upsertBattery(s));
+    }
+
+    /** Passthrough mode: the snapshot as received, decoded only as far as the cache needs. */
+    public void onTrackingSnapshot(RawSnapshot s) {
+        streams.publish(cache.upsertTracking(s));
+    }
+
+    public void onBatterySnapshot(RawSnapshot s) {
+        streams.publish(cache.upsertBattery(s));
     }
 
     // ---- REST-facing operations (called by FleetGatewayResource) ----
 
-    public StartStopResult start(String vehicleId, StartRequest req) {
+    /**
+     * Sends the tracking and battery commands at the same time: the result completes
+     * when both replied (or timed out), so latency is the slowest round-trip, not the sum.
+     */
+    public CompletableFuture<StartStopResult> start(String vehicleId, StartRequest req) {
         long ts = (req != null && req.ts > 0) ? req.ts : Instant.now().toEpochMilli();
         String stationId = (req != null) ? req.stationId : null;
 
@@ -59,13 +162,14 @@ public class FleetGatewayCapability {
         bCmd.ts = ts;
         bCmd.stationId = stationId;
 
-        CommandResponse tRes = commands.requestTrackingStart(tCmd);
-        CommandResponse bRes = commands.requestBatteryStart(bCmd);
+        CompletableFuture<CommandResponse> tRes = commands.requestTrackingStart(tCmd);
+        CompletableFuture<CommandResponse> bRes = commands.requestBatteryStart(bCmd);
 
-        return merge(vehicleId, tRes, bRes, "START");
+        return CompletableFuture.allOf(tRes, bRes)
+                .thenApply(v -> merge(vehicleId, tRes.join(), bRes.join(), "START"));
     }
 
-    public StartStopResult stop(String vehicleId, StopRequest req) {
+    public CompletableFuture<StartStopResult> stop(String vehicleId, StopRequest req) {
         long ts = (req != null && req.ts > 0) ? req.ts : Instant.now().toEpochMilli();
         String stationId = (req != null) ? req.stationId : null;
 
@@ -79,20 +183,59 @@ public class FleetGatewayCapability {
         bCmd.ts = ts;
         bCmd.stationId = stationId;
 
-        CommandResponse tRes = commands.requestTrackingStop(tCmd);
-        CommandResponse bRes = commands.requestBatteryStop(bCmd);
+        CompletableFuture<CommandResponse> tRes = commands.requestTrackingStop(tCmd);
+        CompletableFuture<CommandResponse> bRes = commands.requestBatteryStop(bCmd);
 
-        return merge(vehicleId, tRes, bRes, "STOP");
+        return CompletableFuture.allOf(tRes, bRes)
+                .thenApply(v -> merge(vehicleId, tRes.join(), bRes.join(), "STOP"));
     }
 
     public VehicleStatus getStatus(String vehicleId) {
+        commands.signalDemand(vehicleId, Instant.now().toEpochMilli());
+        interestListener.accept(vehicleId);
         return cache.get(vehicleId);
     }
 
     public List<VehicleStatus> listAll() {
+        interestListener.accept(ALL_VEHICLES);
         return cache.listAll();
     }
 
+    /** Fleet-wide counters, maintained on every cache change: O(1). */
+    public FleetStats stats() {
+        return stats.snapshot();
+    }
+
+    public String statsPrometheus() {
+        return stats.toPrometheus();
+    }
+
+    /**
+     * Opens a push stream of status updates for the given vehicles (empty = whole fleet).
+     * The current cached status of each requested vehicle is sent first.
+     * Returns false when too many streams are open.
+     */
+    public boolean openStream(Set<String> vehicleIds, StatusStreamHub.Sink sink) {
+        if (vehicleIds.isEmpty()) {
+            interestListener.accept(ALL_VEHICLES);
+            return streams.subscribe(vehicleIds, sink, List.of());
+        }
+        for (String id : vehicleIds) {
+            interestListener.accept(id);
+        }
+        return streams.subscribe(vehicleIds, sink, cache.getAll(vehicleIds));
+    }
+
+    /** Streams keep their vehicles watched: called periodically by the interest sweeper. */
+    public void touchStreamedInterest() {
+        if (streams.hasFleetClients()) {
+            interestListener.accept(ALL_VEHICLES);
+        }
+        for (String id : streams.streamedVehicles()) {
+            interestListener.accept(id);
+        }
+    }
+
     // ---- helpers ----
 
     private StartStopResult merge(String vehicleId, CommandResponse tRes, CommandResponse bRes, String op) {
@@ -1,52 +1,57 @@
 package it.unibo.acme.fleet.gateway.config;
 
 import io.nats.client.Connection;
-import io.nats.client.Nats;
+import it.unibo.acme.fleet.nats.NatsConnectionPool;
+import it.unibo.acme.fleet.nats.NatsMetrics;
+import it.unibo.acme.fleet.nats.NatsSettings;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
-import org.eclipse.microprofile.config.inject.ConfigProperty;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.TimeoutException;
 
 /**
- * Produces a single shared NATS Connection for the whole gateway.
+ * Produces the NATS connections of the gateway (see fleet-nats: options, pool, metrics).
  *
  * Why a producer?
- * - every component that needs NATS can just @Inject Connection
+ * - every component that needs NATS can just @Inject Connection (the primary one),
+ *   or NatsConnectionPool / NatsSettings when it needs more
  * - we keep lifecycle management (open/close) in one place
  */
 @ApplicationScoped
 public class NatsConnectionProvider {
 
-    private volatile Connection connection;
+    private volatile NatsConnectionPool pool;
 
     @Produces
-    @ApplicationScoped
-    public Connection connection(@ConfigProperty(name = "nats.url") String natsUrl)
+    @Singleton
+    public NatsSettings settings(Config config) {
+        return NatsSettings.fromConfig(config, "fleet-gateway");
+    }
+
+    @Produces
+    @Singleton
+    public NatsConnectionPool pool(NatsSettings settings, MetricRegistry metrics)
             throws IOException, InterruptedException {
-        this.connection = Nats.connect(natsUrl);
-        return this.connection;
+        this.pool = NatsConnectionPool.open(settings);
+        NatsMetrics.register(metrics, pool);
+        return this.pool;
+    }
+
+    @Produces
+    @ApplicationScoped
+    public Connection connection(NatsConnectionPool pool) {
+        return pool.primary();
     }
 
     @PreDestroy
     public void close() {
-        Connection c = this.connection;
-        if (c != null) {
-            try {
-                c.flush(Duration.ofSeconds(2));
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-            } catch (TimeoutException ignored) {
-                // ignore
-            }
-            try {
-                c.close();
-            } catch (Exception ignored) {
-                // ignore
-            }
+        NatsConnectionPool p = this.pool;
+        if (p != null) {
+            p.close();
         }
     }
 }
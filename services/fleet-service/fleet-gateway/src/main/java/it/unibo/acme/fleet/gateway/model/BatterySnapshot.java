@@ -13,6 +13,9 @@ public class BatterySnapshot {
     public Integer batteryPct;   // null if we never got telemetry for this vehicle
     public boolean lowBattery;
 
+    public Double dischargePctPerMin;       // null until battery-service has enough samples
+    public Double estimatedMinutesToEmpty;  // null if the vehicle isn't discharging
+
     public long startedAt;
     public long lastUpdateTs;
     public boolean stale;
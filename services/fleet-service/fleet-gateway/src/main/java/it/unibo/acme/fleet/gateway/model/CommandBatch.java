@@ -0,0 +1,13 @@
+package it.unibo.acme.fleet.gateway.model;
+
+import java.util.List;
+
+/**
+ * Start/stop commands coalesced by the gateway into one request-reply on
+ * cmd.<service>.batch. Commands are applied in order.
+ */
+public class CommandBatch {
+    public List<BatchCommand> commands;
+
+    public CommandBatch() {}
+}
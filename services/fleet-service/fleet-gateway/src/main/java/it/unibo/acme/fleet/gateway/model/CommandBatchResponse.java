@@ -0,0 +1,12 @@
+package it.unibo.acme.fleet.gateway.model;
+
+import java.util.List;
+
+/**
+ * Reply to a {@link CommandBatch}: one result per command, same order.
+ */
+public class CommandBatchResponse {
+    public List<CommandResponse> results;
+
+    public CommandBatchResponse() {}
+}
@@ -0,0 +1,13 @@
+package it.unibo.acme.fleet.gateway.model;
+
+/**
+ * NATS hint (pub/sub, no reply) sent to internal services:
+ * "somebody is watching this vehicle for the next ttlMs".
+ */
+public class DemandSignal {
+    public String vehicleId;
+    public long ts;
+    public long ttlMs;
+
+    public DemandSignal() {}
+}
@@ -0,0 +1,27 @@
+package it.unibo.acme.fleet.gateway.model;
+
+import java.util.Map;
+
+/**
+ * Fleet-wide counters returned by GET /fleet/stats.
+ *
+ * Counts reflect the cached statuses; {@code stale} includes the vehicles marked by the
+ * cache sweep, so it can lag a read-time check by one sweep period.
+ */
+public class FleetStats {
+    public long ts;
+
+    public long vehicles;
+    public long active;
+    public long stale;
+    public long lowBattery;
+
+    /** Day the distance refers to (ISO date in the configured zone). */
+    public String day;
+    public double distanceTodayMeters;
+
+    /** Vehicles per battery range ("0-9", ..., "90-100", "unknown"). */
+    public Map<String, Long> batteryHistogram;
+
+    public FleetStats() {}
+}
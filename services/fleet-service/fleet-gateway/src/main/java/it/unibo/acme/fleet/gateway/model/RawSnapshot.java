@@ -0,0 +1,41 @@
+package it.unibo.acme.fleet.gateway.model;
+
+/**
+ * A tracking or battery snapshot kept as received (passthrough mode).
+ *
+ * Only the fields the gateway itself needs (cache and fleet stats) are parsed;
+ * {@link #json} is the UTF-8 JSON object published by the service, spliced as-is
+ * into the status responses.
+ * Shared by all readers: never modify the array.
+ */
+public final class RawSnapshot {
+    public final String vehicleId;
+    public final long ts;
+    public final boolean active;
+    public final boolean stale;
+
+    public final long startedAt;
+
+    /** Tracking only (0 otherwise). */
+    public final double distanceMeters;
+
+    /** Battery only (null / false otherwise). */
+    public final Integer batteryPct;
+    public final boolean lowBattery;
+
+    public final byte[] json;
+
+    public RawSnapshot(String vehicleId, long ts, boolean active, boolean stale,
+                       long startedAt, double distanceMeters, Integer batteryPct, boolean lowBattery,
+                       byte[] json) {
+        this.vehicleId = vehicleId;
+        this.ts = ts;
+        this.active = active;
+        this.stale = stale;
+        this.startedAt = startedAt;
+        this.distanceMeters = distanceMeters;
+        this.batteryPct = batteryPct;
+        this.lowBattery = lowBattery;
+        this.json = json;
+    }
+}
@@ -1,25 +1,53 @@
 package it.unibo.acme.fleet.gateway.model;
 
+import jakarta.json.bind.annotation.JsonbTransient;
+
 /**
  * Aggregated view returned by the Gateway.
  *
  * This is what ACMEMobility wants when it "polls" Fleet Management:
  * a single response that contains both tracking + battery information.
+ *
+ * Instances are built by the cache on every snapshot and shared by all readers:
+ * treat them as read-only.
  */
 public class VehicleStatus {
     public String vehicleId;
 
-    /** When the Gateway assembled this response (epoch millis). */
+    /** When the Gateway last merged a snapshot into this status (epoch millis). */
     public long ts;
 
     /** Last snapshots observed for the vehicle (can be null if never received). */
     public TrackingSnapshot tracking;
     public BatterySnapshot battery;
 
+    /**
+     * Passthrough mode ({@code gateway.snapshot.passthrough}): the snapshots as received,
+     * in place of {@link #tracking} / {@link #battery}. Written by {@code RawSnapshotJson}.
+     */
+    @JsonbTransient
+    public RawSnapshot trackingRaw;
+    @JsonbTransient
+    public RawSnapshot batteryRaw;
+
+    /** When the Gateway received the current tracking / battery snapshot (epoch millis, 0 = none). */
+    @JsonbTransient
+    public long trackingReceivedAt;
+    @JsonbTransient
+    public long batteryReceivedAt;
+
+    /**
+     * Interest mode: when the Gateway stopped receiving this vehicle's snapshots (0 = it
+     * receives them). The status stays stale until both halves are received again.
+     */
+    @JsonbTransient
+    public long unwatchedAt;
+
     /**
      * Convenience flags:
      * - active: true if either sub-service considers the vehicle active
-     * - stale: true if data is missing/old in any sub-service
+     * - stale: true if data is missing/old in any sub-service, or if an active
+     *   sub-service stopped publishing (see VehicleStatusCache)
      */
     public boolean active;
     public boolean stale;
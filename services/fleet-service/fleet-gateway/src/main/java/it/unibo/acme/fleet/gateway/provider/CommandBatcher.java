@@ -0,0 +1,89 @@
+package it.unibo.acme.fleet.gateway.provider;
+
+import it.unibo.acme.fleet.gateway.model.BatchCommand;
+import it.unibo.acme.fleet.gateway.model.CommandResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces the commands for one service into batches.
+ *
+ * The first command of an empty batch opens a window of {@code windowMs}: everything
+ * submitted meanwhile travels in the same message, which is sent when the window closes
+ * or as soon as {@code maxBatch} commands are queued. Each caller gets its own future,
+ * completed with its entry of the batch reply.
+ *
+ * The sender must complete normally with one response per command (in order);
+ * missing entries are answered with an ERROR response.
+ */
+final class CommandBatcher {
+
+    private final long windowMs;
+    private final int maxBatch;
+    private final ScheduledExecutorService scheduler;
+    private final Function<List<BatchCommand>, CompletableFuture<List<CommandResponse>>> sender;
+
+    private List<BatchCommand> commands = new ArrayList<>();
+    private List<CompletableFuture<CommandResponse>> waiters = new ArrayList<>();
+
+    CommandBatcher(long windowMs, int maxBatch, ScheduledExecutorService scheduler,
+                   Function<List<BatchCommand>, CompletableFuture<List<CommandResponse>>> sender) {
+        this.windowMs = Math.max(0, windowMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    CompletableFuture<CommandResponse> submit(BatchCommand cmd) {
+        CompletableFuture<CommandResponse> f = new CompletableFuture<>();
+        boolean full;
+        synchronized (this) {
+            commands.add(cmd);
+            waiters.add(f);
+            full = commands.size() >= maxBatch;
+            if (!full && commands.size() == 1) {
+                scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+        return f;
+    }
+
+    /** Sends whatever is queued; a no-op when the batch was already sent (full, or timer after a full flush). */
+    void flush() {
+        List<BatchCommand> batch;
+        List<CompletableFuture<CommandResponse>> batchWaiters;
+        synchronized (this) {
+            if (commands.isEmpty()) {
+                return;
+            }
+            batch = commands;
+            batchWaiters = waiters;
+            commands = new ArrayList<>();
+            waiters = new ArrayList<>();
+        }
+
+        CompletableFuture<List<CommandResponse>> reply;
+        try {
+            reply = sender.apply(batch);
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        reply.whenComplete((results, err) -> {
+            for (int i = 0; i < batchWaiters.size(); i++) {
+                CommandResponse r = err == null && results != null && i < results.size() ? results.get(i) : null;
+                batchWaiters.get(i).complete(r != null
+                        ? r
+                        : CommandResponse.error(batch.get(i).vehicleId,
+                        err != null ? "batch failed: " + err.getMessage() : "missing result in batch reply"));
+            }
+        });
+    }
+}
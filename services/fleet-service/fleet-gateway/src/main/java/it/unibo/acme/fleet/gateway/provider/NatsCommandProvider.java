@@ -3,6 +3,7 @@ package it.unibo.acme.fleet.gateway.provider;
 import io.nats.client.Connection;
 import io.nats.client.Message;
 import it.unibo.acme.fleet.gateway.model.*;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.bind.Jsonb;
@@ -10,6 +11,15 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
 /**
@@ -19,6 +29,13 @@ import java.util.logging.Logger;
  * - subject names
  * - request-reply details
  * - timeouts, payload serialization
+ *
+ * Commands are asynchronous: each returns a future completed by the NATS reply,
+ * so the gateway can have several requests in flight without holding a thread each.
+ *
+ * With {@code gateway.cmd.batch.windowMs > 0} start/stop commands are coalesced per service
+ * ({@link CommandBatcher}) and sent as one request on cmd.<service>.batch; a window that
+ * caught a single command sends it on the plain start/stop subject, as before.
  */
 @ApplicationScoped
 public class NatsCommandProvider {
@@ -32,9 +49,20 @@ public class NatsCommandProvider {
     private final String trackingStopSubject;
     private final String batteryStartSubject;
     private final String batteryStopSubject;
+    private final String trackingBatchSubject;
+    private final String batteryBatchSubject;
 
     private final long requestTimeoutMs;
 
+    private final CommandBatcher trackingBatcher;
+    private final CommandBatcher batteryBatcher;
+    private final ScheduledExecutorService batchScheduler;
+
+    private final String demandSubject;
+    private final long demandTtlMs;
+    private final ConcurrentHashMap<String, Long> lastDemandTs = new ConcurrentHashMap<>();
+    private volatile long nextDemandPruneTs;
+
     @Inject
     public NatsCommandProvider(Connection nats,
                               Jsonb jsonb,
@@ -42,7 +70,13 @@ public class NatsCommandProvider {
                               @ConfigProperty(name = "tracking.cmd.stop.subject") String trackingStopSubject,
                               @ConfigProperty(name = "battery.cmd.start.subject") String batteryStartSubject,
                               @ConfigProperty(name = "battery.cmd.stop.subject") String batteryStopSubject,
-                              @ConfigProperty(name = "gateway.cmd.timeoutMs", defaultValue = "2000") long requestTimeoutMs) {
+                              @ConfigProperty(name = "tracking.cmd.batch.subject", defaultValue = "cmd.tracking.batch") String trackingBatchSubject,
+                              @ConfigProperty(name = "battery.cmd.batch.subject", defaultValue = "cmd.battery.batch") String batteryBatchSubject,
+                              @ConfigProperty(name = "gateway.cmd.timeoutMs", defaultValue = "2000") long requestTimeoutMs,
+                              @ConfigProperty(name = "gateway.cmd.batch.windowMs", defaultValue = "2") long batchWindowMs,
+                              @ConfigProperty(name = "gateway.cmd.batch.maxSize", defaultValue = "256") int batchMaxSize,
+                              @ConfigProperty(name = "gateway.demand.subject", defaultValue = "event.fleet.demand") String demandSubject,
+                              @ConfigProperty(name = "gateway.demand.ttlMs", defaultValue = "30000") long demandTtlMs) {
         this.nats = nats;
         this.jsonb = jsonb;
 
@@ -50,40 +84,191 @@ public class NatsCommandProvider {
         this.trackingStopSubject = trackingStopSubject;
         this.batteryStartSubject = batteryStartSubject;
         this.batteryStopSubject = batteryStopSubject;
+        this.trackingBatchSubject = trackingBatchSubject;
+        this.batteryBatchSubject = batteryBatchSubject;
 
         this.requestTimeoutMs = requestTimeoutMs;
+
+        if (batchWindowMs > 0) {
+            this.batchScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "gateway-command-batcher");
+                t.setDaemon(true);
+                return t;
+            });
+            this.trackingBatcher = new CommandBatcher(batchWindowMs, batchMaxSize, batchScheduler,
+                    batch -> sendBatch(batch, trackingStartSubject, trackingStopSubject, trackingBatchSubject, "tracking"));
+            this.batteryBatcher = new CommandBatcher(batchWindowMs, batchMaxSize, batchScheduler,
+                    batch -> sendBatch(batch, batteryStartSubject, batteryStopSubject, batteryBatchSubject, "battery"));
+        } else {
+            this.batchScheduler = null;
+            this.trackingBatcher = null;
+            this.batteryBatcher = null;
+        }
+
+        this.demandSubject = demandSubject;
+        this.demandTtlMs = demandTtlMs;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
     }
 
-    public CommandResponse requestTrackingStart(StartTrackingCommand cmd) {
+    public CompletableFuture<CommandResponse> requestTrackingStart(StartTrackingCommand cmd) {
+        if (trackingBatcher != null) {
+            return trackingBatcher.submit(batched(BatchCommand.START, cmd.vehicleId, cmd.ts, cmd.stationId));
+        }
         return request(trackingStartSubject, cmd, cmd.vehicleId, "tracking.start");
     }
 
-    public CommandResponse requestTrackingStop(StopTrackingCommand cmd) {
+    public CompletableFuture<CommandResponse> requestTrackingStop(StopTrackingCommand cmd) {
+        if (trackingBatcher != null) {
+            return trackingBatcher.submit(batched(BatchCommand.STOP, cmd.vehicleId, cmd.ts, cmd.stationId));
+        }
         return request(trackingStopSubject, cmd, cmd.vehicleId, "tracking.stop");
     }
 
-    public CommandResponse requestBatteryStart(StartBatteryCommand cmd) {
+    public CompletableFuture<CommandResponse> requestBatteryStart(StartBatteryCommand cmd) {
+        if (batteryBatcher != null) {
+            return batteryBatcher.submit(batched(BatchCommand.START, cmd.vehicleId, cmd.ts, cmd.stationId));
+        }
         return request(batteryStartSubject, cmd, cmd.vehicleId, "battery.start");
     }
 
-    public CommandResponse requestBatteryStop(StopBatteryCommand cmd) {
+    public CompletableFuture<CommandResponse> requestBatteryStop(StopBatteryCommand cmd) {
+        if (batteryBatcher != null) {
+            return batteryBatcher.submit(batched(BatchCommand.STOP, cmd.vehicleId, cmd.ts, cmd.stationId));
+        }
         return request(batteryStopSubject, cmd, cmd.vehicleId, "battery.stop");
     }
 
-    private CommandResponse request(String subject, Object payload, String vehicleId, String op) {
+    /**
+     * Fire-and-forget demand signal, throttled to one message per vehicle every ttl/2
+     * so that polling clients don't turn into a NATS flood.
+     *
+     * Entries older than ttl/2 no longer throttle anything and are pruned at most once per
+     * ttl, so ids that are never asked for again (typos, made-up ids) don't accumulate.
+     */
+    public void signalDemand(String vehicleId, long nowTs) {
+        if (vehicleId == null || demandTtlMs <= 0) {
+            return;
+        }
+        pruneDemand(nowTs);
+        Long last = lastDemandTs.get(vehicleId);
+        if (last != null && nowTs - last < demandTtlMs / 2) {
+            return;
+        }
+        lastDemandTs.put(vehicleId, nowTs);
+
+        DemandSignal signal = new DemandSignal();
+        signal.vehicleId = vehicleId;
+        signal.ts = nowTs;
+        signal.ttlMs = demandTtlMs;
+        try {
+            nats.publish(demandSubject, jsonb.toJson(signal).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            LOG.warning("NATS demand publish failed for vehicle=" + vehicleId + " err=" + e.getMessage());
+        }
+    }
+
+    private void pruneDemand(long nowTs) {
+        long next = nextDemandPruneTs;
+        if (nowTs < next) {
+            return;
+        }
+        nextDemandPruneTs = nowTs + demandTtlMs;
+        lastDemandTs.values().removeIf(ts -> nowTs - ts >= demandTtlMs / 2);
+    }
+
+    int demandEntries() {
+        return lastDemandTs.size();
+    }
+
+    private static BatchCommand batched(String op, String vehicleId, long ts, String stationId) {
+        BatchCommand c = new BatchCommand();
+        c.op = op;
+        c.vehicleId = vehicleId;
+        c.ts = ts;
+        c.stationId = stationId;
+        return c;
+    }
+
+    private CompletableFuture<List<CommandResponse>> sendBatch(List<BatchCommand> batch, String startSubject,
+                                                              String stopSubject, String batchSubject, String service) {
+        if (batch.size() == 1) {
+            // same fields as the single start/stop commands (the extra "op" is ignored)
+            BatchCommand c = batch.get(0);
+            boolean start = BatchCommand.START.equals(c.op);
+            return request(start ? startSubject : stopSubject, c, c.vehicleId, service + (start ? ".start" : ".stop"))
+                    .thenApply(List::of);
+        }
+        CommandBatch payload = new CommandBatch();
+        payload.commands = batch;
+        try {
+            byte[] data = jsonb.toJson(payload).getBytes(StandardCharsets.UTF_8);
+            return nats.requestWithTimeout(batchSubject, data, Duration.ofMillis(requestTimeoutMs))
+                    .handle((msg, err) -> {
+                        if (err != null) {
+                            LOG.warning("NATS batch request failed for " + service + " (" + batch.size()
+                                    + " commands) err=" + reason(err));
+                            return batchError(batch, "NATS request failed: " + reason(err));
+                        }
+                        String json = new String(msg.getData(), StandardCharsets.UTF_8);
+                        CommandBatchResponse r = jsonb.fromJson(json, CommandBatchResponse.class);
+                        return r != null && r.results != null ? r.results : batchError(batch, "No response from " + service + ".batch");
+                    });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static List<CommandResponse> batchError(List<BatchCommand> batch, String message) {
+        List<CommandResponse> out = new ArrayList<>(batch.size());
+        for (BatchCommand c : batch) {
+            out.add(CommandResponse.error(c.vehicleId, message));
+        }
+        return out;
+    }
+
+    /**
+     * Non-blocking request-reply: the caller thread only serializes and publishes.
+     * The future always completes normally (within the timeout): failures, timeouts and
+     * empty replies become an ERROR {@link CommandResponse}, as callers merge several replies.
+     */
+    private CompletableFuture<CommandResponse> request(String subject, Object payload, String vehicleId, String op) {
         try {
             byte[] data = jsonb.toJson(payload).getBytes(StandardCharsets.UTF_8);
-            Message msg = nats.request(subject, data, Duration.ofMillis(requestTimeoutMs));
+            return nats.requestWithTimeout(subject, data, Duration.ofMillis(requestTimeoutMs))
+                    .handle((msg, err) -> toResponse(msg, err, vehicleId, op));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(toResponse(null, e, vehicleId, op));
+        }
+    }
 
-            if (msg == null || msg.getData() == null) {
-                return CommandResponse.error(vehicleId, "No response from " + op);
-            }
+    private CommandResponse toResponse(Message msg, Throwable err, String vehicleId, String op) {
+        if (err != null) {
+            String reason = reason(err);
+            LOG.warning("NATS request failed for " + op + " vehicle=" + vehicleId + " err=" + reason);
+            return CommandResponse.error(vehicleId, "NATS request failed: " + reason);
+        }
+        if (msg == null || msg.getData() == null) {
+            return CommandResponse.error(vehicleId, "No response from " + op);
+        }
+        try {
             String json = new String(msg.getData(), StandardCharsets.UTF_8);
             return jsonb.fromJson(json, CommandResponse.class);
-
         } catch (Exception e) {
-            LOG.warning("NATS request failed for " + op + " vehicle=" + vehicleId + " err=" + e.getMessage());
-            return CommandResponse.error(vehicleId, "NATS request failed: " + e.getMessage());
+            LOG.warning("Bad reply for " + op + " vehicle=" + vehicleId + " err=" + e.getMessage());
+            return CommandResponse.error(vehicleId, "Bad reply from " + op + ": " + e.getMessage());
         }
     }
+
+    private String reason(Throwable err) {
+        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+        return cause instanceof CancellationException || cause instanceof TimeoutException
+                ? "timeout after " + requestTimeoutMs + " ms"
+                : String.valueOf(cause.getMessage());
+    }
 }
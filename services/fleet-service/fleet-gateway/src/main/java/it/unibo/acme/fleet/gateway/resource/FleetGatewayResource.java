@@ -2,13 +2,25 @@ package it.unibo.acme.fleet.gateway.resource;
 
 import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
 import it.unibo.acme.fleet.gateway.model.*;
+import it.unibo.acme.fleet.gateway.stream.StatusStreamHub;
+import it.unibo.acme.fleet.gateway.util.RawSnapshotJson;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 /**
  * REST entrypoint of Fleet Management (Gateway).
@@ -22,6 +34,9 @@ import java.util.List;
 @Consumes(MediaType.APPLICATION_JSON)
 public class FleetGatewayResource {
 
+    /** Lower server preference (qs) than JSON: only chosen when the client asks for text. */
+    static final String PROMETHEUS_TEXT = "text/plain;version=0.0.4;qs=0.5";
+
     private final FleetGatewayCapability capability;
 
     @Inject
@@ -35,11 +50,8 @@ public class FleetGatewayResource {
      */
     @POST
     @Path("/vehicles/{vehicleId}/start")
-    public Response start(@PathParam("vehicleId") String vehicleId, StartRequest req) {
-        StartStopResult r = capability.start(vehicleId, req);
-        return "OK".equalsIgnoreCase(r.status)
-                ? Response.ok(r).build()
-                : Response.status(Response.Status.BAD_GATEWAY).entity(r).build();
+    public void start(@PathParam("vehicleId") String vehicleId, StartRequest req, @Suspended AsyncResponse async) {
+        capability.start(vehicleId, req).whenComplete((r, err) -> resume(async, r, err));
     }
 
     /**
@@ -48,11 +60,8 @@ public class FleetGatewayResource {
      */
     @POST
     @Path("/vehicles/{vehicleId}/stop")
-    public Response stop(@PathParam("vehicleId") String vehicleId, StopRequest req) {
-        StartStopResult r = capability.stop(vehicleId, req);
-        return "OK".equalsIgnoreCase(r.status)
-                ? Response.ok(r).build()
-                : Response.status(Response.Status.BAD_GATEWAY).entity(r).build();
+    public void stop(@PathParam("vehicleId") String vehicleId, StopRequest req, @Suspended AsyncResponse async) {
+        capability.stop(vehicleId, req).whenComplete((r, err) -> resume(async, r, err));
     }
 
     /**
@@ -60,16 +69,119 @@ public class FleetGatewayResource {
      * In your choreography: (poll: a -> f ; status: f -> a)*
      *
      * The gateway answers from an in-memory cache kept updated by snapshot events.
+     * In passthrough mode the cached snapshot bytes are written as they are (no JSON-B).
      */
     @GET
     @Path("/vehicles/{vehicleId}/status")
-    public VehicleStatus status(@PathParam("vehicleId") String vehicleId) {
-        return capability.getStatus(vehicleId);
+    public Response status(@PathParam("vehicleId") String vehicleId) {
+        VehicleStatus vs = capability.getStatus(vehicleId);
+        return RawSnapshotJson.canWrite(vs)
+                ? Response.ok(RawSnapshotJson.write(vs), MediaType.APPLICATION_JSON).build()
+                : Response.ok(vs).build();
     }
 
     @GET
     @Path("/vehicles")
-    public List<VehicleStatus> list() {
-        return capability.listAll();
+    public Response list() {
+        List<VehicleStatus> all = capability.listAll();
+        for (VehicleStatus vs : all) {
+            if (!RawSnapshotJson.canWrite(vs)) {
+                return Response.ok(all).build();
+            }
+        }
+        return Response.ok(RawSnapshotJson.writeAll(all), MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Fleet-wide counters (active, stale, low battery, distance today, battery histogram),
+     * kept up to date by the cache: answering does not scan or serialize the fleet.
+     * Prometheus scrapers (Accept: text/plain) get the text exposition format.
+     */
+    @GET
+    @Path("/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public FleetStats stats() {
+        return capability.stats();
+    }
+
+    @GET
+    @Path("/stats")
+    @Produces(PROMETHEUS_TEXT)
+    public String statsPrometheus() {
+        return capability.statsPrometheus();
+    }
+
+    /**
+     * Push alternative to polling: Server-Sent Events with the merged status of the given
+     * vehicles ({@code ids=V001,V002}; none = whole fleet), event name "status".
+     * The current status of each requested vehicle comes first, then every update.
+     * A slow client gets the latest status per vehicle, not every intermediate one.
+     */
+    @GET
+    @Path("/vehicles/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void stream(@QueryParam("ids") String ids, @Context SseEventSink sink, @Context Sse sse) {
+        Set<String> vehicleIds = new LinkedHashSet<>();
+        if (ids != null) {
+            for (String id : ids.split(",")) {
+                if (!id.isBlank()) {
+                    vehicleIds.add(id.trim());
+                }
+            }
+        }
+        open(vehicleIds, sink, sse);
+    }
+
+    @GET
+    @Path("/vehicles/{vehicleId}/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamOne(@PathParam("vehicleId") String vehicleId, @Context SseEventSink sink, @Context Sse sse) {
+        open(Set.of(vehicleId), sink, sse);
+    }
+
+    private void open(Set<String> vehicleIds, SseEventSink sink, Sse sse) {
+        StatusStreamHub.Sink out = new StatusStreamHub.Sink() {
+            @Override
+            public CompletionStage<?> send(VehicleStatus status) {
+                OutboundSseEvent.Builder event = sse.newEventBuilder()
+                        .name("status")
+                        .id(status.vehicleId)
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE);
+                if (RawSnapshotJson.canWrite(status)) {
+                    event.data(String.class, new String(RawSnapshotJson.write(status), StandardCharsets.UTF_8));
+                } else {
+                    event.data(VehicleStatus.class, status);
+                }
+                return sink.send(event.build());
+            }
+
+            @Override
+            public boolean isClosed() {
+                return sink.isClosed();
+            }
+
+            @Override
+            public void close() {
+                sink.close();
+            }
+        };
+        if (!capability.openStream(vehicleIds, out)) {
+            sink.send(sse.newEventBuilder().name("error").data(String.class, "too many streams").build());
+            sink.close();
+        }
+    }
+
+    /**
+     * Start/stop are suspended while the internal services answer: no server thread
+     * waits on NATS, the reply (or timeout) resumes the request.
+     */
+    private static void resume(AsyncResponse async, StartStopResult r, Throwable err) {
+        if (err != null) {
+            async.resume(err);
+            return;
+        }
+        async.resume("OK".equalsIgnoreCase(r.status)
+                ? Response.ok(r).build()
+                : Response.status(Response.Status.BAD_GATEWAY).entity(r).build());
     }
 }
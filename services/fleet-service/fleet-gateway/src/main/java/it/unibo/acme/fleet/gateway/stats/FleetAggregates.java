@@ -0,0 +1,197 @@
+package it.unibo.acme.fleet.gateway.stats;
+
+import it.unibo.acme.fleet.gateway.model.FleetStats;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Fleet-wide counters kept up to date from the cache changes, so reading them is O(1)
+ * whatever the fleet size (no scan of the cache, no serialization of the statuses).
+ *
+ * {@link #onChange} gets every (previous, new) status stored by the cache: the previous
+ * status is subtracted from the counters and the new one added. Distance today is the sum
+ * of the trip distance increments observed since midnight (in {@code zone}); a trip seen
+ * for the first time (e.g. after a gateway restart) counts only if it started today.
+ *
+ * Counters are independent adders: a read may see one change applied to some of them and
+ * not yet to others, never a drift.
+ */
+public final class FleetAggregates {
+
+    static final int BATTERY_BUCKETS = 10;
+
+    private final ZoneId zone;
+    private final LongSupplier clock;
+
+    private final LongAdder vehicles = new LongAdder();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder lowBattery = new LongAdder();
+    /** 0-9, 10-19, ..., 90-100, then unknown. */
+    private final LongAdder[] battery = new LongAdder[BATTERY_BUCKETS + 1];
+    private final AtomicReference<Day> today;
+
+    public FleetAggregates(ZoneId zone, LongSupplier clock) {
+        this.zone = zone;
+        this.clock = clock;
+        for (int i = 0; i < battery.length; i++) {
+            battery[i] = new LongAdder();
+        }
+        this.today = new AtomicReference<>(dayOf(clock.getAsLong()));
+    }
+
+    /** Cache change listener: null = absent. */
+    public void onChange(VehicleStatus prev, VehicleStatus next) {
+        if (prev != null) {
+            count(prev, -1);
+        }
+        if (next != null) {
+            count(next, 1);
+            addDistance(prev, next);
+        }
+    }
+
+    public FleetStats snapshot() {
+        long now = clock.getAsLong();
+        Day d = day(now);
+        FleetStats out = new FleetStats();
+        out.ts = now;
+        out.vehicles = vehicles.sum();
+        out.active = active.sum();
+        out.stale = stale.sum();
+        out.lowBattery = lowBattery.sum();
+        out.day = d.date.toString();
+        out.distanceTodayMeters = d.meters.sum();
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < battery.length; i++) {
+            histogram.put(bucketName(i), battery[i].sum());
+        }
+        out.batteryHistogram = histogram;
+        return out;
+    }
+
+    /** Prometheus text exposition format (version 0.0.4). */
+    public String toPrometheus() {
+        FleetStats s = snapshot();
+        StringBuilder sb = new StringBuilder(1024);
+        gauge(sb, "fleet_vehicles", "Vehicles in the gateway cache", s.vehicles);
+        gauge(sb, "fleet_vehicles_active", "Vehicles with an active rental", s.active);
+        gauge(sb, "fleet_vehicles_stale", "Vehicles with missing or old data", s.stale);
+        gauge(sb, "fleet_vehicles_low_battery", "Vehicles below the low battery threshold", s.lowBattery);
+        gauge(sb, "fleet_distance_today_meters", "Distance travelled by the fleet since midnight", s.distanceTodayMeters);
+        sb.append("# HELP fleet_battery_vehicles Vehicles per battery range (percent)\n");
+        sb.append("# TYPE fleet_battery_vehicles gauge\n");
+        for (Map.Entry<String, Long> e : s.batteryHistogram.entrySet()) {
+            sb.append("fleet_battery_vehicles{range=\"").append(e.getKey()).append("\"} ").append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // ---- helpers ----
+
+    private void count(VehicleStatus vs, int sign) {
+        vehicles.add(sign);
+        if (vs.active) {
+            active.add(sign);
+        }
+        if (vs.stale) {
+            stale.add(sign);
+        }
+        if (vs.battery != null ? vs.battery.lowBattery : vs.batteryRaw != null && vs.batteryRaw.lowBattery) {
+            lowBattery.add(sign);
+        }
+        battery[bucket(batteryPct(vs))].add(sign);
+    }
+
+    private void addDistance(VehicleStatus prev, VehicleStatus next) {
+        if (!hasTracking(next)) {
+            return;
+        }
+        Day d = day(clock.getAsLong());
+        double delta;
+        if (prev != null && hasTracking(prev) && startedAt(prev) == startedAt(next)) {
+            delta = distance(next) - distance(prev);
+        } else {
+            // new trip, or one already running when first seen: all of it, if it began today
+            delta = startedAt(next) >= d.start ? distance(next) : 0;
+        }
+        if (delta > 0) {
+            d.meters.add(delta);
+        }
+    }
+
+    private Day day(long now) {
+        Day d = today.get();
+        // a clock going backwards keeps counting in the current day
+        if (now < d.end) {
+            return d;
+        }
+        today.compareAndSet(d, dayOf(now));
+        return today.get();
+    }
+
+    private Day dayOf(long now) {
+        LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        return new Day(date,
+                date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+
+    static int bucket(Integer pct) {
+        if (pct == null) {
+            return BATTERY_BUCKETS;
+        }
+        return Math.max(0, Math.min(BATTERY_BUCKETS - 1, pct / 10));
+    }
+
+    private static String bucketName(int i) {
+        if (i == BATTERY_BUCKETS) {
+            return "unknown";
+        }
+        return i * 10 + "-" + (i == BATTERY_BUCKETS - 1 ? 100 : i * 10 + 9);
+    }
+
+    private static Integer batteryPct(VehicleStatus vs) {
+        return vs.battery != null ? vs.battery.batteryPct : vs.batteryRaw != null ? vs.batteryRaw.batteryPct : null;
+    }
+
+    private static boolean hasTracking(VehicleStatus vs) {
+        return vs.tracking != null || vs.trackingRaw != null;
+    }
+
+    private static long startedAt(VehicleStatus vs) {
+        return vs.tracking != null ? vs.tracking.startedAt : vs.trackingRaw.startedAt;
+    }
+
+    private static double distance(VehicleStatus vs) {
+        return vs.tracking != null ? vs.tracking.distanceMeters : vs.trackingRaw.distanceMeters;
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, Number value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static final class Day {
+        final LocalDate date;
+        final long start;
+        final long end;
+        final DoubleAdder meters = new DoubleAdder();
+
+        Day(LocalDate date, long start, long end) {
+            this.date = date;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package it.unibo.acme.fleet.gateway.stream;
+
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Fans merged {@link VehicleStatus} updates out to push clients (SSE).
+ *
+ * Each client has a bounded, conflating buffer: one pending status per vehicle, a newer
+ * status replaces the pending one, so a slow client receives the latest value instead of
+ * every intermediate one. A client has at most one send batch in flight; updates arriving
+ * meanwhile conflate in its buffer. If more than {@code maxPending} distinct vehicles are
+ * pending (a slow fleet-wide client) the oldest entry is dropped and counted.
+ *
+ * Publishing costs one lookup for the clients of that vehicle plus the fleet-wide clients,
+ * never a scan of all clients. Delivery never runs on the publishing (NATS) thread: each
+ * send batch runs on its own virtual thread, because an SSE sink may write synchronously
+ * and block on a stalled connection. A slow client thus only holds up itself.
+ */
+public final class StatusStreamHub {
+
+    private static final Logger LOG = Logger.getLogger(StatusStreamHub.class.getName());
+
+    /** Push channel of one client (an SSE sink in production). */
+    public interface Sink {
+        CompletionStage<?> send(VehicleStatus status);
+
+        boolean isClosed();
+
+        void close();
+    }
+
+    private final int maxClients;
+    private final int maxPending;
+    private final ExecutorService senders;
+
+    private final ConcurrentHashMap<String, Set<Client>> byVehicle = new ConcurrentHashMap<>();
+    private final Set<Client> fleetClients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger clients = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public StatusStreamHub(int maxClients, int maxPending) {
+        this.maxClients = Math.max(1, maxClients);
+        this.maxPending = Math.max(1, maxPending);
+        this.senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gateway-stream-", 1).factory());
+    }
+
+    /**
+     * Registers a client for the given vehicles ({@code null} or empty = whole fleet),
+     * queueing {@code initial} (current values) as its first updates.
+     * Returns false when the hub is full; the caller should close the sink.
+     */
+    public boolean subscribe(Set<String> vehicleIds, Sink sink, Collection<VehicleStatus> initial) {
+        if (clients.incrementAndGet() > maxClients) {
+            clients.decrementAndGet();
+            return false;
+        }
+        Client c = new Client(vehicleIds == null || vehicleIds.isEmpty() ? null : Set.copyOf(vehicleIds), sink);
+        if (c.vehicleIds == null) {
+            fleetClients.add(c);
+        } else {
+            for (String id : c.vehicleIds) {
+                byVehicle.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(c);
+            }
+        }
+        for (VehicleStatus vs : initial) {
+            c.offer(vs);
+        }
+        return true;
+    }
+
+    public void publish(VehicleStatus status) {
+        if (status == null || status.vehicleId == null) {
+            return;
+        }
+        Set<Client> watchers = byVehicle.get(status.vehicleId);
+        if (watchers != null) {
+            for (Client c : watchers) {
+                c.offer(status);
+            }
+        }
+        for (Client c : fleetClients) {
+            c.offer(status);
+        }
+    }
+
+    public int clients() {
+        return clients.get();
+    }
+
+    /** Vehicles some client streams individually (kept "interesting" while streamed). */
+    public Set<String> streamedVehicles() {
+        return byVehicle.keySet();
+    }
+
+    public boolean hasFleetClients() {
+        return !fleetClients.isEmpty();
+    }
+
+    public long sent() {
+        return sent.get();
+    }
+
+    public long conflated() {
+        return conflated.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public void shutdown() {
+        senders.shutdownNow();
+        for (Client c : fleetClients) {
+            c.sink.close();
+        }
+        for (Set<Client> set : byVehicle.values()) {
+            for (Client c : set) {
+                c.sink.close();
+            }
+        }
+    }
+
+    private void remove(Client c) {
+        if (!c.removed.compareAndSet(false, true)) {
+            return;
+        }
+        clients.decrementAndGet();
+        if (c.vehicleIds == null) {
+            fleetClients.remove(c);
+        } else {
+            for (String id : c.vehicleIds) {
+                byVehicle.computeIfPresent(id, (k, set) -> {
+                    set.remove(c);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+        try {
+            c.sink.close();
+        } catch (Exception ignored) {}
+    }
+
+    private final class Client {
+        final Set<String> vehicleIds;
+        final Sink sink;
+        final AtomicBoolean removed = new AtomicBoolean();
+
+        // guarded by this
+        private final LinkedHashMap<String, VehicleStatus> pending = new LinkedHashMap<>();
+        private boolean sending;
+
+        Client(Set<String> vehicleIds, Sink sink) {
+            this.vehicleIds = vehicleIds;
+            this.sink = sink;
+        }
+
+        void offer(VehicleStatus status) {
+            boolean start;
+            synchronized (this) {
+                if (pending.put(status.vehicleId, status) != null) {
+                    conflated.incrementAndGet();
+                } else if (pending.size() > maxPending) {
+                    Iterator<String> eldest = pending.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    dropped.incrementAndGet();
+                }
+                start = !sending;
+                sending = true;
+            }
+            if (start) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            List<VehicleStatus> batch;
+            synchronized (this) {
+                if (pending.isEmpty() || removed.get()) {
+                    sending = false;
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            CompletionStage<?> last = null;
+            try {
+                if (sink.isClosed()) {
+                    remove(this);
+                    return;
+                }
+                for (VehicleStatus vs : batch) {
+                    last = sink.send(vs);
+                }
+            } catch (RuntimeException e) {
+                LOG.fine(() -> "Stream client dropped: " + e.getMessage());
+                remove(this);
+                return;
+            }
+            sent.addAndGet(batch.size());
+            // next batch once this one is written: meanwhile updates conflate in the buffer
+            last.whenCompleteAsync((r, err) -> {
+                if (err != null || sink.isClosed()) {
+                    remove(this);
+                    return;
+                }
+                drain();
+            }, senders);
+        }
+    }
+}
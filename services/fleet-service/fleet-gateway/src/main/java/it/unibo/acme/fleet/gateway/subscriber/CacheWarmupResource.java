@@ -0,0 +1,161 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Subscription;
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Warm start of the cache.
+ *
+ * Right after startup the cache is empty, and it would stay without the vehicles that
+ * are not moving (stopped vehicles publish one final snapshot, then nothing). So the
+ * gateway asks tracking and battery for a full dump (cmd.tracking.dump / cmd.battery.dump):
+ * each service streams the current snapshot of every vehicle to a private inbox in JSON array
+ * frames, closed by an empty message with the Dump-Complete header.
+ *
+ * Both dumps are loaded in parallel on background threads, so REST is up immediately;
+ * live snapshots received meanwhile are not overwritten by older dump entries (the cache
+ * keeps the newest snapshot per vehicle).
+ */
+@ApplicationScoped
+public class CacheWarmupResource {
+
+    private static final Logger LOG = Logger.getLogger(CacheWarmupResource.class.getName());
+
+    static final String DUMP_COMPLETE_HEADER = "Dump-Complete";
+
+    private final Connection nats;
+    private final SnapshotDecoder decoder;
+
+    private final boolean enabled;
+    private final String trackingDumpSubject;
+    private final String batteryDumpSubject;
+    private final long timeoutMs;
+
+    @Inject
+    public CacheWarmupResource(Connection nats,
+                               Jsonb jsonb,
+                               FleetGatewayCapability capability,
+                               @ConfigProperty(name = "gateway.warmup.enabled", defaultValue = "true") boolean enabled,
+                               @ConfigProperty(name = "tracking.dump.subject", defaultValue = "cmd.tracking.dump") String trackingDumpSubject,
+                               @ConfigProperty(name = "battery.dump.subject", defaultValue = "cmd.battery.dump") String batteryDumpSubject,
+                               @ConfigProperty(name = "gateway.warmup.timeoutMs", defaultValue = "10000") long timeoutMs,
+                               @ConfigProperty(name = "gateway.snapshot.passthrough", defaultValue = "false") boolean passthrough) {
+        this.nats = nats;
+        this.decoder = new SnapshotDecoder(jsonb, capability, passthrough);
+        this.enabled = enabled;
+        this.trackingDumpSubject = trackingDumpSubject;
+        this.batteryDumpSubject = batteryDumpSubject;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            LOG.info("Cache warm-up disabled");
+            return;
+        }
+        refreshAll();
+    }
+
+    /** Reloads the whole fleet in the background (full dump from both services). */
+    public void refreshAll() {
+        startLoader("tracking", trackingDumpSubject, this::loadTracking);
+        startLoader("battery", batteryDumpSubject, this::loadBattery);
+    }
+
+    /**
+     * Reloads one vehicle, asynchronously: its dump is a single frame, so a plain
+     * request-reply is enough (the first reply is the frame, or Dump-Complete if unknown).
+     */
+    public void refresh(String vehicleId) {
+        byte[] body = vehicleId.getBytes(StandardCharsets.UTF_8);
+        refreshOne("tracking", trackingDumpSubject, body, this::loadTracking);
+        refreshOne("battery", batteryDumpSubject, body, this::loadBattery);
+    }
+
+    private void refreshOne(String service, String subject, byte[] body, ToIntFunction<byte[]> loadFrame) {
+        try {
+            nats.requestWithTimeout(subject, body, Duration.ofMillis(timeoutMs)).whenComplete((msg, err) -> {
+                if (err != null || msg == null || isComplete(msg)) {
+                    return;
+                }
+                try {
+                    loadFrame.applyAsInt(msg.getData());
+                } catch (Exception e) {
+                    LOG.warning("Bad " + service + " dump frame err=" + e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            LOG.fine(() -> "Refresh from " + service + " failed: " + e.getMessage());
+        }
+    }
+
+    private int loadTracking(byte[] frame) {
+        return decoder.tracking(frame, true);
+    }
+
+    private int loadBattery(byte[] frame) {
+        return decoder.battery(frame, true);
+    }
+
+    private static boolean isComplete(Message msg) {
+        return msg.hasHeaders() && msg.getHeaders().getFirst(DUMP_COMPLETE_HEADER) != null;
+    }
+
+    private void startLoader(String service, String subject, ToIntFunction<byte[]> loadFrame) {
+        Thread t = new Thread(() -> load(service, subject, loadFrame), "gateway-warmup-" + service);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void load(String service, String subject, ToIntFunction<byte[]> loadFrame) {
+        long t0 = System.nanoTime();
+        int loaded = 0;
+        String inbox = nats.createInbox();
+        Subscription sub = nats.subscribe(inbox);
+        try {
+            nats.publish(subject, inbox, new byte[0]);
+            while (true) {
+                // timeout between two frames, not for the whole dump
+                Message msg = sub.nextMessage(Duration.ofMillis(timeoutMs));
+                if (msg == null) {
+                    LOG.warning("Cache warm-up from " + service + " timed out after " + loaded
+                            + " snapshots (service down or too old to answer " + subject + ")");
+                    return;
+                }
+                if (isComplete(msg)) {
+                    break;
+                }
+                try {
+                    loaded += loadFrame.applyAsInt(msg.getData());
+                } catch (Exception e) {
+                    LOG.warning("Bad " + service + " dump frame err=" + e.getMessage());
+                }
+            }
+            long ms = (System.nanoTime() - t0) / 1_000_000;
+            int count = loaded;
+            LOG.info(() -> "Cache warm-up from " + service + ": " + count + " vehicles in " + ms + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Cache warm-up from " + service + " failed", e);
+        } finally {
+            try {
+                sub.unsubscribe();
+            } catch (Exception ignored) {}
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which vehicles someone is watching, each for {@code ttlMs} after its last query,
+ * plus a fleet-wide interest (list endpoints) with the same TTL.
+ *
+ * Pure bookkeeping: the caller turns the transitions (returned booleans, expired ids)
+ * into subscribe/unsubscribe calls. {@link #touch} is lock-free (it runs on every status
+ * query) and an expiry never drops an interest extended concurrently; the fleet-wide
+ * methods must be serialized by the caller.
+ */
+final class InterestTracker {
+
+    private final long ttlMs;
+    private final ConcurrentHashMap<String, Long> expiresAt = new ConcurrentHashMap<>();
+    private volatile long fleetExpiresAt;
+
+    InterestTracker(long ttlMs) {
+        this.ttlMs = Math.max(1, ttlMs);
+    }
+
+    /** Extends the interest in a vehicle; true if it wasn't watched before. */
+    boolean touch(String vehicleId, long nowTs) {
+        return expiresAt.put(vehicleId, nowTs + ttlMs) == null;
+    }
+
+    /** Extends the fleet-wide interest; true if it wasn't active before. */
+    boolean touchFleet(long nowTs) {
+        boolean started = !fleetActive(nowTs);
+        fleetExpiresAt = nowTs + ttlMs;
+        return started;
+    }
+
+    boolean fleetActive(long nowTs) {
+        return fleetExpiresAt > nowTs;
+    }
+
+    /**
+     * True once when the fleet-wide interest has expired (the caller drops the wildcard
+     * subscription), false while it is active or after it was already reported.
+     */
+    boolean fleetExpired(long nowTs) {
+        if (fleetExpiresAt == 0 || fleetActive(nowTs)) {
+            return false;
+        }
+        fleetExpiresAt = 0;
+        return true;
+    }
+
+    /** Removes and returns the vehicles whose interest expired. */
+    List<String> expire(long nowTs) {
+        List<String> out = new ArrayList<>();
+        for (Map.Entry<String, Long> e : expiresAt.entrySet()) {
+            // conditional remove: a touch that just extended the interest wins
+            if (e.getValue() <= nowTs && expiresAt.remove(e.getKey(), e.getValue())) {
+                out.add(e.getKey());
+            }
+        }
+        return out;
+    }
+
+    Set<String> vehicles() {
+        return expiresAt.keySet();
+    }
+}
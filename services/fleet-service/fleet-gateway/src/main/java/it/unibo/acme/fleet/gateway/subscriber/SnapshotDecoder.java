@@ -0,0 +1,82 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
+import it.unibo.acme.fleet.gateway.model.RawSnapshot;
+import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
+import it.unibo.acme.fleet.gateway.util.RawSnapshotJson;
+import jakarta.json.bind.Jsonb;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns snapshot payloads (single object or batch array) into cache updates,
+ * for both the live subscriptions and the warm-up dumps.
+ *
+ * With {@code passthrough} the payload is not bound with JSON-B: only vehicleId, ts,
+ * active and stale are read, and the bytes are kept to be spliced into the responses.
+ */
+final class SnapshotDecoder {
+
+    private final Jsonb jsonb;
+    private final FleetGatewayCapability capability;
+    private final boolean passthrough;
+
+    SnapshotDecoder(Jsonb jsonb, FleetGatewayCapability capability, boolean passthrough) {
+        this.jsonb = jsonb;
+        this.capability = capability;
+        this.passthrough = passthrough;
+    }
+
+    /** @return the number of snapshots applied */
+    int tracking(byte[] data, boolean batch) {
+        if (passthrough) {
+            if (!batch) {
+                capability.onTrackingSnapshot(RawSnapshotJson.parse(data));
+                return 1;
+            }
+            int n = 0;
+            for (RawSnapshot s : RawSnapshotJson.parseArray(data)) {
+                capability.onTrackingSnapshot(s);
+                n++;
+            }
+            return n;
+        }
+        String json = new String(data, StandardCharsets.UTF_8);
+        if (!batch) {
+            capability.onTrackingSnapshot(jsonb.fromJson(json, TrackingSnapshot.class));
+            return 1;
+        }
+        TrackingSnapshot[] snapshots = jsonb.fromJson(json, TrackingSnapshot[].class);
+        for (TrackingSnapshot s : snapshots) {
+            capability.onTrackingSnapshot(s);
+        }
+        return snapshots.length;
+    }
+
+    /** @return the number of snapshots applied */
+    int battery(byte[] data, boolean batch) {
+        if (passthrough) {
+            if (!batch) {
+                capability.onBatterySnapshot(RawSnapshotJson.parse(data));
+                return 1;
+            }
+            int n = 0;
+            for (RawSnapshot s : RawSnapshotJson.parseArray(data)) {
+                capability.onBatterySnapshot(s);
+                n++;
+            }
+            return n;
+        }
+        String json = new String(data, StandardCharsets.UTF_8);
+        if (!batch) {
+            capability.onBatterySnapshot(jsonb.fromJson(json, BatterySnapshot.class));
+            return 1;
+        }
+        BatterySnapshot[] snapshots = jsonb.fromJson(json, BatterySnapshot[].class);
+        for (BatterySnapshot s : snapshots) {
+            capability.onBatterySnapshot(s);
+        }
+        return snapshots.length;
+    }
+}
@@ -2,9 +2,9 @@ package it.unibo.acme.fleet.gateway.subscriber;
 
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
+import io.nats.client.Message;
 import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
-import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
-import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
+import it.unibo.acme.fleet.nats.NatsSettings;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -12,7 +12,9 @@ import jakarta.inject.Inject;
 import jakarta.json.bind.Jsonb;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -22,34 +24,80 @@ import java.util.logging.Logger;
  * - event.tracking.snapshot.<vehicleId>
  * - event.battery.snapshot.<vehicleId>
  *
+ * Publishers in batch mode send JSON arrays on <prefix>.batch instead, flagged with
+ * a Content-Type header; the same wildcard subscription receives them.
+ *
  * and pushes them into the Gateway capability (which updates the cache).
+ *
+ * Modes ({@code gateway.snapshot.mode}):
+ * - full: wildcard subscriptions, every snapshot of every vehicle is received (default)
+ * - interest: only the vehicles someone queried in the last {@code gateway.demand.ttlMs}
+ *   are subscribed, one subject per vehicle, so NATS doesn't even deliver the others.
+ *   A vehicle that becomes watched is refreshed from the services' dump (stopped vehicles
+ *   don't publish); until then, and as long as nobody watches it, its cached status is
+ *   reported stale. A list query switches to the wildcards for the same TTL, with a full
+ *   dump to catch up, then falls back to the per-vehicle subjects.
+ *   Needs the producers in single publish mode: batch frames are not per vehicle.
+ *
+ * With {@code gateway.snapshot.passthrough=true} snapshots are not decoded with JSON-B
+ * but kept as received (see {@link SnapshotDecoder}).
  */
 @ApplicationScoped
 public class SnapshotSubscriptionResource {
 
     private static final Logger LOG = Logger.getLogger(SnapshotSubscriptionResource.class.getName());
 
+    static final String CONTENT_TYPE_HEADER = "Content-Type";
+    static final String CONTENT_TYPE_BATCH = "application/vnd.acme.snapshot-batch+json";
+
     private final Connection nats;
-    private final Jsonb jsonb;
+    private final NatsSettings natsSettings;
     private final FleetGatewayCapability capability;
+    private final SnapshotDecoder decoder;
 
     private final String trackingSnapshotWildcard;
     private final String batterySnapshotWildcard;
 
+    public static final String MODE_FULL = "full";
+    public static final String MODE_INTEREST = "interest";
+
+    private final CacheWarmupResource warmup;
+    private final boolean interestMode;
+    private final long interestTtlMs;
+    private final InterestTracker interest;
+    private ScheduledExecutorService sweeper;
+    private boolean fleetSubscribed;
+
     private Dispatcher trackingDispatcher;
     private Dispatcher batteryDispatcher;
 
     @Inject
     public SnapshotSubscriptionResource(Connection nats,
+                                        NatsSettings natsSettings,
                                         Jsonb jsonb,
                                         FleetGatewayCapability capability,
+                                        CacheWarmupResource warmup,
                                         @ConfigProperty(name = "tracking.snapshot.subjectWildcard") String trackingSnapshotWildcard,
-                                        @ConfigProperty(name = "battery.snapshot.subjectWildcard") String batterySnapshotWildcard) {
+                                        @ConfigProperty(name = "battery.snapshot.subjectWildcard") String batterySnapshotWildcard,
+                                        @ConfigProperty(name = "gateway.snapshot.mode", defaultValue = MODE_FULL) String mode,
+                                        @ConfigProperty(name = "gateway.demand.ttlMs", defaultValue = "30000") long interestTtlMs,
+                                        @ConfigProperty(name = "gateway.snapshot.passthrough", defaultValue = "false") boolean passthrough) {
         this.nats = nats;
-        this.jsonb = jsonb;
+        this.natsSettings = natsSettings;
         this.capability = capability;
+        this.decoder = new SnapshotDecoder(jsonb, capability, passthrough);
+        this.warmup = warmup;
         this.trackingSnapshotWildcard = trackingSnapshotWildcard;
         this.batterySnapshotWildcard = batterySnapshotWildcard;
+
+        boolean interestMode = MODE_INTEREST.equalsIgnoreCase(mode);
+        if (interestMode && !(trackingSnapshotWildcard.endsWith(".>") && batterySnapshotWildcard.endsWith(".>"))) {
+            LOG.warning("gateway.snapshot.mode=interest needs <prefix>.> wildcards, falling back to full");
+            interestMode = false;
+        }
+        this.interestMode = interestMode;
+        this.interestTtlMs = Math.max(1000, interestTtlMs);
+        this.interest = new InterestTracker(this.interestTtlMs);
     }
 
     @PostConstruct
@@ -57,32 +105,140 @@ public class SnapshotSubscriptionResource {
         // Tracking snapshots
         trackingDispatcher = nats.createDispatcher(msg -> {
             try {
-                String json = new String(msg.getData(), StandardCharsets.UTF_8);
-                TrackingSnapshot s = jsonb.fromJson(json, TrackingSnapshot.class);
-                capability.onTrackingSnapshot(s);
+                decoder.tracking(msg.getData(), isBatch(msg));
             } catch (Exception e) {
                 LOG.warning("Bad tracking snapshot payload on " + msg.getSubject() + " err=" + e.getMessage());
             }
         });
-        trackingDispatcher.subscribe(trackingSnapshotWildcard);
 
         // Battery snapshots
         batteryDispatcher = nats.createDispatcher(msg -> {
             try {
-                String json = new String(msg.getData(), StandardCharsets.UTF_8);
-                BatterySnapshot s = jsonb.fromJson(json, BatterySnapshot.class);
-                capability.onBatterySnapshot(s);
+                decoder.battery(msg.getData(), isBatch(msg));
             } catch (Exception e) {
                 LOG.warning("Bad battery snapshot payload on " + msg.getSubject() + " err=" + e.getMessage());
             }
         });
-        batteryDispatcher.subscribe(batterySnapshotWildcard);
 
-        LOG.info("Subscribed to snapshots: tracking=" + trackingSnapshotWildcard + ", battery=" + batterySnapshotWildcard);
+        // past nats.pending.* a dispatcher is a slow consumer: snapshots dropped, see nats.dropped
+        natsSettings.limit(trackingDispatcher);
+        natsSettings.limit(batteryDispatcher);
+
+        if (!interestMode) {
+            trackingDispatcher.subscribe(trackingSnapshotWildcard);
+            batteryDispatcher.subscribe(batterySnapshotWildcard);
+            LOG.info("Subscribed to snapshots: tracking=" + trackingSnapshotWildcard + ", battery=" + batterySnapshotWildcard);
+            return;
+        }
+
+        capability.setInterestListener(this::onInterest);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gateway-interest-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(250, interestTtlMs / 4);
+        sweeper.scheduleAtFixedRate(this::sweep, 0, period, TimeUnit.MILLISECONDS);
+        LOG.info("Snapshot subscriptions on interest, ttlMs=" + interestTtlMs);
+    }
+
+    /** Called by the capability on every query: a vehicleId, or ALL_VEHICLES for list queries. */
+    private void onInterest(String vehicleId) {
+        long now = System.currentTimeMillis();
+        if (FleetGatewayCapability.ALL_VEHICLES.equals(vehicleId)) {
+            synchronized (this) {
+                if (interest.touchFleet(now) && !fleetSubscribed) {
+                    for (String id : interest.vehicles()) {
+                        unsubscribeVehicle(id);
+                    }
+                    trackingDispatcher.subscribe(trackingSnapshotWildcard);
+                    batteryDispatcher.subscribe(batterySnapshotWildcard);
+                    fleetSubscribed = true;
+                    warmup.refreshAll();
+                }
+            }
+        } else if (isPlainToken(vehicleId) && interest.touch(vehicleId, now)) {
+            // lock-free above: only a vehicle that wasn't watched pays for the lock
+            synchronized (this) {
+                if (!fleetSubscribed) {
+                    subscribeVehicle(vehicleId);
+                    warmup.refresh(vehicleId);
+                }
+            }
+        }
+    }
+
+    private synchronized void sweep() {
+        try {
+            capability.touchStreamedInterest();
+            long now = System.currentTimeMillis();
+            for (String id : interest.expire(now)) {
+                if (!fleetSubscribed) {
+                    unsubscribeVehicle(id);
+                }
+            }
+            if (interest.fleetExpired(now) && fleetSubscribed) {
+                trackingDispatcher.unsubscribe(trackingSnapshotWildcard);
+                batteryDispatcher.unsubscribe(batterySnapshotWildcard);
+                fleetSubscribed = false;
+                // the cache is current for everybody: just narrow down to the watched vehicles
+                for (String id : interest.vehicles()) {
+                    subscribeVehicle(id);
+                }
+            }
+            if (!fleetSubscribed) {
+                // not received any more (or never, after the warm-up): stale until refreshed
+                capability.markUnwatchedExcept(interest.vehicles());
+            }
+        } catch (Exception e) {
+            LOG.warning("Interest sweep failed: " + e.getMessage());
+        }
+    }
+
+    private void subscribeVehicle(String vehicleId) {
+        trackingDispatcher.subscribe(vehicleSubject(trackingSnapshotWildcard, vehicleId));
+        batteryDispatcher.subscribe(vehicleSubject(batterySnapshotWildcard, vehicleId));
+    }
+
+    private void unsubscribeVehicle(String vehicleId) {
+        trackingDispatcher.unsubscribe(vehicleSubject(trackingSnapshotWildcard, vehicleId));
+        batteryDispatcher.unsubscribe(vehicleSubject(batterySnapshotWildcard, vehicleId));
+    }
+
+    // a vehicleId becomes a subject token: no separators or wildcards from the URL
+    private static boolean isPlainToken(String vehicleId) {
+        if (vehicleId == null || vehicleId.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < vehicleId.length(); i++) {
+            char c = vehicleId.charAt(i);
+            if (c == '.' || c == '*' || c == '>' || Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** event.tracking.snapshot.> + V001 -> event.tracking.snapshot.V001 */
+    private static String vehicleSubject(String wildcard, String vehicleId) {
+        return wildcard.substring(0, wildcard.length() - 1) + vehicleId;
+    }
+
+    private static boolean isBatch(Message msg) {
+        return msg.hasHeaders() && CONTENT_TYPE_BATCH.equals(msg.getHeaders().getFirst(CONTENT_TYPE_HEADER));
     }
 
     @PreDestroy
     void stop() {
+        if (interestMode) {
+            if (sweeper != null) sweeper.shutdownNow();
+            capability.setInterestListener(null);
+            try {
+                if (trackingDispatcher != null) nats.closeDispatcher(trackingDispatcher);
+                if (batteryDispatcher != null) nats.closeDispatcher(batteryDispatcher);
+            } catch (Exception ignored) {}
+            return;
+        }
         try {
             if (trackingDispatcher != null) trackingDispatcher.unsubscribe(trackingSnapshotWildcard);
         } catch (Exception ignored) {}
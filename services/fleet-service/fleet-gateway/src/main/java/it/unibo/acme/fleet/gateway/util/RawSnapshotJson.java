@@ -0,0 +1,443 @@
+package it.unibo.acme.fleet.gateway.util;
+
+import it.unibo.acme.fleet.gateway.model.RawSnapshot;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Passthrough codec: snapshots in, statuses out, without JSON-B.
+ *
+ * Reading walks the UTF-8 bytes once: the top-level fields of {@link RawSnapshot}
+ * ({@code vehicleId}, {@code ts}, {@code active}, {@code stale}, {@code startedAt},
+ * {@code distanceMeters}, {@code batteryPct}, {@code lowBattery}) are extracted, every other value is only skipped
+ * (still checked for structure, so the kept bytes are always one well-formed object).
+ * Writing builds the {@link VehicleStatus} envelope and copies the kept snapshot bytes
+ * into it; like JSON-B, null members are omitted.
+ *
+ * Malformed input throws {@link IllegalArgumentException}.
+ */
+public final class RawSnapshotJson {
+
+    private static final int MAX_DEPTH = 32;
+
+    private static final byte[] VEHICLE_ID = ascii("vehicleId");
+    private static final byte[] TS = ascii("ts");
+    private static final byte[] ACTIVE = ascii("active");
+    private static final byte[] STALE = ascii("stale");
+    private static final byte[] STARTED_AT = ascii("startedAt");
+    private static final byte[] DISTANCE_METERS = ascii("distanceMeters");
+    private static final byte[] BATTERY_PCT = ascii("batteryPct");
+    private static final byte[] LOW_BATTERY = ascii("lowBattery");
+
+    private static final byte[] OUT_VEHICLE_ID = ascii("\"vehicleId\":");
+    private static final byte[] OUT_TS = ascii("\"ts\":");
+    private static final byte[] OUT_TRACKING = ascii(",\"tracking\":");
+    private static final byte[] OUT_BATTERY = ascii(",\"battery\":");
+    private static final byte[] OUT_ACTIVE = ascii(",\"active\":");
+    private static final byte[] OUT_STALE = ascii(",\"stale\":");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    private RawSnapshotJson() {}
+
+    /** One snapshot object; the array is kept as-is (no copy) when it holds nothing else. */
+    public static RawSnapshot parse(byte[] data) {
+        Cursor c = new Cursor(data);
+        RawSnapshot s = readSnapshot(c);
+        c.skipWs();
+        if (c.i != data.length) {
+            throw c.error("trailing data");
+        }
+        return s;
+    }
+
+    /** A batch frame: JSON array of snapshot objects, each copied out of the frame. */
+    public static List<RawSnapshot> parseArray(byte[] data) {
+        Cursor c = new Cursor(data);
+        c.skipWs();
+        c.expect('[');
+        List<RawSnapshot> out = new ArrayList<>();
+        c.skipWs();
+        if (c.peek() == ']') {
+            c.i++;
+        } else {
+            while (true) {
+                out.add(readSnapshot(c));
+                c.skipWs();
+                byte b = c.next();
+                if (b == ']') {
+                    break;
+                }
+                if (b != ',') {
+                    throw c.error("expected , or ]");
+                }
+            }
+        }
+        c.skipWs();
+        if (c.i != data.length) {
+            throw c.error("trailing data");
+        }
+        return out;
+    }
+
+    /** True if the status carries no decoded snapshot, so {@link #write} can render all of it. */
+    public static boolean canWrite(VehicleStatus vs) {
+        return vs.tracking == null && vs.battery == null;
+    }
+
+    public static byte[] write(VehicleStatus vs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint(vs));
+        write(vs, out);
+        return out.toByteArray();
+    }
+
+    public static byte[] writeAll(List<VehicleStatus> statuses) {
+        int size = 2;
+        for (VehicleStatus vs : statuses) {
+            size += sizeHint(vs) + 1;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < statuses.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            write(statuses.get(i), out);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    // ---- writing ----
+
+    private static void write(VehicleStatus vs, ByteArrayOutputStream out) {
+        out.write('{');
+        if (vs.vehicleId != null) {
+            out.writeBytes(OUT_VEHICLE_ID);
+            writeString(vs.vehicleId, out);
+            out.write(',');
+        }
+        out.writeBytes(OUT_TS);
+        out.writeBytes(ascii(Long.toString(vs.ts)));
+        if (vs.trackingRaw != null) {
+            out.writeBytes(OUT_TRACKING);
+            out.writeBytes(vs.trackingRaw.json);
+        }
+        if (vs.batteryRaw != null) {
+            out.writeBytes(OUT_BATTERY);
+            out.writeBytes(vs.batteryRaw.json);
+        }
+        out.writeBytes(OUT_ACTIVE);
+        out.writeBytes(vs.active ? TRUE : FALSE);
+        out.writeBytes(OUT_STALE);
+        out.writeBytes(vs.stale ? TRUE : FALSE);
+        out.write('}');
+    }
+
+    private static void writeString(String s, ByteArrayOutputStream out) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                sb.append(String.format("\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        out.writeBytes(sb.append('"').toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int sizeHint(VehicleStatus vs) {
+        return 96 + (vs.trackingRaw != null ? vs.trackingRaw.json.length : 0)
+                + (vs.batteryRaw != null ? vs.batteryRaw.json.length : 0);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // ---- reading ----
+
+    private static RawSnapshot readSnapshot(Cursor c) {
+        c.skipWs();
+        int start = c.i;
+        c.expect('{');
+        String vehicleId = null;
+        long ts = 0;
+        boolean active = false;
+        boolean stale = false;
+        long startedAt = 0;
+        double distanceMeters = 0;
+        Integer batteryPct = null;
+        boolean lowBattery = false;
+
+        c.skipWs();
+        if (c.peek() == '}') {
+            c.i++;
+        } else {
+            while (true) {
+                c.skipWs();
+                int keyStart = c.i + 1;
+                c.skipString();
+                int keyEnd = c.i - 1;
+                c.skipWs();
+                c.expect(':');
+                c.skipWs();
+
+                if (c.keyIs(keyStart, keyEnd, VEHICLE_ID)) {
+                    vehicleId = c.peek() == 'n' ? c.readNull() : c.readString();
+                } else if (c.keyIs(keyStart, keyEnd, TS)) {
+                    ts = c.readLong();
+                } else if (c.keyIs(keyStart, keyEnd, ACTIVE)) {
+                    active = c.readBoolean();
+                } else if (c.keyIs(keyStart, keyEnd, STALE)) {
+                    stale = c.readBoolean();
+                } else if (c.keyIs(keyStart, keyEnd, STARTED_AT)) {
+                    startedAt = c.readLong();
+                } else if (c.keyIs(keyStart, keyEnd, DISTANCE_METERS)) {
+                    distanceMeters = c.readDouble();
+                } else if (c.keyIs(keyStart, keyEnd, BATTERY_PCT)) {
+                    if (c.peek() == 'n') {
+                        c.readNull();
+                    } else {
+                        batteryPct = (int) c.readLong();
+                    }
+                } else if (c.keyIs(keyStart, keyEnd, LOW_BATTERY)) {
+                    lowBattery = c.readBoolean();
+                } else {
+                    c.skipValue(1);
+                }
+
+                c.skipWs();
+                byte b = c.next();
+                if (b == '}') {
+                    break;
+                }
+                if (b != ',') {
+                    throw c.error("expected , or }");
+                }
+            }
+        }
+
+        byte[] json = start == 0 && c.i == c.b.length ? c.b : Arrays.copyOfRange(c.b, start, c.i);
+        return new RawSnapshot(vehicleId, ts, active, stale, startedAt, distanceMeters, batteryPct, lowBattery, json);
+    }
+
+    private static final class Cursor {
+        final byte[] b;
+        int i;
+
+        Cursor(byte[] b) {
+            this.b = b;
+        }
+
+        byte peek() {
+            if (i >= b.length) {
+                throw error("unexpected end");
+            }
+            return b[i];
+        }
+
+        byte next() {
+            byte x = peek();
+            i++;
+            return x;
+        }
+
+        void expect(char ch) {
+            if (next() != ch) {
+                throw error("expected " + ch);
+            }
+        }
+
+        void skipWs() {
+            while (i < b.length && (b[i] == ' ' || b[i] == '\n' || b[i] == '\r' || b[i] == '\t')) {
+                i++;
+            }
+        }
+
+        boolean keyIs(int from, int to, byte[] name) {
+            return Arrays.equals(b, from, to, name, 0, name.length);
+        }
+
+        void skipValue(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw error("nesting too deep");
+            }
+            switch (peek()) {
+                case '"' -> skipString();
+                case '{' -> skipContainer('}', true, depth);
+                case '[' -> skipContainer(']', false, depth);
+                case 't' -> literal("true");
+                case 'f' -> literal("false");
+                case 'n' -> literal("null");
+                default -> skipNumber();
+            }
+        }
+
+        void skipContainer(char close, boolean object, int depth) {
+            i++;
+            skipWs();
+            if (peek() == close) {
+                i++;
+                return;
+            }
+            while (true) {
+                skipWs();
+                if (object) {
+                    skipString();
+                    skipWs();
+                    expect(':');
+                    skipWs();
+                }
+                skipValue(depth + 1);
+                skipWs();
+                byte x = next();
+                if (x == close) {
+                    return;
+                }
+                if (x != ',') {
+                    throw error("expected , or " + close);
+                }
+            }
+        }
+
+        void skipString() {
+            expect('"');
+            while (true) {
+                byte x = next();
+                if (x == '"') {
+                    return;
+                }
+                if (x == '\\') {
+                    next();
+                } else if (x >= 0 && x < 0x20) {
+                    throw error("control character in string");
+                }
+            }
+        }
+
+        String readString() {
+            int start = i + 1;
+            skipString();
+            int end = i - 1;
+            for (int k = start; k < end; k++) {
+                if (b[k] == '\\') {
+                    return unescape(start, end);
+                }
+            }
+            return new String(b, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        private String unescape(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            int run = start;
+            for (int k = start; k < end; k++) {
+                if (b[k] != '\\') {
+                    continue;
+                }
+                sb.append(new String(b, run, k - run, StandardCharsets.UTF_8));
+                char e = (char) b[++k];
+                switch (e) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'u' -> {
+                        if (k + 4 >= end) {
+                            throw error("bad \\u escape");
+                        }
+                        sb.append((char) Integer.parseInt(new String(b, k + 1, 4, StandardCharsets.US_ASCII), 16));
+                        k += 4;
+                    }
+                    default -> sb.append(e);
+                }
+                run = k + 1;
+            }
+            sb.append(new String(b, run, end - run, StandardCharsets.UTF_8));
+            return sb.toString();
+        }
+
+        long readLong() {
+            if (peek() == 'n') {
+                literal("null");
+                return 0;
+            }
+            int start = i;
+            boolean integral = skipNumber();
+            String n = new String(b, start, i - start, StandardCharsets.US_ASCII);
+            return integral ? Long.parseLong(n) : (long) Double.parseDouble(n);
+        }
+
+        double readDouble() {
+            if (peek() == 'n') {
+                literal("null");
+                return 0;
+            }
+            int start = i;
+            skipNumber();
+            return Double.parseDouble(new String(b, start, i - start, StandardCharsets.US_ASCII));
+        }
+
+        boolean readBoolean() {
+            switch (peek()) {
+                case 't' -> {
+                    literal("true");
+                    return true;
+                }
+                case 'f' -> literal("false");
+                default -> literal("null");
+            }
+            return false;
+        }
+
+        String readNull() {
+            literal("null");
+            return null;
+        }
+
+        /** @return true if the number has no fraction or exponent */
+        boolean skipNumber() {
+            int start = i;
+            boolean integral = true;
+            if (i < b.length && b[i] == '-') {
+                i++;
+            }
+            while (i < b.length) {
+                byte x = b[i];
+                if (x >= '0' && x <= '9') {
+                    i++;
+                } else if (x == '.' || x == 'e' || x == 'E' || x == '+' || x == '-') {
+                    integral = false;
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            if (i == start || (i == start + 1 && b[start] == '-')) {
+                throw error("expected a value");
+            }
+            return integral;
+        }
+
+        void literal(String word) {
+            for (int k = 0; k < word.length(); k++) {
+                if (next() != word.charAt(k)) {
+                    throw error("expected " + word);
+                }
+            }
+        }
+
+        IllegalArgumentException error(String what) {
+            return new IllegalArgumentException(what + " at offset " + i);
+        }
+    }
+}
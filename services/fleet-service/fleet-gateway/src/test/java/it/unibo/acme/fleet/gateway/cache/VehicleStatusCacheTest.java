@@ -0,0 +1,229 @@
+package it.unibo.acme.fleet.gateway.cache;
+
+import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
+import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("VehicleStatusCache – merged per-vehicle status")
+class VehicleStatusCacheTest {
+
+    @Test
+    void merges_tracking_and_battery_into_one_status() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        cache.upsertTracking(tracking("V001", true, false));
+
+        VehicleStatus onlyTracking = cache.get("V001");
+        assertTrue(onlyTracking.active);
+        assertTrue(onlyTracking.stale, "battery missing -> stale");
+        assertNull(onlyTracking.battery);
+
+        cache.upsertBattery(battery("V001", false, false));
+        VehicleStatus both = cache.get("V001");
+        assertNotSame(onlyTracking, both);
+        assertTrue(both.active);
+        assertFalse(both.stale);
+        assertNotNull(both.tracking);
+        assertNotNull(both.battery);
+        // the previously returned status is left untouched
+        assertNull(onlyTracking.battery);
+
+        cache.upsertTracking(tracking("V001", false, true));
+        VehicleStatus updated = cache.get("V001");
+        assertFalse(updated.active);
+        assertTrue(updated.stale);
+        assertSame(both.battery, updated.battery);
+    }
+
+    @Test
+    void reads_return_the_cached_instance() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        cache.upsertBattery(battery("V002", true, false));
+        assertSame(cache.get("V002"), cache.get("V002"));
+    }
+
+    @Test
+    void unknown_vehicle_is_stale_and_not_cached() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        VehicleStatus vs = cache.get("V404");
+        assertEquals("V404", vs.vehicleId);
+        assertFalse(vs.active);
+        assertTrue(vs.stale);
+        assertTrue(cache.listAll().isEmpty());
+    }
+
+    @Test
+    void list_contains_vehicles_with_a_single_snapshot_type() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.upsertBattery(battery("V002", true, false));
+        cache.upsertTracking(tracking("V003", true, false));
+        cache.upsertBattery(battery("V003", true, false));
+
+        List<VehicleStatus> all = cache.listAll();
+        assertEquals(3, all.size());
+    }
+
+    @Test
+    void older_snapshots_do_not_replace_newer_ones() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        TrackingSnapshot live = tracking("V001", true, false);
+        live.ts = 2000;
+        cache.upsertTracking(live);
+
+        // a warm-up dump entry taken before the live snapshot
+        TrackingSnapshot dumped = tracking("V001", false, false);
+        dumped.ts = 1000;
+        cache.upsertTracking(dumped);
+
+        assertSame(live, cache.get("V001").tracking);
+        assertTrue(cache.get("V001").active);
+    }
+
+    @Test
+    void silent_active_vehicles_become_stale_at_read_time() {
+        long[] now = {1_000};
+        VehicleStatusCache cache = new VehicleStatusCache(10_000, 0, () -> now[0]);
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.upsertBattery(battery("V001", true, false));
+        cache.upsertTracking(tracking("V002", false, false));
+        cache.upsertBattery(battery("V002", false, false));
+        assertFalse(cache.get("V001").stale);
+        assertEquals(0, cache.staleCount());
+
+        now[0] = 11_000;
+        cache.upsertBattery(battery("V001", true, false));
+        now[0] = 11_001;
+        // tracking went silent 10 s ago, battery is fresh: stale anyway
+        assertTrue(cache.get("V001").stale);
+        // parked vehicles are expected to be silent
+        assertFalse(cache.get("V002").stale);
+        assertEquals(1, cache.staleCount());
+        assertTrue(cache.listAll().stream().anyMatch(vs -> vs.vehicleId.equals("V001") && vs.stale));
+
+        cache.upsertTracking(tracking("V001", true, false));
+        assertFalse(cache.get("V001").stale);
+    }
+
+    @Test
+    void sweep_marks_silent_vehicles_and_evicts_old_ones() {
+        long[] now = {0};
+        VehicleStatusCache cache = new VehicleStatusCache(10_000, 60_000, () -> now[0]);
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.upsertBattery(battery("V001", true, false));
+        cache.upsertTracking(tracking("V002", false, false));
+        assertTrue(cache.sweep().isEmpty());
+
+        now[0] = 9_000;
+        cache.upsertBattery(battery("V001", true, false));
+        cache.upsertTracking(tracking("V001", true, false));
+        now[0] = 10_000;
+        assertTrue(cache.sweep().isEmpty(), "V001 was refreshed");
+
+        now[0] = 19_000;
+        List<VehicleStatus> marked = cache.sweep();
+        assertEquals(1, marked.size());
+        assertEquals("V001", marked.get(0).vehicleId);
+        assertSame(marked.get(0), cache.get("V001"), "flag stored, reads no longer copy");
+        assertTrue(cache.sweep().isEmpty(), "marked once");
+
+        now[0] = 60_000;
+        cache.sweep();
+        assertEquals(1, cache.size(), "V002 not updated for 60 s: evicted");
+        now[0] = 69_000;
+        cache.sweep();
+        assertEquals(0, cache.size());
+
+        cache.upsertTracking(tracking("V002", false, false));
+        now[0] = 129_000;
+        cache.sweep();
+        assertEquals(0, cache.size(), "a vehicle coming back is tracked again");
+    }
+
+    @Test
+    void refreshing_one_half_keeps_the_silent_half_stale() {
+        long[] now = {0};
+        VehicleStatusCache cache = new VehicleStatusCache(10_000, 0, () -> now[0]);
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.upsertBattery(battery("V001", true, false));
+        cache.sweep();
+
+        now[0] = 10_000;
+        assertEquals(1, cache.sweep().size());
+
+        now[0] = 11_000;
+        VehicleStatus refreshed = cache.upsertBattery(battery("V001", true, false));
+        assertTrue(refreshed.stale, "tracking is still silent");
+        assertTrue(cache.sweep().isEmpty(), "already marked");
+    }
+
+    @Test
+    void sweep_is_due_again_at_the_next_deadline_of_a_fresh_half() {
+        long[] now = {0};
+        VehicleStatusCache cache = new VehicleStatusCache(10_000, 0, () -> now[0]);
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.sweep();
+        now[0] = 5_000;
+        cache.upsertBattery(battery("V001", true, false));
+
+        now[0] = 10_000;
+        assertEquals(1, cache.sweep().size(), "tracking went silent");
+
+        now[0] = 12_000;
+        cache.upsertTracking(tracking("V001", true, false));
+        assertFalse(cache.get("V001").stale);
+
+        // battery received at 5 s goes stale at 15 s, before the 20 s recheck
+        now[0] = 15_000;
+        List<VehicleStatus> marked = cache.sweep();
+        assertEquals(1, marked.size());
+        assertTrue(marked.get(0).stale);
+    }
+
+    @Test
+    void unwatched_vehicles_stay_stale_until_both_halves_are_received_again() {
+        long[] now = {1_000};
+        VehicleStatusCache cache = new VehicleStatusCache(60_000, 0, () -> now[0]);
+        cache.upsertTracking(tracking("V001", true, false));
+        cache.upsertBattery(battery("V001", true, false));
+        cache.upsertTracking(tracking("V002", true, false));
+        cache.upsertBattery(battery("V002", true, false));
+
+        now[0] = 2_000;
+        List<VehicleStatus> marked = cache.markUnwatchedExcept(Set.of("V002"));
+        assertEquals(1, marked.size());
+        assertEquals("V001", marked.get(0).vehicleId);
+        assertTrue(cache.get("V001").stale, "interest lapsed: the cached entry is outdated");
+        assertFalse(cache.get("V002").stale, "still received");
+        assertTrue(cache.markUnwatchedExcept(Set.of("V002")).isEmpty(), "marked once");
+
+        now[0] = 3_000;
+        cache.upsertTracking(tracking("V001", true, false));
+        assertTrue(cache.get("V001").stale, "battery half not refreshed yet");
+        cache.upsertBattery(battery("V001", true, false));
+        assertFalse(cache.get("V001").stale);
+        assertEquals(0, cache.staleCount());
+    }
+
+    private static TrackingSnapshot tracking(String id, boolean active, boolean stale) {
+        TrackingSnapshot s = new TrackingSnapshot();
+        s.vehicleId = id;
+        s.active = active;
+        s.stale = stale;
+        return s;
+    }
+
+    private static BatterySnapshot battery(String id, boolean active, boolean stale) {
+        BatterySnapshot s = new BatterySnapshot();
+        s.vehicleId = id;
+        s.active = active;
+        s.stale = stale;
+        return s;
+    }
+}
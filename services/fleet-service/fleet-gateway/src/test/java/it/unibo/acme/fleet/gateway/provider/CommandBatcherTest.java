@@ -0,0 +1,105 @@
+package it.unibo.acme.fleet.gateway.provider;
+
+import it.unibo.acme.fleet.gateway.model.BatchCommand;
+import it.unibo.acme.fleet.gateway.model.CommandResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CommandBatcher – coalescing start/stop commands")
+class CommandBatcherTest {
+
+    @Test
+    void commands_within_the_window_share_one_batch() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        List<List<BatchCommand>> sent = new CopyOnWriteArrayList<>();
+        try {
+            CommandBatcher batcher = new CommandBatcher(50, 100, scheduler, batch -> {
+                sent.add(batch);
+                return CompletableFuture.completedFuture(okAll(batch));
+            });
+            List<CompletableFuture<CommandResponse>> replies = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                replies.add(batcher.submit(cmd("V" + i)));
+            }
+            for (int i = 0; i < 10; i++) {
+                CommandResponse r = replies.get(i).get(2, TimeUnit.SECONDS);
+                assertEquals("V" + i, r.vehicleId);
+                assertEquals("OK", r.status);
+            }
+            assertEquals(1, sent.size());
+            assertEquals(10, sent.get(0).size());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void full_batch_is_sent_without_waiting_for_the_window() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        List<List<BatchCommand>> sent = new CopyOnWriteArrayList<>();
+        try {
+            CommandBatcher batcher = new CommandBatcher(60_000, 4, scheduler, batch -> {
+                sent.add(batch);
+                return CompletableFuture.completedFuture(okAll(batch));
+            });
+            List<CompletableFuture<CommandResponse>> replies = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                replies.add(batcher.submit(cmd("V" + i)));
+            }
+            for (CompletableFuture<CommandResponse> r : replies) {
+                assertEquals("OK", r.get(2, TimeUnit.SECONDS).status);
+            }
+            assertEquals(2, sent.size());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void failed_or_short_replies_answer_every_waiter_with_an_error() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CommandBatcher failing = new CommandBatcher(1, 100, scheduler,
+                    batch -> CompletableFuture.failedFuture(new IllegalStateException("boom")));
+            CommandResponse r = failing.submit(cmd("V1")).get(2, TimeUnit.SECONDS);
+            assertEquals("ERROR", r.status);
+            assertEquals("V1", r.vehicleId);
+
+            // the service answered only the first command
+            CommandBatcher shortReply = new CommandBatcher(20, 100, scheduler,
+                    batch -> CompletableFuture.completedFuture(okAll(batch.subList(0, 1))));
+            CompletableFuture<CommandResponse> a = shortReply.submit(cmd("V1"));
+            CompletableFuture<CommandResponse> b = shortReply.submit(cmd("V2"));
+            assertEquals("OK", a.get(2, TimeUnit.SECONDS).status);
+            assertEquals("ERROR", b.get(2, TimeUnit.SECONDS).status);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static BatchCommand cmd(String vehicleId) {
+        BatchCommand c = new BatchCommand();
+        c.op = BatchCommand.START;
+        c.vehicleId = vehicleId;
+        c.ts = 1;
+        return c;
+    }
+
+    private static List<CommandResponse> okAll(List<BatchCommand> batch) {
+        List<CommandResponse> out = new ArrayList<>();
+        for (BatchCommand c : batch) {
+            out.add(CommandResponse.ok(c.vehicleId, "started"));
+        }
+        return out;
+    }
+}
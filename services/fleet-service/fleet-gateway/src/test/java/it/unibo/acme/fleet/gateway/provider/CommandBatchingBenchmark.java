@@ -0,0 +1,143 @@
+package it.unibo.acme.fleet.gateway.provider;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import it.unibo.acme.fleet.gateway.model.CommandBatchResponse;
+import it.unibo.acme.fleet.gateway.model.CommandResponse;
+import it.unibo.acme.fleet.gateway.model.StartBatteryCommand;
+import it.unibo.acme.fleet.gateway.model.StartTrackingCommand;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gateway side of a start burst (a morning rush): {@code COMMANDS} vehicles started at once,
+ * one tracking and one battery command each, per-command requests vs the batched path.
+ *
+ * The connection answers every request immediately with a prepared OK reply, so what is
+ * measured is the gateway's own cost (serialization, batching, reply mapping) and the number
+ * of NATS requests; broker and service per-message overhead, the reason for batching, is
+ * not modelled.
+ *
+ * Excluded from the default build, run with:
+ * <pre>
+ *   mvn test -pl fleet-gateway -am -Dtest=CommandBatchingBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ */
+@DisplayName("CommandBatchingBenchmark – start burst throughput, per-command vs batched")
+class CommandBatchingBenchmark {
+
+    private static final int COMMANDS = 10_000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 15;
+    private static final byte[] OP = "\"op\":".getBytes(StandardCharsets.UTF_8);
+
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private final LongAdder requests = new LongAdder();
+    private final byte[] singleReply = jsonb.toJson(CommandResponse.ok("V", "started")).getBytes(StandardCharsets.UTF_8);
+    private final Map<Integer, byte[]> batchReplies = new ConcurrentHashMap<>();
+
+    private Connection instantReplies() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("requestWithTimeout")) {
+                        return null;
+                    }
+                    requests.increment();
+                    String subject = (String) args[0];
+                    byte[] data = subject.endsWith(".batch")
+                            ? batchReplies.computeIfAbsent(count((byte[]) args[1], OP), this::batchReply)
+                            : singleReply;
+                    Message reply = NatsMessage.builder().subject("_INBOX.reply").data(data).build();
+                    return CompletableFuture.completedFuture(reply);
+                });
+    }
+
+    private byte[] batchReply(int n) {
+        CommandBatchResponse r = new CommandBatchResponse();
+        r.results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            r.results.add(CommandResponse.ok("V", "started"));
+        }
+        return jsonb.toJson(r).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int count(byte[] data, byte[] needle) {
+        int n = 0;
+        outer:
+        for (int i = 0; i + needle.length <= data.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (data[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            n++;
+        }
+        return n;
+    }
+
+    private NatsCommandProvider provider(long batchWindowMs) {
+        return new NatsCommandProvider(instantReplies(), jsonb,
+                "cmd.tracking.start", "cmd.tracking.stop", "cmd.battery.start", "cmd.battery.stop",
+                "cmd.tracking.batch", "cmd.battery.batch",
+                2000, batchWindowMs, 256, "event.fleet.demand", 30_000);
+    }
+
+    @Test
+    void start_burst() throws Exception {
+        System.out.printf("%-22s %10s %10s %14s %14s%n", "path", "median ms", "min ms", "commands/s", "NATS requests");
+        run("per-command", provider(0));
+        NatsCommandProvider batched = provider(2);
+        try {
+            run("batched (2 ms, 256)", batched);
+        } finally {
+            batched.shutdown();
+        }
+    }
+
+    private void run(String path, NatsCommandProvider p) throws Exception {
+        long[] nanos = new long[ROUNDS];
+        for (int r = -WARMUP; r < ROUNDS; r++) {
+            requests.reset();
+            List<CompletableFuture<CommandResponse>> replies = new ArrayList<>(2 * COMMANDS);
+            long t0 = System.nanoTime();
+            for (int v = 0; v < COMMANDS; v++) {
+                StartTrackingCommand t = new StartTrackingCommand();
+                t.vehicleId = "V" + v;
+                t.ts = 1_760_000_000_000L;
+                replies.add(p.requestTrackingStart(t));
+                StartBatteryCommand b = new StartBatteryCommand();
+                b.vehicleId = t.vehicleId;
+                b.ts = t.ts;
+                replies.add(p.requestBatteryStart(b));
+            }
+            CompletableFuture.allOf(replies.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - t0;
+            for (CompletableFuture<CommandResponse> f : replies) {
+                assertEquals("OK", f.join().status);
+            }
+            if (r >= 0) {
+                nanos[r] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        long median = nanos[ROUNDS / 2];
+        System.out.printf("%-22s %10.1f %10.1f %14.0f %14d%n", path, median / 1e6, nanos[0] / 1e6,
+                2 * COMMANDS / (median / 1e9), requests.sum());
+    }
+}
@@ -0,0 +1,60 @@
+package it.unibo.acme.fleet.gateway.provider;
+
+import io.nats.client.Connection;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("NatsCommandProvider – demand signal throttling")
+class NatsCommandProviderTest {
+
+    private static final long TTL = 30_000;
+
+    private final List<String> published = new ArrayList<>();
+
+    private NatsCommandProvider provider() {
+        Connection nats = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("publish")) {
+                        published.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return new NatsCommandProvider(nats, JsonbBuilder.create(),
+                "cmd.tracking.start", "cmd.tracking.stop", "cmd.battery.start", "cmd.battery.stop",
+                "cmd.tracking.batch", "cmd.battery.batch",
+                2000, 0, 256, "event.fleet.demand", TTL);
+    }
+
+    @Test
+    void demand_is_sent_once_per_half_ttl_per_vehicle() {
+        NatsCommandProvider p = provider();
+        p.signalDemand("V001", 1_000);
+        p.signalDemand("V001", 1_000 + TTL / 2 - 1);
+        p.signalDemand("V002", 2_000);
+        assertEquals(2, published.size());
+
+        p.signalDemand("V001", 1_000 + TTL / 2);
+        assertEquals(3, published.size());
+        assertTrue(published.stream().allMatch("event.fleet.demand"::equals));
+    }
+
+    @Test
+    void entries_of_ids_never_asked_again_are_pruned() {
+        NatsCommandProvider p = provider();
+        for (int i = 0; i < 1000; i++) {
+            p.signalDemand("TYPO-" + i, 1_000 + i);
+        }
+        assertEquals(1000, p.demandEntries());
+
+        // one ttl later only the vehicle still being polled is remembered
+        p.signalDemand("V001", 1_000 + TTL + 1_000);
+        assertEquals(1, p.demandEntries());
+    }
+}
@@ -0,0 +1,159 @@
+package it.unibo.acme.fleet.gateway.resource;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.impl.NatsMessage;
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import it.unibo.acme.fleet.gateway.model.CommandResponse;
+import it.unibo.acme.fleet.gateway.model.StartRequest;
+import it.unibo.acme.fleet.gateway.model.StartStopResult;
+import it.unibo.acme.fleet.gateway.model.StopRequest;
+import it.unibo.acme.fleet.gateway.provider.NatsCommandProvider;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FleetGatewayResource – start/stop fan-out to tracking and battery, 502 on partial failure")
+class FleetGatewayResourceTest {
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    /** Reply futures of the NATS requests, by subject, completed by each test. */
+    private final Map<String, CompletableFuture<Message>> replies = new ConcurrentHashMap<>();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    @AfterAll
+    static void close() throws Exception {
+        JSONB.close();
+    }
+
+    private FleetGatewayCapability capability() {
+        Connection nats = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("requestWithTimeout")) {
+                        requested.add((String) args[0]);
+                        return replies.computeIfAbsent((String) args[0], s -> new CompletableFuture<>());
+                    }
+                    return null;
+                });
+        MetricRegistry metrics = (MetricRegistry) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MetricRegistry.class}, (proxy, method, args) -> null);
+        // batch window 0: one request per command, as the fan-out is the point here
+        NatsCommandProvider commands = new NatsCommandProvider(nats, JSONB,
+                "cmd.tracking.start", "cmd.tracking.stop", "cmd.battery.start", "cmd.battery.stop",
+                "cmd.tracking.batch", "cmd.battery.batch",
+                2000, 0, 256, "event.fleet.demand", 30_000);
+        return new FleetGatewayCapability(commands, 10, 16, 0, 0, "UTC", metrics);
+    }
+
+    private static Message reply(CommandResponse r) {
+        return NatsMessage.builder().subject("_INBOX.reply")
+                .data(JSONB.toJson(r).getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private void answer(String subject, CommandResponse r) {
+        replies.computeIfAbsent(subject, s -> new CompletableFuture<>()).complete(reply(r));
+    }
+
+    private void fail(String subject, Throwable err) {
+        replies.computeIfAbsent(subject, s -> new CompletableFuture<>()).completeExceptionally(err);
+    }
+
+    /** AsyncResponse that records what the resource resumed it with. */
+    private static AsyncResponse async(CompletableFuture<Object> resumed) {
+        return (AsyncResponse) Proxy.newProxyInstance(FleetGatewayResourceTest.class.getClassLoader(),
+                new Class<?>[] {AsyncResponse.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("resume")) {
+                        return resumed.complete(args[0]);
+                    }
+                    return method.getReturnType() == boolean.class ? false : null;
+                });
+    }
+
+    @Test
+    void both_commands_are_in_flight_before_either_reply() throws Exception {
+        FleetGatewayCapability cap = capability();
+        StartRequest req = new StartRequest();
+        req.stationId = "S01";
+        CompletableFuture<StartStopResult> result = cap.start("V001", req);
+
+        assertEquals(List.of("cmd.tracking.start", "cmd.battery.start"), requested);
+        assertFalse(result.isDone());
+
+        // replies in any order: the result waits for the slower one
+        answer("cmd.battery.start", CommandResponse.ok("V001", "battery started"));
+        assertFalse(result.isDone());
+        answer("cmd.tracking.start", CommandResponse.ok("V001", "tracking started"));
+
+        StartStopResult r = result.get(1, TimeUnit.SECONDS);
+        assertEquals("OK", r.status);
+        assertEquals("START completed", r.message);
+        assertEquals("tracking started", r.tracking.message);
+        assertEquals("battery started", r.battery.message);
+    }
+
+    @Test
+    void a_timed_out_service_makes_the_merged_result_an_error() throws Exception {
+        FleetGatewayCapability cap = capability();
+        CompletableFuture<StartStopResult> result = cap.stop("V001", new StopRequest());
+
+        answer("cmd.tracking.stop", CommandResponse.ok("V001", "tracking stopped"));
+        fail("cmd.battery.stop", new TimeoutException());
+
+        StartStopResult r = result.get(1, TimeUnit.SECONDS);
+        assertEquals("ERROR", r.status);
+        assertEquals("STOP partially failed (check per-service responses)", r.message);
+        assertEquals("OK", r.tracking.status);
+        assertEquals("ERROR", r.battery.status);
+        assertTrue(r.battery.message.contains("timeout after 2000 ms"), r.battery.message);
+    }
+
+    @Test
+    void partial_failure_resumes_the_request_with_502() throws Exception {
+        FleetGatewayResource resource = new FleetGatewayResource(capability());
+        CompletableFuture<Object> resumed = new CompletableFuture<>();
+        resource.start("V001", new StartRequest(), async(resumed));
+        assertFalse(resumed.isDone(), "suspended until both services answered");
+
+        answer("cmd.tracking.start", CommandResponse.error("V001", "unknown vehicle"));
+        answer("cmd.battery.start", CommandResponse.ok("V001", "battery started"));
+
+        Response response = (Response) resumed.get(1, TimeUnit.SECONDS);
+        assertEquals(502, response.getStatus());
+        StartStopResult r = (StartStopResult) response.getEntity();
+        assertEquals("ERROR", r.status);
+        assertEquals("unknown vehicle", r.tracking.message);
+        assertEquals("OK", r.battery.status);
+    }
+
+    @Test
+    void success_resumes_the_request_with_200() throws Exception {
+        FleetGatewayResource resource = new FleetGatewayResource(capability());
+        CompletableFuture<Object> resumed = new CompletableFuture<>();
+        resource.stop("V001", new StopRequest(), async(resumed));
+
+        answer("cmd.battery.stop", CommandResponse.ok("V001", "battery stopped"));
+        answer("cmd.tracking.stop", CommandResponse.ok("V001", "tracking stopped"));
+
+        Response response = (Response) resumed.get(1, TimeUnit.SECONDS);
+        assertEquals(200, response.getStatus());
+        assertEquals("OK", ((StartStopResult) response.getEntity()).status);
+    }
+}
@@ -0,0 +1,170 @@
+package it.unibo.acme.fleet.gateway.stats;
+
+import it.unibo.acme.fleet.gateway.cache.VehicleStatusCache;
+import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
+import it.unibo.acme.fleet.gateway.model.FleetStats;
+import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import it.unibo.acme.fleet.gateway.util.RawSnapshotJson;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FleetAggregates – incremental fleet counters")
+class FleetAggregatesTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @Test
+    void counters_follow_every_cache_change() {
+        long[] now = {10 * DAY + 1000};
+        FleetAggregates stats = new FleetAggregates(ZoneOffset.UTC, () -> now[0]);
+        VehicleStatusCache cache = new VehicleStatusCache(10_000, 60_000, () -> now[0], stats::onChange);
+
+        cache.upsertTracking(tracking("V001", true, now[0], 0, 1));
+        cache.upsertBattery(battery("V001", true, 85, false, 1));
+        cache.upsertTracking(tracking("V002", false, 0, 0, 1));
+        cache.upsertBattery(battery("V002", false, 9, true, 1));
+
+        FleetStats s = stats.snapshot();
+        assertEquals(2, s.vehicles);
+        assertEquals(1, s.active);
+        assertEquals(0, s.stale);
+        assertEquals(1, s.lowBattery);
+        assertEquals(1, (long) s.batteryHistogram.get("80-89"));
+        assertEquals(1, (long) s.batteryHistogram.get("0-9"));
+        assertEquals(0, (long) s.batteryHistogram.get("unknown"));
+
+        // battery drains into the next range: moved, not added
+        cache.upsertBattery(battery("V001", true, 79, false, 2));
+        s = stats.snapshot();
+        assertEquals(0, (long) s.batteryHistogram.get("80-89"));
+        assertEquals(1, (long) s.batteryHistogram.get("70-79"));
+
+        // V001 goes silent: the sweep marks it stale, then V002 is evicted
+        now[0] += 11_000;
+        cache.sweep();
+        assertEquals(1, stats.snapshot().stale);
+        now[0] += 60_000;
+        cache.sweep();
+        s = stats.snapshot();
+        assertEquals(0, s.vehicles);
+        assertEquals(0, s.active);
+        assertEquals(0, s.lowBattery);
+    }
+
+    @Test
+    void distance_today_sums_trip_increments() {
+        long midnight = 20 * DAY;
+        long[] now = {midnight - 60_000};
+        FleetAggregates stats = new FleetAggregates(ZoneOffset.UTC, () -> now[0]);
+        VehicleStatusCache cache = new VehicleStatusCache(0, 0, () -> now[0], stats::onChange);
+
+        // trip started the day before, first seen just before midnight: counted from here on
+        long yesterdayTrip = midnight - DAY - 5_000;
+        cache.upsertTracking(tracking("V001", true, yesterdayTrip, 3000, 1));
+        assertEquals(0, stats.snapshot().distanceTodayMeters, 1e-9);
+        cache.upsertTracking(tracking("V001", true, yesterdayTrip, 3400, 2));
+        assertEquals(400, stats.snapshot().distanceTodayMeters, 1e-9);
+
+        now[0] = midnight + 1000;
+        assertEquals(0, stats.snapshot().distanceTodayMeters, 1e-9, "new day");
+        cache.upsertTracking(tracking("V001", true, yesterdayTrip, 3500, 3));
+        // a battery update doesn't touch the tracking half
+        cache.upsertBattery(battery("V001", true, 50, false, 3));
+        // new trip today
+        cache.upsertTracking(tracking("V001", true, midnight + 2000, 250, 4));
+        // a trip already running when first seen counts if it began today
+        cache.upsertTracking(tracking("V002", true, midnight + 500, 700, 1));
+
+        FleetStats s = stats.snapshot();
+        assertEquals(100 + 250 + 700, s.distanceTodayMeters, 1e-9);
+        assertEquals("1970-01-21", s.day);
+    }
+
+    @Test
+    void incremental_counters_match_a_full_scan() {
+        long[] now = {0};
+        FleetAggregates stats = new FleetAggregates(ZoneOffset.UTC, () -> now[0]);
+        VehicleStatusCache cache = new VehicleStatusCache(5_000, 0, () -> now[0], stats::onChange);
+        Random rnd = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            now[0] += rnd.nextInt(20);
+            String id = "V" + rnd.nextInt(300);
+            if (rnd.nextBoolean()) {
+                cache.upsertTracking(tracking(id, rnd.nextBoolean(), 0, rnd.nextInt(1000), now[0]));
+            } else if (rnd.nextBoolean()) {
+                cache.upsertBattery(battery(id, rnd.nextBoolean(), rnd.nextInt(101), rnd.nextInt(10) == 0, now[0]));
+            } else {
+                String json = "{\"vehicleId\":\"" + id + "\",\"ts\":" + now[0] + ",\"active\":true,\"batteryPct\":"
+                        + rnd.nextInt(101) + ",\"lowBattery\":" + (rnd.nextInt(10) == 0) + ",\"stale\":" + rnd.nextBoolean() + "}";
+                cache.upsertBattery(RawSnapshotJson.parse(json.getBytes(StandardCharsets.UTF_8)));
+            }
+            if (i % 500 == 0) {
+                cache.sweep();
+            }
+        }
+
+        long active = 0, stale = 0, low = 0, unknown = 0;
+        for (VehicleStatus vs : cache.listAll()) {
+            active += vs.active ? 1 : 0;
+            // listAll applies read-time staleness, the counters only what the sweep stored
+            low += (vs.battery != null ? vs.battery.lowBattery : vs.batteryRaw != null && vs.batteryRaw.lowBattery) ? 1 : 0;
+            unknown += vs.battery == null && vs.batteryRaw == null ? 1 : 0;
+        }
+        cache.sweep();
+        for (VehicleStatus vs : cache.listAll()) {
+            stale += vs.stale ? 1 : 0;
+        }
+        FleetStats s = stats.snapshot();
+        assertEquals(cache.size(), s.vehicles, "vehicles");
+        assertEquals(active, s.active, "active");
+        assertEquals(stale, s.stale, "stale");
+        assertEquals(low, s.lowBattery, "low");
+        assertEquals(unknown, (long) s.batteryHistogram.get("unknown"));
+        assertEquals(s.vehicles, s.batteryHistogram.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void prometheus_output_has_one_sample_per_gauge_and_range() {
+        FleetAggregates stats = new FleetAggregates(ZoneOffset.UTC, () -> 0);
+        stats.onChange(null, status());
+        String text = stats.toPrometheus();
+        assertTrue(text.contains("# TYPE fleet_vehicles gauge\nfleet_vehicles 1\n"));
+        assertTrue(text.contains("fleet_battery_vehicles{range=\"90-100\"} 1\n"));
+        assertTrue(text.contains("fleet_battery_vehicles{range=\"unknown\"} 0\n"));
+        assertEquals(11, text.split("fleet_battery_vehicles\\{").length - 1);
+    }
+
+    private static VehicleStatus status() {
+        VehicleStatus vs = new VehicleStatus();
+        vs.vehicleId = "V001";
+        vs.battery = battery("V001", false, 100, false, 1);
+        return vs;
+    }
+
+    private static TrackingSnapshot tracking(String id, boolean active, long startedAt, double meters, long ts) {
+        TrackingSnapshot s = new TrackingSnapshot();
+        s.vehicleId = id;
+        s.ts = ts;
+        s.active = active;
+        s.startedAt = startedAt;
+        s.distanceMeters = meters;
+        return s;
+    }
+
+    private static BatterySnapshot battery(String id, boolean active, int pct, boolean low, long ts) {
+        BatterySnapshot s = new BatterySnapshot();
+        s.vehicleId = id;
+        s.ts = ts;
+        s.active = active;
+        s.batteryPct = pct;
+        s.lowBattery = low;
+        return s;
+    }
+}
@@ -0,0 +1,182 @@
+package it.unibo.acme.fleet.gateway.stream;
+
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StatusStreamHub – fan-out with per-client conflation")
+class StatusStreamHubTest {
+
+    /** Sink whose sends complete only when the test says so. */
+    private static final class SlowSink implements StatusStreamHub.Sink {
+        final List<VehicleStatus> received = new CopyOnWriteArrayList<>();
+        volatile CompletableFuture<Void> gate = new CompletableFuture<>();
+        volatile boolean closed;
+
+        @Override
+        public CompletionStage<?> send(VehicleStatus status) {
+            received.add(status);
+            return gate;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        void release() {
+            CompletableFuture<Void> g = gate;
+            gate = new CompletableFuture<>();
+            g.complete(null);
+        }
+    }
+
+    @Test
+    void slow_client_gets_the_latest_status_per_vehicle() throws Exception {
+        StatusStreamHub hub = new StatusStreamHub(10, 100);
+        SlowSink sink = new SlowSink();
+        assertTrue(hub.subscribe(Set.of("V001", "V002"), sink, List.of()));
+
+        hub.publish(status("V001", 1));
+        waitFor(() -> sink.received.size() == 1);
+
+        // first send still in flight: these conflate
+        for (int ts = 2; ts <= 50; ts++) {
+            hub.publish(status("V001", ts));
+        }
+        hub.publish(status("V002", 7));
+        hub.publish(status("V003", 1)); // not watched
+
+        sink.release();
+        waitFor(() -> sink.received.size() == 3);
+        assertEquals(50, sink.received.get(1).ts);
+        assertEquals("V002", sink.received.get(2).vehicleId);
+        assertEquals(48, hub.conflated());
+        hub.shutdown();
+    }
+
+    @Test
+    void fleet_client_buffer_is_bounded() throws Exception {
+        StatusStreamHub hub = new StatusStreamHub(10, 4);
+        SlowSink sink = new SlowSink();
+        assertTrue(hub.subscribe(Set.of(), sink, List.of()));
+
+        hub.publish(status("V000", 1));
+        waitFor(() -> sink.received.size() == 1);
+        for (int i = 1; i <= 10; i++) {
+            hub.publish(status("V" + i, 1));
+        }
+        assertEquals(6, hub.dropped());
+
+        sink.release();
+        waitFor(() -> sink.received.size() == 5);
+        // the newest four survived
+        assertEquals("V7", sink.received.get(1).vehicleId);
+        assertEquals("V10", sink.received.get(4).vehicleId);
+        hub.shutdown();
+    }
+
+    @Test
+    void closed_clients_are_removed_and_capacity_is_enforced() throws Exception {
+        StatusStreamHub hub = new StatusStreamHub(1, 10);
+        SlowSink first = new SlowSink();
+        assertTrue(hub.subscribe(Set.of("V001"), first, List.of(status("V001", 1))));
+        assertFalse(hub.subscribe(Set.of("V001"), new SlowSink(), List.of()), "hub full");
+
+        waitFor(() -> first.received.size() == 1);
+        first.closed = true;
+        first.release();
+        waitFor(() -> hub.clients() == 0);
+        assertTrue(hub.streamedVehicles().isEmpty());
+
+        assertTrue(hub.subscribe(Set.of("V001"), new SlowSink(), List.of()));
+        hub.shutdown();
+    }
+
+    @Test
+    void a_client_blocked_in_send_does_not_hold_up_the_others() throws Exception {
+        StatusStreamHub hub = new StatusStreamHub(100, 10);
+        CountDownLatch unblock = new CountDownLatch(1);
+        List<BlockingSink> stalled = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            BlockingSink s = new BlockingSink(unblock);
+            stalled.add(s);
+            assertTrue(hub.subscribe(Set.of(), s, List.of()));
+        }
+        SlowSink healthy = new SlowSink();
+        healthy.gate.complete(null);
+        assertTrue(hub.subscribe(Set.of("V001"), healthy, List.of()));
+
+        hub.publish(status("V001", 1));
+        waitFor(() -> stalled.stream().allMatch(s -> s.entered.getCount() == 0));
+        waitFor(() -> healthy.received.size() == 1);
+        // every stalled client is stuck in a write: the healthy one keeps receiving
+        hub.publish(status("V001", 2));
+        waitFor(() -> healthy.received.size() == 2);
+
+        unblock.countDown();
+        hub.shutdown();
+    }
+
+    /** Sink whose send blocks the calling thread, like a synchronous write to a stalled connection. */
+    private static final class BlockingSink implements StatusStreamHub.Sink {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch unblock;
+
+        BlockingSink(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public CompletionStage<?> send(VehicleStatus status) {
+            entered.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static VehicleStatus status(String vehicleId, long ts) {
+        VehicleStatus vs = new VehicleStatus();
+        vs.vehicleId = vehicleId;
+        vs.ts = ts;
+        return vs;
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not met within 2 s");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import io.nats.client.Message;
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import it.unibo.acme.fleet.gateway.subscriber.CacheWarmupResourceTest.FakeNats;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static it.unibo.acme.fleet.gateway.subscriber.CacheWarmupResourceTest.complete;
+import static it.unibo.acme.fleet.gateway.subscriber.CacheWarmupResourceTest.frameMessage;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Time from {@link CacheWarmupResource#refreshAll()} to a cache holding the whole fleet,
+ * with both dumps (tracking and battery, 64 KB frames as the services send them) already
+ * waiting in the inboxes: the gateway side of the warm-up, without the services' collect
+ * and the network transfer.
+ *
+ * Excluded from the default build, run with:
+ * <pre>
+ *   mvn test -pl fleet-gateway -am -Dtest=CacheWarmupBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ */
+@DisplayName("CacheWarmupBenchmark – time to a full cache at 100k vehicles")
+class CacheWarmupBenchmark {
+
+    private static final int VEHICLES = 100_000;
+    private static final int MAX_FRAME_BYTES = 65_536;
+    private static final long T0 = 1_760_000_000_000L;
+    private static final int WARMUP = 2;
+    private static final int ROUNDS = 7;
+
+    @Test
+    void time_to_full_cache() throws Exception {
+        List<Message> tracking = frames(true);
+        List<Message> battery = frames(false);
+        System.out.printf("%d vehicles, %d tracking + %d battery frames%n", VEHICLES, tracking.size() - 1, battery.size() - 1);
+        System.out.printf("%-12s %10s %10s%n", "mode", "median ms", "min ms");
+        for (boolean passthrough : new boolean[] {false, true}) {
+            long[] nanos = new long[ROUNDS];
+            for (int r = -WARMUP; r < ROUNDS; r++) {
+                FakeNats nats = new FakeNats(2);
+                nats.replies.put("cmd.tracking.dump", tracking);
+                nats.replies.put("cmd.battery.dump", battery);
+                FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+                CacheWarmupResource warmup = new CacheWarmupResource(nats.connection(), JsonbBuilder.create(), cap,
+                        false, "cmd.tracking.dump", "cmd.battery.dump", 10_000, passthrough);
+
+                long t0 = System.nanoTime();
+                warmup.refreshAll();
+                assertTrue(nats.unsubscribed.await(60, TimeUnit.SECONDS));
+                long elapsed = System.nanoTime() - t0;
+
+                assertEquals(VEHICLES, cap.listAll().size());
+                if (r >= 0) {
+                    nanos[r] = elapsed;
+                }
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-12s %10.1f %10.1f%n", passthrough ? "passthrough" : "json-b",
+                    nanos[ROUNDS / 2] / 1e6, nanos[0] / 1e6);
+        }
+    }
+
+    /** The whole fleet in frames of at most {@link #MAX_FRAME_BYTES}, then Dump-Complete. */
+    private static List<Message> frames(boolean tracking) {
+        List<Message> out = new ArrayList<>();
+        List<String> entries = new ArrayList<>();
+        int size = 2;
+        for (int v = 0; v < VEHICLES; v++) {
+            String json = tracking ? tracking(v) : battery(v);
+            if (size + json.length() + 1 > MAX_FRAME_BYTES) {
+                out.add(frameMessage(entries.toArray(new String[0])));
+                entries.clear();
+                size = 2;
+            }
+            entries.add(json);
+            size += json.length() + 1;
+        }
+        out.add(frameMessage(entries.toArray(new String[0])));
+        out.add(complete(VEHICLES));
+        return out;
+    }
+
+    /** Same fields, in the same order, as the tracking-service snapshots. */
+    private static String tracking(int v) {
+        return "{\"active\":" + (v % 3 != 0) + ",\"distanceMeters\":" + (v % 5000) + ".5,\"lastUpdateTs\":" + (T0 + v)
+                + ",\"lat\":" + (44.45 + (v % 1000) * 1e-4) + ",\"lon\":" + (11.30 + (v / 1000) * 1e-3)
+                + ",\"stale\":false,\"startedAt\":" + T0 + ",\"ts\":" + (T0 + v) + ",\"vehicleId\":\"V" + v + "\"}";
+    }
+
+    private static String battery(int v) {
+        return "{\"active\":" + (v % 3 != 0) + ",\"batteryPct\":" + (v % 100) + ",\"dischargePctPerMin\":-0.25"
+                + ",\"estimatedMinutesToEmpty\":" + (v % 100) * 4.0 + ",\"lastUpdateTs\":" + (T0 + v)
+                + ",\"lowBattery\":" + (v % 100 < 15) + ",\"stale\":false,\"startedAt\":" + T0
+                + ",\"ts\":" + (T0 + v) + ",\"vehicleId\":\"V" + v + "\"}";
+    }
+}
@@ -0,0 +1,187 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Subscription;
+import io.nats.client.impl.Headers;
+import io.nats.client.impl.NatsMessage;
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static it.unibo.acme.fleet.gateway.subscriber.SnapshotDecoderTest.battery;
+import static it.unibo.acme.fleet.gateway.subscriber.SnapshotDecoderTest.frame;
+import static it.unibo.acme.fleet.gateway.subscriber.SnapshotDecoderTest.tracking;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CacheWarmupResource – dump frames until Dump-Complete, per-frame timeout, single-vehicle refresh")
+class CacheWarmupResourceTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+    private static final long TIMEOUT_MS = 200;
+    private static final String TRACKING_DUMP = "cmd.tracking.dump";
+    private static final String BATTERY_DUMP = "cmd.battery.dump";
+
+    /**
+     * Just enough of a NATS connection for the warm-up: what a service answers to a dump
+     * request is scripted per subject and delivered to the request's reply inbox.
+     */
+    static final class FakeNats {
+        final Map<String, List<Message>> replies = new HashMap<>();
+        final Map<String, BlockingQueue<Message>> inboxes = new ConcurrentHashMap<>();
+        final List<String> requests = new ArrayList<>();
+        final AtomicInteger inboxCount = new AtomicInteger();
+        final CountDownLatch unsubscribed;
+
+        FakeNats(int loaders) {
+            unsubscribed = new CountDownLatch(loaders);
+        }
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "createInbox" -> "_INBOX." + inboxCount.incrementAndGet();
+                        case "subscribe" -> subscription(inboxes.computeIfAbsent((String) args[0], k -> new LinkedBlockingQueue<>()));
+                        case "publish" -> {
+                            // publish(subject, replyTo, body): the dump request
+                            String subject = (String) args[0];
+                            synchronized (requests) {
+                                requests.add(subject + " -> " + args[1] + " body=" + ((byte[]) args[2]).length);
+                            }
+                            inboxes.get((String) args[1]).addAll(replies.getOrDefault(subject, List.of()));
+                            yield null;
+                        }
+                        case "requestWithTimeout" -> {
+                            List<Message> r = replies.getOrDefault((String) args[0], List.of());
+                            synchronized (requests) {
+                                requests.add(args[0] + " body=" + new String((byte[]) args[1], StandardCharsets.UTF_8));
+                            }
+                            yield r.isEmpty() ? new CompletableFuture<Message>() : CompletableFuture.completedFuture(r.get(0));
+                        }
+                        default -> null;
+                    });
+        }
+
+        private Subscription subscription(BlockingQueue<Message> queue) {
+            return (Subscription) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Subscription.class}, (proxy, method, args) -> switch (method.getName()) {
+                        case "nextMessage" -> queue.poll(((Duration) args[0]).toMillis(), TimeUnit.MILLISECONDS);
+                        case "unsubscribe" -> {
+                            unsubscribed.countDown();
+                            yield null;
+                        }
+                        default -> null;
+                    });
+        }
+    }
+
+    static Message frameMessage(String... entries) {
+        Headers h = new Headers();
+        h.put("Content-Type", "application/vnd.acme.snapshot-batch+json");
+        return NatsMessage.builder().subject("_INBOX").headers(h).data(frame(entries)).build();
+    }
+
+    static Message complete(int count) {
+        Headers h = new Headers();
+        h.put(CacheWarmupResource.DUMP_COMPLETE_HEADER, String.valueOf(count));
+        return NatsMessage.builder().subject("_INBOX").headers(h).data(new byte[0]).build();
+    }
+
+    private static CacheWarmupResource warmup(FakeNats nats, FleetGatewayCapability cap) {
+        return new CacheWarmupResource(nats.connection(), JsonbBuilder.create(), cap,
+                false, TRACKING_DUMP, BATTERY_DUMP, TIMEOUT_MS, false);
+    }
+
+    @Test
+    void full_dump_loads_every_frame_until_dump_complete() throws Exception {
+        FakeNats nats = new FakeNats(2);
+        nats.replies.put(TRACKING_DUMP, List.of(
+                frameMessage(tracking("V1", T0, 11.1), tracking("V2", T0, 11.2)),
+                frameMessage(tracking("V3", T0, 11.3)),
+                complete(3),
+                // anything after the completion belongs to nobody: not read
+                frameMessage(tracking("LATE", T0, 11.4))));
+        nats.replies.put(BATTERY_DUMP, List.of(
+                frameMessage(battery("V1", T0, 90), battery("V2", T0, 80), battery("V3", T0, 70)),
+                complete(3)));
+        FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+
+        warmup(nats, cap).refreshAll();
+
+        // both loaders stop reading at Dump-Complete: the late frame is still queued
+        assertTrue(nats.unsubscribed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, nats.inboxes.values().stream().mapToInt(BlockingQueue::size).sum());
+        assertEquals(3, cap.listAll().size());
+        assertTrue(cap.listAll().stream().noneMatch(vs -> vs.vehicleId.equals("LATE")));
+        assertEquals(70, cap.getStatus("V3").battery.batteryPct);
+        assertEquals(11.3, cap.getStatus("V3").tracking.lon);
+
+        // one request per service, empty body = whole fleet, each on its own inbox
+        assertEquals(2, nats.requests.size());
+        assertTrue(nats.requests.stream().anyMatch(r -> r.startsWith(TRACKING_DUMP + " -> _INBOX.") && r.endsWith("body=0")));
+        assertTrue(nats.requests.stream().anyMatch(r -> r.startsWith(BATTERY_DUMP + " -> _INBOX.") && r.endsWith("body=0")));
+    }
+
+    @Test
+    void bad_frame_is_skipped_and_the_dump_goes_on() throws Exception {
+        FakeNats nats = new FakeNats(2);
+        nats.replies.put(TRACKING_DUMP, List.of(
+                NatsMessage.builder().subject("_INBOX").data("[{not json".getBytes(StandardCharsets.UTF_8)).build(),
+                frameMessage(tracking("V1", T0, 11.1)),
+                complete(1)));
+        nats.replies.put(BATTERY_DUMP, List.of(complete(0)));
+        FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+
+        warmup(nats, cap).refreshAll();
+
+        assertTrue(nats.unsubscribed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, cap.listAll().size());
+    }
+
+    @Test
+    void silent_service_times_out_between_frames_and_keeps_what_arrived() throws Exception {
+        FakeNats nats = new FakeNats(2);
+        // tracking sends one frame and never completes, battery never answers at all
+        nats.replies.put(TRACKING_DUMP, List.of(frameMessage(tracking("V1", T0, 11.1))));
+        FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+
+        long t0 = System.nanoTime();
+        warmup(nats, cap).refreshAll();
+
+        assertTrue(nats.unsubscribed.await(5, TimeUnit.SECONDS), "loaders give up after the frame timeout");
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        assertTrue(ms >= TIMEOUT_MS, ms + " ms");
+        assertEquals(1, cap.listAll().size());
+        assertNull(cap.getStatus("V1").battery);
+    }
+
+    @Test
+    void refresh_loads_one_vehicle_frame_and_ignores_unknown_vehicles() {
+        FakeNats nats = new FakeNats(0);
+        nats.replies.put(TRACKING_DUMP, List.of(frameMessage(tracking("V7", T0, 11.7))));
+        nats.replies.put(BATTERY_DUMP, List.of(complete(0))); // battery doesn't know V7
+        FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+
+        warmup(nats, cap).refresh("V7");
+
+        assertEquals(List.of(TRACKING_DUMP + " body=V7", BATTERY_DUMP + " body=V7"), nats.requests);
+        assertEquals(11.7, cap.getStatus("V7").tracking.lon);
+        assertNull(cap.getStatus("V7").battery);
+    }
+}
@@ -0,0 +1,41 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InterestTracker – watched vehicles with TTL")
+class InterestTrackerTest {
+
+    @Test
+    void vehicle_interest_starts_once_and_expires_after_ttl() {
+        InterestTracker interest = new InterestTracker(1000);
+        assertTrue(interest.touch("V001", 0), "first query starts the interest");
+        assertFalse(interest.touch("V001", 500), "later queries only extend it");
+
+        assertTrue(interest.expire(1400).isEmpty(), "extended to 1500");
+        List<String> expired = interest.expire(1500);
+        assertEquals(List.of("V001"), expired);
+        assertTrue(interest.vehicles().isEmpty());
+
+        assertTrue(interest.touch("V001", 2000), "watched again after expiry");
+    }
+
+    @Test
+    void fleet_interest_reports_start_and_end_once() {
+        InterestTracker interest = new InterestTracker(1000);
+        assertFalse(interest.fleetExpired(0), "never started");
+
+        assertTrue(interest.touchFleet(0));
+        assertFalse(interest.touchFleet(600));
+        assertTrue(interest.fleetActive(1500));
+        assertFalse(interest.fleetExpired(1500));
+
+        assertTrue(interest.fleetExpired(1600));
+        assertFalse(interest.fleetExpired(1700), "reported only once");
+        assertTrue(interest.touchFleet(1800));
+    }
+}
@@ -0,0 +1,148 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import it.unibo.acme.fleet.gateway.model.BatterySnapshot;
+import it.unibo.acme.fleet.gateway.model.TrackingSnapshot;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import it.unibo.acme.fleet.gateway.util.RawSnapshotJson;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gateway CPU per snapshot received and per status served, JSON-B vs passthrough.
+ *
+ * Decode is the parsing alone, ingest is {@link SnapshotDecoder} on single-snapshot messages
+ * (parsing + cache upsert);
+ * a response is the cache read plus the body bytes, which is what the JAX-RS writer would
+ * otherwise produce with JSON-B. HTTP itself is not part of the measure.
+ *
+ * Excluded from the default build, run with:
+ * <pre>
+ *   mvn test -pl fleet-gateway -am -Dtest=PassthroughBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ */
+@DisplayName("PassthroughBenchmark – ingest and response cost, JSON-B vs raw bytes")
+class PassthroughBenchmark {
+
+    private static final int VEHICLES = 10_000;
+    private static final long T0 = 1_760_000_000_000L;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 15;
+
+    private long ts = T0;
+
+    @Test
+    void ingest_and_response() throws Exception {
+        System.out.printf("%-12s %16s %16s %16s %18s%n", "mode", "decode ns/snap", "ingest ns/snap", "status us/resp", "list 10k ms/resp");
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            for (boolean passthrough : new boolean[] {false, true}) {
+                FleetGatewayCapability cap = SnapshotDecoderTest.capability();
+                SnapshotDecoder decoder = new SnapshotDecoder(jsonb, cap, passthrough);
+
+                long[] decode = new long[ROUNDS];
+                long[] ingest = new long[ROUNDS];
+                for (int r = -WARMUP; r < ROUNDS; r++) {
+                    // fresh messages every round: an older ts would be ignored by the cache
+                    byte[][] tracking = new byte[VEHICLES][];
+                    byte[][] battery = new byte[VEHICLES][];
+                    ts += 1000;
+                    for (int v = 0; v < VEHICLES; v++) {
+                        tracking[v] = tracking(v, ts).getBytes(StandardCharsets.UTF_8);
+                        battery[v] = battery(v, ts).getBytes(StandardCharsets.UTF_8);
+                    }
+                    // parsing alone, then parsing + cache upsert
+                    long t0 = System.nanoTime();
+                    int parsed = 0;
+                    for (int v = 0; v < VEHICLES; v++) {
+                        parsed += parse(jsonb, passthrough, tracking[v], TrackingSnapshot.class);
+                        parsed += parse(jsonb, passthrough, battery[v], BatterySnapshot.class);
+                    }
+                    long t1 = System.nanoTime();
+                    for (int v = 0; v < VEHICLES; v++) {
+                        decoder.tracking(tracking[v], false);
+                        decoder.battery(battery[v], false);
+                    }
+                    long t2 = System.nanoTime();
+                    assertEquals(2 * VEHICLES, parsed);
+                    if (r >= 0) {
+                        decode[r] = (t1 - t0) / (2L * VEHICLES);
+                        ingest[r] = (t2 - t1) / (2L * VEHICLES);
+                    }
+                }
+
+                long[] status = new long[ROUNDS];
+                long[] list = new long[ROUNDS];
+                long sink = 0;
+                for (int r = -WARMUP; r < ROUNDS; r++) {
+                    long t0 = System.nanoTime();
+                    for (int v = 0; v < VEHICLES; v++) {
+                        sink += body(jsonb, cap.getStatus("V" + v)).length;
+                    }
+                    long t1 = System.nanoTime();
+                    sink += body(jsonb, cap.listAll()).length;
+                    long t2 = System.nanoTime();
+                    if (r >= 0) {
+                        status[r] = (t1 - t0) / VEHICLES;
+                        list[r] = t2 - t1;
+                    }
+                }
+                assertTrue(sink > 0);
+                assertEquals(VEHICLES, cap.listAll().size());
+                System.out.printf("%-12s %16d %16d %16.2f %18.1f%n", passthrough ? "passthrough" : "json-b",
+                        median(decode), median(ingest), median(status) / 1e3, median(list) / 1e6);
+            }
+        }
+    }
+
+    private static int parse(Jsonb jsonb, boolean passthrough, byte[] data, Class<?> type) {
+        Object s = passthrough
+                ? RawSnapshotJson.parse(data)
+                : jsonb.fromJson(new String(data, StandardCharsets.UTF_8), type);
+        return s != null ? 1 : 0;
+    }
+
+    /** What FleetGatewayResource#status answers. */
+    private static byte[] body(Jsonb jsonb, VehicleStatus vs) {
+        return RawSnapshotJson.canWrite(vs)
+                ? RawSnapshotJson.write(vs)
+                : jsonb.toJson(vs).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** What FleetGatewayResource#list answers. */
+    private static byte[] body(Jsonb jsonb, List<VehicleStatus> all) {
+        for (VehicleStatus vs : all) {
+            if (!RawSnapshotJson.canWrite(vs)) {
+                return jsonb.toJson(all).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return RawSnapshotJson.writeAll(all);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /** Same fields, in the same order, as the tracking-service snapshots. */
+    private static String tracking(int v, long ts) {
+        return "{\"active\":true,\"distanceMeters\":" + (v % 5000) + ".5,\"lastUpdateTs\":" + ts
+                + ",\"lat\":" + (44.45 + (v % 1000) * 1e-4) + ",\"lon\":" + (11.30 + (v / 1000) * 1e-3)
+                + ",\"stale\":false,\"startedAt\":" + T0 + ",\"ts\":" + ts + ",\"vehicleId\":\"V" + v + "\"}";
+    }
+
+    private static String battery(int v, long ts) {
+        return "{\"active\":true,\"batteryPct\":" + (v % 100) + ",\"dischargePctPerMin\":-0.25"
+                + ",\"estimatedMinutesToEmpty\":" + (v % 100) * 4.0 + ",\"lastUpdateTs\":" + ts
+                + ",\"lowBattery\":" + (v % 100 < 15) + ",\"stale\":false,\"startedAt\":" + T0
+                + ",\"ts\":" + ts + ",\"vehicleId\":\"V" + v + "\"}";
+    }
+}
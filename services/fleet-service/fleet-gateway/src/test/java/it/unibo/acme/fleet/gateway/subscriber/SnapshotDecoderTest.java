@@ -0,0 +1,114 @@
+package it.unibo.acme.fleet.gateway.subscriber;
+
+import io.nats.client.Connection;
+import it.unibo.acme.fleet.gateway.capability.FleetGatewayCapability;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import it.unibo.acme.fleet.gateway.provider.NatsCommandProvider;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SnapshotDecoder – a warm-up dump never overwrites a newer live snapshot")
+class SnapshotDecoderTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    @AfterAll
+    static void close() throws Exception {
+        JSONB.close();
+    }
+
+    /** Capability with a real cache; its NATS connection and metric registry do nothing. */
+    static FleetGatewayCapability capability() {
+        Connection nats = (Connection) Proxy.newProxyInstance(SnapshotDecoderTest.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> null);
+        MetricRegistry metrics = (MetricRegistry) Proxy.newProxyInstance(SnapshotDecoderTest.class.getClassLoader(),
+                new Class<?>[] {MetricRegistry.class}, (proxy, method, args) -> null);
+        NatsCommandProvider commands = new NatsCommandProvider(nats, JsonbBuilder.create(),
+                "cmd.tracking.start", "cmd.tracking.stop", "cmd.battery.start", "cmd.battery.stop",
+                "cmd.tracking.batch", "cmd.battery.batch",
+                2000, 0, 256, "event.fleet.demand", 30_000);
+        return new FleetGatewayCapability(commands, 10, 16, 0, 0, "UTC", metrics);
+    }
+
+    static byte[] frame(String... entries) {
+        return ("[" + String.join(",", entries) + "]").getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String tracking(String vehicleId, long ts, double lon) {
+        return "{\"active\":true,\"distanceMeters\":0.0,\"lat\":44.5,\"lon\":" + lon
+                + ",\"ts\":" + ts + ",\"vehicleId\":\"" + vehicleId + "\"}";
+    }
+
+    static String battery(String vehicleId, long ts, int pct) {
+        return "{\"active\":true,\"batteryPct\":" + pct + ",\"ts\":" + ts + ",\"vehicleId\":\"" + vehicleId + "\"}";
+    }
+
+    static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void dump_keeps_the_newer_live_entry_and_fills_the_missing_ones() {
+        for (boolean passthrough : new boolean[] {false, true}) {
+            FleetGatewayCapability cap = capability();
+            SnapshotDecoder decoder = new SnapshotDecoder(JSONB, cap, passthrough);
+
+            // a live snapshot arrived while the dump was being produced
+            assertEquals(1, decoder.tracking(bytes(tracking("V1", T0 + 5_000, 11.9)), false));
+            assertEquals(1, decoder.battery(bytes(battery("V1", T0 + 5_000, 40)), false));
+
+            assertEquals(2, decoder.tracking(frame(tracking("V1", T0, 11.1), tracking("V2", T0, 11.2)), true));
+            assertEquals(2, decoder.battery(frame(battery("V1", T0, 90), battery("V2", T0, 80)), true));
+
+            VehicleStatus v1 = cap.getStatus("V1");
+            assertEquals(T0 + 5_000, passthrough ? v1.trackingRaw.ts : v1.tracking.ts, "passthrough=" + passthrough);
+            assertTrue(trackingJson(v1, passthrough).contains("11.9"), "live position kept, passthrough=" + passthrough);
+            assertEquals(40, batteryPct(v1, passthrough), "live battery kept, passthrough=" + passthrough);
+
+            VehicleStatus v2 = cap.getStatus("V2");
+            assertTrue(trackingJson(v2, passthrough).contains("11.2"), "passthrough=" + passthrough);
+            assertEquals(80, batteryPct(v2, passthrough), "passthrough=" + passthrough);
+        }
+    }
+
+    @Test
+    void newer_dump_entry_replaces_an_older_cached_one() {
+        for (boolean passthrough : new boolean[] {false, true}) {
+            FleetGatewayCapability cap = capability();
+            SnapshotDecoder decoder = new SnapshotDecoder(JSONB, cap, passthrough);
+
+            decoder.tracking(bytes(tracking("V1", T0, 11.1)), false);
+            decoder.tracking(frame(tracking("V1", T0 + 1, 11.5)), true);
+
+            assertTrue(trackingJson(cap.getStatus("V1"), passthrough).contains("11.5"), "passthrough=" + passthrough);
+        }
+    }
+
+    @Test
+    void empty_frame_applies_nothing() {
+        for (boolean passthrough : new boolean[] {false, true}) {
+            FleetGatewayCapability cap = capability();
+            SnapshotDecoder decoder = new SnapshotDecoder(JSONB, cap, passthrough);
+            assertEquals(0, decoder.tracking(bytes("[]"), true));
+            assertTrue(cap.listAll().isEmpty());
+        }
+    }
+
+    private static String trackingJson(VehicleStatus vs, boolean passthrough) {
+        return passthrough ? new String(vs.trackingRaw.json, StandardCharsets.UTF_8) : JSONB.toJson(vs.tracking);
+    }
+
+    private static Integer batteryPct(VehicleStatus vs, boolean passthrough) {
+        return passthrough ? vs.batteryRaw.batteryPct : vs.battery.batteryPct;
+    }
+}
@@ -0,0 +1,79 @@
+package it.unibo.acme.fleet.gateway.util;
+
+import it.unibo.acme.fleet.gateway.cache.VehicleStatusCache;
+import it.unibo.acme.fleet.gateway.model.RawSnapshot;
+import it.unibo.acme.fleet.gateway.model.VehicleStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RawSnapshotJson – passthrough parsing and status splicing")
+class RawSnapshotJsonTest {
+
+    private static final String TRACKING = "{\"vehicleId\":\"V001\",\"ts\":1736520000123,\"active\":true,"
+            + "\"lat\":44.4949,\"lon\":-11.3426e0,\"zones\":[{\"id\":\"z\\\"1\",\"in\":[1,2]}],"
+            + "\"note\":null,\"stale\":false}";
+
+    @Test
+    void reads_only_the_needed_fields_and_keeps_the_bytes() {
+        byte[] data = utf8(TRACKING);
+        RawSnapshot s = RawSnapshotJson.parse(data);
+        assertEquals("V001", s.vehicleId);
+        assertEquals(1736520000123L, s.ts);
+        assertTrue(s.active);
+        assertFalse(s.stale);
+        assertSame(data, s.json);
+    }
+
+    @Test
+    void batch_frames_are_split_into_objects() {
+        String battery = "{ \"vehicleId\" : \"V\\u0030\\\"2\", \"ts\": 5, \"stale\": true, \"batteryPct\": 80 }";
+        List<RawSnapshot> all = RawSnapshotJson.parseArray(utf8(" [" + TRACKING + ",\n" + battery + "] "));
+        assertEquals(2, all.size());
+        assertEquals(TRACKING, new String(all.get(0).json, StandardCharsets.UTF_8));
+        assertEquals("V0\"2", all.get(1).vehicleId);
+        assertFalse(all.get(1).active);
+        assertTrue(all.get(1).stale);
+        assertEquals(battery, new String(all.get(1).json, StandardCharsets.UTF_8));
+        assertTrue(RawSnapshotJson.parseArray(utf8("[]")).isEmpty());
+    }
+
+    @Test
+    void malformed_payloads_are_rejected() {
+        for (String bad : new String[] {"", "{", "{\"ts\":}", "{\"a\":[1,}", "{\"a\":tru}", "{} x", "{\"a\":\"b}"}) {
+            assertThrows(IllegalArgumentException.class, () -> RawSnapshotJson.parse(utf8(bad)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> RawSnapshotJson.parseArray(utf8("[{}")));
+    }
+
+    @Test
+    void cache_merges_raw_halves_and_writes_them_back() {
+        VehicleStatusCache cache = new VehicleStatusCache();
+        cache.upsertTracking(RawSnapshotJson.parse(utf8(TRACKING)));
+        VehicleStatus vs = cache.upsertBattery(RawSnapshotJson.parse(utf8(
+                "{\"vehicleId\":\"V001\",\"ts\":10,\"active\":false,\"batteryPct\":80,\"stale\":false}")));
+        assertTrue(vs.active);
+        assertFalse(vs.stale);
+
+        // older battery snapshot: ignored
+        assertNull(cache.upsertBattery(RawSnapshotJson.parse(utf8("{\"vehicleId\":\"V001\",\"ts\":9}"))));
+
+        assertTrue(RawSnapshotJson.canWrite(vs));
+        String json = new String(RawSnapshotJson.write(vs), StandardCharsets.UTF_8);
+        assertEquals("{\"vehicleId\":\"V001\",\"ts\":" + vs.ts + ",\"tracking\":" + TRACKING
+                + ",\"battery\":{\"vehicleId\":\"V001\",\"ts\":10,\"active\":false,\"batteryPct\":80,\"stale\":false}"
+                + ",\"active\":true,\"stale\":false}", json);
+
+        VehicleStatus unknown = cache.get("V\"9");
+        String list = new String(RawSnapshotJson.writeAll(List.of(vs, unknown)), StandardCharsets.UTF_8);
+        assertEquals("[" + json + ",{\"vehicleId\":\"V\\\"9\",\"ts\":" + unknown.ts + ",\"active\":false,\"stale\":true}]", list);
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package it.unibo.acme.fleet.nats;
+
+import io.nats.client.Connection;
+import io.nats.client.ConnectionListener;
+import io.nats.client.Consumer;
+import io.nats.client.ErrorListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection and error listener of one pooled connection: logs state changes and counts
+ * what the jnats statistics do not (disconnections, slow consumer events).
+ *
+ * A slow consumer is a subscription whose pending buffer ({@code nats.pending.*}) is full:
+ * the client drops its messages until it catches up. jnats reports it once per episode;
+ * the warning is additionally limited to one every {@link #SLOW_LOG_INTERVAL_MS} per
+ * connection, the count is exact.
+ */
+final class NatsConnectionEvents implements ConnectionListener, ErrorListener {
+
+    private static final Logger LOG = Logger.getLogger(NatsConnectionEvents.class.getName());
+
+    static final long SLOW_LOG_INTERVAL_MS = 10_000;
+
+    private final String name;
+    private final AtomicBoolean up = new AtomicBoolean(true);
+    private final LongAdder disconnects = new LongAdder();
+    private final LongAdder slowConsumers = new LongAdder();
+    private final AtomicLong lastSlowLog = new AtomicLong();
+
+    NatsConnectionEvents(String name) {
+        this.name = name;
+    }
+
+    long disconnects() {
+        return disconnects.sum();
+    }
+
+    long slowConsumers() {
+        return slowConsumers.sum();
+    }
+
+    /** jnats calls this form; {@code uriDetails} is the server the event refers to, if any. */
+    @Override
+    public void connectionEvent(Connection conn, Events type, Long time, String uriDetails) {
+        switch (type) {
+            case DISCONNECTED -> {
+                // jnats repeats DISCONNECTED for every failed reconnect attempt: count the outage once
+                if (up.compareAndSet(true, false)) {
+                    disconnects.increment();
+                    LOG.warning("NATS " + name + " disconnected, publishes are buffered until reconnect");
+                }
+            }
+            case CONNECTED -> up.set(true);
+            case RECONNECTED -> {
+                up.set(true);
+                LOG.info("NATS " + name + " reconnected to " + (uriDetails != null ? uriDetails : conn.getConnectedUrl()));
+            }
+            case CLOSED -> LOG.info("NATS " + name + " closed");
+            default -> LOG.fine("NATS " + name + " " + type);
+        }
+    }
+
+    /** Still abstract in jnats but never called by it: kept only to satisfy the interface. */
+    @Deprecated
+    @Override
+    public void connectionEvent(Connection conn, Events type) {
+        connectionEvent(conn, type, null, null);
+    }
+
+    @Override
+    public void errorOccurred(Connection conn, String error) {
+        LOG.warning("NATS " + name + " server error: " + error);
+    }
+
+    @Override
+    public void exceptionOccurred(Connection conn, Exception exp) {
+        LOG.log(Level.FINE, "NATS " + name + " exception", exp);
+    }
+
+    @Override
+    public void slowConsumerDetected(Connection conn, Consumer consumer) {
+        slowConsumers.increment();
+        long now = System.currentTimeMillis();
+        long last = lastSlowLog.get();
+        if (now - last >= SLOW_LOG_INTERVAL_MS && lastSlowLog.compareAndSet(last, now)) {
+            LOG.warning("NATS " + name + " slow consumer: pending=" + consumer.getPendingMessageCount()
+                    + " dropped=" + consumer.getDroppedCount() + " (raise nats.pending.* or speed up the handler)");
+        }
+    }
+}
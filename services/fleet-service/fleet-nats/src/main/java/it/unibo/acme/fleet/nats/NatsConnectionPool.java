@@ -0,0 +1,147 @@
+package it.unibo.acme.fleet.nats;
+
+import io.nats.client.Connection;
+import io.nats.client.Nats;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The NATS connections of a service, built from {@link NatsSettings}.
+ *
+ * The primary connection carries subscriptions, request-reply and light publishing.
+ * Publish-heavy paths (snapshot bursts) pick a connection with {@link #forKey}: each
+ * connection has its own socket and writer thread, so with {@code nats.pool.size > 1}
+ * a burst is written to the broker in parallel. The same key always maps to the same
+ * connection, which keeps the per-vehicle (per-subject) order NATS guarantees only
+ * within one connection.
+ *
+ * With the default size of 1 every method returns the primary connection.
+ */
+public final class NatsConnectionPool implements AutoCloseable {
+
+    private final Connection[] connections;
+    private final NatsConnectionEvents[] events;
+    private final String[] names;
+
+    private NatsConnectionPool(Connection[] connections, NatsConnectionEvents[] events, String[] names) {
+        this.connections = connections;
+        this.events = events;
+        this.names = names;
+    }
+
+    /** Connects all the connections; fails (closing the ones opened) if one cannot connect. */
+    public static NatsConnectionPool open(NatsSettings settings) throws IOException, InterruptedException {
+        int n = settings.poolSize;
+        Connection[] connections = new Connection[n];
+        NatsConnectionEvents[] events = new NatsConnectionEvents[n];
+        String[] names = new String[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                names[i] = i == 0 ? settings.connectionName : settings.connectionName + "-" + i;
+                events[i] = new NatsConnectionEvents(names[i]);
+                connections[i] = Nats.connect(settings.options(names[i])
+                        .connectionListener(events[i])
+                        .errorListener(events[i])
+                        .build());
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            closeAll(connections);
+            throw e;
+        }
+        return new NatsConnectionPool(connections, events, names);
+    }
+
+    /** Wraps connections opened elsewhere (e.g. test doubles): their events are not counted. */
+    public static NatsConnectionPool of(Connection... connections) {
+        if (connections.length == 0) {
+            throw new IllegalArgumentException("at least one connection");
+        }
+        NatsConnectionEvents[] events = new NatsConnectionEvents[connections.length];
+        String[] names = new String[connections.length];
+        for (int i = 0; i < connections.length; i++) {
+            names[i] = "connection-" + i;
+            events[i] = new NatsConnectionEvents(names[i]);
+        }
+        return new NatsConnectionPool(connections.clone(), events, names);
+    }
+
+    public Connection primary() {
+        return connections[0];
+    }
+
+    /** Connection for a key (vehicleId, reply subject, ...): stable for the pool lifetime. */
+    public Connection forKey(String key) {
+        if (connections.length == 1) {
+            return connections[0];
+        }
+        return connections[Math.floorMod(key.hashCode(), connections.length)];
+    }
+
+    public List<Connection> all() {
+        return List.of(connections);
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    String name(int i) {
+        return names[i];
+    }
+
+    Connection connection(int i) {
+        return connections[i];
+    }
+
+    NatsConnectionEvents events(int i) {
+        return events[i];
+    }
+
+    /** Flushes the writer buffer of every connection, e.g. at the end of a publish burst. */
+    public void flushBuffers() throws IOException {
+        IOException failed = null;
+        for (Connection c : connections) {
+            try {
+                c.flushBuffer();
+            } catch (IOException e) {
+                failed = e;
+            }
+        }
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    /** Drains pending publishes (bounded wait) and closes every connection. */
+    @Override
+    public void close() {
+        for (Connection c : connections) {
+            try {
+                c.flush(Duration.ofSeconds(2));
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException | RuntimeException ignored) {
+                // ignore
+            }
+        }
+        closeAll(connections);
+    }
+
+    private static void closeAll(Connection[] connections) {
+        for (Connection c : connections) {
+            if (c == null) {
+                continue;
+            }
+            try {
+                c.close();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ignored) {
+                // ignore
+            }
+        }
+    }
+}
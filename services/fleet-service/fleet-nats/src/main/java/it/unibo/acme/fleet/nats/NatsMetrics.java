@@ -0,0 +1,38 @@
+package it.unibo.acme.fleet.nats;
+
+import io.nats.client.Connection;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+/**
+ * Exposes the statistics of every pooled connection as gauges, tagged
+ * {@code connection=<connection name>} (served on /metrics by the services).
+ *
+ * Values are read from the connection on each scrape: nothing is counted on the publish
+ * or delivery path beyond what jnats already does.
+ */
+public final class NatsMetrics {
+
+    private NatsMetrics() {}
+
+    public static void register(MetricRegistry registry, NatsConnectionPool pool) {
+        for (int i = 0; i < pool.size(); i++) {
+            Connection c = pool.connection(i);
+            NatsConnectionEvents events = pool.events(i);
+            Tag tag = new Tag("connection", pool.name(i));
+
+            registry.gauge("nats.in.messages", () -> c.getStatistics().getInMsgs(), tag);
+            registry.gauge("nats.out.messages", () -> c.getStatistics().getOutMsgs(), tag);
+            registry.gauge("nats.in.bytes", () -> c.getStatistics().getInBytes(), tag);
+            registry.gauge("nats.out.bytes", () -> c.getStatistics().getOutBytes(), tag);
+            registry.gauge("nats.reconnects", () -> c.getStatistics().getReconnects(), tag);
+            registry.gauge("nats.disconnects", events::disconnects, tag);
+            // messages/bytes waiting for the writer, including the reconnect buffer while disconnected
+            registry.gauge("nats.pending.messages", c::outgoingPendingMessageCount, tag);
+            registry.gauge("nats.pending.bytes", c::outgoingPendingBytes, tag);
+            registry.gauge("nats.slowConsumers", events::slowConsumers, tag);
+            registry.gauge("nats.dropped", () -> c.getStatistics().getDroppedCount(), tag);
+            registry.gauge("nats.connected", () -> c.getStatus() == Connection.Status.CONNECTED ? 1 : 0, tag);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package it.unibo.acme.fleet.nats;
+
+import io.nats.client.Consumer;
+import io.nats.client.Options;
+import org.eclipse.microprofile.config.Config;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Tunables of the NATS connections of a fleet service (all under {@code nats.*}).
+ *
+ * Defaults match the jnats ones, except:
+ * - maxReconnects = -1: a service never gives up on the broker (jnats stops after 60 tries
+ *   and closes the connection for good)
+ * - pingIntervalMs = 30000: a dead TCP connection is noticed in about a minute, not four
+ */
+public final class NatsSettings {
+
+    /** Comma separated server URLs. */
+    public final String url;
+    public final String connectionName;
+
+    public final long connectTimeoutMs;
+    public final int maxReconnects;
+    public final long reconnectWaitMs;
+    /** Bytes published while disconnected that are kept and sent on reconnect (0 = none, publish fails). */
+    public final long reconnectBufferBytes;
+
+    public final long pingIntervalMs;
+    public final int maxPingsOut;
+
+    /** Messages waiting for the connection writer; publish blocks (or fails, see below) when full. */
+    public final int maxOutgoingPending;
+    /** true = publish fails instead of blocking when the outgoing queue is full. */
+    public final boolean discardWhenOutgoingFull;
+
+    /** Per subscription/dispatcher buffer before messages are dropped as slow consumer. */
+    public final long pendingMaxMessages;
+    public final long pendingMaxBytes;
+
+    /** Connections used by publish-heavy paths (1 = everything on the primary connection). */
+    public final int poolSize;
+
+    public NatsSettings(String url, String connectionName,
+                        long connectTimeoutMs, int maxReconnects, long reconnectWaitMs, long reconnectBufferBytes,
+                        long pingIntervalMs, int maxPingsOut,
+                        int maxOutgoingPending, boolean discardWhenOutgoingFull,
+                        long pendingMaxMessages, long pendingMaxBytes,
+                        int poolSize) {
+        this.url = url;
+        this.connectionName = connectionName;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.maxReconnects = maxReconnects;
+        this.reconnectWaitMs = reconnectWaitMs;
+        this.reconnectBufferBytes = Math.max(0, reconnectBufferBytes);
+        this.pingIntervalMs = pingIntervalMs;
+        this.maxPingsOut = maxPingsOut;
+        this.maxOutgoingPending = maxOutgoingPending;
+        this.discardWhenOutgoingFull = discardWhenOutgoingFull;
+        this.pendingMaxMessages = pendingMaxMessages;
+        this.pendingMaxBytes = pendingMaxBytes;
+        this.poolSize = Math.max(1, poolSize);
+    }
+
+    public static NatsSettings fromConfig(Config config, String defaultConnectionName) {
+        return new NatsSettings(
+                config.getValue("nats.url", String.class),
+                config.getOptionalValue("nats.connectionName", String.class).orElse(defaultConnectionName),
+                config.getOptionalValue("nats.connectTimeoutMs", Long.class).orElse(2000L),
+                config.getOptionalValue("nats.maxReconnects", Integer.class).orElse(-1),
+                config.getOptionalValue("nats.reconnectWaitMs", Long.class).orElse(2000L),
+                config.getOptionalValue("nats.reconnectBufferBytes", Long.class).orElse(8L * 1024 * 1024),
+                config.getOptionalValue("nats.pingIntervalMs", Long.class).orElse(30000L),
+                config.getOptionalValue("nats.maxPingsOut", Integer.class).orElse(2),
+                config.getOptionalValue("nats.maxOutgoingPending", Integer.class).orElse(5000),
+                config.getOptionalValue("nats.discardWhenOutgoingFull", Boolean.class).orElse(false),
+                config.getOptionalValue("nats.pending.maxMessages", Long.class).orElse(512L * 1024),
+                config.getOptionalValue("nats.pending.maxBytes", Long.class).orElse(64L * 1024 * 1024),
+                config.getOptionalValue("nats.pool.size", Integer.class).orElse(1));
+    }
+
+    /** Options of the connection {@code name}; listeners are set by {@link NatsConnectionPool}. */
+    Options.Builder options(String name) {
+        String[] servers = Arrays.stream(url.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toArray(String[]::new);
+        Options.Builder b = Options.builder()
+                .servers(servers)
+                .connectionName(name)
+                .connectionTimeout(Duration.ofMillis(connectTimeoutMs))
+                .maxReconnects(maxReconnects)
+                .reconnectWait(Duration.ofMillis(reconnectWaitMs))
+                .reconnectBufferSize(reconnectBufferBytes)
+                .pingInterval(Duration.ofMillis(pingIntervalMs))
+                .maxPingsOut(maxPingsOut)
+                .maxMessagesInOutgoingQueue(maxOutgoingPending);
+        if (discardWhenOutgoingFull) {
+            b.discardMessagesWhenOutgoingQueueFull();
+        }
+        return b;
+    }
+
+    /** Applies {@code nats.pending.*} to a subscription or dispatcher (the bounded ones: ingest paths). */
+    public <C extends Consumer> C limit(C consumer) {
+        consumer.setPendingLimits(pendingMaxMessages, pendingMaxBytes);
+        return consumer;
+    }
+}
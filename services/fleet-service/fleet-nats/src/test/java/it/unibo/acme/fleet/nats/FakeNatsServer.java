@@ -0,0 +1,184 @@
+package it.unibo.acme.fleet.nats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Just enough of the NATS core protocol (INFO, CONNECT, PING/PONG, SUB, UNSUB, PUB, MSG)
+ * to test connection handling without a nats-server binary. Subjects match exactly or
+ * with a trailing {@code >}; no queue groups, no headers, no auth.
+ */
+final class FakeNatsServer implements TestBroker {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final int port;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private volatile ServerSocket server;
+
+    FakeNatsServer(int port) {
+        this.port = port;
+    }
+
+    @Override
+    public String url() {
+        return "nats://127.0.0.1:" + port;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        ServerSocket s = new ServerSocket();
+        s.setReuseAddress(true);
+        s.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server = s;
+        Thread t = new Thread(() -> accept(s), "fake-nats-accept");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        ServerSocket s = server;
+        server = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+        }
+        for (Client c : clients) {
+            c.close();
+        }
+        clients.clear();
+    }
+
+    private void accept(ServerSocket s) {
+        while (!s.isClosed()) {
+            try {
+                Client c = new Client(s.accept());
+                clients.add(c);
+                Thread t = new Thread(c, "fake-nats-client");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void route(String subject, String replyTo, byte[] payload) {
+        for (Client c : clients) {
+            c.deliver(subject, replyTo, payload);
+        }
+    }
+
+    private static boolean matches(String pattern, String subject) {
+        if (pattern.endsWith(">")) {
+            return subject.startsWith(pattern.substring(0, pattern.length() - 1));
+        }
+        return pattern.equals(subject);
+    }
+
+    private final class Client implements Runnable {
+        private final Socket socket;
+        private final Map<String, String> subs = new ConcurrentHashMap<>();
+        private volatile OutputStream out;
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+                write("INFO {\"server_id\":\"fake\",\"version\":\"2.10.0\",\"proto\":1,"
+                        + "\"host\":\"127.0.0.1\",\"port\":" + port + ",\"max_payload\":1048576}");
+                String line;
+                while ((line = readLine(in)) != null) {
+                    String[] p = line.split(" ");
+                    switch (p[0].toUpperCase()) {
+                        case "PING" -> write("PONG");
+                        case "SUB" -> subs.put(p[p.length - 1], p[1]);
+                        case "UNSUB" -> subs.remove(p[1]);
+                        case "PUB" -> {
+                            byte[] payload = in.readNBytes(Integer.parseInt(p[p.length - 1]));
+                            in.readNBytes(2);
+                            route(p[1], p.length == 4 ? p[2] : null, payload);
+                        }
+                        default -> {
+                            // CONNECT, PONG: nothing to do
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+                // client gone or server stopped
+            } finally {
+                close();
+                clients.remove(this);
+            }
+        }
+
+        void deliver(String subject, String replyTo, byte[] payload) {
+            for (Map.Entry<String, String> s : subs.entrySet()) {
+                if (matches(s.getValue(), subject)) {
+                    String head = "MSG " + subject + " " + s.getKey() + (replyTo != null ? " " + replyTo : "")
+                            + " " + payload.length;
+                    try {
+                        synchronized (this) {
+                            out.write(head.getBytes(StandardCharsets.UTF_8));
+                            out.write(CRLF);
+                            out.write(payload);
+                            out.write(CRLF);
+                            out.flush();
+                        }
+                    } catch (IOException ignored) {
+                        close();
+                    }
+                }
+            }
+        }
+
+        synchronized void write(String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    int len = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, len, StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package it.unibo.acme.fleet.nats;
+
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("NatsConnectionPool – failover and reconnect buffering against nats-server (or the fake broker)")
+class NatsConnectionPoolTest {
+
+    private TestBroker server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = TestBroker.create();
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private NatsSettings settings(long reconnectBufferBytes, int poolSize) {
+        return new NatsSettings(server.url(), "test",
+                2000, -1, 50, reconnectBufferBytes,
+                30000, 2,
+                5000, false,
+                512 * 1024, 64 * 1024 * 1024,
+                poolSize);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> subscribe(Connection c, String subject) throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        Dispatcher d = c.createDispatcher(msg -> received.add(new String(msg.getData(), StandardCharsets.UTF_8)));
+        d.subscribe(subject);
+        c.flush(Duration.ofSeconds(2));
+        return received;
+    }
+
+    @Test
+    void publishes_during_an_outage_are_buffered_and_sent_after_reconnect() throws Exception {
+        try (NatsConnectionPool pool = NatsConnectionPool.open(settings(1024 * 1024, 1))) {
+            Connection c = pool.primary();
+            List<String> received = subscribe(c, "event.test.>");
+
+            c.publish("event.test.v1", "before".getBytes(StandardCharsets.UTF_8));
+            await(() -> received.size() == 1, "first message");
+
+            server.stop();
+            await(() -> c.getStatus() != Connection.Status.CONNECTED, "disconnect");
+            for (int i = 0; i < 100; i++) {
+                c.publish("event.test.v1", ("during-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+            // listener events are delivered asynchronously, after the status change
+            await(() -> pool.events(0).disconnects() == 1, "disconnect event");
+
+            server.start();
+            await(() -> received.size() == 101, "buffered messages after reconnect");
+            assertEquals("during-0", received.get(1));
+            assertEquals("during-99", received.get(100));
+            assertEquals(1L, c.getStatistics().getReconnects());
+            assertEquals(1, pool.events(0).disconnects(), "one outage, however many reconnect attempts");
+            assertEquals(Connection.Status.CONNECTED, c.getStatus());
+        }
+    }
+
+    @Test
+    void without_reconnect_buffer_publishing_during_an_outage_fails() throws Exception {
+        try (NatsConnectionPool pool = NatsConnectionPool.open(settings(0, 1))) {
+            Connection c = pool.primary();
+            server.stop();
+            await(() -> c.getStatus() != Connection.Status.CONNECTED, "disconnect");
+
+            assertThrows(IllegalStateException.class,
+                    () -> c.publish("event.test.v1", "lost".getBytes(StandardCharsets.UTF_8)));
+
+            server.start();
+            await(() -> c.getStatus() == Connection.Status.CONNECTED, "reconnect");
+        }
+    }
+
+    @Test
+    void pooled_connections_keep_each_key_on_one_connection() throws Exception {
+        try (NatsConnectionPool pool = NatsConnectionPool.open(settings(1024 * 1024, 3))) {
+            assertEquals(3, pool.size());
+            assertSame(pool.connection(0), pool.primary());
+            assertEquals("test-2", pool.name(2));
+
+            Set<Connection> used = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                String key = "V" + i;
+                assertSame(pool.forKey(key), pool.forKey(key));
+                used.add(pool.forKey(key));
+            }
+            assertEquals(3, used.size());
+
+            List<String> received = subscribe(pool.primary(), "event.test.>");
+            for (int i = 0; i < 50; i++) {
+                String key = "V" + i;
+                pool.forKey(key).publish("event.test." + key, key.getBytes(StandardCharsets.UTF_8));
+            }
+            pool.flushBuffers();
+            await(() -> received.size() == 50, "messages from every pooled connection");
+        }
+    }
+
+    @Test
+    void size_one_pool_is_just_the_primary_connection() throws Exception {
+        try (NatsConnectionPool pool = NatsConnectionPool.open(settings(1024 * 1024, 0))) {
+            assertEquals(1, pool.size());
+            assertSame(pool.primary(), pool.forKey("V1"));
+            assertEquals(List.of(pool.primary()), pool.all());
+        }
+    }
+}
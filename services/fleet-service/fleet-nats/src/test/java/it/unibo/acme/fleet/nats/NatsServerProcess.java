@@ -0,0 +1,86 @@
+package it.unibo.acme.fleet.nats;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@code nats-server} child process on a fixed loopback port. {@link #stop()} kills it
+ * (no lame duck mode), so the clients see the same abrupt disconnect as on a crash.
+ */
+final class NatsServerProcess implements TestBroker {
+
+    private final String binary;
+    private final int port;
+    private Process process;
+
+    NatsServerProcess(String binary, int port) {
+        this.binary = binary;
+        this.port = port;
+    }
+
+    static String findBinary() {
+        String configured = System.getenv("NATS_SERVER_BIN");
+        if (configured != null && !configured.isBlank()) {
+            return new File(configured).canExecute() ? configured : null;
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            File candidate = new File(dir, "nats-server");
+            if (candidate.canExecute()) {
+                return candidate.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String url() {
+        return "nats://127.0.0.1:" + port;
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        process = new ProcessBuilder(binary, "-a", "127.0.0.1", "-p", String.valueOf(port))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress("127.0.0.1", port), 200);
+                return;
+            } catch (IOException e) {
+                if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+                    stop();
+                    throw new IOException("nats-server did not start on port " + port, e);
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ie);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        Process p = process;
+        process = null;
+        if (p != null) {
+            p.destroyForcibly();
+            try {
+                p.waitFor(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
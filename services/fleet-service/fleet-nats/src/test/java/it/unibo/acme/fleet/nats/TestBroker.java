@@ -0,0 +1,38 @@
+package it.unibo.acme.fleet.nats;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Broker the connection tests run against: a real {@code nats-server} process when the
+ * binary is available ({@code NATS_SERVER_BIN} or {@code nats-server} on the PATH),
+ * otherwise the in-process {@link FakeNatsServer}.
+ *
+ * {@link #stop()} drops every client like a broker crash; {@link #start()} listens again
+ * on the same port.
+ */
+interface TestBroker extends AutoCloseable {
+
+    String url();
+
+    void start() throws IOException;
+
+    void stop();
+
+    @Override
+    default void close() {
+        stop();
+    }
+
+    static TestBroker create() throws IOException {
+        int port = freePort();
+        String binary = NatsServerProcess.findBinary();
+        return binary != null ? new NatsServerProcess(binary, port) : new FakeNatsServer(port);
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
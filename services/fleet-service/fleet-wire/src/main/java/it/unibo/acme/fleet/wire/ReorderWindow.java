@@ -0,0 +1,208 @@
+package it.unibo.acme.fleet.wire;
+
+/**
+ * Per-vehicle reorder buffer for telemetry sequence numbers.
+ *
+ * Messages are released strictly in {@code seq} order:
+ * - seq below the next expected one: stale (already superseded), dropped
+ * - seq ahead of it: parked in a slot of a fixed ring of {@code capacity} entries,
+ *   released as soon as the gap is filled
+ * - a message {@code capacity} or more positions ahead gives up on the open gap: what is
+ *   buffered is released, the missing messages are counted as skipped and the new one follows.
+ *   A lost message therefore delays at most {@code capacity - 1} successors
+ *
+ * A seq that goes back while its ts is newer than anything released (or that jumps back by
+ * more than {@link #RESTART_GAP}) is taken as a producer restart: the window starts over.
+ * Messages without seq (0, older producers) are only checked for monotonic ts.
+ *
+ * Usage, allocation-free (payload kept in primitive slots, no callbacks);
+ * poll() must be drained after every successful offer():
+ * <pre>
+ *   if (window.offer(seq, ts, lat, lon)) {
+ *       while (window.poll()) { apply(window.ts(), window.a(), window.b()); }
+ *   }
+ * </pre>
+ *
+ * Shared by tracking ({@code a}, {@code b} = lat, lon) and battery ({@code a} = battery pct).
+ * Not thread-safe: one window per vehicle, used by one thread at a time (tracking: the
+ * vehicle's shard thread; battery: under the per-vehicle state monitor).
+ */
+public final class ReorderWindow {
+
+    public static final long RESTART_GAP = 1024;
+
+    private final int capacity;
+    private final long[] seqs;   // 0 = empty slot
+    private final long[] tss;
+    private final double[] as;
+    private final double[] bs;
+    private int buffered;
+
+    private long next;           // next seq to release, 0 = not started
+    private long forceUpTo;      // gaps below this seq are given up on (= heldSeq)
+    private long lastTs;
+
+    // message too far ahead for the ring: released right after the buffered older ones
+    private long heldSeq;
+    private long heldTs;
+    private double heldA;
+    private double heldB;
+
+    // unsequenced pass-through
+    private boolean direct;
+
+    // current released entry
+    private long outTs;
+    private double outA;
+    private double outB;
+
+    private long stale;
+    private long reordered;
+    private long skipped;
+
+    public ReorderWindow(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.seqs = new long[this.capacity];
+        this.tss = new long[this.capacity];
+        this.as = new double[this.capacity];
+        this.bs = new double[this.capacity];
+    }
+
+    /** Returns false if the message was dropped (stale or duplicate). */
+    public boolean offer(long seq, long ts, double a, double b) {
+        if (seq <= 0) {
+            if (ts < lastTs) {
+                stale++;
+                return false;
+            }
+            lastTs = ts;
+            direct = true;
+            outTs = ts;
+            outA = a;
+            outB = b;
+            return true;
+        }
+        if (next == 0) {
+            next = seq;
+        } else if (seq < next) {
+            if (ts <= lastTs && next - seq <= RESTART_GAP) {
+                stale++;
+                return false;
+            }
+            restart(seq);
+        }
+        if (seq >= next + capacity) {
+            // its slot may still hold an older message: release/skip up to it first (in poll)
+            forceUpTo = seq;
+            heldSeq = seq;
+            heldTs = ts;
+            heldA = a;
+            heldB = b;
+            return true;
+        }
+        int slot = (int) (seq % capacity);
+        if (seqs[slot] == seq) {
+            stale++;
+            return false;
+        }
+        if (seq != next) {
+            reordered++;
+        }
+        store(slot, seq, ts, a, b);
+        return true;
+    }
+
+    /** Loads the next releasable message into ts()/a()/b(); false when none is ready. */
+    public boolean poll() {
+        if (direct) {
+            direct = false;
+            return true;
+        }
+        while (true) {
+            int slot = (int) (next % capacity);
+            if (buffered > 0 && seqs[slot] == next) {
+                outTs = tss[slot];
+                outA = as[slot];
+                outB = bs[slot];
+                seqs[slot] = 0;
+                buffered--;
+                next++;
+                if (outTs > lastTs) {
+                    lastTs = outTs;
+                }
+                return true;
+            }
+            if (next < forceUpTo) {
+                // give up on the gap
+                if (buffered == 0) {
+                    skipped += forceUpTo - next;
+                    next = forceUpTo;
+                } else {
+                    skipped++;
+                    next++;
+                }
+                continue;
+            }
+            if (heldSeq != 0 && heldSeq == next) {
+                outTs = heldTs;
+                outA = heldA;
+                outB = heldB;
+                heldSeq = 0;
+                next++;
+                if (outTs > lastTs) {
+                    lastTs = outTs;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void store(int slot, long seq, long ts, double a, double b) {
+        seqs[slot] = seq;
+        tss[slot] = ts;
+        as[slot] = a;
+        bs[slot] = b;
+        buffered++;
+    }
+
+    public long ts() {
+        return outTs;
+    }
+
+    public double a() {
+        return outA;
+    }
+
+    public double b() {
+        return outB;
+    }
+
+    public long stale() {
+        return stale;
+    }
+
+    public long reordered() {
+        return reordered;
+    }
+
+    public long skipped() {
+        return skipped;
+    }
+
+    public int buffered() {
+        return buffered;
+    }
+
+    private void restart(long seq) {
+        for (int i = 0; i < capacity; i++) {
+            seqs[i] = 0;
+        }
+        skipped += buffered;
+        buffered = 0;
+        heldSeq = 0;
+        next = seq;
+        forceUpTo = 0;
+        lastTs = 0;
+    }
+}
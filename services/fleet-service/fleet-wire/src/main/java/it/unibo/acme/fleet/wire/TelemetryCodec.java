@@ -0,0 +1,205 @@
+package it.unibo.acme.fleet.wire;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary telemetry encoding (alternative to JSON).
+ *
+ * Layout (big endian), shared by the vehicle-simulator (encoder) and the tracking and
+ * battery services (decoders):
+ * <pre>
+ *   byte    version      (= 2; 1 = same record without seq)
+ *   varint  vehicleIndex ("V042" -> 42)
+ *   varint  seq          (per-vehicle sequence number, 0 = none)
+ *   varint  ts - BASE_TS (millis, zigzag)
+ *   int32   lat * 1e7
+ *   int32   lon * 1e7
+ *   byte    batteryPct   (0..100, 0xFF = missing)
+ * </pre>
+ *
+ * Producers flag it with the NATS header {@link #CONTENT_TYPE_HEADER};
+ * messages without the header are JSON (default).
+ *
+ * Batch frame (subject telemetry.batch.&lt;shard&gt;, header {@link #CONTENT_TYPE_BATCH}):
+ * <pre>
+ *   byte    version      (= 2, applies to every record)
+ *   varint  count
+ *   varint  baseTs - BASE_TS (zigzag)
+ *   count x record: as above without version, ts relative to baseTs
+ * </pre>
+ */
+public final class TelemetryCodec {
+
+    public static final String CONTENT_TYPE_HEADER = "Content-Type";
+    public static final String CONTENT_TYPE_BINARY = "application/vnd.acme.telemetry.v1";
+    public static final String CONTENT_TYPE_BATCH = "application/vnd.acme.telemetry-batch.v1";
+
+    public static final byte VERSION = 2;
+    public static final byte VERSION_NO_SEQ = 1;
+
+    /** Reference epoch for the timestamp delta (2025-01-01T00:00:00Z). */
+    public static final long BASE_TS = 1735689600000L;
+
+    public static final int MAX_RECORD_BYTES = 1 + 5 + 10 + 10 + 4 + 4 + 1;
+    public static final int MAX_FRAME_HEADER_BYTES = 1 + 5 + 10;
+    /** Smallest record in a frame: one-byte varints, no seq for version 1. */
+    static final int MIN_FRAME_RECORD_BYTES = 1 + 1 + 4 + 4 + 1;
+
+    private static final double FIXED_POINT = 1e7;
+    private static final int NO_BATTERY = 0xFF;
+
+    private TelemetryCodec() {}
+
+    /**
+     * Numeric vehicle index parsed from the id ("V001" -> 1),
+     * or -1 if the id doesn't follow the simulator "V" + digits scheme.
+     */
+    public static int vehicleIndex(String vehicleId) {
+        if (vehicleId == null || vehicleId.length() < 2 || vehicleId.charAt(0) != 'V') {
+            return -1;
+        }
+        int idx = 0;
+        for (int i = 1; i < vehicleId.length(); i++) {
+            char c = vehicleId.charAt(i);
+            if (c < '0' || c > '9' || idx > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            idx = idx * 10 + (c - '0');
+        }
+        // only ids that decode back to the same string are encodable
+        return vehicleId.equals(vehicleId(idx)) ? idx : -1;
+    }
+
+    public static String vehicleId(int index) {
+        String digits = Integer.toString(index);
+        if (digits.length() >= 3) {
+            return "V" + digits;
+        }
+        return digits.length() == 2 ? "V0" + digits : "V00" + digits;
+    }
+
+    public static boolean isBinary(String contentType) {
+        return CONTENT_TYPE_BINARY.equals(contentType);
+    }
+
+    public static byte[] encode(TelemetryMessage msg) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_RECORD_BYTES);
+        encode(msg, buf);
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    public static void encode(TelemetryMessage msg, ByteBuffer buf) {
+        buf.put(VERSION);
+        writeRecord(msg, BASE_TS, buf);
+    }
+
+    public static byte[] encodeFrame(List<TelemetryMessage> batch) {
+        long baseTs = batch.isEmpty() ? BASE_TS : batch.get(0).ts;
+        ByteBuffer buf = ByteBuffer.allocate(MAX_FRAME_HEADER_BYTES + batch.size() * MAX_RECORD_BYTES);
+        buf.put(VERSION);
+        writeVarint(buf, batch.size());
+        writeVarint(buf, zigzag(baseTs - BASE_TS));
+        for (TelemetryMessage msg : batch) {
+            writeRecord(msg, baseTs, buf);
+        }
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    private static void writeRecord(TelemetryMessage msg, long baseTs, ByteBuffer buf) {
+        int idx = vehicleIndex(msg.vehicleId);
+        if (idx < 0) {
+            throw new IllegalArgumentException("vehicleId not encodable: " + msg.vehicleId);
+        }
+        writeVarint(buf, idx);
+        writeVarint(buf, Math.max(0, msg.seq));
+        writeVarint(buf, zigzag(msg.ts - baseTs));
+        buf.putInt((int) Math.round(msg.lat * FIXED_POINT));
+        buf.putInt((int) Math.round(msg.lon * FIXED_POINT));
+        Integer pct = msg.batteryPct;
+        buf.put((byte) (pct == null ? NO_BATTERY : Math.max(0, Math.min(pct, 100))));
+    }
+
+    public static TelemetryMessage decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    public static TelemetryMessage decode(ByteBuffer buf) {
+        byte version = checkVersion(buf.get());
+        return readRecord(buf, BASE_TS, version);
+    }
+
+    public static List<TelemetryMessage> decodeFrame(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        byte version = checkVersion(buf.get());
+        long count = readVarint(buf);
+        long baseTs = BASE_TS + unzigzag(readVarint(buf));
+        // a corrupt count must not size the list: it could ask for gigabytes
+        if (count > buf.remaining() / MIN_FRAME_RECORD_BYTES) {
+            throw new IllegalArgumentException("frame of " + data.length + " bytes can't hold " + count + " records");
+        }
+        List<TelemetryMessage> out = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            out.add(readRecord(buf, baseTs, version));
+        }
+        return out;
+    }
+
+    private static TelemetryMessage readRecord(ByteBuffer buf, long baseTs, byte version) {
+        TelemetryMessage msg = new TelemetryMessage();
+        msg.vehicleId = vehicleId((int) readVarint(buf));
+        if (version != VERSION_NO_SEQ) {
+            msg.seq = readVarint(buf);
+        }
+        msg.ts = baseTs + unzigzag(readVarint(buf));
+        msg.lat = buf.getInt() / FIXED_POINT;
+        msg.lon = buf.getInt() / FIXED_POINT;
+        int pct = buf.get() & 0xFF;
+        msg.batteryPct = pct == NO_BATTERY ? null : pct;
+        return msg;
+    }
+
+    private static byte checkVersion(byte version) {
+        if (version != VERSION && version != VERSION_NO_SEQ) {
+            throw new IllegalArgumentException("unsupported telemetry version: " + version);
+        }
+        return version;
+    }
+
+    // ---- varint / zigzag ----
+
+    static void writeVarint(ByteBuffer buf, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    static long readVarint(ByteBuffer buf) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
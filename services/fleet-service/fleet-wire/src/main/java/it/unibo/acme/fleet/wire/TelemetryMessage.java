@@ -0,0 +1,13 @@
+package it.unibo.acme.fleet.wire;
+
+/** One telemetry sample of a vehicle, as published by the simulator (JSON or {@link TelemetryCodec}). */
+public class TelemetryMessage {
+    public String vehicleId;
+    public long seq; // per-vehicle sequence number from the producer, 0 = not provided
+    public long ts;
+    public double lat;
+    public double lon;
+    public Integer batteryPct; // null = missing (0xFF in the binary format)
+
+    public TelemetryMessage() {}
+}
@@ -0,0 +1,128 @@
+package it.unibo.acme.fleet.wire;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ReorderWindow – stale drops and re-sequencing of late telemetry")
+class ReorderWindowTest {
+
+    @Test
+    void swapped_messages_are_released_in_order() {
+        ReorderWindow w = new ReorderWindow(4);
+        List<Long> out = new ArrayList<>();
+        offer(w, 1, out);
+        offer(w, 3, out);
+        assertEquals(List.of(1L), out);
+        offer(w, 2, out);
+        assertEquals(List.of(1L, 2L, 3L), out);
+        assertEquals(1, w.reordered());
+    }
+
+    @Test
+    void stale_and_duplicate_messages_are_dropped() {
+        ReorderWindow w = new ReorderWindow(4);
+        List<Long> out = new ArrayList<>();
+        offer(w, 10, out);
+        offer(w, 11, out);
+        assertFalse(w.offer(9, 9_000, 0, 0));
+        assertFalse(w.offer(11, 11_000, 0, 0));
+        offer(w, 13, out);
+        assertFalse(w.offer(13, 13_000, 0, 0));
+        assertEquals(List.of(10L, 11L), out);
+        assertEquals(3, w.stale());
+    }
+
+    @Test
+    void lost_message_delays_at_most_capacity_minus_one_successors() {
+        ReorderWindow w = new ReorderWindow(4);
+        List<Long> out = new ArrayList<>();
+        offer(w, 1, out);
+        // 2 is lost
+        offer(w, 3, out);
+        offer(w, 4, out);
+        offer(w, 5, out);
+        assertEquals(List.of(1L), out);
+        offer(w, 6, out);
+        assertEquals(List.of(1L, 3L, 4L, 5L, 6L), out);
+        assertEquals(1, w.skipped());
+    }
+
+    @Test
+    void large_jump_flushes_buffered_messages_first() {
+        ReorderWindow w = new ReorderWindow(4);
+        List<Long> out = new ArrayList<>();
+        offer(w, 1, out);
+        offer(w, 3, out);
+        offer(w, 4, out);
+        offer(w, 100, out);
+        assertEquals(List.of(1L, 3L, 4L, 100L), out);
+        assertEquals(0, w.buffered());
+        offer(w, 101, out);
+        assertEquals(101L, (long) out.get(out.size() - 1));
+    }
+
+    @Test
+    void producer_restart_is_detected_by_newer_timestamp() {
+        ReorderWindow w = new ReorderWindow(4);
+        List<Long> out = new ArrayList<>();
+        for (long s = 1; s <= 50; s++) {
+            offer(w, s, out);
+        }
+        // simulator restarted: seq starts over, ts keeps going forward
+        assertTrue(w.offer(1, 60_000, 0, 0));
+        assertTrue(w.poll());
+        assertEquals(60_000, w.ts());
+    }
+
+    @Test
+    void unsequenced_messages_only_need_monotonic_ts() {
+        ReorderWindow w = new ReorderWindow(4);
+        assertTrue(w.offer(0, 2_000, 1, 1));
+        assertTrue(w.poll());
+        assertFalse(w.poll());
+        assertFalse(w.offer(0, 1_000, 1, 1));
+        assertTrue(w.offer(0, 2_000, 1, 1));
+    }
+
+    @Test
+    void random_shuffle_within_window_is_fully_repaired() {
+        Random rnd = new Random(17);
+        int n = 10_000;
+        List<Long> seqs = new ArrayList<>();
+        for (long s = 1; s <= n; s++) {
+            seqs.add(s);
+        }
+        // local shuffles: every message is displaced by less than the window
+        // (the first one stays put, the window starts from whatever arrives first)
+        for (int i = 1; i + 4 <= n; i += 4) {
+            Collections.shuffle(seqs.subList(i, i + 4), rnd);
+        }
+        ReorderWindow w = new ReorderWindow(8);
+        List<Long> out = new ArrayList<>();
+        for (long s : seqs) {
+            offer(w, s, out);
+        }
+        assertEquals(n, out.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i + 1, (long) out.get(i));
+        }
+        assertEquals(0, w.skipped());
+    }
+
+    // ---- helpers ----
+
+    private static void offer(ReorderWindow w, long seq, List<Long> out) {
+        if (w.offer(seq, seq * 1000, seq, 0)) {
+            while (w.poll()) {
+                out.add((long) w.a());
+            }
+        }
+    }
+}
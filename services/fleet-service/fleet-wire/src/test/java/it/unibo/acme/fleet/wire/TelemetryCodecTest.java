@@ -0,0 +1,189 @@
+package it.unibo.acme.fleet.wire;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Pins the binary wire format shared by the simulator and the services. */
+@DisplayName("TelemetryCodec – wire format and round trip")
+class TelemetryCodecTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static TelemetryMessage msg(String id, long seq, long ts, double lat, double lon, Integer pct) {
+        TelemetryMessage m = new TelemetryMessage();
+        m.vehicleId = id;
+        m.seq = seq;
+        m.ts = ts;
+        m.lat = lat;
+        m.lon = lon;
+        m.batteryPct = pct;
+        return m;
+    }
+
+    private static void assertSameMessage(TelemetryMessage expected, TelemetryMessage actual) {
+        assertEquals(expected.vehicleId, actual.vehicleId);
+        assertEquals(expected.seq, actual.seq);
+        assertEquals(expected.ts, actual.ts);
+        assertEquals(expected.lat, actual.lat, 1e-7);
+        assertEquals(expected.lon, actual.lon, 1e-7);
+        assertEquals(expected.batteryPct, actual.batteryPct);
+    }
+
+    private static byte[] varint(long v) {
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        TelemetryCodec.writeVarint(buf, v);
+        byte[] out = new byte[buf.position()];
+        buf.flip();
+        buf.get(out);
+        return out;
+    }
+
+    @Test
+    void single_record_matches_the_golden_bytes() {
+        TelemetryMessage m = msg("V042", 7, TelemetryCodec.BASE_TS + 1500, 44.4949, 11.3426, 87);
+        byte[] bytes = TelemetryCodec.encode(m);
+
+        // version, idx 42, seq 7, zigzag(1500) = 3000, lat/lon * 1e7 as int32, battery
+        assertEquals("022a07b8171a85620806c2be5057", HEX.formatHex(bytes));
+        assertSameMessage(m, TelemetryCodec.decode(bytes));
+    }
+
+    @Test
+    void missing_battery_is_0xff_on_the_wire_and_null_after_decoding() {
+        TelemetryMessage m = msg("V1000", 300, TelemetryCodec.BASE_TS - 1, -33.8688, 151.2093, null);
+        byte[] bytes = TelemetryCodec.encode(m);
+
+        assertEquals("02e807ac0201ebd008005a20b548ff", HEX.formatHex(bytes));
+        assertNull(TelemetryCodec.decode(bytes).batteryPct);
+    }
+
+    @Test
+    void battery_is_clamped_to_0_100() {
+        TelemetryMessage high = msg("V001", 1, TelemetryCodec.BASE_TS, 0, 0, 150);
+        TelemetryMessage low = msg("V001", 1, TelemetryCodec.BASE_TS, 0, 0, -5);
+        assertEquals(100, TelemetryCodec.decode(TelemetryCodec.encode(high)).batteryPct);
+        assertEquals(0, TelemetryCodec.decode(TelemetryCodec.encode(low)).batteryPct);
+    }
+
+    @Test
+    void frame_matches_the_golden_bytes_and_keeps_record_order() {
+        long base = TelemetryCodec.BASE_TS + 60_000;
+        List<TelemetryMessage> batch = List.of(
+                msg("V001", 1, base, 44.5, 11.3, 100),
+                msg("V002", 5, base - 20, 44.6, 11.4, null),
+                msg("V12345", 1, base + 250, 44.7, 11.5, 0));
+        byte[] bytes = TelemetryCodec.encodeFrame(batch);
+
+        // version, count 3, zigzag(60000) for baseTs, then records with ts relative to the first one
+        assertEquals("0203c0a9070101001a86294006bc3e40640205271a956b8006cb8080ffb96001f4031aa4adc006dac2c000",
+                HEX.formatHex(bytes));
+        List<TelemetryMessage> decoded = TelemetryCodec.decodeFrame(bytes);
+        assertEquals(3, decoded.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertSameMessage(batch.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    void frame_count_larger_than_the_payload_is_rejected() {
+        byte[] frame = TelemetryCodec.encodeFrame(List.of(msg("V001", 1, TelemetryCodec.BASE_TS, 44.5, 11.3, 90)));
+        assertEquals(1, TelemetryCodec.decodeFrame(frame).size());
+
+        // count varint rewritten to 2^31 - 1: same payload, one record
+        ByteBuffer corrupt = ByteBuffer.allocate(frame.length + 4);
+        corrupt.put(frame[0]);
+        TelemetryCodec.writeVarint(corrupt, Integer.MAX_VALUE);
+        corrupt.put(frame, 2, frame.length - 2);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryCodec.decodeFrame(corrupt.array()));
+    }
+
+    @Test
+    void large_and_empty_frames_round_trip() {
+        List<TelemetryMessage> batch = new ArrayList<>();
+        long ts = 1_760_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            batch.add(msg(TelemetryCodec.vehicleId(i), i * 1000L, ts + (i % 7) * 333 - 1000,
+                    44 + i * 1e-4, 11 - i * 1e-4, i % 3 == 0 ? null : i % 101));
+        }
+        List<TelemetryMessage> decoded = TelemetryCodec.decodeFrame(TelemetryCodec.encodeFrame(batch));
+        assertEquals(batch.size(), decoded.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertSameMessage(batch.get(i), decoded.get(i));
+        }
+
+        assertEquals("020000", HEX.formatHex(TelemetryCodec.encodeFrame(List.of())));
+        assertTrue(TelemetryCodec.decodeFrame(TelemetryCodec.encodeFrame(List.of())).isEmpty());
+    }
+
+    @Test
+    void version_1_records_have_no_seq() {
+        byte[] v1 = HEX.parseHex("012ab8171a85620806c2be5057");
+        TelemetryMessage m = TelemetryCodec.decode(v1);
+        assertEquals("V042", m.vehicleId);
+        assertEquals(0, m.seq);
+        assertEquals(TelemetryCodec.BASE_TS + 1500, m.ts);
+        assertEquals(87, m.batteryPct);
+
+        assertThrows(IllegalArgumentException.class, () -> TelemetryCodec.decode(HEX.parseHex("032a")));
+    }
+
+    @Test
+    void varint_boundaries() {
+        assertEquals("00", HEX.formatHex(varint(0)));
+        assertEquals("7f", HEX.formatHex(varint(127)));
+        assertEquals("8001", HEX.formatHex(varint(128)));
+        assertEquals("ff7f", HEX.formatHex(varint(16383)));
+        assertEquals("808001", HEX.formatHex(varint(16384)));
+        assertEquals("ffffffff07", HEX.formatHex(varint(Integer.MAX_VALUE)));
+        assertEquals("ffffffffffffffff7f", HEX.formatHex(varint(Long.MAX_VALUE)));
+        assertEquals("ffffffffffffffffff01", HEX.formatHex(varint(-1)));
+
+        for (long v : new long[] {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, -1}) {
+            assertEquals(v, TelemetryCodec.readVarint(ByteBuffer.wrap(varint(v))));
+        }
+        byte[] endless = new byte[11];
+        java.util.Arrays.fill(endless, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryCodec.readVarint(ByteBuffer.wrap(endless)));
+    }
+
+    @Test
+    void zigzag_boundaries() {
+        assertEquals(0, TelemetryCodec.zigzag(0));
+        assertEquals(1, TelemetryCodec.zigzag(-1));
+        assertEquals(2, TelemetryCodec.zigzag(1));
+        assertEquals(-2, TelemetryCodec.zigzag(Long.MAX_VALUE));
+        assertEquals(-1, TelemetryCodec.zigzag(Long.MIN_VALUE));
+
+        for (long v : new long[] {0, 1, -1, 1500, -1500, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(v, TelemetryCodec.unzigzag(TelemetryCodec.zigzag(v)));
+        }
+    }
+
+    @Test
+    void vehicle_index_accepts_only_ids_that_decode_back_identically() {
+        assertEquals(1, TelemetryCodec.vehicleIndex("V001"));
+        assertEquals(42, TelemetryCodec.vehicleIndex("V042"));
+        assertEquals(1000, TelemetryCodec.vehicleIndex("V1000"));
+        assertEquals(2147483639, TelemetryCodec.vehicleIndex("V2147483639"));
+
+        assertEquals(-1, TelemetryCodec.vehicleIndex(null));
+        assertEquals(-1, TelemetryCodec.vehicleIndex("V"));
+        assertEquals(-1, TelemetryCodec.vehicleIndex("V1"));      // decodes as V001
+        assertEquals(-1, TelemetryCodec.vehicleIndex("V0042"));   // decodes as V042
+        assertEquals(-1, TelemetryCodec.vehicleIndex("v001"));
+        assertEquals(-1, TelemetryCodec.vehicleIndex("SCOOTER-7"));
+        assertEquals(-1, TelemetryCodec.vehicleIndex("V12a"));
+        assertEquals(-1, TelemetryCodec.vehicleIndex("V99999999999"));  // overflows int
+
+        TelemetryMessage foreign = msg("SCOOTER-7", 1, TelemetryCodec.BASE_TS, 0, 0, 50);
+        assertThrows(IllegalArgumentException.class, () -> TelemetryCodec.encode(foreign));
+        assertThrows(IllegalArgumentException.class, () -> TelemetryCodec.encodeFrame(List.of(foreign)));
+    }
+}
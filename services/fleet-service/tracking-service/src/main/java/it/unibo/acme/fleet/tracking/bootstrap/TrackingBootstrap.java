@@ -1,8 +1,11 @@
 package it.unibo.acme.fleet.tracking.bootstrap;
 
+import it.unibo.acme.fleet.tracking.resource.GeofenceEventEmitter;
+import it.unibo.acme.fleet.tracking.resource.SnapshotDumpResource;
 import it.unibo.acme.fleet.tracking.resource.SnapshotEmitter;
 import it.unibo.acme.fleet.tracking.resource.TelemetrySubscriptionResource;
 import it.unibo.acme.fleet.tracking.resource.TrackingCommandResource;
+import it.unibo.acme.fleet.tracking.resource.TripSummaryEmitter;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Initialized;
 import jakarta.enterprise.event.Observes;
@@ -18,6 +21,9 @@ public class TrackingBootstrap {
     @Inject Instance<TrackingCommandResource> commands;
     @Inject Instance<TelemetrySubscriptionResource> telemetry;
     @Inject Instance<SnapshotEmitter> emitter;
+    @Inject Instance<GeofenceEventEmitter> geofences;
+    @Inject Instance<TripSummaryEmitter> trips;
+    @Inject Instance<SnapshotDumpResource> dumps;
 
     void onStart(@Observes @Initialized(ApplicationScoped.class) Object init) {
         // forza la creazione dei bean -> scatta @PostConstruct -> subscribe NATS + scheduler
@@ -27,6 +33,9 @@ public class TrackingBootstrap {
         commands.get().toString();
         telemetry.get().toString();
         emitter.get().toString();
+        geofences.get().toString();
+        trips.get().toString();
+        dumps.get().toString();
 
         LOG.info("TrackingBootstrap completed: NATS resources initialized.");
     }
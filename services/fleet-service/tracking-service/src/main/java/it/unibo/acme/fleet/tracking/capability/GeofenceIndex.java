@@ -0,0 +1,186 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.GeofenceDefinition;
+import it.unibo.acme.fleet.tracking.util.Geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of geofences (circles and polygons) with a uniform grid over their
+ * bounding boxes: each cell lists the fences that may contain a point of that cell,
+ * so evaluating a position only tests a handful of fences whatever the total count.
+ *
+ * Built once at startup and shared read-only by all tracking shards.
+ */
+public final class GeofenceIndex {
+
+    public static final GeofenceIndex EMPTY = new GeofenceIndex(List.of(), 500);
+
+    private static final int[] NONE = new int[0];
+
+    private final double cellDeg;
+    private final Map<Long, int[]> cells;
+
+    private final String[] ids;
+    private final boolean[] circle;
+    private final double[] minLat;
+    private final double[] maxLat;
+    private final double[] minLon;
+    private final double[] maxLon;
+
+    // circles
+    private final double[] centerLat;
+    private final double[] centerLon;
+    private final double[] cosLat;
+    private final double[] radiusSq;
+
+    // polygons
+    private final double[][] polyLat;
+    private final double[][] polyLon;
+
+    public GeofenceIndex(List<GeofenceDefinition> fences, double cellMeters) {
+        int n = fences.size();
+        this.cellDeg = Math.max(10, cellMeters) / Geo.METERS_PER_DEG_LAT;
+        this.ids = new String[n];
+        this.circle = new boolean[n];
+        this.minLat = new double[n];
+        this.maxLat = new double[n];
+        this.minLon = new double[n];
+        this.maxLon = new double[n];
+        this.centerLat = new double[n];
+        this.centerLon = new double[n];
+        this.cosLat = new double[n];
+        this.radiusSq = new double[n];
+        this.polyLat = new double[n][];
+        this.polyLon = new double[n][];
+
+        for (int i = 0; i < n; i++) {
+            compile(i, fences.get(i));
+        }
+        this.cells = buildGrid(n);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    String id(int fence) {
+        return ids[fence];
+    }
+
+    long cellKey(double lat, double lon) {
+        return ((long) (int) Math.floor(lat / cellDeg) << 32) | ((int) Math.floor(lon / cellDeg) & 0xffffffffL);
+    }
+
+    /** Fences whose bounding box overlaps the cell (shared array, do not modify). */
+    int[] candidates(long cellKey) {
+        int[] c = cells.get(cellKey);
+        return c != null ? c : NONE;
+    }
+
+    boolean contains(int fence, double lat, double lon) {
+        if (lat < minLat[fence] || lat > maxLat[fence] || lon < minLon[fence] || lon > maxLon[fence]) {
+            return false;
+        }
+        if (circle[fence]) {
+            return Geo.fastDistanceSquaredMeters(centerLat[fence], centerLon[fence], lat, lon, cosLat[fence]) <= radiusSq[fence];
+        }
+        // even-odd ray casting, fine on degrees for city-sized polygons
+        double[] la = polyLat[fence];
+        double[] lo = polyLon[fence];
+        boolean inside = false;
+        for (int i = 0, j = la.length - 1; i < la.length; j = i++) {
+            if ((la[i] > lat) != (la[j] > lat)
+                    && lon < (lo[j] - lo[i]) * (lat - la[i]) / (la[j] - la[i]) + lo[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    // ---- build ----
+
+    private void compile(int i, GeofenceDefinition def) {
+        if (def == null || def.id == null || def.id.isBlank()) {
+            throw new IllegalArgumentException("geofence #" + i + ": missing id");
+        }
+        ids[i] = def.id;
+        if (GeofenceDefinition.CIRCLE.equalsIgnoreCase(def.type)) {
+            if (def.lat == null || def.lon == null || def.radiusM == null || def.radiusM <= 0) {
+                throw new IllegalArgumentException("geofence " + def.id + ": circle needs lat, lon and radiusM > 0");
+            }
+            circle[i] = true;
+            centerLat[i] = def.lat;
+            centerLon[i] = def.lon;
+            cosLat[i] = Geo.cosLat(def.lat);
+            radiusSq[i] = def.radiusM * def.radiusM;
+            double dLat = def.radiusM / Geo.METERS_PER_DEG_LAT;
+            double dLon = def.radiusM / (Geo.METERS_PER_DEG_LAT * Math.max(0.01, cosLat[i]));
+            minLat[i] = def.lat - dLat;
+            maxLat[i] = def.lat + dLat;
+            minLon[i] = def.lon - dLon;
+            maxLon[i] = def.lon + dLon;
+        } else if (GeofenceDefinition.POLYGON.equalsIgnoreCase(def.type)) {
+            if (def.points == null || def.points.size() < 3) {
+                throw new IllegalArgumentException("geofence " + def.id + ": polygon needs at least 3 points");
+            }
+            int m = def.points.size();
+            polyLat[i] = new double[m];
+            polyLon[i] = new double[m];
+            minLat[i] = minLon[i] = Double.POSITIVE_INFINITY;
+            maxLat[i] = maxLon[i] = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < m; k++) {
+                List<Double> p = def.points.get(k);
+                if (p == null || p.size() != 2 || p.get(0) == null || p.get(1) == null) {
+                    throw new IllegalArgumentException("geofence " + def.id + ": point #" + k + " must be [lat, lon]");
+                }
+                polyLat[i][k] = p.get(0);
+                polyLon[i][k] = p.get(1);
+                minLat[i] = Math.min(minLat[i], polyLat[i][k]);
+                maxLat[i] = Math.max(maxLat[i], polyLat[i][k]);
+                minLon[i] = Math.min(minLon[i], polyLon[i][k]);
+                maxLon[i] = Math.max(maxLon[i], polyLon[i][k]);
+            }
+        } else {
+            throw new IllegalArgumentException("geofence " + def.id + ": unknown type " + def.type);
+        }
+    }
+
+    private Map<Long, int[]> buildGrid(int n) {
+        Map<Long, List<Integer>> tmp = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            int r0 = (int) Math.floor(minLat[i] / cellDeg);
+            int r1 = (int) Math.floor(maxLat[i] / cellDeg);
+            int c0 = (int) Math.floor(minLon[i] / cellDeg);
+            int c1 = (int) Math.floor(maxLon[i] / cellDeg);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    long key = ((long) r << 32) | (c & 0xffffffffL);
+                    tmp.computeIfAbsent(key, k -> new ArrayList<>(2)).add(i);
+                }
+            }
+        }
+        Map<Long, int[]> out = new HashMap<>(tmp.size() * 2);
+        for (Map.Entry<Long, List<Integer>> e : tmp.entrySet()) {
+            List<Integer> l = e.getValue();
+            int[] arr = new int[l.size()];
+            for (int k = 0; k < arr.length; k++) {
+                arr[k] = l.get(k);
+            }
+            out.put(e.getKey(), arr);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "GeofenceIndex{fences=" + ids.length + ", cells=" + cells.size() + "}";
+    }
+}
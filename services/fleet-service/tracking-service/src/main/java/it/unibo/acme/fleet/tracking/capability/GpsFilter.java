@@ -0,0 +1,128 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+
+/**
+ * Streaming GPS clean-up for distance accumulation, one instance per vehicle.
+ *
+ * Three stages, all O(1) on a handful of primitive fields:
+ * 1. speed gate: a fix implying more than {@code maxSpeedMps} from the last accepted one
+ *    is rejected as an outlier. After {@link #MAX_CONSECUTIVE_REJECTS} rejects in a row
+ *    the filter re-initialises on the new fix (the vehicle really is somewhere else).
+ * 2. scalar Kalman filter on lat/lon (constant-position model): the estimate variance
+ *    grows by (processNoiseMps * dt)^2 between fixes and is blended with the fix variance
+ *    {@code gpsNoiseM}^2.
+ * 3. deadband: distance is only accumulated once the filtered position moved at least
+ *    2 * {@code gpsNoiseM} away from the last counted point, so jitter while parked adds nothing.
+ *
+ * Hops are measured with the equirectangular formula (hops are short once speed-gated).
+ *
+ * Not thread-safe: owned by the shard thread of its vehicle.
+ */
+final class GpsFilter {
+
+    static final int MAX_CONSECUTIVE_REJECTS = 3;
+
+    private final double maxSpeedMps;
+    private final double gpsVariance;
+    private final double deadbandM;
+    private final double processNoiseMps;
+
+    private boolean initialised;
+    private double cosLat;
+
+    private double rawLat;
+    private double rawLon;
+    private long rawTs;
+    private int consecutiveRejects;
+    private long rejected;
+
+    private double lat;
+    private double lon;
+    private double variance;   // m^2
+
+    private double countedLat;
+    private double countedLon;
+
+    GpsFilter(double maxSpeedMps, double gpsNoiseM, double processNoiseMps) {
+        this.maxSpeedMps = Math.max(1, maxSpeedMps);
+        this.deadbandM = 2 * Math.max(0, gpsNoiseM);
+        this.gpsVariance = Math.max(0.01, gpsNoiseM * gpsNoiseM);
+        this.processNoiseMps = Math.max(0.01, processNoiseMps);
+    }
+
+    void reset() {
+        initialised = false;
+        consecutiveRejects = 0;
+        rejected = 0;
+    }
+
+    double lat() {
+        return lat;
+    }
+
+    double lon() {
+        return lon;
+    }
+
+    /** Fixes rejected by the speed gate since the last reset. */
+    long rejected() {
+        return rejected;
+    }
+
+    /**
+     * Feeds one fix. Returns the meters to add to the trip distance (often 0),
+     * or -1 if the fix was rejected as an outlier.
+     */
+    double update(double fixLat, double fixLon, long ts) {
+        if (!initialised) {
+            init(fixLat, fixLon, ts);
+            return 0;
+        }
+
+        double dtSec = Math.max(0.001, (ts - rawTs) / 1000.0);
+        double jump = meters(rawLat, rawLon, fixLat, fixLon);
+        if (jump > maxSpeedMps * dtSec + deadbandM) {
+            rejected++;
+            if (++consecutiveRejects < MAX_CONSECUTIVE_REJECTS) {
+                return -1;
+            }
+            // persistent: not an outlier but a relocation, restart there without counting the jump
+            init(fixLat, fixLon, ts);
+            return 0;
+        }
+        consecutiveRejects = 0;
+        rawLat = fixLat;
+        rawLon = fixLon;
+        rawTs = ts;
+
+        double q = processNoiseMps * dtSec;
+        variance += q * q;
+        double k = variance / (variance + gpsVariance);
+        lat += k * (fixLat - lat);
+        lon += k * (fixLon - lon);
+        variance *= (1 - k);
+
+        double moved = meters(countedLat, countedLon, lat, lon);
+        if (moved < deadbandM) {
+            return 0;
+        }
+        countedLat = lat;
+        countedLon = lon;
+        return moved;
+    }
+
+    private void init(double fixLat, double fixLon, long ts) {
+        initialised = true;
+        consecutiveRejects = 0;
+        cosLat = Geo.cosLat(fixLat);
+        rawLat = lat = countedLat = fixLat;
+        rawLon = lon = countedLon = fixLon;
+        rawTs = ts;
+        variance = gpsVariance;
+    }
+
+    private double meters(double lat1, double lon1, double lat2, double lon2) {
+        return Math.sqrt(Geo.fastDistanceSquaredMeters(lat1, lon1, lat2, lon2, cosLat));
+    }
+}
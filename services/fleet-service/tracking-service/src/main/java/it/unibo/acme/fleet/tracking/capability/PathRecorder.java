@@ -0,0 +1,267 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+
+/**
+ * Records the route of one trip, simplified online.
+ *
+ * Simplification is the streaming cone-intersection variant of Douglas-Peucker
+ * (Williams / "sleeve" algorithm): from the last kept point (the anchor) we keep the
+ * interval of directions that stays within {@code toleranceM} of every point seen since.
+ * A new point outside that interval closes the segment: the previous point is kept
+ * and becomes the new anchor. Every dropped point is within the tolerance of the
+ * kept polyline, and each input point costs O(1) (one atan2 + one asin, no buffering).
+ *
+ * Kept points are stored as int deltas of 1e-6 degrees (~0.1 m) from the previous kept
+ * point, in arrays that grow up to {@code maxPoints}. When full, the stored route is
+ * re-simplified with twice the tolerance (and decimated if that is not enough), so
+ * memory per trip is bounded and the O(maxPoints) compaction is amortized over at
+ * least maxPoints/4 inputs.
+ *
+ * Not thread-safe: owned by the shard thread of its vehicle.
+ */
+final class PathRecorder {
+
+    private static final double E6 = 1e6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxPoints;
+    private final double baseToleranceM;
+    private double toleranceM;
+
+    // kept points, delta-encoded (first entry is absolute)
+    private int[] dLat = new int[INITIAL_CAPACITY];
+    private int[] dLon = new int[INITIAL_CAPACITY];
+    private int size;
+    private int lastLatE6;
+    private int lastLonE6;
+
+    // streaming state
+    private long inputCount;
+    private boolean hasCandidate;
+    private double candLat;
+    private double candLon;
+    private double cosLat;
+    private boolean coneOpen;
+    private double coneRef;
+    private double coneLo;
+    private double coneHi;
+
+    PathRecorder(double toleranceM, int maxPoints) {
+        this.baseToleranceM = Math.max(0.1, toleranceM);
+        this.toleranceM = baseToleranceM;
+        this.maxPoints = Math.max(8, maxPoints);
+    }
+
+    void reset() {
+        toleranceM = baseToleranceM;
+        size = 0;
+        inputCount = 0;
+        hasCandidate = false;
+        coneOpen = false;
+    }
+
+    /** Raw points received since the trip started. */
+    long inputCount() {
+        return inputCount;
+    }
+
+    /** Points the route would have if encoded now. */
+    int pointCount() {
+        return size + (hasCandidate ? 1 : 0);
+    }
+
+    double toleranceM() {
+        return toleranceM;
+    }
+
+    void add(double lat, double lon) {
+        inputCount++;
+        if (size == 0) {
+            keep(lat, lon);
+            return;
+        }
+        double anchorLat = lastLatE6 / E6;
+        double anchorLon = lastLonE6 / E6;
+        double y = (lat - anchorLat) * Geo.METERS_PER_DEG_LAT;
+        double x = (lon - anchorLon) * Geo.METERS_PER_DEG_LAT * cosLat;
+        double d = Math.sqrt(x * x + y * y);
+
+        if (d <= toleranceM) {
+            // still inside the tolerance disc around the anchor: no constraint on direction
+            candidate(lat, lon);
+            return;
+        }
+
+        double theta = Math.atan2(y, x);
+        double half = Math.asin(toleranceM / d);
+        if (!coneOpen) {
+            coneOpen = true;
+            coneRef = theta;
+            coneLo = -half;
+            coneHi = half;
+            candidate(lat, lon);
+            return;
+        }
+
+        double rel = wrap(theta - coneRef);
+        if (rel < coneLo || rel > coneHi) {
+            // direction left the cone: keep the previous point and restart from there
+            if (hasCandidate) {
+                keep(candLat, candLon);
+                hasCandidate = false;
+                coneOpen = false;
+                add0(lat, lon);
+            } else {
+                keep(lat, lon);
+            }
+            return;
+        }
+        coneLo = Math.max(coneLo, rel - half);
+        coneHi = Math.min(coneHi, rel + half);
+        candidate(lat, lon);
+    }
+
+    /** Re-runs add() without counting the point twice. */
+    private void add0(double lat, double lon) {
+        inputCount--;
+        add(lat, lon);
+    }
+
+    /** Commits the pending point (call on trip end). */
+    void finish() {
+        if (hasCandidate) {
+            keep(candLat, candLon);
+            hasCandidate = false;
+            coneOpen = false;
+        }
+    }
+
+    /**
+     * Google encoded polyline (precision 1e-5) of the kept points plus the pending one.
+     */
+    String encodedPolyline() {
+        StringBuilder sb = new StringBuilder(pointCount() * 6);
+        int latE6 = 0;
+        int lonE6 = 0;
+        int prevLatE5 = 0;
+        int prevLonE5 = 0;
+        for (int i = 0; i < size; i++) {
+            latE6 += dLat[i];
+            lonE6 += dLon[i];
+            int latE5 = e6ToE5(latE6);
+            int lonE5 = e6ToE5(lonE6);
+            encodeSigned(sb, latE5 - prevLatE5);
+            encodeSigned(sb, lonE5 - prevLonE5);
+            prevLatE5 = latE5;
+            prevLonE5 = lonE5;
+        }
+        if (hasCandidate) {
+            encodeSigned(sb, (int) Math.round(candLat * 1e5) - prevLatE5);
+            encodeSigned(sb, (int) Math.round(candLon * 1e5) - prevLonE5);
+        }
+        return sb.toString();
+    }
+
+    // ---- internals ----
+
+    private void candidate(double lat, double lon) {
+        hasCandidate = true;
+        candLat = lat;
+        candLon = lon;
+    }
+
+    private void keep(double lat, double lon) {
+        if (size == maxPoints) {
+            compact();
+        }
+        int latE6 = (int) Math.round(lat * E6);
+        int lonE6 = (int) Math.round(lon * E6);
+        if (size == dLat.length) {
+            int cap = Math.min(maxPoints, size * 2);
+            dLat = java.util.Arrays.copyOf(dLat, cap);
+            dLon = java.util.Arrays.copyOf(dLon, cap);
+        }
+        dLat[size] = latE6 - lastLatE6;
+        dLon[size] = lonE6 - lastLonE6;
+        if (size == 0) {
+            dLat[0] = latE6;
+            dLon[0] = lonE6;
+        }
+        size++;
+        lastLatE6 = latE6;
+        lastLonE6 = lonE6;
+        cosLat = Geo.cosLat(lat);
+    }
+
+    /**
+     * Buffer full: replays the kept points through the simplifier with a doubled
+     * tolerance. If that does not free at least a quarter, drops every other interior point.
+     */
+    private void compact() {
+        int n = size;
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < n; i++) {
+            a += dLat[i];
+            b += dLon[i];
+            lat[i] = a / E6;
+            lon[i] = b / E6;
+        }
+
+        boolean pending = hasCandidate;
+        double pLat = candLat;
+        double pLon = candLon;
+        long inputs = inputCount;
+
+        toleranceM *= 2;
+        size = 0;
+        hasCandidate = false;
+        coneOpen = false;
+        for (int i = 0; i < n; i++) {
+            add(lat[i], lon[i]);
+        }
+        finish();
+
+        if (size > maxPoints * 3 / 4) {
+            size = 0;
+            for (int i = 0; i < n; i++) {
+                if (i % 2 == 0 || i == n - 1) {
+                    keep(lat[i], lon[i]);
+                }
+            }
+        }
+
+        inputCount = inputs;
+        hasCandidate = pending;
+        candLat = pLat;
+        candLon = pLon;
+        // the streaming cone restarts from the (unchanged) last kept point
+        coneOpen = false;
+    }
+
+    private static double wrap(double a) {
+        if (a > Math.PI) {
+            return a - 2 * Math.PI;
+        }
+        if (a < -Math.PI) {
+            return a + 2 * Math.PI;
+        }
+        return a;
+    }
+
+    private static int e6ToE5(int e6) {
+        return (int) Math.round(e6 / 10.0);
+    }
+
+    private static void encodeSigned(StringBuilder sb, int v) {
+        int u = v < 0 ? ~(v << 1) : (v << 1);
+        while (u >= 0x20) {
+            sb.append((char) ((0x20 | (u & 0x1f)) + 63));
+            u >>>= 5;
+        }
+        sb.append((char) (u + 63));
+    }
+}
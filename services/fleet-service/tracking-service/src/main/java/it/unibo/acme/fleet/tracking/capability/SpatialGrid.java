@@ -0,0 +1,168 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Uniform lat/lon grid over the last known positions of one shard's vehicles.
+ *
+ * Cells are {@code cellMeters} tall and {@code cellMeters} of longitude degrees at the
+ * equator wide (narrower in meters at higher latitudes, which queries account for).
+ * Each vehicle remembers its cell and its slot in the cell list, so a move is an O(1)
+ * swap-remove + append, and nothing happens while it stays in the same cell.
+ *
+ * Queries only visit the cells overlapping the search area: their cost depends on how
+ * many vehicles are nearby, not on the fleet size.
+ *
+ * Not thread-safe: owned by one {@link TrackingShard}.
+ */
+final class SpatialGrid {
+
+    static final long NO_CELL = Long.MIN_VALUE;
+
+    private final double cellDeg;
+    private final double cellMeters;
+    private final HashMap<Long, ArrayList<VehicleTrackingState>> cells = new HashMap<>();
+
+    /** One query hit, ordered by distance. */
+    static final class Hit {
+        final VehicleTrackingState state;
+        final double distanceMeters;
+
+        Hit(VehicleTrackingState state, double distanceMeters) {
+            this.state = state;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+
+    SpatialGrid(double cellMeters) {
+        this.cellMeters = Math.max(10, cellMeters);
+        this.cellDeg = this.cellMeters / Geo.METERS_PER_DEG_LAT;
+    }
+
+    int cellCount() {
+        return cells.size();
+    }
+
+    /** Re-indexes the vehicle after its position changed (no-op if it stayed in its cell). */
+    void update(VehicleTrackingState st) {
+        long key = key(row(st.lastLat), col(st.lastLon));
+        if (key == st.cellKey) {
+            return;
+        }
+        remove(st);
+        ArrayList<VehicleTrackingState> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            cells.put(key, cell);
+        }
+        st.cellKey = key;
+        st.cellSlot = cell.size();
+        cell.add(st);
+    }
+
+    void remove(VehicleTrackingState st) {
+        if (st.cellKey == NO_CELL) {
+            return;
+        }
+        ArrayList<VehicleTrackingState> cell = cells.get(st.cellKey);
+        int last = cell.size() - 1;
+        VehicleTrackingState moved = cell.get(last);
+        cell.set(st.cellSlot, moved);
+        moved.cellSlot = st.cellSlot;
+        cell.remove(last);
+        if (cell.isEmpty()) {
+            cells.remove(st.cellKey);
+        }
+        st.cellKey = NO_CELL;
+    }
+
+    /** Vehicles within {@code radiusM} of the point, closest first. */
+    List<Hit> within(double lat, double lon, double radiusM) {
+        List<Hit> out = new ArrayList<>();
+        int r0 = row(lat - radiusM / Geo.METERS_PER_DEG_LAT);
+        int r1 = row(lat + radiusM / Geo.METERS_PER_DEG_LAT);
+        double lonSpan = radiusM / (Geo.METERS_PER_DEG_LAT * Math.max(0.01, Geo.cosLat(lat)));
+        int c0 = col(lon - lonSpan);
+        int c1 = col(lon + lonSpan);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                ArrayList<VehicleTrackingState> cell = cells.get(key(r, c));
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.size(); i++) {
+                    VehicleTrackingState st = cell.get(i);
+                    double d = Geo.distanceMeters(lat, lon, st.lastLat, st.lastLon);
+                    if (d <= radiusM) {
+                        out.add(new Hit(st, d));
+                    }
+                }
+            }
+        }
+        out.sort((a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+        return out;
+    }
+
+    /**
+     * The {@code k} vehicles closest to the point, no farther than {@code maxRadiusM},
+     * closest first. Scans rings of cells outwards and stops as soon as the ring cannot
+     * contain anything closer than the current k-th hit.
+     */
+    List<Hit> nearest(double lat, double lon, int k, double maxRadiusM) {
+        PriorityQueue<Hit> best = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(b.distanceMeters, a.distanceMeters));
+        int row = row(lat);
+        int col = col(lon);
+        // a cell is at least this many meters wide anywhere within the search latitude band
+        double cellMinM = cellMeters * Math.max(0.01, Geo.cosLat(Math.abs(lat) + maxRadiusM / Geo.METERS_PER_DEG_LAT));
+        int maxRing = (int) Math.ceil(maxRadiusM / cellMinM);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best.size() == k && best.peek().distanceMeters <= (ring - 1) * cellMinM) {
+                break;
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += Math.max(1, step)) {
+                    ArrayList<VehicleTrackingState> cell = cells.get(key(r, c));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size(); i++) {
+                        VehicleTrackingState st = cell.get(i);
+                        double d = Geo.distanceMeters(lat, lon, st.lastLat, st.lastLon);
+                        if (d > maxRadiusM) {
+                            continue;
+                        }
+                        if (best.size() < k) {
+                            best.add(new Hit(st, d));
+                        } else if (d < best.peek().distanceMeters) {
+                            best.poll();
+                            best.add(new Hit(st, d));
+                        }
+                    }
+                }
+            }
+        }
+        List<Hit> out = new ArrayList<>(best);
+        out.sort((a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+        return out;
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellDeg);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellDeg);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
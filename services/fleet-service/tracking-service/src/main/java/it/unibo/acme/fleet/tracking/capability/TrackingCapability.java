@@ -1,28 +1,68 @@
 package it.unibo.acme.fleet.tracking.capability;
 
-import it.unibo.acme.fleet.tracking.model.Position;
-import it.unibo.acme.fleet.tracking.model.TelemetryMessage;
+import it.unibo.acme.fleet.tracking.model.BatchCommand;
+import it.unibo.acme.fleet.tracking.model.CommandResponse;
+import it.unibo.acme.fleet.tracking.model.GeofenceEvent;
+import it.unibo.acme.fleet.tracking.model.NearbyVehicle;
 import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+import it.unibo.acme.fleet.tracking.model.TripPath;
+import it.unibo.acme.fleet.tracking.model.TripRollup;
+import it.unibo.acme.fleet.tracking.model.TripSummary;
 import it.unibo.acme.fleet.tracking.util.Geo;
+import it.unibo.acme.fleet.wire.ReorderWindow;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import jakarta.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Tracking state, partitioned by vehicle across {@code tracking.ingest.shards} single-writer
+ * shards ({@link TrackingShard}). Telemetry and commands for a vehicle are always applied by
+ * the same shard thread, in arrival order, so per-vehicle state has no locks.
+ */
 @ApplicationScoped
 public class TrackingCapability {
 
-    private final ConcurrentHashMap<String, VehicleTrackingState> stateByVehicle = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(TrackingCapability.class.getName());
+
+    /** Upper bound for commands/snapshot collection waiting on a shard. */
+    private static final long SHARD_CALL_TIMEOUT_MS = 5000;
 
     private long snapshotIntervalMs;
     private double publishDistanceThresholdM;
     private boolean publishStopped;
+    private boolean fastDistance;
+    private int shardCount;
+    private int queueCapacity;
+    private int reorderWindow;
+    private double pathToleranceM;
+    private int pathMaxPoints;
+    private boolean filterGps;
+    private double filterMaxSpeedMps;
+    private double filterGpsNoiseM;
+    private double filterProcessNoiseMps;
+    private double indexCellMeters;
+    private double indexMaxRadiusM;
+    private double tripIdleSpeedMps;
+
+    private GeofenceIndex geofences = GeofenceIndex.EMPTY;
+    private volatile Consumer<GeofenceEvent> geofenceListener = e -> {};
+    private volatile Consumer<TripSummary> tripListener = s -> {};
+    private TripRollupView tripRollups;
 
+    private TrackingShard[] shards;
 
     public TrackingCapability() {
         // CDI proxy
@@ -30,57 +70,277 @@ public class TrackingCapability {
 
     @Inject
     public TrackingCapability(
+            GeofenceIndex geofences,
             @ConfigProperty(name = "tracking.snapshot.intervalMs", defaultValue = "1000") long snapshotIntervalMs,
             @ConfigProperty(name = "tracking.snapshot.publishDistanceThresholdM", defaultValue = "10") double publishDistanceThresholdM,
-            @ConfigProperty(name = "tracking.snapshot.publishStopped", defaultValue = "true") boolean publishStopped
+            @ConfigProperty(name = "tracking.snapshot.publishStopped", defaultValue = "true") boolean publishStopped,
+            @ConfigProperty(name = "tracking.distance.mode", defaultValue = "haversine") String distanceMode,
+            @ConfigProperty(name = "tracking.ingest.shards", defaultValue = "1") int shardCount,
+            @ConfigProperty(name = "tracking.ingest.queueCapacity", defaultValue = "65536") int queueCapacity,
+            @ConfigProperty(name = "tracking.ingest.reorderWindow", defaultValue = "0") int reorderWindow,
+            @ConfigProperty(name = "tracking.path.toleranceM", defaultValue = "5") double pathToleranceM,
+            @ConfigProperty(name = "tracking.path.maxPoints", defaultValue = "1000") int pathMaxPoints,
+            @ConfigProperty(name = "tracking.filter.mode", defaultValue = "raw") String filterMode,
+            @ConfigProperty(name = "tracking.filter.maxSpeedMps", defaultValue = "40") double filterMaxSpeedMps,
+            @ConfigProperty(name = "tracking.filter.gpsNoiseM", defaultValue = "5") double filterGpsNoiseM,
+            @ConfigProperty(name = "tracking.filter.processNoiseMps", defaultValue = "2") double filterProcessNoiseMps,
+            @ConfigProperty(name = "tracking.index.cellMeters", defaultValue = "250") double indexCellMeters,
+            @ConfigProperty(name = "tracking.index.maxRadiusM", defaultValue = "5000") double indexMaxRadiusM,
+            @ConfigProperty(name = "tracking.trip.idleSpeedMps", defaultValue = "0.5") double tripIdleSpeedMps,
+            @ConfigProperty(name = "tracking.trip.rollupRetentionHours", defaultValue = "168") int tripRollupRetentionHours
     ) {
+        this.geofences = geofences;
         this.snapshotIntervalMs = snapshotIntervalMs;
         this.publishDistanceThresholdM = publishDistanceThresholdM;
         this.publishStopped = publishStopped;
+        this.fastDistance = "fast".equalsIgnoreCase(distanceMode);
+        this.shardCount = Math.max(1, shardCount);
+        this.queueCapacity = queueCapacity;
+        this.reorderWindow = reorderWindow;
+        this.pathToleranceM = pathToleranceM;
+        this.pathMaxPoints = pathMaxPoints;
+        this.filterGps = "kalman".equalsIgnoreCase(filterMode);
+        this.filterMaxSpeedMps = filterMaxSpeedMps;
+        this.filterGpsNoiseM = filterGpsNoiseM;
+        this.filterProcessNoiseMps = filterProcessNoiseMps;
+        this.indexCellMeters = indexCellMeters;
+        this.indexMaxRadiusM = indexMaxRadiusM;
+        this.tripIdleSpeedMps = tripIdleSpeedMps;
+        this.tripRollups = new TripRollupView(tripRollupRetentionHours);
+    }
+
+    @PostConstruct
+    public void start() {
+        shards = new TrackingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new TrackingShard(i, queueCapacity, indexCellMeters, this::apply);
+            shards[i].start();
+        }
+        LOG.info(() -> "Tracking ingest started, shards=" + shardCount + ", queueCapacity=" + queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (shards != null) {
+            for (TrackingShard shard : shards) {
+                shard.stop();
+            }
+        }
     }
 
     public void startTracking(String vehicleId, long ts) {
-        VehicleTrackingState st = stateByVehicle.computeIfAbsent(vehicleId, v -> new VehicleTrackingState());
-        synchronized (st) {
+        startTracking(vehicleId, ts, null);
+    }
+
+    /** @param stationId rental start station (nullable), used to group trip rollups */
+    public void startTracking(String vehicleId, long ts, String stationId) {
+        await(submitStart(vehicleId, ts, stationId));
+    }
+
+    private CompletableFuture<Void> submitStart(String vehicleId, long ts, String stationId) {
+        return shardOf(vehicleId).submit(shard -> {
+            VehicleTrackingState st = shard.state(vehicleId);
             st.active = true;
             st.startedAt = ts > 0 ? ts : System.currentTimeMillis();
             st.distanceMeters = 0.0;
-            st.lastPos = null;
+            st.hasPos = false;
             st.lastUpdateTs = 0;
             st.pendingFinalPublish = false;
             st.lastPublishedTs = 0;
-            st.lastPublishedPos = null;
-        }
+            st.hasPublishedPos = false;
+            if (st.path == null) {
+                st.path = new PathRecorder(pathToleranceM, pathMaxPoints);
+            } else {
+                st.path.reset();
+            }
+            if (st.trip == null) {
+                st.trip = new TripAggregator(tripIdleSpeedMps, filterMaxSpeedMps);
+            }
+            st.trip.reset(stationId);
+            st.insideCount = 0;
+            st.fencesPrimed = false;
+            st.fenceCellKey = SpatialGrid.NO_CELL;
+            if (filterGps) {
+                if (st.filter == null) {
+                    st.filter = new GpsFilter(filterMaxSpeedMps, filterGpsNoiseM, filterProcessNoiseMps);
+                } else {
+                    st.filter.reset();
+                }
+            }
+            return null;
+        });
     }
 
     public void stopTracking(String vehicleId, long ts) {
-        VehicleTrackingState st = stateByVehicle.computeIfAbsent(vehicleId, v -> new VehicleTrackingState());
-        synchronized (st) {
+        stopTracking(vehicleId, ts, null);
+    }
+
+    /**
+     * Ends the trip: the summary is folded into the rollups and handed to the trip
+     * listener (once: stopping an inactive vehicle only refreshes lastUpdateTs).
+     */
+    public void stopTracking(String vehicleId, long ts, String stationId) {
+        await(submitStop(vehicleId, ts, stationId));
+    }
+
+    private CompletableFuture<Void> submitStop(String vehicleId, long ts, String stationId) {
+        return shardOf(vehicleId).submit(shard -> {
+            VehicleTrackingState st = shard.state(vehicleId);
+            if (st.active && st.path != null) {
+                st.path.finish();
+            }
+            if (st.active && st.trip != null) {
+                long endedAt = ts > 0 ? ts : Math.max(st.lastUpdateTs, System.currentTimeMillis());
+                finishTrip(st.trip.finish(vehicleId, st.startedAt, endedAt, stationId, st.distanceMeters));
+            }
             st.active = false;
             // Keep last known state; optionally publish a final snapshot once
             st.pendingFinalPublish = publishStopped;
             if (ts > 0) {
                 st.lastUpdateTs = Math.max(st.lastUpdateTs, ts);
             }
+            return null;
+        });
+    }
+
+    /**
+     * Applies a batch of start/stop commands. All of them are queued on their shards
+     * before waiting, so the batch costs about one shard round-trip instead of one per
+     * command; each shard runs its share in batch order. Results follow the command order.
+     */
+    public List<CommandResponse> applyCommands(List<BatchCommand> commands) {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(commands.size());
+        List<CommandResponse> out = new ArrayList<>(commands.size());
+        for (BatchCommand cmd : commands) {
+            CompletableFuture<Void> f = null;
+            if (cmd != null && cmd.vehicleId != null) {
+                if (BatchCommand.START.equals(cmd.op)) {
+                    f = submitStart(cmd.vehicleId, cmd.ts, cmd.stationId);
+                } else if (BatchCommand.STOP.equals(cmd.op)) {
+                    f = submitStop(cmd.vehicleId, cmd.ts, cmd.stationId);
+                }
+            }
+            pending.add(f);
         }
+        for (int i = 0; i < commands.size(); i++) {
+            BatchCommand cmd = commands.get(i);
+            CompletableFuture<Void> f = pending.get(i);
+            if (f == null) {
+                out.add(cmd == null || cmd.vehicleId == null
+                        ? CommandResponse.error(null, "vehicleId mancante")
+                        : CommandResponse.error(cmd.vehicleId, "op non gestita: " + cmd.op));
+                continue;
+            }
+            try {
+                await(f);
+                out.add(CommandResponse.ok(cmd.vehicleId,
+                        BatchCommand.START.equals(cmd.op) ? "tracking started" : "tracking stopped"));
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Batched " + cmd.op + " failed for vehicle=" + cmd.vehicleId, e);
+                out.add(CommandResponse.error(cmd.vehicleId, "internal error"));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Receives geofence ENTER/EXIT events. Called on the shard threads, must not block.
+     */
+    public void setGeofenceListener(Consumer<GeofenceEvent> listener) {
+        this.geofenceListener = listener != null ? listener : e -> {};
     }
 
+    /**
+     * Receives the summary of every finished trip. Called on the shard threads, must not block.
+     */
+    public void setTripListener(Consumer<TripSummary> listener) {
+        this.tripListener = listener != null ? listener : s -> {};
+    }
+
+    /**
+     * Trip rollups from the in-memory view (see {@link TripRollupView#query}),
+     * for trips started in [from, to].
+     */
+    public List<TripRollup> tripRollups(long from, long to, String stationId, String groupBy) {
+        return tripRollups.query(from, to, stationId, groupBy);
+    }
+
+    /**
+     * Hands the message to the vehicle's shard. Blocks the caller only if that
+     * shard's queue is full (backpressure on the NATS dispatcher, no drops).
+     */
     public void onTelemetry(TelemetryMessage telemetry) {
         if (telemetry == null || telemetry.vehicleId == null) {
             return;
         }
-        VehicleTrackingState st = stateByVehicle.computeIfAbsent(telemetry.vehicleId, v -> new VehicleTrackingState());
-        synchronized (st) {
-            // Always store last seen, but only accumulate distance if active
-            Position newPos = new Position(telemetry.lat, telemetry.lon);
-            long ts = telemetry.ts > 0 ? telemetry.ts : System.currentTimeMillis();
+        shardOf(telemetry.vehicleId).enqueue(telemetry);
+    }
 
-            if (st.active && st.lastPos != null) {
-                st.distanceMeters += Geo.distanceMeters(st.lastPos.lat, st.lastPos.lon, newPos.lat, newPos.lon);
+    /** Routes a decoded batch frame (telemetry.batch.&lt;shard&gt;) record by record. */
+    public void onTelemetryBatch(List<TelemetryMessage> batch) {
+        if (batch == null) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            onTelemetry(batch.get(i));
+        }
+    }
+
+    /**
+     * Route of the current or last trip, or null if the vehicle was never started.
+     * Evaluated on the vehicle's shard, after any telemetry already queued for it.
+     */
+    public TripPath tripPath(String vehicleId) {
+        return await(shardOf(vehicleId).submit(shard -> {
+            VehicleTrackingState st = shard.states.get(vehicleId);
+            if (st == null || st.path == null) {
+                return null;
             }
-            st.lastPos = newPos;
-            st.lastUpdateTs = ts;
+            TripPath out = new TripPath();
+            out.vehicleId = vehicleId;
+            out.active = st.active;
+            out.startedAt = st.startedAt;
+            out.lastUpdateTs = st.lastUpdateTs;
+            out.inputPoints = st.path.inputCount();
+            out.points = st.path.pointCount();
+            out.toleranceM = st.path.toleranceM();
+            out.polyline = st.path.encodedPolyline();
+            return out;
+        }));
+    }
+
+    /**
+     * Vehicles whose last known position is within {@code radiusM} (capped at
+     * tracking.index.maxRadiusM) of the point, closest first, at most {@code limit}.
+     */
+    public List<NearbyVehicle> vehiclesWithin(double lat, double lon, double radiusM, int limit) {
+        double r = Math.min(Math.max(0, radiusM), indexMaxRadiusM);
+        List<CompletableFuture<List<NearbyVehicle>>> parts = new ArrayList<>(shards.length);
+        for (TrackingShard shard : shards) {
+            parts.add(shard.submit(s -> toNearby(s.grid.within(lat, lon, r), limit)));
         }
+        return merge(parts, limit);
+    }
+
+    /** The {@code k} vehicles closest to the point, within tracking.index.maxRadiusM. */
+    public List<NearbyVehicle> nearestVehicles(double lat, double lon, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        List<CompletableFuture<List<NearbyVehicle>>> parts = new ArrayList<>(shards.length);
+        for (TrackingShard shard : shards) {
+            parts.add(shard.submit(s -> toNearby(s.grid.nearest(lat, lon, k, indexMaxRadiusM), k)));
+        }
+        return merge(parts, k);
+    }
+
+    /** Telemetry messages waiting in the shard queues (for diagnostics). */
+    public int pendingTelemetry() {
+        int n = 0;
+        for (TrackingShard shard : shards) {
+            n += shard.queued();
+        }
+        return n;
     }
 
     /**
@@ -88,79 +348,320 @@ public class TrackingCapability {
      * - minimum publish interval (per vehicle)
      * - distance threshold (per vehicle)
      * - optional one-shot publish after stop (pendingFinalPublish)
+     *
+     * Each shard collects its own vehicles in parallel, on its own thread.
      */
     public List<TrackingSnapshot> collectSnapshotsToPublish(long nowTs) {
+        return collectSnapshotsToPublish(nowTs, 0, 1);
+    }
+
+    /**
+     * Same as {@link #collectSnapshotsToPublish(long)}, restricted to the vehicles of one
+     * slice ({@link #sliceOf}) so a tick can be spread over several smaller bursts.
+     */
+    public List<TrackingSnapshot> collectSnapshotsToPublish(long nowTs, int slice, int slices) {
+        List<CompletableFuture<List<TrackingSnapshot>>> parts = new ArrayList<>(shards.length);
+        for (TrackingShard shard : shards) {
+            parts.add(shard.submit(s -> collect(s, nowTs, slice, slices)));
+        }
         List<TrackingSnapshot> out = new ArrayList<>();
-        for (var entry : stateByVehicle.entrySet()) {
-            String vehicleId = entry.getKey();
-            VehicleTrackingState st = entry.getValue();
-            TrackingSnapshot snap = null;
+        for (CompletableFuture<List<TrackingSnapshot>> part : parts) {
+            List<TrackingSnapshot> snaps = await(part);
+            if (snaps != null) {
+                out.addAll(snaps);
+            }
+        }
+        return out;
+    }
 
-            synchronized (st) {
-                boolean shouldPublish = false;
+    // ---- shard-thread side ----
 
-                // Publish while active, on interval or if moved enough
-                if (st.active) {
-                    if (st.lastPublishedTs == 0 || nowTs - st.lastPublishedTs >= snapshotIntervalMs) {
-                        shouldPublish = true;
-                    } else if (st.lastPos != null && st.lastPublishedPos != null) {
-                        double moved = Geo.distanceMeters(
-                                st.lastPublishedPos.lat, st.lastPublishedPos.lon,
-                                st.lastPos.lat, st.lastPos.lon
-                        );
-                        if (moved >= publishDistanceThresholdM) {
-                            shouldPublish = true;
-                        }
-                    } else if (st.lastPos != null && st.lastPublishedPos == null) {
-                        // First position ever
+    private void apply(TrackingShard shard, TelemetryMessage telemetry) {
+        VehicleTrackingState st = shard.state(telemetry.vehicleId);
+        long ts = telemetry.ts > 0 ? telemetry.ts : System.currentTimeMillis();
+        if (reorderWindow <= 0) {
+            applyFix(shard, st, ts, telemetry.lat, telemetry.lon);
+            return;
+        }
+        if (st.reorder == null) {
+            st.reorder = new ReorderWindow(reorderWindow);
+        }
+        // stale messages are dropped, early ones wait for the gap to fill (or to be given up on)
+        if (st.reorder.offer(telemetry.seq, ts, telemetry.lat, telemetry.lon)) {
+            while (st.reorder.poll()) {
+                applyFix(shard, st, st.reorder.ts(), st.reorder.a(), st.reorder.b());
+            }
+        }
+    }
+
+    private void applyFix(TrackingShard shard, VehicleTrackingState st, long ts, double lat, double lon) {
+        // Always store last seen, but only accumulate distance if active
+        if (st.active && st.filter != null) {
+            double moved = st.filter.update(lat, lon, ts);
+            st.lastUpdateTs = ts;
+            if (moved < 0) {
+                // outlier: keep the previous position
+                return;
+            }
+            st.distanceMeters += moved;
+            st.trip.add(ts, moved);
+            lat = st.filter.lat();
+            lon = st.filter.lon();
+            st.path.add(lat, lon);
+        } else if (st.active) {
+            double hop = st.hasPos ? hopMeters(st, st.lastLat, st.lastLon, lat, lon) : 0;
+            st.distanceMeters += hop;
+            st.trip.add(ts, hop);
+            st.path.add(lat, lon);
+        }
+        st.lastLat = lat;
+        st.lastLon = lon;
+        st.hasPos = true;
+        st.lastUpdateTs = ts;
+        shard.grid.update(st);
+
+        if (st.active && !geofences.isEmpty()) {
+            evaluateGeofences(st, lat, lon, ts);
+        }
+    }
+
+    /**
+     * Incremental fence membership for an in-use vehicle: fences it is inside are
+     * re-tested directly, new ones only come from the candidates of its current cell
+     * (cached until the vehicle changes cell). The first fix of a trip only primes the
+     * membership, so starting inside a station does not emit ENTER.
+     */
+    private void evaluateGeofences(VehicleTrackingState st, double lat, double lon, long ts) {
+        long cell = geofences.cellKey(lat, lon);
+        if (cell != st.fenceCellKey) {
+            st.fenceCellKey = cell;
+            st.fenceCandidates = geofences.candidates(cell);
+        }
+        boolean emit = st.fencesPrimed;
+        st.fencesPrimed = true;
+
+        for (int i = st.insideCount - 1; i >= 0; i--) {
+            int fence = st.insideFences[i];
+            if (!geofences.contains(fence, lat, lon)) {
+                st.insideFences[i] = st.insideFences[--st.insideCount];
+                fireGeofence(st, fence, GeofenceEvent.EXIT, lat, lon, ts);
+            }
+        }
+
+        int[] candidates = st.fenceCandidates;
+        for (int c = 0; c < candidates.length; c++) {
+            int fence = candidates[c];
+            if (isInside(st, fence) || !geofences.contains(fence, lat, lon)) {
+                continue;
+            }
+            if (st.insideFences == null) {
+                st.insideFences = new int[4];
+            } else if (st.insideCount == st.insideFences.length) {
+                st.insideFences = Arrays.copyOf(st.insideFences, st.insideCount * 2);
+            }
+            st.insideFences[st.insideCount++] = fence;
+            if (emit) {
+                fireGeofence(st, fence, GeofenceEvent.ENTER, lat, lon, ts);
+            }
+        }
+    }
+
+    private static boolean isInside(VehicleTrackingState st, int fence) {
+        for (int i = 0; i < st.insideCount; i++) {
+            if (st.insideFences[i] == fence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fireGeofence(VehicleTrackingState st, int fence, String type, double lat, double lon, long ts) {
+        GeofenceEvent ev = new GeofenceEvent();
+        ev.vehicleId = st.vehicleId;
+        ev.fenceId = geofences.id(fence);
+        ev.type = type;
+        ev.ts = ts;
+        ev.lat = lat;
+        ev.lon = lon;
+        try {
+            geofenceListener.accept(ev);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Geofence listener failed for " + st.vehicleId, e);
+        }
+    }
+
+    private void finishTrip(TripSummary summary) {
+        tripRollups.add(summary);
+        try {
+            tripListener.accept(summary);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Trip listener failed for " + summary.vehicleId, e);
+        }
+    }
+
+    /**
+     * Current snapshot of every known vehicle (active or not), for consumers rebuilding
+     * their state. Unlike {@link #collectSnapshotsToPublish} it doesn't touch the publish
+     * bookkeeping.
+     */
+    public List<TrackingSnapshot> dumpSnapshots(long nowTs) {
+        List<CompletableFuture<List<TrackingSnapshot>>> parts = new ArrayList<>(shards.length);
+        for (TrackingShard shard : shards) {
+            parts.add(shard.submit(s -> {
+                List<TrackingSnapshot> out = new ArrayList<>(s.states.size());
+                for (VehicleTrackingState st : s.states.values()) {
+                    out.add(snapshotOf(st, nowTs));
+                }
+                return out;
+            }));
+        }
+        List<TrackingSnapshot> out = new ArrayList<>();
+        for (CompletableFuture<List<TrackingSnapshot>> part : parts) {
+            out.addAll(await(part));
+        }
+        return out;
+    }
+
+    /** Current snapshot of one vehicle, empty if the vehicle is unknown. */
+    public List<TrackingSnapshot> dumpSnapshot(String vehicleId, long nowTs) {
+        return await(shardOf(vehicleId).submit(s -> {
+            VehicleTrackingState st = s.states.get(vehicleId);
+            return st != null ? List.of(snapshotOf(st, nowTs)) : List.<TrackingSnapshot>of();
+        }));
+    }
+
+    private List<TrackingSnapshot> collect(TrackingShard shard, long nowTs, int slice, int slices) {
+        List<TrackingSnapshot> out = new ArrayList<>();
+        for (VehicleTrackingState st : shard.states.values()) {
+            if (slices > 1 && sliceOf(st.vehicleId, slices) != slice) {
+                continue;
+            }
+            boolean shouldPublish = false;
+
+            // Publish while active, on interval or if moved enough
+            if (st.active) {
+                if (st.lastPublishedTs == 0 || nowTs - st.lastPublishedTs >= snapshotIntervalMs) {
+                    shouldPublish = true;
+                } else if (st.hasPos && st.hasPublishedPos) {
+                    if (movedAtLeast(st, st.lastPublishedLat, st.lastPublishedLon,
+                            st.lastLat, st.lastLon, publishDistanceThresholdM)) {
                         shouldPublish = true;
                     }
-                } else if (st.pendingFinalPublish) {
-                    // One-shot publish when stopping
+                } else if (st.hasPos) {
+                    // First position ever
                     shouldPublish = true;
                 }
+            } else if (st.pendingFinalPublish) {
+                // One-shot publish when stopping
+                shouldPublish = true;
+            }
 
-                if (!shouldPublish) {
-                    continue;
-                }
+            if (!shouldPublish) {
+                continue;
+            }
 
-                snap = new TrackingSnapshot();
-                snap.vehicleId = vehicleId;
-                snap.ts = nowTs;
-                snap.active = st.active;
-                snap.distanceMeters = st.distanceMeters;
-                snap.startedAt = st.startedAt;
-                snap.lastUpdateTs = st.lastUpdateTs;
-                snap.stale = st.lastUpdateTs > 0 && (nowTs - st.lastUpdateTs) > (3L * snapshotIntervalMs);
-
-                if (st.lastPos != null) {
-                    snap.lat = st.lastPos.lat;
-                    snap.lon = st.lastPos.lon;
-                }
+            TrackingSnapshot snap = snapshotOf(st, nowTs);
 
-                // Mark as published
-                st.lastPublishedTs = nowTs;
-                st.lastPublishedPos = st.lastPos != null ? new Position(st.lastPos.lat, st.lastPos.lon) : null;
-                st.pendingFinalPublish = false;
-            }
+            // Mark as published
+            st.lastPublishedTs = nowTs;
+            st.hasPublishedPos = st.hasPos;
+            st.lastPublishedLat = st.lastLat;
+            st.lastPublishedLon = st.lastLon;
+            st.pendingFinalPublish = false;
 
-            if (snap != null) {
-                out.add(snap);
-            }
+            out.add(snap);
         }
         return out;
     }
 
-    private static final class VehicleTrackingState {
-        boolean active;
-        long startedAt;
-        Position lastPos;
-        long lastUpdateTs;
-        double distanceMeters;
+    private TrackingSnapshot snapshotOf(VehicleTrackingState st, long nowTs) {
+        TrackingSnapshot snap = new TrackingSnapshot();
+        snap.vehicleId = st.vehicleId;
+        snap.ts = nowTs;
+        snap.active = st.active;
+        snap.distanceMeters = st.distanceMeters;
+        snap.startedAt = st.startedAt;
+        snap.lastUpdateTs = st.lastUpdateTs;
+        snap.stale = st.lastUpdateTs > 0 && (nowTs - st.lastUpdateTs) > (3L * snapshotIntervalMs);
+
+        if (st.hasPos) {
+            snap.lat = st.lastLat;
+            snap.lon = st.lastLon;
+        }
+        return snap;
+    }
 
-        long lastPublishedTs;
-        Position lastPublishedPos;
+    private static List<NearbyVehicle> toNearby(List<SpatialGrid.Hit> hits, int limit) {
+        int n = Math.min(hits.size(), Math.max(0, limit));
+        List<NearbyVehicle> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            SpatialGrid.Hit hit = hits.get(i);
+            NearbyVehicle v = new NearbyVehicle();
+            v.vehicleId = hit.state.vehicleId;
+            v.lat = hit.state.lastLat;
+            v.lon = hit.state.lastLon;
+            v.distanceMeters = hit.distanceMeters;
+            v.active = hit.state.active;
+            v.lastUpdateTs = hit.state.lastUpdateTs;
+            out.add(v);
+        }
+        return out;
+    }
 
-        boolean pendingFinalPublish;
+    private static List<NearbyVehicle> merge(List<CompletableFuture<List<NearbyVehicle>>> parts, int limit) {
+        List<NearbyVehicle> out = new ArrayList<>();
+        for (CompletableFuture<List<NearbyVehicle>> part : parts) {
+            out.addAll(await(part));
+        }
+        out.sort((a, b) -> Double.compare(a.distanceMeters, b.distanceMeters));
+        return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+
+    /**
+     * Stable slice of a vehicle, 0 &lt;= slice &lt; slices (at most 65536).
+     * The hash is remixed so slices don't line up with shards.
+     */
+    public static int sliceOf(String vehicleId, int slices) {
+        return ((vehicleId.hashCode() * 0x9E3779B9) >>> 16) % slices;
+    }
+
+    private TrackingShard shardOf(String vehicleId) {
+        return shards[(vehicleId.hashCode() & 0x7fffffff) % shards.length];
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get(SHARD_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tracking shard", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Tracking shard call failed", e);
+        }
+    }
+
+    // ---- distance helpers (haversine or equirectangular with cached cos(lat)) ----
+
+    private double hopMeters(VehicleTrackingState st, double lat1, double lon1, double lat2, double lon2) {
+        if (!fastDistance) {
+            return Geo.distanceMeters(lat1, lon1, lat2, lon2);
+        }
+        return Geo.fastDistanceMeters(lat1, lon1, lat2, lon2, cosLat(st, lat2));
+    }
+
+    /** Threshold check on squared distance in fast mode: no sqrt, no trig. */
+    private boolean movedAtLeast(VehicleTrackingState st, double lat1, double lon1, double lat2, double lon2, double thresholdM) {
+        if (!fastDistance) {
+            return Geo.distanceMeters(lat1, lon1, lat2, lon2) >= thresholdM;
+        }
+        return Geo.fastDistanceSquaredMeters(lat1, lon1, lat2, lon2, cosLat(st, lat2)) >= thresholdM * thresholdM;
+    }
+
+    private static double cosLat(VehicleTrackingState st, double lat) {
+        if (Double.isNaN(st.cosLatRef) || Math.abs(lat - st.cosLatRef) > Geo.COS_LAT_REFRESH_DEG) {
+            st.cosLatRef = lat;
+            st.cosLat = Geo.cosLat(lat);
+        }
+        return st.cosLat;
     }
 }
@@ -0,0 +1,149 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single-writer partition of the tracked fleet.
+ *
+ * Vehicles are assigned to a shard by hash; the shard's thread is the only one that
+ * reads or writes their {@link VehicleTrackingState}, so the state needs no locks.
+ *
+ * Inbound work is a bounded queue of:
+ * - {@link TelemetryMessage}: hot path, enqueued as-is (no wrapper allocation)
+ * - {@link Task}: commands and snapshot collection, completed through a future
+ *
+ * A full queue blocks the producer (NATS dispatcher): backpressure instead of drops.
+ */
+final class TrackingShard {
+
+    private static final Logger LOG = Logger.getLogger(TrackingShard.class.getName());
+
+    interface TelemetryHandler {
+        void apply(TrackingShard shard, TelemetryMessage telemetry);
+    }
+
+    /** Work executed on the shard thread. */
+    static final class Task<T> {
+        final Function<TrackingShard, T> body;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Task(Function<TrackingShard, T> body) {
+            this.body = body;
+        }
+    }
+
+    final HashMap<String, VehicleTrackingState> states = new HashMap<>();
+    final SpatialGrid grid;
+
+    private final int index;
+    private final BlockingQueue<Object> queue;
+    private final TelemetryHandler handler;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    TrackingShard(int index, int queueCapacity, double gridCellMeters, TelemetryHandler handler) {
+        this.index = index;
+        this.grid = new SpatialGrid(gridCellMeters);
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, queueCapacity));
+        this.handler = handler;
+        this.thread = new Thread(this::loop, "tracking-shard-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Stops the shard thread and fails the tasks still queued, so no caller waits on them. */
+    void stop() {
+        running = false;
+        thread.interrupt();
+        failPending();
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    VehicleTrackingState state(String vehicleId) {
+        VehicleTrackingState st = states.get(vehicleId);
+        if (st == null) {
+            st = new VehicleTrackingState(vehicleId);
+            states.put(vehicleId, st);
+        }
+        return st;
+    }
+
+    void enqueue(TelemetryMessage telemetry) {
+        put(telemetry);
+    }
+
+    <T> CompletableFuture<T> submit(Function<TrackingShard, T> body) {
+        Task<T> task = new Task<>(body);
+        put(task);
+        return task.result;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void put(Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // telemetry is dropped; a task must not leave its caller waiting for the timeout
+            if (item instanceof Task) {
+                ((Task) item).result.completeExceptionally(e);
+            }
+            return;
+        }
+        if (!running) {
+            // raced with stop(): its drain may have run before this put
+            failPending();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void failPending() {
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof Task) {
+                ((Task) item).result.completeExceptionally(
+                        new IllegalStateException("Tracking shard " + index + " stopped"));
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void loop() {
+        while (running) {
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (item instanceof TelemetryMessage) {
+                try {
+                    handler.apply(this, (TelemetryMessage) item);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Telemetry handling failed on shard " + index, e);
+                }
+            } else if (item instanceof Task) {
+                Task task = (Task) item;
+                try {
+                    task.result.complete(task.body.apply(this));
+                } catch (Exception e) {
+                    task.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.TripSummary;
+
+/**
+ * Running statistics of the current trip of a vehicle, constant size.
+ *
+ * Fed with the distance counted for every applied fix (after GPS filtering, if enabled).
+ * Speed is not taken hop by hop (jitter and the filter's deadband make single hops
+ * meaningless): hops are accumulated into windows of at least {@link #WINDOW_MS}, and each
+ * closed window counts as idle or moving as a whole and is a candidate for the max speed.
+ * Windows faster than {@code maxPlausibleSpeedMps} (unfiltered outliers) still count as
+ * moving time but never become the max speed.
+ *
+ * Not thread-safe: owned by the shard thread of its vehicle.
+ */
+final class TripAggregator {
+
+    static final long WINDOW_MS = 5000;
+
+    private final double idleSpeedMps;
+    private final double maxPlausibleSpeedMps;
+
+    private String startStationId;
+    private long fixes;
+    private long lastTs;
+
+    private long windowStartTs;
+    private double windowMeters;
+
+    private long movingMs;
+    private double maxSpeedMps;
+
+    TripAggregator(double idleSpeedMps, double maxPlausibleSpeedMps) {
+        this.idleSpeedMps = Math.max(0, idleSpeedMps);
+        this.maxPlausibleSpeedMps = maxPlausibleSpeedMps > 0 ? maxPlausibleSpeedMps : Double.MAX_VALUE;
+    }
+
+    void reset(String startStationId) {
+        this.startStationId = startStationId;
+        fixes = 0;
+        lastTs = 0;
+        windowStartTs = 0;
+        windowMeters = 0;
+        movingMs = 0;
+        maxSpeedMps = 0;
+    }
+
+    /** @param meters distance counted for this fix (0 for the first one) */
+    void add(long ts, double meters) {
+        if (fixes++ == 0) {
+            lastTs = ts;
+            windowStartTs = ts;
+            return;
+        }
+        if (ts <= lastTs) {
+            windowMeters += meters;
+            return;
+        }
+        lastTs = ts;
+        windowMeters += meters;
+        if (ts - windowStartTs >= WINDOW_MS) {
+            closeWindow(ts);
+        }
+    }
+
+    /**
+     * Closes the trip: flushes the open window and builds the summary.
+     * The aggregator keeps its counters until the next {@link #reset}.
+     */
+    TripSummary finish(String vehicleId, long startedAt, long endedAt, String endStationId, double distanceMeters) {
+        if (lastTs > windowStartTs) {
+            closeWindow(lastTs);
+        }
+        TripSummary s = new TripSummary();
+        s.vehicleId = vehicleId;
+        s.startedAt = startedAt;
+        s.endedAt = Math.max(startedAt, endedAt);
+        s.durationMs = s.endedAt - startedAt;
+        s.distanceMeters = distanceMeters;
+        s.avgSpeedMps = s.durationMs > 0 ? distanceMeters / (s.durationMs / 1000.0) : 0;
+        s.maxSpeedMps = maxSpeedMps;
+        s.movingMs = Math.min(movingMs, s.durationMs);
+        // idle windows plus time not covered by telemetry (before the first / after the last fix)
+        s.idleMs = Math.max(0, s.durationMs - movingMs);
+        s.fixes = fixes;
+        s.startStationId = startStationId;
+        s.endStationId = endStationId;
+        return s;
+    }
+
+    private void closeWindow(long ts) {
+        long dt = ts - windowStartTs;
+        double speed = windowMeters / (dt / 1000.0);
+        if (speed >= idleSpeedMps) {
+            movingMs += dt;
+            if (speed <= maxPlausibleSpeedMps && speed > maxSpeedMps) {
+                maxSpeedMps = speed;
+            }
+        }
+        windowStartTs = ts;
+        windowMeters = 0;
+    }
+}
@@ -0,0 +1,130 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.TripRollup;
+import it.unibo.acme.fleet.tracking.model.TripSummary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory materialized view over finished trips: running sums per
+ * (hour of trip start, start station), updated once per trip on stop.
+ *
+ * Queries merge the cells of the requested range, never raw telemetry or trip lists:
+ * the cost is O(hours in range x stations). Buckets older than {@code retentionHours}
+ * (counted from the newest bucket) are dropped.
+ *
+ * Thread-safe: written by the shard threads on stop, read by REST queries.
+ */
+public final class TripRollupView {
+
+    public static final String GROUP_HOUR = "hour";
+    public static final String GROUP_STATION = "station";
+    public static final String GROUP_HOUR_STATION = "hour-station";
+    public static final String GROUP_TOTAL = "total";
+
+    static final long HOUR_MS = 3_600_000L;
+
+    private static final String NO_STATION = "";
+
+    private final int retentionHours;
+
+    // hour start -> start station -> sums
+    private final TreeMap<Long, Map<String, Cell>> hours = new TreeMap<>();
+
+    private static final class Cell {
+        long trips;
+        double distanceMeters;
+        long durationMs;
+        long idleMs;
+        double maxSpeedMps;
+
+        void add(TripSummary s) {
+            trips++;
+            distanceMeters += s.distanceMeters;
+            durationMs += s.durationMs;
+            idleMs += s.idleMs;
+            maxSpeedMps = Math.max(maxSpeedMps, s.maxSpeedMps);
+        }
+
+        void add(Cell c) {
+            trips += c.trips;
+            distanceMeters += c.distanceMeters;
+            durationMs += c.durationMs;
+            idleMs += c.idleMs;
+            maxSpeedMps = Math.max(maxSpeedMps, c.maxSpeedMps);
+        }
+    }
+
+    public TripRollupView(int retentionHours) {
+        this.retentionHours = Math.max(1, retentionHours);
+    }
+
+    public synchronized void add(TripSummary s) {
+        long hour = Math.floorDiv(s.startedAt, HOUR_MS) * HOUR_MS;
+        String station = s.startStationId != null ? s.startStationId : NO_STATION;
+        hours.computeIfAbsent(hour, h -> new HashMap<>())
+                .computeIfAbsent(station, k -> new Cell())
+                .add(s);
+
+        long oldest = hours.lastKey() - (retentionHours - 1) * HOUR_MS;
+        while (hours.firstKey() < oldest) {
+            hours.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Rollups of the trips started in [from, to], optionally for one start station,
+     * grouped by {@link #GROUP_HOUR}, {@link #GROUP_STATION}, {@link #GROUP_HOUR_STATION}
+     * or {@link #GROUP_TOTAL} (single row). Rows are ordered by hour, then station.
+     */
+    public synchronized List<TripRollup> query(long from, long to, String stationId, String groupBy) {
+        boolean byHour = GROUP_HOUR.equals(groupBy) || GROUP_HOUR_STATION.equals(groupBy);
+        boolean byStation = GROUP_STATION.equals(groupBy) || GROUP_HOUR_STATION.equals(groupBy);
+
+        long fromHour = Math.floorDiv(from, HOUR_MS) * HOUR_MS;
+        NavigableMap<Long, Map<String, Cell>> range = to >= fromHour
+                ? hours.subMap(fromHour, true, to, true)
+                : new TreeMap<>();
+
+        // group key -> merged cell; TreeMap keeps rows sorted
+        TreeMap<String, Cell> groups = new TreeMap<>();
+        Map<String, Long> groupHour = new HashMap<>();
+        for (Map.Entry<Long, Map<String, Cell>> h : range.entrySet()) {
+            for (Map.Entry<String, Cell> c : h.getValue().entrySet()) {
+                if (stationId != null && !stationId.equals(c.getKey())) {
+                    continue;
+                }
+                String key = (byHour ? String.format("%020d", h.getKey()) : "") + "|" + (byStation ? c.getKey() : "");
+                groups.computeIfAbsent(key, k -> new Cell()).add(c.getValue());
+                groupHour.put(key, h.getKey());
+            }
+        }
+
+        List<TripRollup> out = new ArrayList<>(groups.size());
+        for (Map.Entry<String, Cell> g : groups.entrySet()) {
+            Cell c = g.getValue();
+            TripRollup r = new TripRollup();
+            r.hourStart = byHour ? groupHour.get(g.getKey()) : null;
+            r.stationId = byStation ? g.getKey().substring(g.getKey().indexOf('|') + 1) : stationId;
+            r.trips = c.trips;
+            r.distanceMeters = c.distanceMeters;
+            r.durationMs = c.durationMs;
+            r.idleMs = c.idleMs;
+            r.avgDistanceMeters = c.distanceMeters / c.trips;
+            r.avgDurationMs = (double) c.durationMs / c.trips;
+            r.avgSpeedMps = c.durationMs > 0 ? c.distanceMeters / (c.durationMs / 1000.0) : 0;
+            r.maxSpeedMps = c.maxSpeedMps;
+            out.add(r);
+        }
+        return out;
+    }
+
+    public synchronized int buckets() {
+        return hours.size();
+    }
+}
@@ -0,0 +1,60 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.wire.ReorderWindow;
+
+/**
+ * Per-vehicle tracking state.
+ *
+ * Plain mutable primitives, no monitors: every instance is owned by exactly one
+ * {@link TrackingShard} and only ever touched by that shard's thread.
+ */
+final class VehicleTrackingState {
+    final String vehicleId;
+
+    // telemetry ordering (null when tracking.ingest.reorderWindow=0)
+    ReorderWindow reorder;
+
+    boolean active;
+    long startedAt;
+    long lastUpdateTs;
+    double distanceMeters;
+
+    boolean hasPos;
+    double lastLat;
+    double lastLon;
+
+    long lastPublishedTs;
+    boolean hasPublishedPos;
+    double lastPublishedLat;
+    double lastPublishedLon;
+
+    boolean pendingFinalPublish;
+
+    // position in the shard's SpatialGrid
+    long cellKey = SpatialGrid.NO_CELL;
+    int cellSlot;
+
+    // geofence membership during the trip (fence indexes in the shared GeofenceIndex)
+    long fenceCellKey = SpatialGrid.NO_CELL;
+    int[] fenceCandidates;
+    int[] insideFences;
+    int insideCount;
+    boolean fencesPrimed;
+
+    // route of the current/last trip, allocated on the first start
+    PathRecorder path;
+
+    // GPS clean-up, allocated on the first start when tracking.filter.mode=kalman
+    GpsFilter filter;
+
+    // running statistics of the current trip, allocated on the first start
+    TripAggregator trip;
+
+    // cached cos(lat) for the fast distance mode
+    double cosLatRef = Double.NaN;
+    double cosLat;
+
+    VehicleTrackingState(String vehicleId) {
+        this.vehicleId = vehicleId;
+    }
+}
@@ -0,0 +1,61 @@
+package it.unibo.acme.fleet.tracking.config;
+
+import it.unibo.acme.fleet.tracking.capability.GeofenceIndex;
+import it.unibo.acme.fleet.tracking.model.GeofenceDefinition;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.json.bind.Jsonb;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Loads the geofences evaluated by the tracking service.
+ *
+ * tracking.geofence.file is a filesystem path; if empty or missing, the bundled
+ * META-INF/geofences.json (stations S01-S05 + city boundary) is used.
+ */
+@ApplicationScoped
+public class GeofenceProvider {
+
+    private static final Logger LOG = Logger.getLogger(GeofenceProvider.class.getName());
+
+    private static final String BUNDLED = "META-INF/geofences.json";
+    private static final Type DEFINITIONS = new ArrayList<GeofenceDefinition>() {}.getClass().getGenericSuperclass();
+
+    @Produces
+    public GeofenceIndex geofences(Jsonb jsonb,
+                                   @ConfigProperty(name = "tracking.geofence.enabled", defaultValue = "true") boolean enabled,
+                                   @ConfigProperty(name = "tracking.geofence.file", defaultValue = "") String file,
+                                   @ConfigProperty(name = "tracking.geofence.cellMeters", defaultValue = "500") double cellMeters)
+            throws IOException {
+        if (!enabled) {
+            LOG.info("Geofencing disabled");
+            return GeofenceIndex.EMPTY;
+        }
+        List<GeofenceDefinition> defs;
+        if (file != null && !file.isBlank() && Files.exists(Path.of(file))) {
+            try (InputStream in = Files.newInputStream(Path.of(file))) {
+                defs = jsonb.fromJson(in, DEFINITIONS);
+            }
+        } else {
+            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(BUNDLED)) {
+                if (in == null) {
+                    LOG.warning("No geofence file found, geofencing disabled");
+                    return GeofenceIndex.EMPTY;
+                }
+                defs = jsonb.fromJson(in, DEFINITIONS);
+            }
+        }
+        GeofenceIndex index = new GeofenceIndex(defs != null ? defs : List.of(), cellMeters);
+        LOG.info(() -> "Geofences loaded: " + index);
+        return index;
+    }
+}
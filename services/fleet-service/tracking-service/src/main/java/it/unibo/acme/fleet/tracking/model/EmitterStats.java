@@ -0,0 +1,24 @@
+package it.unibo.acme.fleet.tracking.model;
+
+/**
+ * Snapshot emitter instrumentation, counters since startup.
+ * In sliced mode a "tick" is one slice of the vehicle space.
+ */
+public class EmitterStats {
+    public String mode;
+    public long intervalMs;
+    public int slices;          // current number of slices per interval (1 in fixed mode)
+
+    public long ticks;
+    public long overruns;       // ticks that took longer than their slot (interval / slices)
+    public long errors;         // ticks aborted by an exception
+
+    public double lastTickMs;
+    public double maxTickMs;
+
+    public int lastSnapshots;   // snapshots published by the last tick
+    public int maxSnapshots;
+    public long totalSnapshots;
+
+    public EmitterStats() {}
+}
@@ -0,0 +1,24 @@
+package it.unibo.acme.fleet.tracking.model;
+
+import java.util.List;
+
+/**
+ * A fence as loaded from the geofence file (tracking.geofence.file):
+ * - circle: lat, lon, radiusM
+ * - polygon: points = [[lat, lon], ...] (implicitly closed)
+ */
+public class GeofenceDefinition {
+    public static final String CIRCLE = "circle";
+    public static final String POLYGON = "polygon";
+
+    public String id;
+    public String type;
+
+    public Double lat;
+    public Double lon;
+    public Double radiusM;
+
+    public List<List<Double>> points;
+
+    public GeofenceDefinition() {}
+}
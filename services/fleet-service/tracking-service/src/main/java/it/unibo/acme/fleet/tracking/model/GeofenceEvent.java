@@ -0,0 +1,16 @@
+package it.unibo.acme.fleet.tracking.model;
+
+public class GeofenceEvent {
+    public static final String ENTER = "ENTER";
+    public static final String EXIT = "EXIT";
+
+    public String vehicleId;
+    public String fenceId;
+    public String type; // ENTER | EXIT
+    public long ts;
+
+    public double lat;
+    public double lon;
+
+    public GeofenceEvent() {}
+}
@@ -0,0 +1,16 @@
+package it.unibo.acme.fleet.tracking.model;
+
+/**
+ * Result of a spatial query on the last known vehicle positions.
+ */
+public class NearbyVehicle {
+    public String vehicleId;
+    public double lat;
+    public double lon;
+    public double distanceMeters;
+
+    public boolean active;
+    public long lastUpdateTs;
+
+    public NearbyVehicle() {}
+}
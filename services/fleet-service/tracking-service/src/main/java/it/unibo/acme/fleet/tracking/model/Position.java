@@ -1,13 +0,0 @@
-package it.unibo.acme.fleet.tracking.model;
-
-public class Position {
-    public double lat;
-    public double lon;
-
-    public Position() {}
-
-    public Position(double lat, double lon) {
-        this.lat = lat;
-        this.lon = lon;
-    }
-}
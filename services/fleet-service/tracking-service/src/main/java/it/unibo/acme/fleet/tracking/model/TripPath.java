@@ -0,0 +1,20 @@
+package it.unibo.acme.fleet.tracking.model;
+
+/**
+ * Route of the current (or last finished) trip of a vehicle.
+ */
+public class TripPath {
+    public String vehicleId;
+    public boolean active;
+    public long startedAt;
+    public long lastUpdateTs;
+
+    public long inputPoints;   // telemetry points received during the trip
+    public int points;         // points kept after simplification
+    public double toleranceM;  // current simplification tolerance (grows if the trip hits the point budget)
+
+    // Google encoded polyline, precision 1e-5
+    public String polyline;
+
+    public TripPath() {}
+}
@@ -0,0 +1,22 @@
+package it.unibo.acme.fleet.tracking.model;
+
+/**
+ * Aggregate over the trips of a group (hour bucket and/or start station).
+ * Grouping keys that were not requested are null.
+ */
+public class TripRollup {
+    public Long hourStart;       // epoch millis of the bucket, trips grouped by startedAt
+    public String stationId;     // start station, "" for trips started without one
+
+    public long trips;
+    public double distanceMeters;
+    public long durationMs;
+    public long idleMs;
+
+    public double avgDistanceMeters;
+    public double avgDurationMs;
+    public double avgSpeedMps;   // total distance / total duration
+    public double maxSpeedMps;
+
+    public TripRollup() {}
+}
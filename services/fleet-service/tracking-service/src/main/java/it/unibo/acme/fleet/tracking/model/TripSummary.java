@@ -0,0 +1,26 @@
+package it.unibo.acme.fleet.tracking.model;
+
+/**
+ * Summary of a finished trip, published once on stop
+ * (event.tracking.trip.&lt;vehicleId&gt;) and folded into the trip rollups.
+ */
+public class TripSummary {
+    public String vehicleId;
+    public long startedAt;
+    public long endedAt;
+    public long durationMs;
+
+    public double distanceMeters;
+    public double avgSpeedMps;   // distance / duration
+    public double maxSpeedMps;   // fastest 5 s window
+
+    public long movingMs;
+    public long idleMs;          // durationMs - movingMs
+
+    public long fixes;           // telemetry points applied during the trip
+
+    public String startStationId; // nullable, from the start/stop commands
+    public String endStationId;
+
+    public TripSummary() {}
+}
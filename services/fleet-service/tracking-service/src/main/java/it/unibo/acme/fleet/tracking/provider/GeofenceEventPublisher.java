@@ -0,0 +1,38 @@
+package it.unibo.acme.fleet.tracking.provider;
+
+import io.nats.client.Connection;
+import it.unibo.acme.fleet.tracking.model.GeofenceEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+
+@ApplicationScoped
+public class GeofenceEventPublisher {
+
+    private final Connection nats;
+    private final Jsonb jsonb;
+    private final String subjectPrefix;
+
+    @Inject
+    public GeofenceEventPublisher(Connection nats,
+                                  Jsonb jsonb,
+                                  @ConfigProperty(name = "tracking.geofence.subjectPrefix", defaultValue = "event.tracking.geofence")
+                                  String subjectPrefix) {
+        this.nats = nats;
+        this.jsonb = jsonb;
+        this.subjectPrefix = subjectPrefix;
+    }
+
+    public void publish(GeofenceEvent event) {
+        if (event == null || event.vehicleId == null) {
+            return;
+        }
+        // event.tracking.geofence.<vehicleId>
+        String subject = subjectPrefix + "." + event.vehicleId;
+        byte[] payload = jsonb.toJson(event).getBytes(StandardCharsets.UTF_8);
+        nats.publish(subject, payload);
+    }
+}
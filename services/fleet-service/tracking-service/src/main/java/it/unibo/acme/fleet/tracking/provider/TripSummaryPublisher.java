@@ -0,0 +1,38 @@
+package it.unibo.acme.fleet.tracking.provider;
+
+import io.nats.client.Connection;
+import it.unibo.acme.fleet.tracking.model.TripSummary;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.bind.Jsonb;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+
+@ApplicationScoped
+public class TripSummaryPublisher {
+
+    private final Connection nats;
+    private final Jsonb jsonb;
+    private final String subjectPrefix;
+
+    @Inject
+    public TripSummaryPublisher(Connection nats,
+                                Jsonb jsonb,
+                                @ConfigProperty(name = "tracking.trip.subjectPrefix", defaultValue = "event.tracking.trip")
+                                String subjectPrefix) {
+        this.nats = nats;
+        this.jsonb = jsonb;
+        this.subjectPrefix = subjectPrefix;
+    }
+
+    public void publish(TripSummary summary) {
+        if (summary == null || summary.vehicleId == null) {
+            return;
+        }
+        // event.tracking.trip.<vehicleId>
+        String subject = subjectPrefix + "." + summary.vehicleId;
+        byte[] payload = jsonb.toJson(summary).getBytes(StandardCharsets.UTF_8);
+        nats.publish(subject, payload);
+    }
+}
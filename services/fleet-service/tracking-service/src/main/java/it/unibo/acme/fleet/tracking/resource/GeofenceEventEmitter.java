@@ -0,0 +1,40 @@
+package it.unibo.acme.fleet.tracking.resource;
+
+import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.provider.GeofenceEventPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.logging.Logger;
+
+/**
+ * Pushes geofence ENTER/EXIT events to NATS as soon as a shard detects them
+ * (no batching: a destination lock wants to hear about the arrival right away).
+ */
+@ApplicationScoped
+public class GeofenceEventEmitter {
+
+    private static final Logger LOG = Logger.getLogger(GeofenceEventEmitter.class.getName());
+
+    private final TrackingCapability capability;
+    private final GeofenceEventPublisher publisher;
+
+    @Inject
+    public GeofenceEventEmitter(TrackingCapability capability, GeofenceEventPublisher publisher) {
+        this.capability = capability;
+        this.publisher = publisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        capability.setGeofenceListener(publisher::publish);
+        LOG.info("Geofence event emitter started");
+    }
+
+    @PreDestroy
+    public void stop() {
+        capability.setGeofenceListener(null);
+    }
+}
@@ -1,7 +1,8 @@
 package it.unibo.acme.fleet.tracking.resource;
 
-import io.nats.client.Connection;
 import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.model.EmitterStats;
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
 import it.unibo.acme.fleet.tracking.provider.TrackingSnapshotPublisher;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -9,19 +10,58 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Periodically collects the snapshots due and hands them to the publisher.
+ *
+ * Modes:
+ * - fixed: the whole fleet every {@code intervalMs} (historical behaviour)
+ * - sliced: the fleet is split into slices ({@link TrackingCapability#sliceOf}) visited one
+ *   after the other, evenly spread over the interval. At the end of every full cycle the
+ *   number of slices doubles if the slowest slice took more than {@code targetBurstMs},
+ *   and halves when it took less than a quarter of it. A late slice shifts the schedule
+ *   instead of being followed by catch-up bursts.
+ *
+ * Every tick is timed; a tick longer than its slot (interval / slices) counts as an overrun.
+ */
 @ApplicationScoped
 public class SnapshotEmitter {
 
     private static final Logger LOG = Logger.getLogger(SnapshotEmitter.class.getName());
 
+    public static final String MODE_FIXED = "fixed";
+    public static final String MODE_SLICED = "sliced";
+
+    private static final long MIN_SLOT_MS = 10;
+
     private final TrackingCapability capability;
     private final TrackingSnapshotPublisher publisher;
     private final long intervalMs;
+    private final boolean sliced;
+    private final int maxSlices;
+    private final long targetBurstNanos;
+
+    // instrumentation: written by the emitter thread only, read by the stats endpoint
+    private volatile int slices = 1;
+    private volatile long ticks;
+    private volatile long overruns;
+    private volatile long errors;
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile int lastSnapshots;
+    private volatile int maxSnapshots;
+    private volatile long totalSnapshots;
+
+    // sliced cycle (emitter thread)
+    private long cycleStartMs;
+    private int slice;
+    private long cycleMaxNanos;
 
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
         Thread t = new Thread(r, "tracking-snapshot-emitter");
@@ -32,27 +72,129 @@ public class SnapshotEmitter {
     @Inject
     public SnapshotEmitter(TrackingCapability capability,
                            TrackingSnapshotPublisher publisher,
-                           @ConfigProperty(name = "tracking.snapshot.intervalMs", defaultValue = "1000") long intervalMs) {
+                           @ConfigProperty(name = "tracking.snapshot.intervalMs", defaultValue = "1000") long intervalMs,
+                           @ConfigProperty(name = "tracking.snapshot.emitter.mode", defaultValue = MODE_FIXED) String mode,
+                           @ConfigProperty(name = "tracking.snapshot.emitter.maxSlices", defaultValue = "16") int maxSlices,
+                           @ConfigProperty(name = "tracking.snapshot.emitter.targetBurstMs", defaultValue = "20") long targetBurstMs) {
         this.capability = capability;
         this.publisher = publisher;
-        this.intervalMs = intervalMs;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.sliced = MODE_SLICED.equalsIgnoreCase(mode);
+        this.maxSlices = maxSlices(maxSlices, this.intervalMs);
+        this.targetBurstNanos = Math.max(1, targetBurstMs) * 1_000_000L;
     }
 
     @PostConstruct
     public void start() {
-        scheduler.scheduleAtFixedRate(() -> {
-            long now = System.currentTimeMillis();
-            var snaps = capability.collectSnapshotsToPublish(now);
-            for (var s : java.util.List.copyOf(snaps)) {
-                publisher.publish(s);
-            }
-        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        if (sliced) {
+            cycleStartMs = System.currentTimeMillis() + intervalMs;
+            scheduler.schedule(this::sliceTick, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.scheduleAtFixedRate(() -> tick(0, 1, intervalMs), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
 
-        LOG.info(() -> "Snapshot emitter started, intervalMs=" + intervalMs);
+        LOG.info(() -> "Snapshot emitter started, intervalMs=" + intervalMs
+                + ", mode=" + (sliced ? MODE_SLICED : MODE_FIXED));
     }
 
     @PreDestroy
     public void stop() {
         scheduler.shutdownNow();
     }
+
+    public EmitterStats stats() {
+        EmitterStats s = new EmitterStats();
+        s.mode = sliced ? MODE_SLICED : MODE_FIXED;
+        s.intervalMs = intervalMs;
+        s.slices = slices;
+        s.ticks = ticks;
+        s.overruns = overruns;
+        s.errors = errors;
+        s.lastTickMs = lastTickNanos / 1e6;
+        s.maxTickMs = maxTickNanos / 1e6;
+        s.lastSnapshots = lastSnapshots;
+        s.maxSnapshots = maxSnapshots;
+        s.totalSnapshots = totalSnapshots;
+        return s;
+    }
+
+    private void sliceTick() {
+        int n = slices;
+        long elapsed = tick(slice, n, intervalMs / n);
+        cycleMaxNanos = Math.max(cycleMaxNanos, elapsed);
+
+        if (++slice == n) {
+            // every vehicle was visited once: resize the slices for the next cycle only
+            slices = resize(n, cycleMaxNanos, targetBurstNanos, maxSlices);
+            if (slices != n) {
+                int from = n;
+                LOG.fine(() -> "Snapshot emitter slices " + from + " -> " + slices);
+            }
+            slice = 0;
+            cycleMaxNanos = 0;
+            cycleStartMs += intervalMs;
+        }
+
+        long slotMs = intervalMs / slices;
+        long now = System.currentTimeMillis();
+        cycleStartMs = shiftIfLate(cycleStartMs, slice, slotMs, now);
+        scheduler.schedule(this::sliceTick, cycleStartMs + slice * slotMs - now, TimeUnit.MILLISECONDS);
+    }
+
+    /** Upper bound on the slices: {@code configured}, but no slot shorter than {@link #MIN_SLOT_MS}. */
+    static int maxSlices(int configured, long intervalMs) {
+        return (int) Math.max(1, Math.min(configured, intervalMs / MIN_SLOT_MS));
+    }
+
+    /** Slices for the next cycle, given the slowest slice of the one just completed. */
+    static int resize(int slices, long cycleMaxNanos, long targetBurstNanos, int maxSlices) {
+        if (cycleMaxNanos > targetBurstNanos && slices < maxSlices) {
+            return Math.min(slices * 2, maxSlices);
+        }
+        if (cycleMaxNanos < targetBurstNanos / 4 && slices > 1) {
+            return slices / 2;
+        }
+        return slices;
+    }
+
+    /**
+     * Cycle start that puts the slot of {@code slice} no earlier than {@code nowMs}: a late
+     * slice moves the rest of the cycle back instead of being followed by catch-up bursts.
+     */
+    static long shiftIfLate(long cycleStartMs, int slice, long slotMs, long nowMs) {
+        return Math.max(cycleStartMs, nowMs - slice * slotMs);
+    }
+
+    /** Collects and publishes one slice, returns the elapsed nanos. */
+    private long tick(int slice, int slices, long slotMs) {
+        long t0 = System.nanoTime();
+        int count = 0;
+        try {
+            long now = System.currentTimeMillis();
+            // the capability hands back a fresh list: published as is, in one burst
+            List<TrackingSnapshot> snaps = capability.collectSnapshotsToPublish(now, slice, slices);
+            count = snaps.size();
+            publisher.publishAll(snaps);
+        } catch (RuntimeException e) {
+            // keep the schedule alive: an exception would cancel scheduleAtFixedRate
+            errors++;
+            LOG.log(Level.WARNING, "Snapshot tick failed", e);
+        }
+        long elapsed = System.nanoTime() - t0;
+
+        ticks++;
+        lastTickNanos = elapsed;
+        maxTickNanos = Math.max(maxTickNanos, elapsed);
+        lastSnapshots = count;
+        maxSnapshots = Math.max(maxSnapshots, count);
+        totalSnapshots += count;
+        if (elapsed > slotMs * 1_000_000L) {
+            long n = ++overruns;
+            if (n == 1 || n % 100 == 0) {
+                LOG.warning("Snapshot tick overrun #" + n + ": " + elapsed / 1_000_000 + " ms for a "
+                        + slotMs + " ms slot, " + count + " snapshots");
+            }
+        }
+        return elapsed;
+    }
 }
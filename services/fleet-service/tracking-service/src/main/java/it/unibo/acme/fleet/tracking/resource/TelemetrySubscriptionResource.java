@@ -2,8 +2,11 @@ package it.unibo.acme.fleet.tracking.resource;
 
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import it.unibo.acme.fleet.nats.NatsSettings;
 import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
-import it.unibo.acme.fleet.tracking.model.TelemetryMessage;
+import it.unibo.acme.fleet.wire.TelemetryCodec;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -20,34 +23,61 @@ public class TelemetrySubscriptionResource {
     private static final Logger LOG = Logger.getLogger(TelemetrySubscriptionResource.class.getName());
 
     private final Connection nats;
+    private final NatsSettings natsSettings;
     private final Jsonb jsonb;
     private final TrackingCapability capability;
     private final String telemetrySubject;
+    private final String telemetryBatchSubject;
 
     @Inject
     public TelemetrySubscriptionResource(Connection nats,
+                                         NatsSettings natsSettings,
                                          Jsonb jsonb,
                                          TrackingCapability capability,
                                          @ConfigProperty(name = "tracking.telemetry.subject", defaultValue = "telemetry.vehicle.*")
-                                         String telemetrySubject) {
+                                         String telemetrySubject,
+                                         @ConfigProperty(name = "tracking.telemetry.batchSubject", defaultValue = "telemetry.batch.*")
+                                         String telemetryBatchSubject) {
         this.nats = nats;
+        this.natsSettings = natsSettings;
         this.jsonb = jsonb;
         this.capability = capability;
         this.telemetrySubject = telemetrySubject;
+        this.telemetryBatchSubject = telemetryBatchSubject;
     }
 
     @PostConstruct
     public void start() {
         Dispatcher dispatcher = nats.createDispatcher(msg -> {
             try {
-                String json = new String(msg.getData(), StandardCharsets.UTF_8);
-                TelemetryMessage telemetry = jsonb.fromJson(json, TelemetryMessage.class);
-                capability.onTelemetry(telemetry);
+                String contentType = msg.hasHeaders()
+                        ? msg.getHeaders().getFirst(TelemetryCodec.CONTENT_TYPE_HEADER)
+                        : null;
+                if (TelemetryCodec.CONTENT_TYPE_BATCH.equals(contentType)) {
+                    capability.onTelemetryBatch(TelemetryCodec.decodeFrame(msg.getData()));
+                } else {
+                    capability.onTelemetry(decode(msg, contentType));
+                }
             } catch (Exception e) {
                 LOG.log(Level.WARNING, "Telemetry parse/handle failed on subject " + msg.getSubject(), e);
             }
         });
+        // past nats.pending.* the ingest is a slow consumer: messages dropped, see nats.dropped
+        natsSettings.limit(dispatcher);
         dispatcher.subscribe(telemetrySubject);
-        LOG.info(() -> "Subscribed to telemetry subject: " + telemetrySubject);
+        dispatcher.subscribe(telemetryBatchSubject);
+        LOG.info(() -> "Subscribed to telemetry subjects: " + telemetrySubject + " , " + telemetryBatchSubject);
+    }
+
+    /**
+     * Content negotiation: binary payloads are flagged by the producer
+     * with a Content-Type header, everything else is JSON.
+     */
+    private TelemetryMessage decode(Message msg, String contentType) {
+        if (TelemetryCodec.isBinary(contentType)) {
+            return TelemetryCodec.decode(msg.getData());
+        }
+        String json = new String(msg.getData(), StandardCharsets.UTF_8);
+        return jsonb.fromJson(json, TelemetryMessage.class);
     }
 }
@@ -3,6 +3,8 @@ package it.unibo.acme.fleet.tracking.resource;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.model.CommandBatch;
+import it.unibo.acme.fleet.tracking.model.CommandBatchResponse;
 import it.unibo.acme.fleet.tracking.model.CommandResponse;
 import it.unibo.acme.fleet.tracking.model.StartTrackingCommand;
 import it.unibo.acme.fleet.tracking.model.StopTrackingCommand;
@@ -13,6 +15,7 @@ import jakarta.json.bind.Jsonb;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,18 +29,21 @@ public class TrackingCommandResource {
     private final TrackingCapability capability;
     private final String startSubject;
     private final String stopSubject;
+    private final String batchSubject;
 
     @Inject
     public TrackingCommandResource(Connection nats,
                                   Jsonb jsonb,
                                   TrackingCapability capability,
                                   @ConfigProperty(name = "tracking.cmd.start.subject", defaultValue = "cmd.tracking.start") String startSubject,
-                                  @ConfigProperty(name = "tracking.cmd.stop.subject", defaultValue = "cmd.tracking.stop") String stopSubject) {
+                                  @ConfigProperty(name = "tracking.cmd.stop.subject", defaultValue = "cmd.tracking.stop") String stopSubject,
+                                  @ConfigProperty(name = "tracking.cmd.batch.subject", defaultValue = "cmd.tracking.batch") String batchSubject) {
         this.nats = nats;
         this.jsonb = jsonb;
         this.capability = capability;
         this.startSubject = startSubject;
         this.stopSubject = stopSubject;
+        this.batchSubject = batchSubject;
     }
 
     @PostConstruct
@@ -47,13 +53,13 @@ public class TrackingCommandResource {
                 String subject = msg.getSubject();
                 String json = new String(msg.getData(), StandardCharsets.UTF_8);
 
-                CommandResponse response;
+                Object response;
                 if (startSubject.equals(subject)) {
                     StartTrackingCommand cmd = jsonb.fromJson(json, StartTrackingCommand.class);
                     if (cmd == null || cmd.vehicleId == null) {
                         response = CommandResponse.error(null, "vehicleId mancante");
                     } else {
-                        capability.startTracking(cmd.vehicleId, cmd.ts);
+                        capability.startTracking(cmd.vehicleId, cmd.ts, cmd.stationId);
                         response = CommandResponse.ok(cmd.vehicleId, "tracking started");
                     }
                 } else if (stopSubject.equals(subject)) {
@@ -61,9 +67,17 @@ public class TrackingCommandResource {
                     if (cmd == null || cmd.vehicleId == null) {
                         response = CommandResponse.error(null, "vehicleId mancante");
                     } else {
-                        capability.stopTracking(cmd.vehicleId, cmd.ts);
+                        capability.stopTracking(cmd.vehicleId, cmd.ts, cmd.stationId);
                         response = CommandResponse.ok(cmd.vehicleId, "tracking stopped");
                     }
+                } else if (batchSubject.equals(subject)) {
+                    // Batch from the gateway: one reply with a result per command
+                    CommandBatch batch = jsonb.fromJson(json, CommandBatch.class);
+                    CommandBatchResponse batchResponse = new CommandBatchResponse();
+                    batchResponse.results = batch != null && batch.commands != null
+                            ? capability.applyCommands(batch.commands)
+                            : List.of();
+                    response = batchResponse;
                 } else {
                     response = CommandResponse.error(null, "subject non gestito: " + subject);
                 }
@@ -89,7 +103,8 @@ public class TrackingCommandResource {
 
         dispatcher.subscribe(startSubject);
         dispatcher.subscribe(stopSubject);
+        dispatcher.subscribe(batchSubject);
 
-        LOG.info(() -> "Subscribed to command subjects: " + startSubject + " , " + stopSubject);
+        LOG.info(() -> "Subscribed to command subjects: " + startSubject + " , " + stopSubject + " , " + batchSubject);
     }
 }
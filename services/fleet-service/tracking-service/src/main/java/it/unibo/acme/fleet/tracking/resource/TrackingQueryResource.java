@@ -0,0 +1,107 @@
+package it.unibo.acme.fleet.tracking.resource;
+
+import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.capability.TripRollupView;
+import it.unibo.acme.fleet.tracking.model.EmitterStats;
+import it.unibo.acme.fleet.tracking.model.NearbyVehicle;
+import it.unibo.acme.fleet.tracking.model.TripPath;
+import it.unibo.acme.fleet.tracking.model.TripRollup;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+
+/**
+ * REST read-only queries on the tracking state:
+ * - route of a vehicle's current (or last) trip
+ * - vehicles around a point (radius or k-nearest), from the per-shard spatial grid
+ * - trip rollups (per hour and/or start station) from the in-memory view
+ * - snapshot emitter instrumentation (tick duration, overruns, snapshots per tick)
+ */
+@Path("/tracking")
+@ApplicationScoped
+public class TrackingQueryResource {
+
+    private static final int MAX_RESULTS = 1000;
+
+    private final TrackingCapability capability;
+    private final SnapshotEmitter emitter;
+
+    @Inject
+    public TrackingQueryResource(TrackingCapability capability, SnapshotEmitter emitter) {
+        this.capability = capability;
+        this.emitter = emitter;
+    }
+
+    @GET
+    @Path("/emitter")
+    @Produces(MediaType.APPLICATION_JSON)
+    public EmitterStats emitter() {
+        return emitter.stats();
+    }
+
+    @GET
+    @Path("/vehicles/{vehicleId}/path")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response path(@PathParam("vehicleId") String vehicleId) {
+        TripPath path = capability.tripPath(vehicleId);
+        if (path == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(path, MediaType.APPLICATION_JSON).build();
+    }
+
+    @GET
+    @Path("/vehicles/nearby")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response nearby(@QueryParam("lat") Double lat,
+                           @QueryParam("lon") Double lon,
+                           @QueryParam("radiusM") @DefaultValue("500") double radiusM,
+                           @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (!validPoint(lat, lon) || radiusM < 0 || limit < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        List<NearbyVehicle> out = capability.vehiclesWithin(lat, lon, radiusM, Math.min(limit, MAX_RESULTS));
+        return Response.ok(out, MediaType.APPLICATION_JSON).build();
+    }
+
+    @GET
+    @Path("/vehicles/nearest")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response nearest(@QueryParam("lat") Double lat,
+                            @QueryParam("lon") Double lon,
+                            @QueryParam("k") @DefaultValue("5") int k) {
+        if (!validPoint(lat, lon) || k < 1) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        List<NearbyVehicle> out = capability.nearestVehicles(lat, lon, Math.min(k, MAX_RESULTS));
+        return Response.ok(out, MediaType.APPLICATION_JSON).build();
+    }
+
+    @GET
+    @Path("/trips/rollups")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response tripRollups(@QueryParam("from") @DefaultValue("0") long from,
+                                @QueryParam("to") @DefaultValue("9223372036854775807") long to,
+                                @QueryParam("stationId") String stationId,
+                                @QueryParam("groupBy") @DefaultValue(TripRollupView.GROUP_HOUR) String groupBy) {
+        if (!List.of(TripRollupView.GROUP_HOUR, TripRollupView.GROUP_STATION,
+                TripRollupView.GROUP_HOUR_STATION, TripRollupView.GROUP_TOTAL).contains(groupBy)) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        List<TripRollup> out = capability.tripRollups(from, to, stationId, groupBy);
+        return Response.ok(out, MediaType.APPLICATION_JSON).build();
+    }
+
+    private static boolean validPoint(Double lat, Double lon) {
+        return lat != null && lon != null && Math.abs(lat) <= 90 && Math.abs(lon) <= 180;
+    }
+}
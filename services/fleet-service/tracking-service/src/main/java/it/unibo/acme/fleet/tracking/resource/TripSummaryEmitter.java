@@ -0,0 +1,39 @@
+package it.unibo.acme.fleet.tracking.resource;
+
+import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.provider.TripSummaryPublisher;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.logging.Logger;
+
+/**
+ * Pushes the summary of every finished trip to NATS, right when the stop command is applied.
+ */
+@ApplicationScoped
+public class TripSummaryEmitter {
+
+    private static final Logger LOG = Logger.getLogger(TripSummaryEmitter.class.getName());
+
+    private final TrackingCapability capability;
+    private final TripSummaryPublisher publisher;
+
+    @Inject
+    public TripSummaryEmitter(TrackingCapability capability, TripSummaryPublisher publisher) {
+        this.capability = capability;
+        this.publisher = publisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        capability.setTripListener(publisher::publish);
+        LOG.info("Trip summary emitter started");
+    }
+
+    @PreDestroy
+    public void stop() {
+        capability.setTripListener(null);
+    }
+}
@@ -3,9 +3,23 @@ package it.unibo.acme.fleet.tracking.util;
 public final class Geo {
     private Geo() {}
 
+    public static final double EARTH_RADIUS_M = 6371000.0;
+
+    /**
+     * Above this hop length the fast path gives up and callers should use haversine.
+     * Below it, the equirectangular error stays well under 0.1% (see GeoTest).
+     */
+    public static final double FAST_MAX_HOP_M = 10_000.0;
+
+    /** Re-compute a cached cos(lat) once the latitude drifted this much (degrees). */
+    public static final double COS_LAT_REFRESH_DEG = 0.01;
+
+    /** Meters per degree of latitude (and of longitude at the equator). */
+    public static final double METERS_PER_DEG_LAT = Math.toRadians(1.0) * EARTH_RADIUS_M;
+
     // Haversine distance (meters)
     public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371000.0; // Earth radius in meters
+        final double R = EARTH_RADIUS_M;
         double dLat = Math.toRadians(lat2 - lat1);
         double dLon = Math.toRadians(lon2 - lon1);
         double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
@@ -14,4 +28,29 @@ public final class Geo {
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
         return R * c;
     }
+
+    public static double cosLat(double latDeg) {
+        return Math.cos(Math.toRadians(latDeg));
+    }
+
+    /**
+     * Equirectangular approximation, squared (no sqrt, no trig).
+     * {@code cosLat} is cos of a latitude close to the two points (typically cached per vehicle).
+     */
+    public static double fastDistanceSquaredMeters(double lat1, double lon1, double lat2, double lon2, double cosLat) {
+        double dy = (lat2 - lat1) * METERS_PER_DEG_LAT;
+        double dx = (lon2 - lon1) * METERS_PER_DEG_LAT * cosLat;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Fast distance for short hops, falling back to haversine above {@link #FAST_MAX_HOP_M}.
+     */
+    public static double fastDistanceMeters(double lat1, double lon1, double lat2, double lon2, double cosLat) {
+        double d2 = fastDistanceSquaredMeters(lat1, lon1, lat2, lon2, cosLat);
+        if (d2 > FAST_MAX_HOP_M * FAST_MAX_HOP_M) {
+            return distanceMeters(lat1, lon1, lat2, lon2);
+        }
+        return Math.sqrt(d2);
+    }
 }
@@ -0,0 +1,206 @@
+package it.unibo.acme.fleet.tracking.util;
+
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hand-rolled JSON serializer for {@link TrackingSnapshot}, writing UTF-8 straight
+ * into a growable byte buffer that is reused across snapshots and ticks.
+ *
+ * Produces the same document JSON-B does for the public fields (null values omitted,
+ * non-finite doubles written as null), so consumers keep parsing it with JSON-B.
+ * Compared to {@code jsonb.toJson(s).getBytes(UTF_8)} it skips reflection and the
+ * intermediate String: the only allocation per snapshot is the exact-size payload copy.
+ *
+ * Several snapshots can be appended to build a JSON array frame:
+ * <pre>
+ *   w.reset(); w.beginArray(); w.write(a); w.comma(); w.write(b); w.endArray();
+ * </pre>
+ *
+ * Not thread-safe: owned by the snapshot publisher.
+ */
+public final class SnapshotJsonWriter {
+
+    /** -0.0 takes the {@link Double#toString} path, as JSON-B writes its sign. */
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+    private byte[] buf;
+    private int size;
+
+    public SnapshotJsonWriter(int initialCapacity) {
+        this.buf = new byte[Math.max(64, initialCapacity)];
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Drops everything written after {@code mark} (a previous {@link #size()}). */
+    public void truncate(int mark) {
+        size = Math.min(size, Math.max(0, mark));
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    public void beginArray() {
+        put('[');
+    }
+
+    public void comma() {
+        put(',');
+    }
+
+    public void endArray() {
+        put(']');
+    }
+
+    public void write(TrackingSnapshot s) {
+        put('{');
+        field("active", false);
+        bool(s.active);
+        field("distanceMeters", true);
+        number(s.distanceMeters);
+        field("lastUpdateTs", true);
+        number(s.lastUpdateTs);
+        if (s.lat != null) {
+            field("lat", true);
+            number(s.lat);
+        }
+        if (s.lon != null) {
+            field("lon", true);
+            number(s.lon);
+        }
+        field("stale", true);
+        bool(s.stale);
+        field("startedAt", true);
+        number(s.startedAt);
+        field("ts", true);
+        number(s.ts);
+        if (s.vehicleId != null) {
+            field("vehicleId", true);
+            string(s.vehicleId);
+        }
+        put('}');
+    }
+
+    // ---- primitives ----
+
+    private void field(String name, boolean comma) {
+        ensure(name.length() + 4);
+        if (comma) {
+            buf[size++] = ',';
+        }
+        buf[size++] = '"';
+        for (int i = 0; i < name.length(); i++) {
+            buf[size++] = (byte) name.charAt(i);
+        }
+        buf[size++] = '"';
+        buf[size++] = ':';
+    }
+
+    private void bool(boolean v) {
+        ascii(v ? "true" : "false");
+    }
+
+    private void number(long v) {
+        if (v == Long.MIN_VALUE) {
+            ascii(Long.toString(v));
+            return;
+        }
+        ensure(20);
+        if (v < 0) {
+            buf[size++] = '-';
+            v = -v;
+        }
+        int start = size;
+        do {
+            buf[size++] = (byte) ('0' + (int) (v % 10));
+            v /= 10;
+        } while (v != 0);
+        // digits were written least significant first
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    private void number(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            ascii("null");
+        } else if (v == (long) v && Math.abs(v) < 1e15 && Double.doubleToRawLongBits(v) != NEGATIVE_ZERO) {
+            number((long) v);
+            ascii(".0");
+        } else {
+            ascii(Double.toString(v));
+        }
+    }
+
+    private void string(String v) {
+        ensure(v.length() + 2);
+        int start = size;
+        buf[size++] = '"';
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c >= 0x80 || c < 0x20 || c == '"' || c == '\\') {
+                // rare slow path: let the JDK do escaping/encoding for the whole value
+                size = start;
+                slowString(v);
+                return;
+            }
+            buf[size++] = (byte) c;
+        }
+        buf[size++] = '"';
+    }
+
+    private void slowString(String v) {
+        StringBuilder sb = new StringBuilder(v.length() + 8).append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\b' -> sb.append("\\b");
+                    case '\f' -> sb.append("\\f");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> sb.append(String.format("\\u%04x", (int) c));
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        byte[] bytes = sb.append('"').toString().getBytes(StandardCharsets.UTF_8);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[size++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void put(char c) {
+        ensure(1);
+        buf[size++] = (byte) c;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
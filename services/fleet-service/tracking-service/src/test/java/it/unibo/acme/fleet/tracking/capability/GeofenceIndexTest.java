@@ -0,0 +1,125 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.GeofenceDefinition;
+import it.unibo.acme.fleet.tracking.model.GeofenceEvent;
+import it.unibo.acme.fleet.tracking.util.Geo;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("GeofenceIndex – fence tests and ENTER/EXIT evaluation")
+class GeofenceIndexTest {
+
+    @Test
+    void grid_candidates_never_miss_a_containing_fence() {
+        Random rnd = new Random(4);
+        List<GeofenceDefinition> defs = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            defs.add(circle("C" + i, 44.40 + rnd.nextDouble() * 0.2, 11.20 + rnd.nextDouble() * 0.2, 20 + rnd.nextDouble() * 300));
+        }
+        defs.add(cityPolygon());
+        GeofenceIndex index = new GeofenceIndex(defs, 500);
+
+        for (int q = 0; q < 20_000; q++) {
+            double lat = 44.40 + rnd.nextDouble() * 0.2;
+            double lon = 11.20 + rnd.nextDouble() * 0.2;
+            int[] candidates = index.candidates(index.cellKey(lat, lon));
+            for (int f = 0; f < index.size(); f++) {
+                if (index.contains(f, lat, lon)) {
+                    assertTrue(contains(candidates, f), "fence " + index.id(f) + " not among candidates");
+                }
+            }
+        }
+    }
+
+    @Test
+    void circle_and_polygon_containment() {
+        GeofenceIndex index = new GeofenceIndex(List.of(circle("S01", 44.4949, 11.3426, 75), cityPolygon()), 500);
+        double inside = 70 / Geo.METERS_PER_DEG_LAT;
+        double outside = 80 / Geo.METERS_PER_DEG_LAT;
+        assertTrue(index.contains(0, 44.4949 + inside, 11.3426));
+        assertFalse(index.contains(0, 44.4949 + outside, 11.3426));
+        assertTrue(index.contains(1, 44.4949, 11.3426));
+        assertFalse(index.contains(1, 44.5400, 11.3426));
+        assertFalse(index.contains(1, 44.4700, 11.2850)); // outside the cut corner
+    }
+
+    @Test
+    void rejects_malformed_fences() {
+        GeofenceDefinition bad = new GeofenceDefinition();
+        bad.id = "X";
+        bad.type = GeofenceDefinition.POLYGON;
+        bad.points = List.of(List.of(44.0, 11.0), List.of(44.1, 11.0));
+        assertThrows(IllegalArgumentException.class, () -> new GeofenceIndex(List.of(bad), 500));
+    }
+
+    @Test
+    void trip_between_stations_emits_exit_then_enter() {
+        GeofenceIndex index = new GeofenceIndex(List.of(
+                circle("S01", 44.4949, 11.3426, 75),
+                circle("S02", 44.5070, 11.3510, 75),
+                cityPolygon()), 500);
+        TrackingCapability capability = new TrackingCapability(index, 1000, 10, true, "haversine", 2, 1024, 8,
+                5, 1000, "raw", 40, 5, 2, 250, 5000, 0.5, 168);
+        List<GeofenceEvent> events = new CopyOnWriteArrayList<>();
+        capability.setGeofenceListener(events::add);
+        capability.start();
+        try {
+            capability.startTracking("V001", 1);
+            for (int i = 0; i <= 100; i++) {
+                TelemetryMessage t = new TelemetryMessage();
+                t.vehicleId = "V001";
+                t.ts = 1000L * (i + 1);
+                t.lat = 44.4949 + (44.5070 - 44.4949) * i / 100.0;
+                t.lon = 11.3426 + (11.3510 - 11.3426) * i / 100.0;
+                capability.onTelemetry(t);
+            }
+            // shard tasks run after the telemetry already queued
+            capability.collectSnapshotsToPublish(200_000);
+        } finally {
+            capability.stop();
+        }
+
+        assertEquals(2, events.size(), "ENTER/EXIT events");
+        assertEquals("S01", events.get(0).fenceId);
+        assertEquals(GeofenceEvent.EXIT, events.get(0).type);
+        assertEquals("S02", events.get(1).fenceId);
+        assertEquals(GeofenceEvent.ENTER, events.get(1).type);
+    }
+
+    private static boolean contains(int[] arr, int v) {
+        for (int x : arr) {
+            if (x == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static GeofenceDefinition circle(String id, double lat, double lon, double radiusM) {
+        GeofenceDefinition d = new GeofenceDefinition();
+        d.id = id;
+        d.type = GeofenceDefinition.CIRCLE;
+        d.lat = lat;
+        d.lon = lon;
+        d.radiusM = radiusM;
+        return d;
+    }
+
+    private static GeofenceDefinition cityPolygon() {
+        GeofenceDefinition d = new GeofenceDefinition();
+        d.id = "CITY";
+        d.type = GeofenceDefinition.POLYGON;
+        d.points = List.of(
+                List.of(44.5350, 11.3000), List.of(44.5300, 11.3550), List.of(44.5100, 11.3900), List.of(44.4800, 11.3850),
+                List.of(44.4600, 11.3500), List.of(44.4650, 11.3000), List.of(44.4850, 11.2800), List.of(44.5150, 11.2850));
+        return d;
+    }
+}
@@ -0,0 +1,112 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Synthetic traces use the simulator's noise model (SIM_GPS_NOISE_M / SIM_GPS_OUTLIER_*):
+ * gaussian error on north/east plus rare fixed-size jumps, one fix per second.
+ */
+@DisplayName("GpsFilter – jitter and outlier rejection on noisy traces")
+class GpsFilterTest {
+
+    private static final double NOISE_M = 3;
+    private static final double OUTLIER_RATE = 0.01;
+    private static final double OUTLIER_M = 200;
+
+    @Test
+    void parked_vehicle_accumulates_almost_no_distance() {
+        Trace trace = new Trace(1);
+        GpsFilter filter = new GpsFilter(40, 5, 2);
+        double raw = 0;
+        double filtered = 0;
+        double prevLat = Double.NaN;
+        double prevLon = 0;
+        for (int i = 0; i < 1800; i++) {
+            trace.fix(44.4949, 11.3426, i);
+            if (!Double.isNaN(prevLat)) {
+                raw += Geo.distanceMeters(prevLat, prevLon, trace.lat, trace.lon);
+            }
+            prevLat = trace.lat;
+            prevLon = trace.lon;
+            filtered += Math.max(0, filter.update(trace.lat, trace.lon, i * 1000L));
+        }
+        double f = filtered;
+        double r = raw;
+        // raw sums ~4 m of jitter per second (plus outliers): several km in half an hour
+        assertTrue(r > 5000, () -> "raw " + r);
+        assertTrue(f < 20, () -> "filtered " + f + " (raw " + r + ")");
+    }
+
+    @Test
+    void moving_vehicle_distance_stays_close_to_ground_truth() {
+        Trace trace = new Trace(2);
+        GpsFilter filter = new GpsFilter(40, 5, 2);
+        double speed = 8; // SIM_SPEED_MPS default
+        double lat = 44.4795;
+        double lon = 11.3300;
+        double truth = 0;
+        double filtered = 0;
+        double heading = 0.3;
+        for (int i = 0; i < 1200; i++) {
+            if (i % 300 == 0) {
+                heading += 1.2; // a few turns
+            }
+            double cos = Geo.cosLat(lat);
+            double nLat = lat + Math.cos(heading) * speed / Geo.METERS_PER_DEG_LAT;
+            double nLon = lon + Math.sin(heading) * speed / (Geo.METERS_PER_DEG_LAT * cos);
+            if (i > 0) {
+                truth += Geo.distanceMeters(lat, lon, nLat, nLon);
+            }
+            lat = nLat;
+            lon = nLon;
+            trace.fix(lat, lon, i);
+            filtered += Math.max(0, filter.update(trace.lat, trace.lon, i * 1000L));
+        }
+        double err = Math.abs(filtered - truth) / truth;
+        assertTrue(err < 0.02, () -> "relative error " + err);
+        assertTrue(filter.rejected() > 0);
+    }
+
+    @Test
+    void persistent_jump_is_accepted_as_relocation() {
+        GpsFilter filter = new GpsFilter(40, 5, 2);
+        assertEquals(0.0, filter.update(44.4949, 11.3426, 0), 0.0);
+        long ts = 1000;
+        double moved = 0;
+        for (int i = 0; i < GpsFilter.MAX_CONSECUTIVE_REJECTS; i++) {
+            moved = filter.update(44.5170, 11.3235, ts);
+            ts += 1000;
+        }
+        assertEquals(0.0, moved, 0.0, "relocation must not be billed as distance");
+        assertEquals(44.5170, filter.lat(), 1e-9);
+    }
+
+    /** Same error model as the simulator's addGpsNoise. */
+    private static final class Trace {
+        final Random rnd;
+        double lat;
+        double lon;
+
+        Trace(long seed) {
+            rnd = new Random(seed);
+        }
+
+        void fix(double trueLat, double trueLon, int i) {
+            double north = rnd.nextGaussian() * NOISE_M;
+            double east = rnd.nextGaussian() * NOISE_M;
+            if (rnd.nextDouble() < OUTLIER_RATE) {
+                double a = rnd.nextDouble() * 2 * Math.PI;
+                north += Math.cos(a) * OUTLIER_M;
+                east += Math.sin(a) * OUTLIER_M;
+            }
+            lat = trueLat + north / Geo.METERS_PER_DEG_LAT;
+            lon = trueLon + east / (Geo.METERS_PER_DEG_LAT * Geo.cosLat(trueLat));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PathRecorder – online simplification and encoded polyline")
+class PathRecorderTest {
+
+    @Test
+    void encodes_reference_polyline() {
+        // reference example of the encoded polyline format
+        PathRecorder path = new PathRecorder(0.1, 100);
+        path.add(38.5, -120.2);
+        path.add(40.7, -120.95);
+        path.add(43.252, -126.453);
+        path.finish();
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", path.encodedPolyline());
+    }
+
+    @Test
+    void straight_noisy_leg_collapses_to_its_endpoints() {
+        Random rnd = new Random(7);
+        PathRecorder path = new PathRecorder(5, 1000);
+        for (int i = 0; i <= 500; i++) {
+            double f = i / 500.0;
+            double jitter = (rnd.nextDouble() - 0.5) * 2e-5; // ~±1 m
+            path.add(44.4949 + f * 0.0121 + jitter, 11.3426 + f * 0.0084 + jitter);
+        }
+        path.finish();
+        assertEquals(501, path.inputCount());
+        assertEquals(2, path.pointCount());
+    }
+
+    @Test
+    void dropped_points_stay_within_tolerance_of_the_route() {
+        Random rnd = new Random(11);
+        double tol = 5;
+        PathRecorder path = new PathRecorder(tol, 10_000);
+        List<double[]> input = new ArrayList<>();
+        double lat = 44.49;
+        double lon = 11.34;
+        double heading = 0;
+        for (int i = 0; i < 3000; i++) {
+            heading += (rnd.nextDouble() - 0.5) * 0.6;
+            lat += Math.cos(heading) * 4 / Geo.METERS_PER_DEG_LAT;
+            lon += Math.sin(heading) * 4 / (Geo.METERS_PER_DEG_LAT * Geo.cosLat(lat));
+            path.add(lat, lon);
+            input.add(new double[]{lat, lon});
+        }
+        path.finish();
+        assertTrue(path.pointCount() < input.size() / 2, () -> "kept " + path.pointCount());
+
+        List<double[]> route = decode(path.encodedPolyline());
+        // 1e-5 deg rounding of the encoding adds up to ~1 m
+        for (double[] p : input) {
+            double d = distanceToRouteMeters(p, route);
+            assertTrue(d <= tol + 1.5, () -> "point " + d + " m away from the route");
+        }
+    }
+
+    @Test
+    void point_budget_is_never_exceeded() {
+        Random rnd = new Random(3);
+        PathRecorder path = new PathRecorder(1, 64);
+        for (int i = 0; i < 100_000; i++) {
+            path.add(44.49 + rnd.nextDouble() * 0.02, 11.34 + rnd.nextDouble() * 0.02);
+            assertTrue(path.pointCount() <= 65);
+        }
+        assertTrue(path.toleranceM() > 1);
+    }
+
+    // ---- helpers ----
+
+    private static List<double[]> decode(String encoded) {
+        List<double[]> out = new ArrayList<>();
+        int i = 0;
+        int lat = 0;
+        int lon = 0;
+        while (i < encoded.length()) {
+            int[] v = new int[2];
+            for (int k = 0; k < 2; k++) {
+                int result = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = encoded.charAt(i++) - 63;
+                    result |= (b & 0x1f) << shift;
+                    shift += 5;
+                } while (b >= 0x20);
+                v[k] = (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+            }
+            lat += v[0];
+            lon += v[1];
+            out.add(new double[]{lat / 1e5, lon / 1e5});
+        }
+        return out;
+    }
+
+    private static double distanceToRouteMeters(double[] p, List<double[]> route) {
+        double cos = Geo.cosLat(p[0]);
+        double best = Double.MAX_VALUE;
+        for (int i = 1; i < route.size(); i++) {
+            double[] a = route.get(i - 1);
+            double[] b = route.get(i);
+            double ax = (a[1] - p[1]) * Geo.METERS_PER_DEG_LAT * cos;
+            double ay = (a[0] - p[0]) * Geo.METERS_PER_DEG_LAT;
+            double bx = (b[1] - p[1]) * Geo.METERS_PER_DEG_LAT * cos;
+            double by = (b[0] - p[0]) * Geo.METERS_PER_DEG_LAT;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double len2 = dx * dx + dy * dy;
+            double t = len2 == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / len2));
+            double cx = ax + t * dx;
+            double cy = ay + t * dy;
+            best = Math.min(best, Math.sqrt(cx * cx + cy * cy));
+        }
+        return best;
+    }
+}
@@ -0,0 +1,102 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.util.Geo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SpatialGrid – radius and k-nearest queries vs linear scan")
+class SpatialGridTest {
+
+    private static final int VEHICLES = 5000;
+
+    @Test
+    void radius_query_matches_linear_scan_after_moves() {
+        Random rnd = new Random(5);
+        SpatialGrid grid = new SpatialGrid(250);
+        List<VehicleTrackingState> all = populate(grid, rnd);
+        // move half of them, many across cells
+        for (int i = 0; i < VEHICLES; i += 2) {
+            place(all.get(i), rnd);
+            grid.update(all.get(i));
+        }
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 44.45 + rnd.nextDouble() * 0.1;
+            double lon = 11.29 + rnd.nextDouble() * 0.1;
+            double radius = 50 + rnd.nextDouble() * 1500;
+            List<SpatialGrid.Hit> hits = grid.within(lat, lon, radius);
+
+            int expected = 0;
+            for (VehicleTrackingState st : all) {
+                if (Geo.distanceMeters(lat, lon, st.lastLat, st.lastLon) <= radius) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, hits.size());
+            for (int i = 1; i < hits.size(); i++) {
+                assertTrue(hits.get(i - 1).distanceMeters <= hits.get(i).distanceMeters);
+            }
+        }
+    }
+
+    @Test
+    void nearest_matches_linear_scan() {
+        Random rnd = new Random(9);
+        SpatialGrid grid = new SpatialGrid(250);
+        List<VehicleTrackingState> all = populate(grid, rnd);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 44.45 + rnd.nextDouble() * 0.1;
+            double lon = 11.29 + rnd.nextDouble() * 0.1;
+            int k = 1 + rnd.nextInt(20);
+            List<SpatialGrid.Hit> hits = grid.nearest(lat, lon, k, 50_000);
+
+            List<Double> dist = new ArrayList<>();
+            for (VehicleTrackingState st : all) {
+                dist.add(Geo.distanceMeters(lat, lon, st.lastLat, st.lastLon));
+            }
+            dist.sort(Double::compare);
+            assertEquals(k, hits.size());
+            for (int i = 0; i < k; i++) {
+                assertEquals(dist.get(i), hits.get(i).distanceMeters, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void nearest_respects_max_radius_and_removal() {
+        SpatialGrid grid = new SpatialGrid(250);
+        VehicleTrackingState a = new VehicleTrackingState("V001");
+        a.lastLat = 44.4949;
+        a.lastLon = 11.3426;
+        grid.update(a);
+        assertEquals(1, grid.nearest(44.4949, 11.3500, 3, 1000).size());
+        assertEquals(0, grid.nearest(44.4949, 11.3600, 3, 1000).size());
+
+        grid.remove(a);
+        assertEquals(0, grid.cellCount());
+        assertTrue(grid.within(44.4949, 11.3426, 100).isEmpty());
+    }
+
+    private static List<VehicleTrackingState> populate(SpatialGrid grid, Random rnd) {
+        List<VehicleTrackingState> all = new ArrayList<>();
+        for (int i = 0; i < VEHICLES; i++) {
+            VehicleTrackingState st = new VehicleTrackingState("V" + i);
+            place(st, rnd);
+            grid.update(st);
+            all.add(st);
+        }
+        return all;
+    }
+
+    private static void place(VehicleTrackingState st, Random rnd) {
+        st.lastLat = 44.45 + rnd.nextDouble() * 0.1;
+        st.lastLon = 11.29 + rnd.nextDouble() * 0.1;
+    }
+}
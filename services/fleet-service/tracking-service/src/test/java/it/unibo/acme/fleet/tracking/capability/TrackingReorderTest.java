@@ -0,0 +1,58 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TrackingCapability – late telemetry re-sequenced before it reaches the trip")
+class TrackingReorderTest {
+
+    @Test
+    void reordered_telemetry_does_not_corrupt_trip_distance() {
+        double inOrder = tripDistance(false);
+        double shuffled = tripDistance(true);
+        assertEquals(inOrder, shuffled, 1e-6);
+    }
+
+    // ---- helpers ----
+
+    private static double tripDistance(boolean shuffle) {
+        TrackingCapability capability = new TrackingCapability(GeofenceIndex.EMPTY, 1000, 10, true, "haversine", 1, 1024, 8,
+                5, 1000, "raw", 40, 5, 2, 250, 5000, 0.5, 168);
+        capability.start();
+        try {
+            capability.startTracking("V001", 1);
+            List<TelemetryMessage> msgs = new ArrayList<>();
+            for (int i = 1; i <= 200; i++) {
+                TelemetryMessage t = new TelemetryMessage();
+                t.vehicleId = "V001";
+                t.seq = i;
+                t.ts = 1000L * i;
+                t.lat = 44.4949 + 0.0001 * i;
+                t.lon = 11.3426 + 0.00005 * i * (i % 2 == 0 ? 1 : 1.1);
+                msgs.add(t);
+            }
+            if (shuffle) {
+                Random rnd = new Random(3);
+                for (int i = 0; i + 3 <= msgs.size(); i += 3) {
+                    Collections.shuffle(msgs.subList(i, i + 3), rnd);
+                }
+                // plus a duplicate of an old message delivered very late
+                msgs.add(msgs.get(10));
+            }
+            for (TelemetryMessage t : msgs) {
+                capability.onTelemetry(t);
+            }
+            return capability.collectSnapshotsToPublish(1_000_000).get(0).distanceMeters;
+        } finally {
+            capability.stop();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.BatchCommand;
+import it.unibo.acme.fleet.tracking.model.CommandResponse;
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+import it.unibo.acme.fleet.tracking.util.Geo;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TrackingShard – single-writer ingest and the command path")
+class TrackingShardTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+    private static final double LAT = 44.4949;
+    private static final double LON = 11.3426;
+    private static final double STEP = 1e-4; // ~8 m east per fix
+
+    private TrackingCapability tracking;
+
+    @AfterEach
+    void stopShards() {
+        if (tracking != null) {
+            tracking.stop();
+        }
+    }
+
+    /** Raw distances, no reordering: any out-of-order fix would add a backwards hop. */
+    private TrackingCapability start(int shards, int queueCapacity) {
+        tracking = new TrackingCapability(GeofenceIndex.EMPTY, 1000, 10, true, "haversine",
+                shards, queueCapacity, 0, 5, 1000, "raw", 40, 5, 2, 250, 5000, 0.5, 168);
+        tracking.start();
+        return tracking;
+    }
+
+    private static TelemetryMessage fix(String vehicleId, int i) {
+        TelemetryMessage m = new TelemetryMessage();
+        m.vehicleId = vehicleId;
+        m.seq = i + 1;
+        m.ts = T0 + i * 1000L;
+        m.lat = LAT;
+        m.lon = LON + i * STEP;
+        return m;
+    }
+
+    private static double expectedDistance(int fixes) {
+        double d = 0;
+        for (int i = 1; i < fixes; i++) {
+            d += Geo.distanceMeters(LAT, LON + (i - 1) * STEP, LAT, LON + i * STEP);
+        }
+        return d;
+    }
+
+    private static Map<String, TrackingSnapshot> byVehicle(List<TrackingSnapshot> snaps) {
+        return snaps.stream().collect(Collectors.toMap(s -> s.vehicleId, Function.identity()));
+    }
+
+    @Test
+    void per_vehicle_order_is_kept_across_shards_under_backpressure() throws Exception {
+        // tiny queues: producers block on put all the time
+        TrackingCapability t = start(4, 16);
+        int vehicles = 40;
+        int fixes = 500;
+        int producers = 4;
+        for (int v = 0; v < vehicles; v++) {
+            t.startTracking("V" + v, T0 - 1);
+        }
+
+        // each producer owns a disjoint set of vehicles, like one NATS dispatcher per subject
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p;
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < fixes; i++) {
+                    for (int v = first; v < vehicles; v += producers) {
+                        t.onTelemetry(fix("V" + v, i));
+                    }
+                }
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) {
+            th.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(th.isAlive(), "producer stuck");
+        }
+
+        // the dump is queued behind every fix already handed to the shards
+        Map<String, TrackingSnapshot> snaps = byVehicle(t.dumpSnapshots(T0 + fixes * 1000L));
+        assertEquals(vehicles, snaps.size());
+        double expected = expectedDistance(fixes);
+        for (int v = 0; v < vehicles; v++) {
+            TrackingSnapshot s = snaps.get("V" + v);
+            assertEquals(expected, s.distanceMeters, 1e-6, "V" + v);
+            assertEquals(LON + (fixes - 1) * STEP, s.lon, 1e-12);
+            assertEquals(T0 + (fixes - 1) * 1000L, s.lastUpdateTs);
+        }
+    }
+
+    @Test
+    void commands_see_exactly_the_telemetry_queued_before_them() {
+        TrackingCapability t = start(3, 1024);
+
+        // before start: position is stored, no distance
+        t.onTelemetry(fix("V001", 0));
+        t.onTelemetry(fix("V001", 1));
+        t.startTracking("V001", T0 + 1500);
+        for (int i = 2; i < 12; i++) {
+            t.onTelemetry(fix("V001", i));
+        }
+        // no waiting: stop runs on the shard after the 10 fixes above
+        t.stopTracking("V001", T0 + 20_000);
+        t.onTelemetry(fix("V001", 12)); // after stop: position only
+
+        TrackingSnapshot s = byVehicle(t.dumpSnapshots(T0 + 30_000)).get("V001");
+        assertFalse(s.active);
+        assertEquals(expectedDistance(10), s.distanceMeters, 1e-6);
+        assertEquals(LON + 12 * STEP, s.lon, 1e-12);
+
+        // the final snapshot is published once, from the same shard state
+        List<TrackingSnapshot> published = t.collectSnapshotsToPublish(T0 + 30_000);
+        assertEquals(1, published.size());
+        assertEquals(s.distanceMeters, published.get(0).distanceMeters);
+        assertTrue(t.collectSnapshotsToPublish(T0 + 31_000).isEmpty());
+    }
+
+    @Test
+    void batched_commands_keep_their_order_per_vehicle() {
+        TrackingCapability t = start(4, 1024);
+        List<BatchCommand> batch = new ArrayList<>();
+        for (int v = 0; v < 20; v++) {
+            batch.add(command(BatchCommand.START, "V" + v));
+        }
+        for (int v = 0; v < 20; v += 2) {
+            batch.add(command(BatchCommand.STOP, "V" + v));
+        }
+        batch.add(command("PAUSE", "V1"));
+
+        List<CommandResponse> replies = t.applyCommands(batch);
+        assertEquals(batch.size(), replies.size());
+        for (int i = 0; i < batch.size() - 1; i++) {
+            assertEquals("OK", replies.get(i).status, batch.get(i).op + " " + batch.get(i).vehicleId);
+            assertEquals(batch.get(i).vehicleId, replies.get(i).vehicleId);
+        }
+        assertEquals("ERROR", replies.get(batch.size() - 1).status);
+
+        Map<String, TrackingSnapshot> snaps = byVehicle(t.dumpSnapshots(T0));
+        for (int v = 0; v < 20; v++) {
+            assertEquals(v % 2 == 1, snaps.get("V" + v).active, "V" + v);
+        }
+    }
+
+    @Test
+    void full_queue_blocks_the_producer_until_the_shard_catches_up() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        TrackingShard shard = new TrackingShard(0, 16, 250, (s, m) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            applied.incrementAndGet();
+        });
+        shard.start();
+        try {
+            // one message held by the handler, 16 queued, the next put must block
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 18; i++) {
+                    shard.enqueue(fix("V001", i));
+                }
+            });
+            producer.start();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(Thread.State.WAITING, producer.getState());
+            assertEquals(16, shard.queued());
+            assertEquals(0, applied.get());
+
+            release.countDown();
+            producer.join(5_000);
+            assertFalse(producer.isAlive());
+            assertEquals(18, shard.submit(s -> applied.get()).get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            shard.stop();
+        }
+    }
+
+    @Test
+    void failing_task_completes_its_future_and_the_shard_keeps_running() throws Exception {
+        TrackingShard shard = new TrackingShard(0, 16, 250, (s, m) -> s.state(m.vehicleId));
+        shard.start();
+        try {
+            CompletableFuture<Object> failed = shard.submit(s -> {
+                throw new IllegalStateException("boom");
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+
+            shard.enqueue(fix("V001", 0));
+            assertEquals(1, shard.submit(s -> s.states.size()).get(5, TimeUnit.SECONDS));
+        } finally {
+            shard.stop();
+        }
+    }
+
+    @Test
+    void interrupted_submit_fails_its_future_instead_of_timing_out() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TrackingShard shard = new TrackingShard(0, 16, 250, (s, m) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        shard.start();
+        try {
+            // one message held by the handler, 16 queued: the submit below blocks on put
+            for (int i = 0; i < 17; i++) {
+                shard.enqueue(fix("V001", i));
+            }
+            CompletableFuture<CompletableFuture<Integer>> submitted = new CompletableFuture<>();
+            Thread caller = new Thread(() -> submitted.complete(shard.submit(s -> 1)));
+            caller.start();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (caller.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            caller.interrupt();
+
+            CompletableFuture<Integer> result = submitted.get(5, TimeUnit.SECONDS);
+            assertTrue(result.isCompletedExceptionally());
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(0, TimeUnit.SECONDS));
+            assertInstanceOf(InterruptedException.class, e.getCause());
+        } finally {
+            release.countDown();
+            shard.stop();
+        }
+    }
+
+    @Test
+    void stop_fails_the_tasks_still_queued() throws Exception {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TrackingShard shard = new TrackingShard(0, 16, 250, (s, m) -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        shard.start();
+        try {
+            shard.enqueue(fix("V001", 0));
+            assertTrue(busy.await(5, TimeUnit.SECONDS));
+            List<CompletableFuture<Integer>> queued = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                queued.add(shard.submit(s -> 1));
+            }
+
+            shard.stop();
+            for (CompletableFuture<Integer> f : queued) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(0, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+            assertEquals(0, shard.queued());
+
+            // nobody consumes after stop: late submits fail too
+            CompletableFuture<Integer> late = shard.submit(s -> 1);
+            assertThrows(ExecutionException.class, () -> late.get(0, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            shard.stop();
+        }
+    }
+
+    private static BatchCommand command(String op, String vehicleId) {
+        BatchCommand c = new BatchCommand();
+        c.op = op;
+        c.vehicleId = vehicleId;
+        c.ts = T0;
+        return c;
+    }
+}
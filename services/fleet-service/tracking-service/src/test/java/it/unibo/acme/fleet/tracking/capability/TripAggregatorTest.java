@@ -0,0 +1,151 @@
+package it.unibo.acme.fleet.tracking.capability;
+
+import it.unibo.acme.fleet.tracking.model.TripRollup;
+import it.unibo.acme.fleet.tracking.model.TripSummary;
+import it.unibo.acme.fleet.tracking.util.Geo;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TripAggregator / TripRollupView – trip summaries and rollups")
+class TripAggregatorTest {
+
+    private static final long HOUR = TripRollupView.HOUR_MS;
+
+    @Test
+    void summary_splits_moving_and_idle_time() {
+        TripAggregator agg = new TripAggregator(0.5, 40);
+        agg.reset("S01");
+        long ts = 0;
+        agg.add(ts, 0);
+        // 10 min at 8 m/s, 5 min parked (with some jitter), 5 min at 12 m/s
+        for (int i = 0; i < 600; i++) {
+            agg.add(ts += 1000, 8);
+        }
+        for (int i = 0; i < 300; i++) {
+            agg.add(ts += 1000, i % 2 == 0 ? 0.3 : 0);
+        }
+        for (int i = 0; i < 300; i++) {
+            agg.add(ts += 1000, 12);
+        }
+        double distance = 600 * 8 + 150 * 0.3 + 300 * 12;
+        TripSummary s = agg.finish("V001", 0, ts, "S02", distance);
+
+        assertEquals(1_200_000, s.durationMs);
+        assertEquals(900_000, s.movingMs);
+        assertEquals(300_000, s.idleMs);
+        assertEquals(12.0, s.maxSpeedMps, 1e-9);
+        assertEquals(distance / 1200, s.avgSpeedMps, 1e-9);
+        assertEquals(1201, s.fixes);
+        assertEquals("S01", s.startStationId);
+        assertEquals("S02", s.endStationId);
+    }
+
+    @Test
+    void implausible_speeds_never_become_the_max() {
+        TripAggregator agg = new TripAggregator(0.5, 40);
+        agg.reset(null);
+        agg.add(0, 0);
+        for (int i = 1; i <= 60; i++) {
+            // a 2 km GPS jump in the middle of a 5 m/s ride
+            agg.add(i * 1000L, i == 30 ? 2000 : 5);
+        }
+        TripSummary s = agg.finish("V001", 0, 60_000, null, 0);
+        assertEquals(5.0, s.maxSpeedMps, 1e-9);
+        assertEquals(60_000, s.movingMs);
+    }
+
+    @Test
+    void rollups_group_by_hour_and_station_and_expire_old_buckets() {
+        TripRollupView view = new TripRollupView(24);
+        view.add(trip("S01", 10 * HOUR + 5, 1000, 600_000));
+        view.add(trip("S01", 10 * HOUR + 50, 3000, 1_200_000));
+        view.add(trip("S02", 11 * HOUR, 2000, 600_000));
+        view.add(trip(null, 11 * HOUR + 1, 500, 300_000));
+
+        List<TripRollup> byHour = view.query(0, Long.MAX_VALUE, null, TripRollupView.GROUP_HOUR);
+        assertEquals(2, byHour.size());
+        assertEquals(10 * HOUR, (long) byHour.get(0).hourStart);
+        assertEquals(2, byHour.get(0).trips);
+        assertEquals(4000, byHour.get(0).distanceMeters, 1e-9);
+        assertEquals(2000, byHour.get(0).avgDistanceMeters, 1e-9);
+        assertEquals(4000 / 1800.0, byHour.get(0).avgSpeedMps, 1e-9);
+
+        List<TripRollup> byStation = view.query(0, Long.MAX_VALUE, null, TripRollupView.GROUP_STATION);
+        assertEquals(3, byStation.size());
+        assertEquals("", byStation.get(0).stationId);
+        assertEquals("S01", byStation.get(1).stationId);
+        assertNull(byStation.get(1).hourStart);
+
+        List<TripRollup> s01 = view.query(0, Long.MAX_VALUE, "S01", TripRollupView.GROUP_TOTAL);
+        assertEquals(1, s01.size());
+        assertEquals(2, s01.get(0).trips);
+
+        List<TripRollup> hour11 = view.query(11 * HOUR, 12 * HOUR - 1, null, TripRollupView.GROUP_HOUR_STATION);
+        assertEquals(2, hour11.size());
+
+        // a trip 24 hours later pushes the 10:00 bucket out of the retention window
+        view.add(trip("S01", 34 * HOUR, 100, 60_000));
+        assertEquals(2, view.buckets());
+        assertEquals(3, view.query(0, Long.MAX_VALUE, null, TripRollupView.GROUP_TOTAL).get(0).trips);
+    }
+
+    @Test
+    void stop_publishes_summary_and_updates_rollups() {
+        TrackingCapability capability = new TrackingCapability(GeofenceIndex.EMPTY, 1000, 10, true, "haversine", 2, 1024, 8,
+                5, 1000, "raw", 40, 5, 2, 250, 5000, 0.5, 168);
+        List<TripSummary> summaries = new CopyOnWriteArrayList<>();
+        capability.setTripListener(summaries::add);
+        capability.start();
+        try {
+            long t0 = 5 * HOUR;
+            capability.startTracking("V001", t0, "S01");
+            double lat = 44.4949;
+            for (int i = 1; i <= 120; i++) {
+                TelemetryMessage t = new TelemetryMessage();
+                t.vehicleId = "V001";
+                t.seq = i;
+                t.ts = t0 + 1000L * i;
+                // ~10 m/s northbound
+                t.lat = lat + 10.0 * i / Geo.METERS_PER_DEG_LAT;
+                t.lon = 11.3426;
+                capability.onTelemetry(t);
+            }
+            capability.stopTracking("V001", t0 + 121_000, "S03");
+            // a second stop is not a second trip
+            capability.stopTracking("V001", t0 + 130_000, "S03");
+        } finally {
+            capability.stop();
+        }
+
+        assertEquals(1, summaries.size());
+        TripSummary s = summaries.get(0);
+        assertEquals(121_000, s.durationMs);
+        assertEquals(1190, s.distanceMeters, 2);
+        assertEquals(10, s.maxSpeedMps, 0.1);
+        assertEquals("S01", s.startStationId);
+        assertEquals("S03", s.endStationId);
+
+        List<TripRollup> rollups = capability.tripRollups(0, Long.MAX_VALUE, "S01", TripRollupView.GROUP_HOUR);
+        assertEquals(1, rollups.size());
+        assertEquals(5 * HOUR, (long) rollups.get(0).hourStart);
+        assertEquals(1, rollups.get(0).trips);
+    }
+
+    private static TripSummary trip(String station, long startedAt, double meters, long durationMs) {
+        TripSummary s = new TripSummary();
+        s.vehicleId = "V001";
+        s.startStationId = station;
+        s.startedAt = startedAt;
+        s.endedAt = startedAt + durationMs;
+        s.durationMs = durationMs;
+        s.distanceMeters = meters;
+        s.maxSpeedMps = meters / (durationMs / 1000.0);
+        return s;
+    }
+}
@@ -0,0 +1,122 @@
+package it.unibo.acme.fleet.tracking.provider;
+
+import io.nats.client.Connection;
+import it.unibo.acme.fleet.nats.NatsConnectionPool;
+import it.unibo.acme.fleet.tracking.capability.GeofenceIndex;
+import it.unibo.acme.fleet.tracking.capability.TrackingCapability;
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Duration of one snapshot tick (collect on the shards + serialization + publish) with every
+ * vehicle due, against a connection that only counts messages and bytes: the broker and the
+ * network are not part of the measure.
+ *
+ * Excluded from the default build, run with:
+ * <pre>
+ *   mvn test -pl tracking-service -am -Dtest=SnapshotPublishBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ * </pre>
+ */
+@DisplayName("SnapshotPublishBenchmark – tick duration at 10k and 100k active vehicles")
+class SnapshotPublishBenchmark {
+
+    private static final long T0 = 1_760_000_000_000L;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 15;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private long now = T0 + 10_000;
+
+    private Connection countingConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("publish")) {
+                        messages.increment();
+                        bytes.add(((byte[]) args[args.length - 1]).length);
+                    }
+                    return null;
+                });
+    }
+
+    private interface Publish {
+        void tick(List<TrackingSnapshot> snapshots);
+    }
+
+    @Test
+    void tick_duration() throws Exception {
+        System.out.printf("%-8s %-7s %10s %10s %10s %9s%n", "vehicles", "mode", "median ms", "min ms", "msgs/tick", "KB/tick");
+        for (int vehicles : new int[] {10_000, 100_000}) {
+            TrackingCapability tracking = fleet(vehicles);
+            try (Jsonb jsonb = JsonbBuilder.create()) {
+                Connection nats = countingConnection();
+                // the publisher before batching: one JSON-B String per snapshot, one publish each
+                run(tracking, vehicles, "json-b", snaps -> {
+                    for (TrackingSnapshot s : snaps) {
+                        nats.publish("event.tracking.snapshot." + s.vehicleId, jsonb.toJson(s).getBytes(StandardCharsets.UTF_8));
+                    }
+                });
+                NatsConnectionPool pool = NatsConnectionPool.of(nats);
+                TrackingSnapshotPublisher single = new TrackingSnapshotPublisher(pool, "event.tracking.snapshot",
+                        TrackingSnapshotPublisher.MODE_SINGLE, 65536);
+                run(tracking, vehicles, "single", single::publishAll);
+                TrackingSnapshotPublisher batch = new TrackingSnapshotPublisher(pool, "event.tracking.snapshot",
+                        TrackingSnapshotPublisher.MODE_BATCH, 65536);
+                run(tracking, vehicles, "batch", batch::publishAll);
+            } finally {
+                tracking.stop();
+            }
+        }
+    }
+
+    private void run(TrackingCapability tracking, int vehicles, String mode, Publish publish) {
+        long[] nanos = new long[ROUNDS];
+        for (int r = -WARMUP; r < ROUNDS; r++) {
+            messages.reset();
+            bytes.reset();
+            now += 1000; // one interval later: every active vehicle is due again
+            long t0 = System.nanoTime();
+            List<TrackingSnapshot> snaps = tracking.collectSnapshotsToPublish(now);
+            publish.tick(snaps);
+            long elapsed = System.nanoTime() - t0;
+            assertEquals(vehicles, snaps.size());
+            if (r >= 0) {
+                nanos[r] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-8d %-7s %10.1f %10.1f %10d %9d%n", vehicles, mode,
+                nanos[ROUNDS / 2] / 1e6, nanos[0] / 1e6, messages.sum(), bytes.sum() / 1024);
+    }
+
+    /** {@code vehicles} active vehicles with a position, spread over 4 shards. */
+    private static TrackingCapability fleet(int vehicles) {
+        TrackingCapability t = new TrackingCapability(GeofenceIndex.EMPTY, 1000, 10, true, "haversine",
+                4, 65536, 0, 5, 1000, "raw", 40, 5, 2, 250, 5000, 0.5, 168);
+        t.start();
+        for (int v = 0; v < vehicles; v++) {
+            String id = "V" + v;
+            t.startTracking(id, T0);
+            TelemetryMessage m = new TelemetryMessage();
+            m.vehicleId = id;
+            m.seq = 1;
+            m.ts = T0 + 1000;
+            m.lat = 44.45 + (v % 1000) * 1e-4;
+            m.lon = 11.30 + (v / 1000) * 1e-3;
+            t.onTelemetry(m);
+        }
+        return t;
+    }
+}
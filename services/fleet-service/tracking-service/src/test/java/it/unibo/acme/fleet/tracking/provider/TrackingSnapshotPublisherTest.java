@@ -0,0 +1,108 @@
+package it.unibo.acme.fleet.tracking.provider;
+
+import io.nats.client.Connection;
+import io.nats.client.impl.Headers;
+import it.unibo.acme.fleet.nats.NatsConnectionPool;
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TrackingSnapshotPublisher – dump frames followed by Dump-Complete")
+class TrackingSnapshotPublisherTest {
+
+    private static final String REPLY_TO = "_INBOX.gateway.1";
+    private static final int MAX_FRAME_BYTES = 1024; // the minimum: ~5 snapshots per frame
+
+    /** One publish as seen by the connection. */
+    private record Sent(String subject, Headers headers, byte[] data) {}
+
+    private final List<Sent> sent = new ArrayList<>();
+    private int flushes;
+
+    private TrackingSnapshotPublisher publisher(String mode) {
+        Connection nats = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "publish" -> sent.add(args.length == 3
+                                ? new Sent((String) args[0], (Headers) args[1], (byte[]) args[2])
+                                : new Sent((String) args[0], null, (byte[]) args[1]));
+                        case "flushBuffer" -> flushes++;
+                        default -> {}
+                    }
+                    return null;
+                });
+        return new TrackingSnapshotPublisher(NatsConnectionPool.of(nats), "event.tracking.snapshot", mode, MAX_FRAME_BYTES);
+    }
+
+    private static List<TrackingSnapshot> fleet(int n) {
+        List<TrackingSnapshot> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TrackingSnapshot s = new TrackingSnapshot();
+            s.vehicleId = "V" + i;
+            s.ts = 1_760_000_000_000L + i;
+            s.active = i % 2 == 0;
+            s.lat = 44.4949;
+            s.lon = 11.3426;
+            s.distanceMeters = 10.0 * i;
+            out.add(s);
+        }
+        return out;
+    }
+
+    @Test
+    void dump_is_split_in_frames_and_closed_by_the_count() throws Exception {
+        publisher(TrackingSnapshotPublisher.MODE_SINGLE).publishDump(REPLY_TO, fleet(40));
+
+        assertTrue(sent.size() > 2, "40 snapshots don't fit one 1 KB frame");
+        Set<String> ids = new HashSet<>();
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            for (Sent m : sent.subList(0, sent.size() - 1)) {
+                assertEquals(REPLY_TO, m.subject());
+                assertEquals(TrackingSnapshotPublisher.CONTENT_TYPE_BATCH,
+                        m.headers().getFirst(TrackingSnapshotPublisher.CONTENT_TYPE_HEADER));
+                assertNull(m.headers().getFirst(TrackingSnapshotPublisher.DUMP_COMPLETE_HEADER));
+                assertTrue(m.data().length <= MAX_FRAME_BYTES, m.data().length + " bytes");
+                for (TrackingSnapshot s : jsonb.fromJson(new String(m.data(), StandardCharsets.UTF_8), TrackingSnapshot[].class)) {
+                    assertTrue(ids.add(s.vehicleId), "sent twice: " + s.vehicleId);
+                }
+            }
+        }
+        assertEquals(40, ids.size());
+
+        Sent last = sent.get(sent.size() - 1);
+        assertEquals(REPLY_TO, last.subject());
+        assertEquals("40", last.headers().getFirst(TrackingSnapshotPublisher.DUMP_COMPLETE_HEADER));
+        assertEquals(0, last.data().length);
+        assertEquals(1, flushes, "one flush at the end of the dump");
+    }
+
+    @Test
+    void empty_or_unknown_dump_sends_only_the_completion() {
+        List<TrackingSnapshot> unknown = new ArrayList<>();
+        unknown.add(null);
+        publisher(TrackingSnapshotPublisher.MODE_SINGLE).publishDump(REPLY_TO, unknown);
+
+        assertEquals(1, sent.size());
+        assertEquals("0", sent.get(0).headers().getFirst(TrackingSnapshotPublisher.DUMP_COMPLETE_HEADER));
+    }
+
+    @Test
+    void single_vehicle_dump_is_one_frame_then_the_completion() {
+        publisher(TrackingSnapshotPublisher.MODE_BATCH).publishDump(REPLY_TO, fleet(1));
+
+        assertEquals(2, sent.size());
+        assertTrue(new String(sent.get(0).data(), StandardCharsets.UTF_8).startsWith("[{\"active\":true"));
+        assertEquals("1", sent.get(1).headers().getFirst(TrackingSnapshotPublisher.DUMP_COMPLETE_HEADER));
+    }
+}
@@ -0,0 +1,61 @@
+package it.unibo.acme.fleet.tracking.resource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SnapshotEmitter – slice sizing and schedule of the sliced mode")
+class SnapshotEmitterTest {
+
+    private static final long TARGET_NANOS = 20_000_000; // 20 ms
+    private static final long MS = 1_000_000;
+
+    @Test
+    void max_slices_keeps_every_slot_at_least_min_slot_ms() {
+        assertEquals(16, SnapshotEmitter.maxSlices(16, 1000));
+        assertEquals(10, SnapshotEmitter.maxSlices(16, 100), "100 ms / 10 ms slots");
+        assertEquals(1, SnapshotEmitter.maxSlices(16, 5), "interval shorter than one slot");
+        assertEquals(1, SnapshotEmitter.maxSlices(0, 1000), "never below one slice");
+    }
+
+    @Test
+    void slow_cycle_doubles_the_slices_up_to_the_max() {
+        assertEquals(2, SnapshotEmitter.resize(1, 25 * MS, TARGET_NANOS, 16));
+        assertEquals(16, SnapshotEmitter.resize(8, 25 * MS, TARGET_NANOS, 16));
+        assertEquals(10, SnapshotEmitter.resize(8, 25 * MS, TARGET_NANOS, 10), "clamped, not doubled past the max");
+        assertEquals(16, SnapshotEmitter.resize(16, 500 * MS, TARGET_NANOS, 16), "already at the max");
+    }
+
+    @Test
+    void fast_cycle_halves_the_slices_down_to_one() {
+        assertEquals(4, SnapshotEmitter.resize(8, 4 * MS, TARGET_NANOS, 16));
+        assertEquals(1, SnapshotEmitter.resize(1, 0, TARGET_NANOS, 16));
+    }
+
+    @Test
+    void slices_are_kept_between_a_quarter_and_the_whole_target() {
+        assertEquals(8, SnapshotEmitter.resize(8, TARGET_NANOS, TARGET_NANOS, 16), "exactly at the target");
+        assertEquals(8, SnapshotEmitter.resize(8, TARGET_NANOS / 4, TARGET_NANOS, 16), "exactly a quarter");
+        assertEquals(8, SnapshotEmitter.resize(8, 10 * MS, TARGET_NANOS, 16));
+    }
+
+    @Test
+    void on_time_slices_keep_the_cycle_start() {
+        long start = 10_000;
+        // slice 3 of 4 in a 1000 ms interval is due at 10_750
+        assertEquals(start, SnapshotEmitter.shiftIfLate(start, 3, 250, 10_600));
+        assertEquals(start, SnapshotEmitter.shiftIfLate(start, 3, 250, 10_750), "due right now");
+    }
+
+    @Test
+    void late_slice_shifts_the_rest_of_the_cycle() {
+        long start = 10_000;
+        // slice 3 due at 10_750, we are at 10_790: run it now and move the cycle by 40 ms
+        long shifted = SnapshotEmitter.shiftIfLate(start, 3, 250, 10_790);
+        assertEquals(10_040, shifted);
+        assertEquals(10_790, shifted + 3 * 250, "no delay for the late slice");
+        // the next cycle keeps the shift: no catch-up burst
+        assertEquals(10_040 + 1000, SnapshotEmitter.shiftIfLate(shifted + 1000, 0, 250, 10_800));
+    }
+}
@@ -0,0 +1,73 @@
+package it.unibo.acme.fleet.tracking.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Geo – fast equirectangular distance vs haversine")
+class GeoTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void fast_distance_relative_error_is_below_0_1_percent_for_telemetry_hops() {
+        Random rnd = new Random(42);
+        double worst = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double lat = -70 + 140 * rnd.nextDouble();
+            double lon = -180 + 360 * rnd.nextDouble();
+            // hop up to ~1 km in any direction
+            double lat2 = lat + (rnd.nextDouble() - 0.5) * 0.018;
+            double lon2 = lon + (rnd.nextDouble() - 0.5) * 0.018;
+            // cos(lat) cached at a latitude up to the refresh tolerance away
+            double cosLat = Geo.cosLat(lat + (rnd.nextDouble() - 0.5) * 2 * Geo.COS_LAT_REFRESH_DEG);
+
+            double exact = Geo.distanceMeters(lat, lon, lat2, lon2);
+            double fast = Geo.fastDistanceMeters(lat, lon, lat2, lon2, cosLat);
+            if (exact > 1.0) {
+                worst = Math.max(worst, Math.abs(fast - exact) / exact);
+            } else {
+                assertEquals(exact, fast, 0.01, "sub-meter hop");
+            }
+        }
+        double w = worst;
+        assertTrue(w < 1e-3, () -> "worst relative error " + w);
+    }
+
+    @Test
+    void fast_distance_in_bologna_is_within_one_centimeter_per_hundred_meters() {
+        // simulator area, 8 m/s vehicles -> hops of a few tens of meters
+        double cosLat = Geo.cosLat(44.4949);
+        double exact = Geo.distanceMeters(44.4949, 11.3426, 44.4958, 11.3437);
+        double fast = Geo.fastDistanceMeters(44.4949, 11.3426, 44.4958, 11.3437, cosLat);
+        assertEquals(exact, fast, exact / 100 * 0.01);
+    }
+
+    @Test
+    void long_hops_fall_back_to_haversine() {
+        double exact = Geo.distanceMeters(44.4949, 11.3426, 45.4642, 9.1900); // Bologna -> Milano
+        double fast = Geo.fastDistanceMeters(44.4949, 11.3426, 45.4642, 9.1900, Geo.cosLat(44.4949));
+        assertEquals(exact, fast, 1e-6);
+    }
+
+    @Test
+    void squared_threshold_check_agrees_with_haversine_outside_error_band() {
+        Random rnd = new Random(7);
+        double threshold = 10.0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double lat = 44 + rnd.nextDouble();
+            double lon = 11 + rnd.nextDouble();
+            double lat2 = lat + (rnd.nextDouble() - 0.5) * 0.0004;
+            double lon2 = lon + (rnd.nextDouble() - 0.5) * 0.0004;
+            double exact = Geo.distanceMeters(lat, lon, lat2, lon2);
+            if (Math.abs(exact - threshold) < threshold * 1e-3) {
+                continue; // inside the documented error band either answer is fine
+            }
+            boolean fast = Geo.fastDistanceSquaredMeters(lat, lon, lat2, lon2, Geo.cosLat(lat)) >= threshold * threshold;
+            assertEquals(exact >= threshold, fast, "at distance " + exact);
+        }
+    }
+}
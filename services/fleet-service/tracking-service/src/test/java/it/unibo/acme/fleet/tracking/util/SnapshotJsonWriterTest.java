@@ -0,0 +1,95 @@
+package it.unibo.acme.fleet.tracking.util;
+
+import it.unibo.acme.fleet.tracking.model.TrackingSnapshot;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SnapshotJsonWriter – JSON-B compatible snapshot documents and frames")
+class SnapshotJsonWriterTest {
+
+    @Test
+    void writes_all_fields_in_jsonb_order() {
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.write(snapshot("V001", 44.4949, 11.3426));
+        assertEquals("{\"active\":true,\"distanceMeters\":1234.5,\"lastUpdateTs\":1735689601000,"
+                        + "\"lat\":44.4949,\"lon\":11.3426,\"stale\":false,\"startedAt\":1735689600000,"
+                        + "\"ts\":1735689602000,\"vehicleId\":\"V001\"}",
+                text(w));
+    }
+
+    @Test
+    void omits_null_position_and_writes_non_finite_as_null() {
+        TrackingSnapshot s = snapshot("V002", null, null);
+        s.distanceMeters = Double.NaN;
+        s.startedAt = -5;
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.write(s);
+        String json = text(w);
+        assertFalse(json.contains("\"lat\""));
+        assertFalse(json.contains("\"lon\""));
+        assertTrue(json.contains("\"distanceMeters\":null"));
+        assertTrue(json.contains("\"startedAt\":-5"));
+    }
+
+    @Test
+    void escapes_unusual_vehicle_ids() {
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.write(snapshot("a\"b\\cè", 1.0, 2.0));
+        assertTrue(text(w).endsWith("\"vehicleId\":\"a\\\"b\\\\cè\"}"));
+    }
+
+    @Test
+    void control_characters_and_negative_zero_match_jsonb() throws Exception {
+        TrackingSnapshot s = snapshot("tab\tnew\nline\u0001", -0.0, 2.0);
+        s.distanceMeters = -0.0;
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.write(s);
+        try (Jsonb jsonb = JsonbBuilder.create()) {
+            assertEquals(jsonb.toJson(s), text(w));
+        }
+    }
+
+    @Test
+    void builds_array_frames_and_rewinds_to_a_mark() {
+        SnapshotJsonWriter w = new SnapshotJsonWriter(16);
+        w.beginArray();
+        w.write(snapshot("V001", 1.0, 2.0));
+        int mark = w.size();
+        w.comma();
+        w.write(snapshot("V002", 1.0, 2.0));
+        w.truncate(mark);
+        w.endArray();
+        String json = text(w);
+        assertTrue(json.startsWith("[{") && json.endsWith("}]"));
+        assertTrue(json.contains("V001"));
+        assertFalse(json.contains("V002"));
+
+        // the buffer is reused from scratch after reset
+        w.reset();
+        w.write(snapshot("V003", 1.0, 2.0));
+        assertTrue(text(w).startsWith("{\"active\""));
+    }
+
+    private static TrackingSnapshot snapshot(String id, Double lat, Double lon) {
+        TrackingSnapshot s = new TrackingSnapshot();
+        s.vehicleId = id;
+        s.active = true;
+        s.lat = lat;
+        s.lon = lon;
+        s.distanceMeters = 1234.5;
+        s.startedAt = 1735689600000L;
+        s.lastUpdateTs = 1735689601000L;
+        s.ts = 1735689602000L;
+        return s;
+    }
+
+    private static String text(SnapshotJsonWriter w) {
+        return new String(w.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
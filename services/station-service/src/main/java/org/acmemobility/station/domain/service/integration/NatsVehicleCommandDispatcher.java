@@ -1,7 +1,9 @@
 package org.acmemobility.station.domain.service.integration;
 
 import io.nats.client.Connection;
+import io.nats.client.ConnectionListener;
 import io.nats.client.Nats;
+import io.nats.client.Options;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -11,6 +13,7 @@ import jakarta.json.bind.JsonbBuilder;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,7 +27,9 @@ public class NatsVehicleCommandDispatcher implements VehicleCommandDispatcher {
     @ConfigProperty(name = "nats.url", defaultValue = "nats://localhost:4222")
     String natsUrl;
 
-    private Connection natsConnection;
+    // Valorizzata dal listener quando la prima connessione riesce (anche dopo vari tentativi)
+    private volatile Connection natsConnection;
+    private volatile boolean closed;
     private final Jsonb jsonb = JsonbBuilder.create();
 
     @PostConstruct
@@ -44,20 +49,51 @@ public class NatsVehicleCommandDispatcher implements VehicleCommandDispatcher {
             LOG.warning("NATS_URL env not found. Fallback to hardcoded: " + targetUrl);
         }
 
+        // Connessione asincrona con retry anche sul primo tentativo: se NATS non è ancora su
+        // (es. avvio in parallelo su Kubernetes) il servizio parte lo stesso e si collega appena
+        // possibile, invece di restare senza connessione fino al prossimo riavvio.
+        // Una volta connessi, i publish durante una disconnessione restano nel reconnect buffer.
+        String url = targetUrl;
+        Options options = new Options.Builder()
+                .server(url)
+                .connectionName("station-service")
+                .maxReconnects(-1)
+                .reconnectWait(Duration.ofSeconds(2))
+                .reconnectBufferSize(8L * 1024 * 1024)
+                .pingInterval(Duration.ofSeconds(30))
+                .connectionListener((conn, type) -> onConnectionEvent(conn, type, url))
+                .build();
         try {
-            LOG.info("Attempting NATS connection to: " + targetUrl);
-            this.natsConnection = Nats.connect(targetUrl);
-            LOG.info(">>> SUCCESS: Connected to NATS at " + targetUrl);
+            LOG.info("Attempting NATS connection to: " + url);
+            Nats.connectAsynchronously(options, true);
         } catch (Exception e) {
-            LOG.log(Level.SEVERE, "!!! CRITICAL: Failed to connect to NATS !!!", e);
+            LOG.log(Level.SEVERE, "!!! CRITICAL: Failed to start NATS connection !!!", e);
             // Non blocchiamo l'avvio, ma il sistema sarà zoppo
         }
     }
 
+    private void onConnectionEvent(Connection conn, ConnectionListener.Events type, String url) {
+        switch (type) {
+            case CONNECTED -> {
+                if (closed) {
+                    try { conn.close(); } catch (Exception e) { /* ignore */ }
+                    return;
+                }
+                this.natsConnection = conn;
+                LOG.info(">>> SUCCESS: Connected to NATS at " + url);
+            }
+            case DISCONNECTED -> LOG.warning("NATS disconnected, commands are buffered until reconnect");
+            case RECONNECTED -> LOG.info("NATS reconnected to " + conn.getConnectedUrl());
+            default -> LOG.fine("NATS " + type);
+        }
+    }
+
     @PreDestroy
     public void close() {
-        if (natsConnection != null) {
-            try { natsConnection.close(); } catch (Exception e) { /* ignore */ }
+        closed = true;
+        Connection c = natsConnection;
+        if (c != null) {
+            try { c.close(); } catch (Exception e) { /* ignore */ }
         }
     }
 
@@ -65,7 +101,7 @@ public class NatsVehicleCommandDispatcher implements VehicleCommandDispatcher {
     public void sendUnlockCommand(String vehicleId, double destLat, double destLon) {
         // 1. Controllo Connessione: Se null, è un errore CRITICO
         if (natsConnection == null) {
-            String msg = "CRITICAL: Cannot send UNLOCK command for " + vehicleId + ". NATS connection is NULL.";
+            String msg = "CRITICAL: Cannot send UNLOCK command for " + vehicleId + ". NATS not connected yet.";
             LOG.severe(msg);
             // Lanciamo RuntimeException per far fallire la chiamata HTTP con 500
             throw new IllegalStateException(msg); 
@@ -89,7 +125,7 @@ public class NatsVehicleCommandDispatcher implements VehicleCommandDispatcher {
     @Override
     public void sendLockCommand(String vehicleId) {
         if (natsConnection == null) {
-             String msg = "CRITICAL: Cannot send LOCK command for " + vehicleId + ". NATS connection is NULL.";
+             String msg = "CRITICAL: Cannot send LOCK command for " + vehicleId + ". NATS not connected yet.";
              LOG.severe(msg);
              throw new IllegalStateException(msg);
         }
@@ -8,6 +8,13 @@ public class SimulatorConfig {
     public final double speedMps;
     public final double batteryDrainPctPerKm;
     public final long randomSeed;
+    public final String telemetryFormat;
+    public final int telemetryBatchShards;
+    public final int telemetryBatchMaxRecords;
+    public final String telemetryBatchSubjectPrefix;
+    public final double gpsNoiseM;
+    public final double gpsOutlierRate;
+    public final double gpsOutlierM;
 
     private SimulatorConfig(String natsUrl,
                             String telemetrySubjectPrefix,
@@ -15,7 +22,14 @@ public class SimulatorConfig {
                             int numVehicles,
                             double speedMps,
                             double batteryDrainPctPerKm,
-                            long randomSeed) {
+                            long randomSeed,
+                            String telemetryFormat,
+                            int telemetryBatchShards,
+                            int telemetryBatchMaxRecords,
+                            String telemetryBatchSubjectPrefix,
+                            double gpsNoiseM,
+                            double gpsOutlierRate,
+                            double gpsOutlierM) {
         this.natsUrl = natsUrl;
         this.telemetrySubjectPrefix = telemetrySubjectPrefix;
         this.tickMs = tickMs;
@@ -23,6 +37,13 @@ public class SimulatorConfig {
         this.speedMps = speedMps;
         this.batteryDrainPctPerKm = batteryDrainPctPerKm;
         this.randomSeed = randomSeed;
+        this.telemetryFormat = telemetryFormat;
+        this.telemetryBatchShards = telemetryBatchShards;
+        this.telemetryBatchMaxRecords = telemetryBatchMaxRecords;
+        this.telemetryBatchSubjectPrefix = telemetryBatchSubjectPrefix;
+        this.gpsNoiseM = gpsNoiseM;
+        this.gpsOutlierRate = gpsOutlierRate;
+        this.gpsOutlierM = gpsOutlierM;
     }
 
     public static SimulatorConfig fromEnv() {
@@ -33,13 +54,27 @@ public class SimulatorConfig {
         double speedMps = parseDouble(getenv("SIM_SPEED_MPS", "8.0"), 8.0);
         double drain = parseDouble(getenv("SIM_BATTERY_DRAIN_PCT_PER_KM", "2.0"), 2.0);
         long seed = parseLong(getenv("SIM_RANDOM_SEED", "42"), 42);
+        String format = getenv("SIM_TELEMETRY_FORMAT", "json").trim().toLowerCase();
+        int batchShards = (int) parseLong(getenv("SIM_TELEMETRY_BATCH_SHARDS", "0"), 0);
+        int batchMax = (int) parseLong(getenv("SIM_TELEMETRY_BATCH_MAX_RECORDS", "2000"), 2000);
+        String batchPrefix = getenv("SIM_TELEMETRY_BATCH_SUBJECT_PREFIX", "telemetry.batch");
+        double gpsNoise = parseDouble(getenv("SIM_GPS_NOISE_M", "0"), 0);
+        double outlierRate = parseDouble(getenv("SIM_GPS_OUTLIER_RATE", "0"), 0);
+        double outlierM = parseDouble(getenv("SIM_GPS_OUTLIER_M", "200"), 200);
 
         if (tickMs < 100) tickMs = 100;
         if (numVehicles < 1) numVehicles = 1;
         if (speedMps <= 0) speedMps = 1.0;
         if (drain < 0) drain = 0.0;
+        if (!format.equals("json") && !format.equals("binary")) format = "json";
+        if (batchShards < 0) batchShards = 0;
+        if (batchMax < 1) batchMax = 1;
+        if (gpsNoise < 0) gpsNoise = 0;
+        if (outlierRate < 0) outlierRate = 0;
+        if (outlierRate > 1) outlierRate = 1;
 
-        return new SimulatorConfig(natsUrl, subjectPrefix, tickMs, numVehicles, speedMps, drain, seed);
+        return new SimulatorConfig(natsUrl, subjectPrefix, tickMs, numVehicles, speedMps, drain, seed, format,
+                batchShards, batchMax, batchPrefix, gpsNoise, outlierRate, outlierM);
     }
 
     private static String getenv(String k, String def) {
@@ -65,6 +100,13 @@ public class SimulatorConfig {
                 ", speedMps=" + speedMps +
                 ", batteryDrainPctPerKm=" + batteryDrainPctPerKm +
                 ", randomSeed=" + randomSeed +
+                ", telemetryFormat='" + telemetryFormat + '\'' +
+                ", telemetryBatchShards=" + telemetryBatchShards +
+                ", telemetryBatchMaxRecords=" + telemetryBatchMaxRecords +
+                ", telemetryBatchSubjectPrefix='" + telemetryBatchSubjectPrefix + '\'' +
+                ", gpsNoiseM=" + gpsNoiseM +
+                ", gpsOutlierRate=" + gpsOutlierRate +
+                ", gpsOutlierM=" + gpsOutlierM +
                 '}';
     }
 }
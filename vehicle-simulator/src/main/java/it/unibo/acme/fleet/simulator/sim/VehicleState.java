@@ -8,6 +8,9 @@ public class VehicleState {
     public double curLat;
     public double curLon;
 
+    // Ultimo numero di sequenza pubblicato in telemetria
+    public long telemetrySeq;
+
     // Stato logico di navigazione
     public boolean isLocked; // True = bloccato, False = sbloccato (consuma batteria)
     
@@ -3,17 +3,20 @@ package it.unibo.acme.fleet.simulator.stream;
 import io.nats.client.Connection;
 import io.nats.client.Dispatcher;
 import io.nats.client.Message;
+import io.nats.client.impl.Headers;
 import it.unibo.acme.fleet.simulator.SimulatorConfig;
 import it.unibo.acme.fleet.simulator.model.Station;
-import it.unibo.acme.fleet.simulator.model.TelemetryMessage;
 import it.unibo.acme.fleet.simulator.model.VehicleCommand;
 import it.unibo.acme.fleet.simulator.sim.DefaultStations;
 import it.unibo.acme.fleet.simulator.sim.VehicleState;
 import it.unibo.acme.fleet.simulator.util.Geo;
+import it.unibo.acme.fleet.wire.TelemetryCodec;
+import it.unibo.acme.fleet.wire.TelemetryMessage;
 
 import jakarta.json.bind.Jsonb;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,10 +30,24 @@ import java.util.logging.Logger;
 public class FleetSimulator {
     private static final Logger LOG = Logger.getLogger(FleetSimulator.class.getName());
 
+    private static final double METERS_PER_DEG = 111_195.0;
+
     private final SimulatorConfig cfg;
     private final Connection nats;
     private final Jsonb jsonb;
 
+    // Formato binario opzionale: i consumer lo riconoscono dall'header Content-Type
+    private final boolean binaryTelemetry;
+    private final Headers binaryHeaders;
+
+    // Modalita' batch: un frame per shard per tick invece di un messaggio per veicolo
+    private final int batchShards;
+    private final Headers batchHeaders;
+    private final List<List<TelemetryMessage>> batchBuffers = new ArrayList<>();
+
+    // Rumore GPS opzionale sulla posizione pubblicata (lo stato fisico resta esatto)
+    private final Random gpsRnd;
+
     // Mappa ID Veicolo -> Stato. 
     // Usiamo una mappa per accesso rapido quando arriva un comando.
     private final Map<String, VehicleState> vehicles = new HashMap<>();
@@ -45,6 +62,14 @@ public class FleetSimulator {
         this.cfg = cfg;
         this.nats = nats;
         this.jsonb = jsonb;
+        this.binaryTelemetry = "binary".equals(cfg.telemetryFormat);
+        this.binaryHeaders = new Headers().put(TelemetryCodec.CONTENT_TYPE_HEADER, TelemetryCodec.CONTENT_TYPE_BINARY);
+        this.batchShards = cfg.telemetryBatchShards;
+        this.batchHeaders = new Headers().put(TelemetryCodec.CONTENT_TYPE_HEADER, TelemetryCodec.CONTENT_TYPE_BATCH);
+        for (int i = 0; i < batchShards; i++) {
+            batchBuffers.add(new ArrayList<>());
+        }
+        this.gpsRnd = new Random(cfg.randomSeed + 1);
         initVehicles();
     }
 
@@ -141,6 +166,7 @@ public class FleetSimulator {
                 updateVehiclePhysics(v);
                 publishTelemetry(v, now);
             }
+            flushBatches();
         }
     }
 
@@ -198,16 +224,67 @@ public class FleetSimulator {
     private void publishTelemetry(VehicleState v, long ts) {
         TelemetryMessage msg = new TelemetryMessage();
         msg.vehicleId = v.vehicleId;
+        msg.seq = ++v.telemetrySeq;
         msg.ts = ts;
         msg.lat = v.curLat;
         msg.lon = v.curLon;
         msg.batteryPct = (int) Math.round(v.batteryPct);
+        addGpsNoise(msg);
+
+        int idx = TelemetryCodec.vehicleIndex(v.vehicleId);
+        if (batchShards > 0 && idx >= 0) {
+            // Subject del frame: telemetry.batch.<shard>
+            int shard = idx % batchShards;
+            List<TelemetryMessage> buffer = batchBuffers.get(shard);
+            buffer.add(msg);
+            if (buffer.size() >= cfg.telemetryBatchMaxRecords) {
+                publishBatch(shard, buffer);
+            }
+            return;
+        }
 
         // Subject: telemetry.vehicle.V001
         String subject = cfg.telemetrySubjectPrefix + "." + v.vehicleId;
-        byte[] payload = jsonb.toJson(msg).getBytes(StandardCharsets.UTF_8);
-        
+
         // Publish è thread-safe in NATS client
-        nats.publish(subject, payload);
+        if (binaryTelemetry && idx >= 0) {
+            nats.publish(subject, binaryHeaders, TelemetryCodec.encode(msg));
+        } else {
+            byte[] payload = jsonb.toJson(msg).getBytes(StandardCharsets.UTF_8);
+            nats.publish(subject, payload);
+        }
+    }
+
+    /**
+     * Simula un ricevitore GPS reale: errore gaussiano di deviazione standard gpsNoiseM
+     * (anche da fermo) e, con probabilita' gpsOutlierRate, un salto di gpsOutlierM metri.
+     */
+    private void addGpsNoise(TelemetryMessage msg) {
+        if (cfg.gpsNoiseM <= 0 && cfg.gpsOutlierRate <= 0) return;
+
+        double northM = gpsRnd.nextGaussian() * cfg.gpsNoiseM;
+        double eastM = gpsRnd.nextGaussian() * cfg.gpsNoiseM;
+        if (cfg.gpsOutlierRate > 0 && gpsRnd.nextDouble() < cfg.gpsOutlierRate) {
+            double angle = gpsRnd.nextDouble() * 2 * Math.PI;
+            northM += Math.cos(angle) * cfg.gpsOutlierM;
+            eastM += Math.sin(angle) * cfg.gpsOutlierM;
+        }
+        msg.lat += northM / METERS_PER_DEG;
+        msg.lon += eastM / (METERS_PER_DEG * Math.cos(Math.toRadians(msg.lat)));
+    }
+
+    private void flushBatches() {
+        for (int shard = 0; shard < batchShards; shard++) {
+            List<TelemetryMessage> buffer = batchBuffers.get(shard);
+            if (!buffer.isEmpty()) {
+                publishBatch(shard, buffer);
+            }
+        }
+    }
+
+    private void publishBatch(int shard, List<TelemetryMessage> buffer) {
+        String subject = cfg.telemetryBatchSubjectPrefix + "." + shard;
+        nats.publish(subject, batchHeaders, TelemetryCodec.encodeFrame(buffer));
+        buffer.clear();
     }
 }
\ No newline at end of file